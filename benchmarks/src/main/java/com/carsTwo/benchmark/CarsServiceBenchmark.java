@@ -0,0 +1,236 @@
+package com.carsTwo.benchmark;
+
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarPage;
+import com.carsTwo.model.CarStatistic;
+import com.carsTwo.model.GroupAggregate;
+import com.carsTwo.model.enums.*;
+import com.carsTwo.query.CarQuery;
+import com.carsTwo.service.CarsService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Every public query and mutation of {@link CarsService} over a generated fleet. The query cache is
+ * disabled, so every invocation counts its result from the fleet, except for the cached benchmark.
+ * <p>
+ * Run through {@link BenchmarkRunner}, which adds allocation rate to throughput and average time.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class CarsServiceBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"1.1"})
+    double componentSkew;
+
+    @Param({"5"})
+    int priceClusters;
+
+    private CarsService carsService;
+    private CarsService cachedCarsService;
+    private Car updatedCar;
+    private Car replacingCar;
+    private Car addedCar;
+    private List<String> popularComponents;
+    private List<String> rareComponents;
+    private CarQuery compositeQuery;
+    private List<CarQuery> reportQueries;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        var generator = new FleetGenerator(SEED, componentSkew, priceClusters);
+        var cars = generator.generate(size);
+        var extraCars = new FleetGenerator(SEED + 1, componentSkew, priceClusters).generate(2);
+
+        carsService = new CarsService(cars);
+        carsService.disableQueryCache();
+        cachedCarsService = new CarsService(cars);
+
+        updatedCar = cars.get(size / 2);
+        replacingCar = extraCars.get(0);
+        addedCar = extraCars.get(1);
+        popularComponents = List.of(FleetGenerator.component(0), FleetGenerator.component(1));
+        rareComponents = List.of(FleetGenerator.component(FleetGenerator.componentCount() - 1));
+        compositeQuery = CarQuery.builder()
+                .bodyTypes(CarBodyType.COMBI)
+                .priceBetween(BigDecimal.valueOf(50000), BigDecimal.valueOf(300000))
+                .engineTypes(EngineType.DIESEL)
+                .tyreTypes(TyreType.WINTER)
+                .components(rareComponents.get(0))
+                .build();
+        reportQueries = new ArrayList<>();
+        for (CarBodyType bodyType : CarBodyType.values()) {
+            for (int band = 0; band < 4; band++) {
+                reportQueries.add(CarQuery.builder()
+                        .bodyTypes(bodyType)
+                        .priceBetween(BigDecimal.valueOf(band * 100000L), BigDecimal.valueOf((band + 1) * 100000L))
+                        .build());
+            }
+        }
+        for (int component = 0; component < 4; component++) {
+            reportQueries.add(CarQuery.builder().components(FleetGenerator.component(component)).build());
+        }
+        for (int band = 0; band < 4; band++) {
+            reportQueries.add(CarQuery.builder().mileageBetween(band * 75000, (band + 1) * 75000 - 1).build());
+            reportQueries.add(CarQuery.builder().powerBetween(60 + band * 85, 60 + (band + 1) * 85 - 1).colors(CarBodyColor.RED).build());
+        }
+        snapshot = Files.createTempFile("fleet", ".snapshot");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public List<Car> sortingByGivenOrder() {
+        return carsService.sortingByGivenOrder(SortingType.ENGINE_POWER, false);
+    }
+
+    @Benchmark
+    public List<Car> sortingByGivenOrderPage() {
+        return carsService.sortingByGivenOrder(SortingType.WHEEL_SIZE, true, 1000, 20);
+    }
+
+    @Benchmark
+    public List<Car> getTopByGivenOrder() {
+        return carsService.getTopByGivenOrder(SortingType.COMPONENT, true, 10);
+    }
+
+    @Benchmark
+    public Set<Car> groupBySpecifiedBodyTypeWithGivenPriceRange() {
+        return carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(50000), BigDecimal.valueOf(300000));
+    }
+
+    @Benchmark
+    public Set<Car> groupBySpecifiedBodyTypeWithGivenPriceRangeInPriceOrder() {
+        return carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(50000), BigDecimal.valueOf(300000), true);
+    }
+
+    @Benchmark
+    public Set<Car> groupByGivenEngineTypeWithAlphabeticalOrder() {
+        return carsService.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL);
+    }
+
+    @Benchmark
+    public CarStatistic getStatisticByGivenAttribute() {
+        return carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE);
+    }
+
+    @Benchmark
+    public CarStatistic getStatistics() {
+        return carsService.getStatistics(50, 99);
+    }
+
+    @Benchmark
+    public CarStatistic getApproximateStatistics() {
+        return carsService.getApproximateStatistics(50, 99);
+    }
+
+    @Benchmark
+    public Map<Car, Double> getMileageForEveryCar() {
+        return carsService.getMileageForEveryCar();
+    }
+
+    @Benchmark
+    public List<Car> getCarsWithMileageBetween() {
+        return carsService.getCarsWithMileageBetween(50000, 100000);
+    }
+
+    @Benchmark
+    public int getMileageRank() {
+        return carsService.getMileageRank(updatedCar);
+    }
+
+    @Benchmark
+    public Map<TyreType, List<Car>> getCarsWithThisSameWheelType() {
+        return carsService.getCarsWithThisSameWheelType();
+    }
+
+    @Benchmark
+    public List<GroupAggregate> countBy() {
+        return carsService.countBy(GroupingDimension.TYRE_TYPE, GroupingDimension.BODY_TYPE, GroupingDimension.WHEEL_SIZE);
+    }
+
+    @Benchmark
+    public List<GroupAggregate> aggregateBy() {
+        return carsService.aggregateBy(StatisticAttribute.PRICE, GroupingDimension.ENGINE_TYPE, GroupingDimension.BODY_COLOR);
+    }
+
+    @Benchmark
+    public Set<Car> findAllWithPopularComponents() {
+        return carsService.findAllWithComponents(popularComponents);
+    }
+
+    @Benchmark
+    public Set<Car> findAllWithRareComponents() {
+        return carsService.findAllWithComponents(rareComponents);
+    }
+
+    @Benchmark
+    public Set<Car> findWithCompositeQuery() {
+        return carsService.find(compositeQuery);
+    }
+
+    @Benchmark
+    public List<Set<Car>> findReportQueriesInOneBatch() {
+        return carsService.findAll(reportQueries);
+    }
+
+    @Benchmark
+    public List<Set<Car>> findReportQueriesOneByOne() {
+        return reportQueries.stream().map(carsService::find).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Car> cursorFirstCarsWithPopularComponents() {
+        return carsService.cursorAllWithComponents(popularComponents).stream().limit(20).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public CarPage cursorPageInPriceOrder() {
+        return carsService.cursorBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(50000), BigDecimal.valueOf(300000), true).page(null, 20);
+    }
+
+    @Benchmark
+    public Set<Car> cachedGroupBySpecifiedBodyTypeWithGivenPriceRange() {
+        return cachedCarsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(50000), BigDecimal.valueOf(300000));
+    }
+
+    @Benchmark
+    public boolean addAndRemoveCar() {
+        return carsService.addCar(addedCar) && carsService.removeCar(addedCar);
+    }
+
+    @Benchmark
+    public boolean updateCar() {
+        return carsService.updateCar(updatedCar, replacingCar) && carsService.updateCar(replacingCar, updatedCar);
+    }
+
+    @Benchmark
+    public Path writeSnapshot() {
+        carsService.writeSnapshot(snapshot);
+        return snapshot;
+    }
+}
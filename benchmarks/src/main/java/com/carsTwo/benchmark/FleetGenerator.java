@@ -0,0 +1,164 @@
+package com.carsTwo.benchmark;
+
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarBody;
+import com.carsTwo.model.Engine;
+import com.carsTwo.model.Wheel;
+import com.carsTwo.model.enums.CarBodyColor;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.model.enums.TyreType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Synthetic fleet for benchmarks. The same seed always gives the same cars.
+ * <p>
+ * Component popularity follows Zipf distribution with given exponent, 0 makes every component equally
+ * popular. Prices are either uniform or clustered around a few price points, like fleets made of a few
+ * model ranges.
+ */
+public class FleetGenerator {
+
+    private static final int MODEL_COUNT = 200;
+    private static final int WHEEL_MODEL_COUNT = 20;
+    private static final int COMPONENT_COUNT = 64;
+    private static final int MAX_COMPONENTS_PER_CAR = 8;
+    private static final double MIN_PRICE = 5_000;
+    private static final double MAX_PRICE = 500_000;
+
+    private static final EngineType[] ENGINE_TYPES = EngineType.values();
+    private static final CarBodyType[] BODY_TYPES = CarBodyType.values();
+    private static final CarBodyColor[] BODY_COLORS = CarBodyColor.values();
+    private static final TyreType[] TYRE_TYPES = TyreType.values();
+
+    private final long seed;
+    private final double[] componentDistribution;
+    private final double[] priceClusters;
+
+    /**
+     * @param seed seed of the random generator
+     * @param componentSkew exponent of Zipf distribution of component popularity
+     * @param priceClusterCount amount of price points prices are clustered around, 0 for uniform prices
+     */
+    public FleetGenerator(long seed, double componentSkew, int priceClusterCount) {
+        this.seed = seed;
+        this.componentDistribution = zipfDistribution(COMPONENT_COUNT, componentSkew);
+        this.priceClusters = new SplittableRandom(seed ^ 0x5DEECE66DL)
+                .doubles(priceClusterCount, MIN_PRICE, MAX_PRICE)
+                .toArray();
+    }
+
+    /**
+     * @param index position of the component in popularity ranking, 0 is the most popular one
+     * @return name of the component
+     */
+    public static String component(int index) {
+        return "Component " + index;
+    }
+
+    public static int componentCount() {
+        return COMPONENT_COUNT;
+    }
+
+    public List<Car> generate(int size) {
+
+        var cars = new ArrayList<Car>(size);
+        generate(size, cars::add);
+        return cars;
+    }
+
+    /**
+     * Streams the same cars as {@link #generate(int)} without keeping them.
+     * @param size amount of cars
+     * @param consumer receives every generated car
+     */
+    public void generate(int size, Consumer<Car> consumer) {
+
+        var random = new SplittableRandom(seed);
+        for (int i = 0; i < size; i++) {
+            consumer.accept(car(random));
+        }
+    }
+
+    private Car car(SplittableRandom random) {
+
+        return Car
+                .builder()
+                .model("Model " + random.nextInt(MODEL_COUNT))
+                .price(price(random))
+                .mileage(Math.round(random.nextDouble(0, 300_000)))
+                .engine(Engine
+                        .builder()
+                        .type(ENGINE_TYPES[random.nextInt(ENGINE_TYPES.length)])
+                        .power(60 + random.nextInt(340))
+                        .build())
+                .carBody(CarBody
+                        .builder()
+                        .bodyType(BODY_TYPES[random.nextInt(BODY_TYPES.length)])
+                        .color(BODY_COLORS[random.nextInt(BODY_COLORS.length)])
+                        .components(components(random))
+                        .build())
+                .wheel(Wheel
+                        .builder()
+                        .model("Wheel " + random.nextInt(WHEEL_MODEL_COUNT))
+                        .size(14 + random.nextInt(8))
+                        .tyreType(TYRE_TYPES[random.nextInt(TYRE_TYPES.length)])
+                        .build())
+                .build();
+    }
+
+    private BigDecimal price(SplittableRandom random) {
+
+        double price;
+        if (priceClusters.length == 0) {
+            price = random.nextDouble(MIN_PRICE, MAX_PRICE);
+        } else {
+            double center = priceClusters[random.nextInt(priceClusters.length)];
+            price = Math.max(MIN_PRICE, center * (1 + 0.05 * gaussian(random)));
+        }
+        return BigDecimal.valueOf(Math.round(price * 100), 2);
+    }
+
+    private List<String> components(SplittableRandom random) {
+
+        int count = random.nextInt(MAX_COMPONENTS_PER_CAR + 1);
+        var chosen = new boolean[COMPONENT_COUNT];
+        var components = new ArrayList<String>(count);
+        while (components.size() < count) {
+            int index = Arrays.binarySearch(componentDistribution, random.nextDouble());
+            index = index >= 0 ? index : Math.min(-index - 1, COMPONENT_COUNT - 1);
+            if (!chosen[index]) {
+                chosen[index] = true;
+                components.add(component(index));
+            }
+        }
+        return components;
+    }
+
+    private static double gaussian(SplittableRandom random) {
+
+        double first = 1 - random.nextDouble();
+        double second = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(first)) * Math.cos(2 * Math.PI * second);
+    }
+
+    private static double[] zipfDistribution(int count, double exponent) {
+
+        var cumulative = new double[count];
+        double total = 0;
+        for (int rank = 0; rank < count; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < count; rank++) {
+            cumulative[rank] /= total;
+        }
+        return cumulative;
+    }
+}
@@ -0,0 +1,135 @@
+package com.carsTwo.benchmark;
+
+import com.carsTwo.metrics.LatencyHistogram;
+import com.carsTwo.server.CarsHttpServer;
+import com.carsTwo.service.CarsService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the HTTP endpoint: clients on virtual threads send a mix of queries back to back over
+ * loopback, after a warm-up the sustained throughput and latency percentiles of answered requests are
+ * reported, refused ones are counted apart. Clients wait for every answer before sending the next
+ * request, so latencies are those seen at the given concurrency, not under a fixed arrival rate.
+ * <p>
+ * Arguments: fleet size, amount of clients, seconds of measurement, max concurrent requests of the
+ * server and optionally URL of an already running server, for example
+ * {@code java -cp target/benchmarks.jar com.carsTwo.benchmark.HttpLoadTest 1000000 64 30 256}.
+ */
+public class HttpLoadTest {
+
+    private static final long SEED = 42;
+    private static final int WARM_UP_SECONDS = 5;
+    private static final String[] QUERIES = {
+            "/cars/top?type=ENGINE_POWER&descending=true&limit=10",
+            "/cars/body-type?type=SEDAN&minPrice=100000&maxPrice=120000&priceOrder=true&size=50",
+            "/cars/engine-type?type=LPG&size=50",
+            "/cars/components?component=Component%200&component=Component%201&size=50",
+            "/cars/mileage-range?min=1000&max=1500&size=50",
+            "/cars/query?engineType=DIESEL&minPower=200&maxPower=250&color=RED&size=50",
+            "/statistics?attribute=PRICE",
+            "/groups/count?dimension=ENGINE_TYPE&dimension=BODY_TYPE"
+    };
+
+    public static void main(String[] args) throws InterruptedException {
+
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int maxConcurrentRequests = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+        CarsHttpServer server = null;
+        String baseUrl;
+        if (args.length > 4) {
+            baseUrl = args[4];
+        } else {
+            var cars = new FleetGenerator(SEED, 1.1, 32).generate(size);
+            server = CarsHttpServer.start(new CarsService(cars), 0, maxConcurrentRequests);
+            baseUrl = "http://127.0.0.1:" + server.port();
+        }
+
+        try {
+            var requests = new ArrayList<HttpRequest>();
+            for (String query : QUERIES) {
+                requests.add(HttpRequest.newBuilder(URI.create(baseUrl + query)).build());
+            }
+
+            System.out.printf("Warming up %d clients for %d s%n", clients, WARM_UP_SECONDS);
+            run(requests, clients, WARM_UP_SECONDS);
+            var result = run(requests, clients, seconds);
+
+            var latencies = result.latencies;
+            System.out.printf(Locale.ROOT, "%d clients, %d s: %.0f requests/s, %d refused, %d failed%n",
+                    clients, seconds, latencies.count() / (double) seconds, result.refused.get(), result.failed.get());
+            System.out.printf(Locale.ROOT, "latency us: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d%n",
+                    micros(latencies.percentile(50)), micros(latencies.percentile(90)), micros(latencies.percentile(99)),
+                    micros(latencies.percentile(99.9)), micros(latencies.max()));
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static Result run(List<HttpRequest> requests, int clients, int seconds) throws InterruptedException {
+
+        var result = new Result();
+        var client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                var random = new SplittableRandom(SEED + i);
+                executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        var request = requests.get(random.nextInt(requests.size()));
+                        long start = System.nanoTime();
+                        try {
+                            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status == 200) {
+                                result.latencies.record(System.nanoTime() - start);
+                            } else if (status == 429) {
+                                result.refused.incrementAndGet();
+                            } else {
+                                result.failed.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            result.failed.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+
+    private static final class Result {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final AtomicLong refused = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+    }
+}
@@ -0,0 +1,90 @@
+package com.carsTwo.benchmark;
+
+import com.carsTwo.model.enums.CarBodyColor;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.query.CarQuery;
+import com.carsTwo.service.CarsService;
+import com.carsTwo.store.Fleet;
+import com.carsTwo.store.OffHeapCarColumns;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap footprint and garbage collection cost of a fleet kept on the heap and off-heap. The fleet is
+ * generated straight into the storage, then the heap left after a full collection is reported with
+ * the time spent in the collector while queries run for the given seconds.
+ * <p>
+ * Arguments: fleet size, {@code heap} or {@code offHeap} and seconds of queries, for example
+ * {@code java -Xmx4g -XX:MaxDirectMemorySize=8g -cp target/benchmarks.jar com.carsTwo.benchmark.OffHeapFootprint 50000000 offHeap 60}.
+ */
+public class OffHeapFootprint {
+
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        boolean offHeap = args.length <= 1 || args[1].equals("offHeap");
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        long heapBefore = usedHeapAfterGc();
+        var generator = new FleetGenerator(SEED, 1.1, 5);
+        long start = System.nanoTime();
+        CarsService carsService;
+        OffHeapCarColumns columns = null;
+        if (offHeap) {
+            columns = new OffHeapCarColumns();
+            generator.generate(size, columns::add);
+            carsService = new CarsService(Fleet.of(columns));
+        } else {
+            carsService = new CarsService(generator.generate(size));
+        }
+        long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        try (carsService) {
+            carsService.disableQueryCache();
+            long heap = usedHeapAfterGc() - heapBefore;
+            System.out.printf(Locale.ROOT, "%s, %d cars loaded in %d ms: heap %d MB, off-heap %d MB%n",
+                    offHeap ? "off-heap" : "heap", size, loadMillis, heap >> 20,
+                    offHeap ? columns.offHeapBytes() >> 20 : 0);
+
+            var queries = List.of(
+                    CarQuery.builder().engineTypes(EngineType.DIESEL).powerBetween(200, 250).colors(CarBodyColor.RED).build(),
+                    CarQuery.builder().bodyTypes(CarBodyType.SEDAN).priceBetween(BigDecimal.valueOf(100000), BigDecimal.valueOf(101000)).build(),
+                    CarQuery.builder().components(FleetGenerator.component(0), FleetGenerator.component(5)).mileageBetween(1000, 1100).build());
+            long collections = collections();
+            long collectionMillis = collectionMillis();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            long answered = 0;
+            while (System.nanoTime() < deadline) {
+                carsService.find(queries.get((int) (answered % queries.size())));
+                answered++;
+            }
+            System.out.printf(Locale.ROOT, "%d queries in %d s: %d collections taking %d ms%n",
+                    answered, seconds, collections() - collections, collectionMillis() - collectionMillis);
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return heap.getUsed();
+    }
+
+    private static long collections() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long collectionMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
@@ -1,19 +1,39 @@
-import com.carsTwo.model.Car;
-import com.carsTwo.model.CarBody;
-import com.carsTwo.model.Engine;
-import com.carsTwo.model.Wheel;
-import com.carsTwo.model.enums.*;
+import com.carsTwo.loader.CarsJsonLoader;
+import com.carsTwo.server.CarsHttpServer;
 import com.carsTwo.service.CarsService;
 
-import java.math.BigDecimal;
-import java.util.HashSet;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Set;
+import java.util.Objects;
 
 public class Main {
 
+    private static final int DEFAULT_PORT = 8080;
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    /**
+     * Serves one fleet to every process of the host over loopback HTTP.
+     * @param args path of a JSON, NDJSON or snapshot file with cars (empty fleet when missing), port, max concurrent requests
+     */
     public static void main(String[] args) {
 
+        var carsService = args.length > 0 ? open(Path.of(args[0])) : new CarsService(List.of());
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int maxConcurrentRequests = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors() * 64;
+
+        if (Objects.isNull(System.getProperty(NO_DELAY_PROPERTY))) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+        var server = CarsHttpServer.start(carsService, port, maxConcurrentRequests);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            carsService.close();
+        }));
+        System.out.println("Serving cars on http://127.0.0.1:" + server.port());
+    }
 
+    private static CarsService open(Path path) {
+        return path.toString().endsWith(SNAPSHOT_EXTENSION) ? CarsService.fromSnapshot(path) : CarsJsonLoader.load(path);
     }
 }
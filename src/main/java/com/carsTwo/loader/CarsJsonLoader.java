@@ -0,0 +1,331 @@
+package com.carsTwo.loader;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarBody;
+import com.carsTwo.model.Engine;
+import com.carsTwo.model.Wheel;
+import com.carsTwo.model.enums.*;
+import com.carsTwo.service.CarsService;
+import com.carsTwo.store.Fleet;
+import com.carsTwo.store.OffHeapCarColumns;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Loads fleet from a JSON array of cars or from NDJSON, one car per line. Input is parsed
+ * incrementally token by token, so apart from the loaded cars memory doesn't grow with the file.
+ * Big NDJSON files are memory-mapped and split at line boundaries into chunks parsed in parallel,
+ * cars keep the order of the file.
+ * <p>
+ * Every car is an object with fields named as in the model:
+ * {@code {"model": "Audi", "price": 100000, "mileage": 25000, "engine": {"type": "DIESEL", "power": 300},
+ * "carBody": {"color": "GREEN", "bodyType": "COMBI", "components": ["ABS"]},
+ * "wheel": {"model": "Debica", "size": 16, "tyreType": "SUMMER"}}}. Unknown fields are skipped.
+ */
+public final class CarsJsonLoader {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final long MAPPED_PARALLEL_THRESHOLD = 32L * 1024 * 1024;
+    private static final long MIN_CHUNK_SIZE = 8L * 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE - 8;
+    private static final int BOUNDARY_SEARCH_BUFFER = 64 * 1024;
+
+    private CarsJsonLoader() {
+    }
+
+    /**
+     * Loads fleet from a file, JSON array or NDJSON format is recognised by the first character.
+     * @param path file with cars
+     * @return service with loaded cars
+     */
+    public static CarsService load(Path path) {
+        return new CarsService(readCars(path));
+    }
+
+    /**
+     * Loads fleet from a file into columns kept outside of the heap, see {@link CarsService#offHeap}. Cars are
+     * streamed into the columns one by one, so the parsed fleet is never held on the heap.
+     * @param path file with cars
+     * @return service with loaded cars, it should be closed once it's not used anymore
+     */
+    public static CarsService loadOffHeap(Path path) {
+
+        if (Objects.isNull(path)) {
+            throw new CarsServiceException("Path is null");
+        }
+
+        var columns = new OffHeapCarColumns();
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            readCars(channel, columns::add);
+            return new CarsService(Fleet.of(columns));
+        } catch (IOException e) {
+            columns.close();
+            throw new CarsServiceException("Can't read cars from " + path + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            columns.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads cars from a file, JSON array or NDJSON format is recognised by the first character.
+     * @param path file with cars
+     * @return cars in order of the file
+     */
+    public static List<Car> readCars(Path path) {
+
+        if (Objects.isNull(path)) {
+            throw new CarsServiceException("Path is null");
+        }
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAPPED_PARALLEL_THRESHOLD && !startsWithArray(channel)) {
+                return readNdjsonInParallel(channel, size);
+            }
+            var cars = new ArrayList<Car>();
+            readCars(channel, cars::add);
+            return cars;
+        } catch (IOException e) {
+            throw new CarsServiceException("Can't read cars from " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams cars from a channel one by one, without keeping them.
+     * @param channel channel with JSON array or NDJSON content
+     * @param consumer receives every parsed car
+     */
+    public static void readCars(ReadableByteChannel channel, Consumer<Car> consumer) {
+        readCars(Channels.newInputStream(channel), consumer);
+    }
+
+    private static void readCars(InputStream input, Consumer<Car> consumer) {
+
+        try (var parser = JSON_FACTORY.createParser(input)) {
+            var token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    consumer.accept(readCar(parser, token));
+                }
+                if (parser.nextToken() != null) {
+                    throw new CarsServiceException("Unexpected content after cars array at " + parser.getCurrentLocation());
+                }
+                return;
+            }
+            while (token != null) {
+                consumer.accept(readCar(parser, token));
+                token = parser.nextToken();
+            }
+        } catch (IOException e) {
+            throw new CarsServiceException("Can't parse cars: " + e.getMessage());
+        }
+    }
+
+    private static List<Car> readNdjsonInParallel(FileChannel channel, long size) throws IOException {
+
+        int parts = Runtime.getRuntime().availableProcessors() * 4;
+        long chunkSize = Math.min(Math.max(size / parts, MIN_CHUNK_SIZE), MAX_CHUNK_SIZE);
+
+        var chunks = new ArrayList<ByteBuffer>();
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : lineEnd(channel, start + chunkSize, size);
+            chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            start = end;
+        }
+
+        return chunks
+                .parallelStream()
+                .map(chunk -> {
+                    var cars = new ArrayList<Car>();
+                    readCars(new ByteBufferInputStream(chunk), cars::add);
+                    return cars;
+                })
+                .flatMap(List::stream)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+
+        var buffer = ByteBuffer.allocate(BOUNDARY_SEARCH_BUFFER);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static boolean startsWithArray(FileChannel channel) throws IOException {
+
+        var buffer = ByteBuffer.allocate(BOUNDARY_SEARCH_BUFFER);
+        long position = 0;
+        int read;
+        while ((read = channel.read(buffer.clear(), position)) > 0) {
+            for (int i = 0; i < read; i++) {
+                byte value = buffer.get(i);
+                if (!Character.isWhitespace(value) && !isByteOrderMark(value)) {
+                    return value == '[';
+                }
+            }
+            position += read;
+        }
+        return false;
+    }
+
+    private static boolean isByteOrderMark(byte value) {
+
+        int unsigned = value & 0xFF;
+        return unsigned == 0xEF || unsigned == 0xBB || unsigned == 0xBF;
+    }
+
+    private static Car readCar(JsonParser parser, JsonToken token) throws IOException {
+
+        requireObject(parser, token, "car");
+
+        var car = Car.builder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            var value = parser.nextToken();
+            switch (field) {
+                case "model" -> car.model(parser.getValueAsString());
+                case "price" -> car.price(readDecimal(parser, value));
+                case "mileage" -> car.mileage(parser.getValueAsDouble());
+                case "engine" -> car.engine(readEngine(parser, value));
+                case "carBody" -> car.carBody(readCarBody(parser, value));
+                case "wheel" -> car.wheel(readWheel(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+        return car.build();
+    }
+
+    private static Engine readEngine(JsonParser parser, JsonToken token) throws IOException {
+
+        requireObject(parser, token, "engine");
+
+        var engine = Engine.builder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "type" -> engine.type(readEnum(parser, EngineType.class));
+                case "power" -> engine.power(parser.getValueAsDouble());
+                default -> parser.skipChildren();
+            }
+        }
+        return engine.build();
+    }
+
+    private static CarBody readCarBody(JsonParser parser, JsonToken token) throws IOException {
+
+        requireObject(parser, token, "carBody");
+
+        var carBody = CarBody.builder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            var value = parser.nextToken();
+            switch (field) {
+                case "color" -> carBody.color(readEnum(parser, CarBodyColor.class));
+                case "bodyType" -> carBody.bodyType(readEnum(parser, CarBodyType.class));
+                case "components" -> carBody.components(readComponents(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+        return carBody.build();
+    }
+
+    private static Wheel readWheel(JsonParser parser, JsonToken token) throws IOException {
+
+        requireObject(parser, token, "wheel");
+
+        var wheel = Wheel.builder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "model" -> wheel.model(parser.getValueAsString());
+                case "size" -> wheel.size(parser.getValueAsInt());
+                case "tyreType" -> wheel.tyreType(readEnum(parser, TyreType.class));
+                default -> parser.skipChildren();
+            }
+        }
+        return wheel.build();
+    }
+
+    private static List<String> readComponents(JsonParser parser, JsonToken token) throws IOException {
+
+        if (token != JsonToken.START_ARRAY) {
+            throw new CarsServiceException("Expected components array at " + parser.getCurrentLocation());
+        }
+
+        var components = new ArrayList<String>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            components.add(parser.getValueAsString());
+        }
+        return components;
+    }
+
+    private static BigDecimal readDecimal(JsonParser parser, JsonToken token) throws IOException {
+
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return new BigDecimal(parser.getText());
+            } catch (NumberFormatException e) {
+                throw new CarsServiceException("Invalid price " + parser.getText() + " at " + parser.getCurrentLocation());
+            }
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDecimalValue();
+        }
+        return null;
+    }
+
+    private static <E extends Enum<E>> E readEnum(JsonParser parser, Class<E> type) throws IOException {
+
+        var name = parser.getValueAsString();
+        if (Objects.isNull(name)) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new CarsServiceException("Unknown " + type.getSimpleName() + " " + name + " at " + parser.getCurrentLocation());
+        }
+    }
+
+    private static void requireObject(JsonParser parser, JsonToken token, String name) {
+
+        if (token != JsonToken.START_OBJECT) {
+            throw new CarsServiceException("Expected " + name + " object at " + parser.getCurrentLocation());
+        }
+    }
+}
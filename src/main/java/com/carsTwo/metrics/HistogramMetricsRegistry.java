@@ -0,0 +1,67 @@
+package com.carsTwo.metrics;
+
+import com.carsTwo.model.QueryMetric;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry keeping latency histogram and counters of scanned and returned cars for every query method.
+ */
+public class HistogramMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentHashMap<String, QueryMetrics> queries = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void record(String query, long nanos, long scanned, long returned) {
+
+        var metrics = queries.computeIfAbsent(query, name -> new QueryMetrics());
+        metrics.latency.record(nanos);
+        metrics.calls.increment();
+        metrics.scanned.add(scanned);
+        metrics.returned.add(returned);
+    }
+
+    /**
+     * @return metrics of every measured query method, ordered by method name
+     */
+    public Map<String, QueryMetric> metrics() {
+
+        var metrics = new TreeMap<String, QueryMetric>();
+        queries.forEach((query, queryMetrics) -> metrics.put(query, queryMetrics.toQueryMetric()));
+        return metrics;
+    }
+
+
+    private static final class QueryMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder scanned = new LongAdder();
+        private final LongAdder returned = new LongAdder();
+
+        QueryMetric toQueryMetric() {
+
+            return QueryMetric
+                    .builder()
+                    .calls(calls.sum())
+                    .scannedCars(scanned.sum())
+                    .returnedCars(returned.sum())
+                    .latencyUnit(TimeUnit.NANOSECONDS)
+                    .p50(latency.percentile(50))
+                    .p90(latency.percentile(90))
+                    .p99(latency.percentile(99))
+                    .p999(latency.percentile(99.9))
+                    .max(latency.max())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.carsTwo.metrics;
+
+/**
+ * Receives one measurement for every finished query. Implementations have to be safe to call from many
+ * threads at once. {@link #NOOP} is disabled, queries then skip measuring completely.
+ */
+public interface MetricsRegistry {
+
+    MetricsRegistry NOOP = new MetricsRegistry() {
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void record(String query, long nanos, long scanned, long returned) {
+        }
+    };
+
+    /**
+     * @return false when queries don't have to be measured for this registry
+     */
+    boolean isEnabled();
+
+    /**
+     * @param query name of the query method
+     * @param nanos duration of the query
+     * @param scanned amount of cars the query visited, 0 when result was cached
+     * @param returned amount of cars or values in the result
+     */
+    void record(String query, long nanos, long scanned, long returned);
+}
@@ -0,0 +1,30 @@
+package com.carsTwo.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of one CarsService query. Recorded only when the event is enabled in a running
+ * recording, for example with {@code -XX:StartFlightRecording:settings=profile}.
+ */
+@Name("com.carsTwo.Query")
+@Label("Cars Query")
+@Category("CarsTwo")
+@Description("Query of the cars collection")
+public class QueryEvent extends Event {
+
+    @Label("Query")
+    public String query;
+
+    @Label("Arguments")
+    public String arguments;
+
+    @Label("Cars Scanned")
+    public long scanned;
+
+    @Label("Cars Returned")
+    public long returned;
+}
@@ -13,4 +13,5 @@ public interface CarBodyUtils {
     Function<CarBody, CarBodyColor> toBodyColor = carBody -> carBody.color;
     Function<CarBody, CarBodyType> toBodyType = carBody -> carBody.bodyType;
     Function<CarBody, Integer> toAmountOfComponents = carBody -> carBody.components.size();
+    Function<CarBody, List<String>> toComponents = carBody -> carBody.components;
 }
@@ -0,0 +1,21 @@
+package com.carsTwo.model;
+
+import com.carsTwo.model.enums.ChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class CarChange<K> {
+
+    private ChangeType type;
+    private K group;
+
+    private Car car;
+    private Car previousCar;
+
+}
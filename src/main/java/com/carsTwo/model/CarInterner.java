@@ -0,0 +1,90 @@
+package com.carsTwo.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Canonicalising pool of the values columns keep for cars: model names, wheel models and component
+ * lists. Equal values are kept once, as one shared instance; the cars they came from are never changed.
+ * <p>
+ * The pool only grows, so the owner drops it together with the rows it was made for and interns live
+ * rows into a new one. Saved memory is estimated from shallow sizes of the replaced instances on a
+ * 64-bit JVM with compressed references. Interner can be used from many threads at once.
+ */
+public class CarInterner {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+    private static final int STRING_SIZE = align(OBJECT_HEADER + REFERENCE + 2 * Integer.BYTES);
+    private static final int LIST_SIZE = align(OBJECT_HEADER + REFERENCE + 2 * Integer.BYTES);
+
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<List<String>, List<String>> componentLists = new ConcurrentHashMap<>();
+
+    private final LongAdder deduplicatedComponentLists = new LongAdder();
+    private final LongAdder deduplicatedStrings = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * @param components list of components, left as it is
+     * @return unmodifiable list equal to given one, shared by every equal list
+     */
+    public List<String> intern(List<String> components) {
+
+        var canonical = componentLists.get(components);
+        boolean created = false;
+        if (canonical == null) {
+            var interned = new String[components.size()];
+            for (int i = 0; i < interned.length; i++) {
+                interned[i] = intern(components.get(i));
+            }
+            var candidate = Collections.unmodifiableList(Arrays.asList(interned));
+            canonical = canonical(componentLists, candidate, candidate);
+            created = canonical == candidate;
+        }
+        if (!created && canonical != components) {
+            deduplicatedComponentLists.increment();
+            savedBytes.add(LIST_SIZE + align(ARRAY_HEADER + REFERENCE * components.size()));
+        }
+        return canonical;
+    }
+
+    public String intern(String value) {
+
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        var canonical = canonical(strings, value, value);
+        if (canonical != value) {
+            deduplicatedStrings.increment();
+            savedBytes.add(STRING_SIZE + align(ARRAY_HEADER + value.length()));
+        }
+        return canonical;
+    }
+
+    public InterningStatistic statistic() {
+
+        return InterningStatistic
+                .builder()
+                .canonicalInstances((long) strings.size() + componentLists.size())
+                .deduplicatedComponentLists(deduplicatedComponentLists.sum())
+                .deduplicatedStrings(deduplicatedStrings.sum())
+                .savedBytes(savedBytes.sum())
+                .build();
+    }
+
+    private static <K, V> V canonical(ConcurrentHashMap<K, V> pool, K key, V candidate) {
+
+        var canonical = pool.putIfAbsent(key, candidate);
+        return canonical == null ? candidate : canonical;
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
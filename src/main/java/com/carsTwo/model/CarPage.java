@@ -0,0 +1,23 @@
+package com.carsTwo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class CarPage {
+
+    private List<Car> cars;
+    private String continuationToken;
+
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+}
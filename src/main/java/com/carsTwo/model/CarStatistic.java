@@ -6,15 +6,20 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class CarStatistic {
     private Statistic<BigDecimal> price;
     private Statistic<Double> mileage;
     private Statistic<Double> power;
 
+    private Estimate distinctModels;
+    private Estimate distinctComponents;
+    private Map<String, Estimate> componentFrequencies;
+
 
 }
@@ -3,6 +3,7 @@ package com.carsTwo.model;
 import java.math.BigDecimal;
 import java.util.Comparator;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 public interface CarUtils {
 
@@ -18,4 +19,6 @@ public interface CarUtils {
     Function<Car, Engine> toEngine = car -> car.engine;
     Function<Car, CarBody> toCarBody = car -> car.carBody;
     Function<Car, Wheel> toWheel = car -> car.wheel;
+
+    ToDoubleFunction<Car> toMileageValue = car -> car.mileage;
 }
@@ -3,6 +3,7 @@ package com.carsTwo.model;
 import com.carsTwo.model.enums.EngineType;
 
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 public interface EngineUtils {
 
@@ -10,4 +11,6 @@ public interface EngineUtils {
 
     Function<Engine, Double> toPower = engine -> engine.power;
     Function<Engine, EngineType> toEngineType = engine -> engine.type;
+
+    ToDoubleFunction<Engine> toPowerValue = engine -> engine.power;
 }
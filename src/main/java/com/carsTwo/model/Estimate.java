@@ -0,0 +1,19 @@
+package com.carsTwo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder(toBuilder = true)
+public class Estimate {
+
+    private long value;
+    private long lowerBound;
+    private long upperBound;
+    private double confidence;
+
+}
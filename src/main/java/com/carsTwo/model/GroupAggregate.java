@@ -0,0 +1,27 @@
+package com.carsTwo.model;
+
+import com.carsTwo.model.enums.CarBodyColor;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.model.enums.TyreType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder(toBuilder = true)
+public class GroupAggregate {
+
+    private TyreType tyreType;
+    private CarBodyColor bodyColor;
+    private CarBodyType bodyType;
+    private EngineType engineType;
+    private Integer wheelSize;
+
+    private long count;
+    private CarStatistic statistic;
+
+}
@@ -0,0 +1,20 @@
+package com.carsTwo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class InterningStatistic {
+
+    private long canonicalInstances;
+    private long deduplicatedComponentLists;
+    private long deduplicatedStrings;
+
+    private long savedBytes;
+
+}
@@ -0,0 +1,166 @@
+package com.carsTwo.model;
+
+import com.carsTwo.exception.CarsServiceException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point amounts of money: a long count of minor units at a given scale, 12345 at scale 2 is 123.45.
+ * Amounts at the same scale are compared and added as plain longs; BigDecimal is created only when an
+ * amount leaves the service. An amount with more fraction digits than the scale or out of the long range
+ * has no exact units, such amounts are rare and are kept as BigDecimal next to the units.
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * @param amount amount with at most given amount of fraction digits
+     * @param scale amount of fraction digits
+     * @return amount in minor units of given scale
+     */
+    public static long exactUnits(BigDecimal amount, int scale) {
+
+        try {
+            return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new CarsServiceException("Price " + amount + " can't be stored with " + scale + " fraction digits");
+        }
+    }
+
+    /**
+     * @param amount any amount
+     * @param scale amount of fraction digits
+     * @return true when {@link #floorUnits(BigDecimal, int)} of the amount is the amount itself and isn't
+     * a bound of the long range, so comparing such units to rounded bounds is exact
+     */
+    public static boolean hasExactUnits(BigDecimal amount, int scale) {
+
+        if (amount.signum() != 0 && amount.stripTrailingZeros().scale() > scale) {
+            return false;
+        }
+        long units = floorUnits(amount, scale);
+        return units != Long.MIN_VALUE && units != Long.MAX_VALUE;
+    }
+
+    /**
+     * Converts a bound rounding down, so for every amount at given scale {@code amount > bound} is
+     * {@code units > floorUnits(bound)} and {@code amount <= bound} is {@code units <= floorUnits(bound)}.
+     * @param bound any amount
+     * @param scale amount of fraction digits
+     * @return bound in minor units of given scale, clamped to the long range
+     */
+    public static long floorUnits(BigDecimal bound, int scale) {
+        return clampedUnits(bound, scale, RoundingMode.FLOOR);
+    }
+
+    /**
+     * Converts a bound rounding up, so for every amount at given scale {@code amount >= bound} is
+     * {@code units >= ceilUnits(bound)}.
+     * @param bound any amount
+     * @param scale amount of fraction digits
+     * @return bound in minor units of given scale, clamped to the long range
+     */
+    public static long ceilUnits(BigDecimal bound, int scale) {
+        return clampedUnits(bound, scale, RoundingMode.CEILING);
+    }
+
+    private static long clampedUnits(BigDecimal bound, int scale, RoundingMode roundingMode) {
+
+        var units = bound.movePointRight(scale).setScale(0, roundingMode);
+        if (units.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0) {
+            return Long.MIN_VALUE;
+        }
+        if (units.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) > 0) {
+            return Long.MAX_VALUE;
+        }
+        return units.longValueExact();
+    }
+
+    /**
+     * Exact running sum of minor units. Kept in a long until it overflows, only then the carried part is
+     * moved to a BigInteger, so summing prices of a realistic fleet never allocates. Units can be
+     * subtracted too, which keeps the sum exact when amounts are removed. Amounts without exact units
+     * are summed apart as BigDecimal.
+     */
+    public static final class Sum {
+
+        private long units;
+        private BigInteger carried = BigInteger.ZERO;
+        private BigDecimal amounts = BigDecimal.ZERO;
+
+        public void add(long added) {
+
+            long sum = units + added;
+            if (((units ^ sum) & (added ^ sum)) < 0) {
+                carried = carried.add(BigInteger.valueOf(units)).add(BigInteger.valueOf(added));
+                units = 0;
+            } else {
+                units = sum;
+            }
+        }
+
+        public void subtract(long subtracted) {
+
+            if (subtracted == Long.MIN_VALUE) {
+                carried = carried.subtract(BigInteger.valueOf(subtracted));
+                return;
+            }
+            add(-subtracted);
+        }
+
+        /**
+         * @param amount amount which has no exact units at the summed scale
+         */
+        public void add(BigDecimal amount) {
+            amounts = amounts.add(amount);
+        }
+
+        /**
+         * @param amount amount which has no exact units at the summed scale
+         */
+        public void subtract(BigDecimal amount) {
+            amounts = amounts.subtract(amount);
+        }
+
+        public void merge(Sum other) {
+            add(other.units);
+            carried = carried.add(other.carried);
+            amounts = amounts.add(other.amounts);
+        }
+
+        public void copyFrom(Sum other) {
+            units = other.units;
+            carried = other.carried;
+            amounts = other.amounts;
+        }
+
+        public void clear() {
+            units = 0;
+            carried = BigInteger.ZERO;
+            amounts = BigDecimal.ZERO;
+        }
+
+        /**
+         * @param scale scale of the summed units
+         * @return the sum
+         */
+        public BigDecimal toBigDecimal(int scale) {
+            var sum = carried.signum() == 0 ? BigDecimal.valueOf(units, scale) : new BigDecimal(carried.add(BigInteger.valueOf(units)), scale);
+            return amounts.signum() == 0 ? sum : sum.add(amounts);
+        }
+
+        /**
+         * @param count amount of summed amounts
+         * @param scale scale of the summed units
+         * @return average rounded to 34 significant digits, zero when nothing was summed
+         */
+        public BigDecimal average(long count, int scale) {
+            return count == 0 ? BigDecimal.ZERO : toBigDecimal(scale).divide(BigDecimal.valueOf(count), MathContext.DECIMAL128);
+        }
+    }
+}
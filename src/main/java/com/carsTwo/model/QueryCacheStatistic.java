@@ -0,0 +1,23 @@
+package com.carsTwo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class QueryCacheStatistic {
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private int size;
+    private long weight;
+    private long maxWeight;
+
+}
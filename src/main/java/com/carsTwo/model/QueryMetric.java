@@ -0,0 +1,27 @@
+package com.carsTwo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class QueryMetric {
+
+    private long calls;
+    private long scannedCars;
+    private long returnedCars;
+
+    private TimeUnit latencyUnit;
+    private long p50;
+    private long p90;
+    private long p99;
+    private long p999;
+    private long max;
+
+}
@@ -5,14 +5,23 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 @AllArgsConstructor
 @NoArgsConstructor
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class Statistic<T> {
 
     private T min;
     private T max;
     private T average;
 
+    private Long count;
+    private T sum;
+    private Double variance;
+    private Double standardDeviation;
+    private Map<Double, T> percentiles;
+    private Double percentileRankError;
+
 }
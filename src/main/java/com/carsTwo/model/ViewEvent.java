@@ -0,0 +1,21 @@
+package com.carsTwo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Builder
+public class ViewEvent<T> {
+
+    private long sequence;
+    private long version;
+
+    private List<T> changes;
+
+}
@@ -4,6 +4,7 @@ import com.carsTwo.model.enums.TyreType;
 
 import java.util.Comparator;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 public interface WheelUtils {
 
@@ -15,4 +16,6 @@ public interface WheelUtils {
     Function<Wheel, String> toModel = wheel -> wheel.model;
     Function<Wheel, Integer> toSize = wheel -> wheel.size;
     Function<Wheel, TyreType> toTyreType = wheel -> wheel.tyreType;
+
+    ToIntFunction<Wheel> toSizeValue = wheel -> wheel.size;
 }
@@ -0,0 +1,6 @@
+package com.carsTwo.model.enums;
+
+public enum ChangeType {
+
+    ADDED, REMOVED, CHANGED
+}
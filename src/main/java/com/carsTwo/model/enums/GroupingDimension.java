@@ -0,0 +1,6 @@
+package com.carsTwo.model.enums;
+
+public enum GroupingDimension {
+
+    TYRE_TYPE, BODY_COLOR, BODY_TYPE, ENGINE_TYPE, WHEEL_SIZE
+}
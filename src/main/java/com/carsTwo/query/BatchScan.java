@@ -0,0 +1,214 @@
+package com.carsTwo.query;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.store.CarColumns;
+import com.carsTwo.store.Fleet;
+import com.carsTwo.store.ParallelExecution;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Answers many {@link CarQuery queries} with at most one pass over the fleet. Every live row is read
+ * once and sent to each query it may match: rows are routed by their body and engine type, so a query
+ * restricted to some body or engine types never looks at rows of the other ones, and the remaining
+ * conditions of the query are checked as filters in their planned order.
+ * <p>
+ * Reading a row is shared by every query of the scan, checking the conditions is not, so a query joins
+ * the scan only when checking its conditions on the rows routed to it costs less than reading its
+ * candidates from the index it would use alone and filtering them. Queries with a selective index
+ * are answered from the index, so the scan serves the queries which would read every row anyway.
+ * Equal queries are answered once.
+ */
+public final class BatchScan {
+
+    private static final int ROUTE_COUNT = CarColumns.BODY_TYPES.length * CarColumns.ENGINE_TYPES.length;
+
+    private final Fleet fleet;
+    private final int[] distinctOfQuery;
+    private final List<QueryPlan> indexedPlans = new ArrayList<>();
+    private final List<QueryPlan> scanPlans = new ArrayList<>();
+    private final int[] slotOfDistinct;
+    private final int[][] routes = new int[ROUTE_COUNT][];
+    private final long scannedRows;
+
+    private BatchScan(Fleet fleet, List<CarQuery> queries) {
+
+        this.fleet = fleet;
+        this.distinctOfQuery = new int[queries.size()];
+
+        var distinct = new LinkedHashMap<CarQuery, Integer>();
+        for (int i = 0; i < distinctOfQuery.length; i++) {
+            var query = queries.get(i);
+            if (Objects.isNull(query)) {
+                throw new CarsServiceException("Query is null");
+            }
+            distinctOfQuery[i] = distinct.computeIfAbsent(query, ignored -> distinct.size());
+        }
+
+        int live = fleet.columns().liveCount();
+        long indexedRows = 0;
+        var scanQueries = new ArrayList<CarQuery>();
+        this.slotOfDistinct = new int[distinct.size()];
+        for (var entry : distinct.entrySet()) {
+            var query = entry.getKey();
+            var plan = QueryPlanner.plan(fleet, query);
+            var scanPlan = QueryPlanner.planScan(fleet, query);
+            double indexCost = plan.getEstimatedRows() * (1 + plan.filterCostPerRow());
+            double scanCost = routedRows(fleet, query, live) * (1 + scanPlan.filterCostPerRow());
+            if (plan.getAccessPath() != QueryPlan.AccessPath.FULL_SCAN && indexCost <= scanCost) {
+                slotOfDistinct[entry.getValue()] = -1 - indexedPlans.size();
+                indexedPlans.add(plan);
+                indexedRows += plan.getEstimatedRows();
+            } else {
+                slotOfDistinct[entry.getValue()] = scanPlans.size();
+                scanPlans.add(scanPlan);
+                scanQueries.add(query);
+            }
+        }
+        this.scannedRows = indexedRows + (scanPlans.isEmpty() ? 0 : live);
+
+        var routed = new IntArrayList[ROUTE_COUNT];
+        for (int route = 0; route < ROUTE_COUNT; route++) {
+            routed[route] = new IntArrayList();
+        }
+        for (int slot = 0; slot < scanQueries.size(); slot++) {
+            var query = scanQueries.get(slot);
+            for (CarBodyType bodyType : CarColumns.BODY_TYPES) {
+                for (EngineType engineType : CarColumns.ENGINE_TYPES) {
+                    if ((query.getBodyTypes().isEmpty() || query.getBodyTypes().contains(bodyType))
+                            && (query.getEngineTypes().isEmpty() || query.getEngineTypes().contains(engineType))) {
+                        routed[route(bodyType.ordinal(), engineType.ordinal())].add(slot);
+                    }
+                }
+            }
+        }
+        for (int route = 0; route < ROUTE_COUNT; route++) {
+            routes[route] = routed[route].toArray();
+        }
+    }
+
+    /**
+     * @param fleet fleet the queries run on, it must not change while the batch is used
+     * @param queries queries to answer, may repeat
+     * @return batch ready to run
+     */
+    public static BatchScan plan(Fleet fleet, List<CarQuery> queries) {
+
+        if (Objects.isNull(queries)) {
+            throw new CarsServiceException("Queries list is null");
+        }
+        return new BatchScan(fleet, queries);
+    }
+
+    /**
+     * @return amount of distinct queries answered by the shared scan
+     */
+    public int getScanningQueries() {
+        return scanPlans.size();
+    }
+
+    /**
+     * @return amount of distinct queries answered from their indexes
+     */
+    public int getIndexedQueries() {
+        return indexedPlans.size();
+    }
+
+    /**
+     * @return amount of rows read by the batch, every live row once when any query joins the scan
+     */
+    public long getScannedRows() {
+        return scannedRows;
+    }
+
+    /**
+     * @param execution decides whether the scan and index reads run in parallel
+     * @return matching rows of every query in ascending row order, in order of the queries
+     */
+    public int[][] run(ParallelExecution execution) {
+
+        var distinctRows = new int[slotOfDistinct.length][];
+        var scanned = scan(execution);
+        for (int distinct = 0; distinct < slotOfDistinct.length; distinct++) {
+            int slot = slotOfDistinct[distinct];
+            if (slot >= 0) {
+                distinctRows[distinct] = scanned[slot].toArray();
+            } else {
+                var plan = indexedPlans.get(-1 - slot);
+                distinctRows[distinct] = plan.filter(plan.candidateRows(), execution);
+            }
+        }
+
+        var rows = new int[distinctOfQuery.length][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = distinctRows[distinctOfQuery[i]];
+        }
+        return rows;
+    }
+
+    private IntArrayList[] scan(ParallelExecution execution) {
+
+        int slots = scanPlans.size();
+        if (slots == 0) {
+            return new IntArrayList[0];
+        }
+
+        var cars = fleet.columns();
+        var plans = scanPlans.toArray(QueryPlan[]::new);
+        return execution.reduce(cars.liveRows(),
+                () -> {
+                    var matching = new IntArrayList[slots];
+                    for (int slot = 0; slot < slots; slot++) {
+                        matching[slot] = new IntArrayList();
+                    }
+                    return matching;
+                },
+                (matching, row) -> {
+                    for (int slot : routes[route(cars.bodyTypeOrdinal(row), cars.engineTypeOrdinal(row))]) {
+                        if (plans[slot].matches(row)) {
+                            matching[slot].add(row);
+                        }
+                    }
+                },
+                (left, right) -> {
+                    for (int slot = 0; slot < slots; slot++) {
+                        left[slot].addAll(right[slot]);
+                    }
+                });
+    }
+
+    /**
+     * Rows of body and engine types of the query, types are taken as independent.
+     */
+    private static double routedRows(Fleet fleet, CarQuery query, int live) {
+
+        if (live == 0) {
+            return 0;
+        }
+        double bodyTypeRows = live;
+        if (!query.getBodyTypes().isEmpty()) {
+            bodyTypeRows = 0;
+            for (CarBodyType bodyType : query.getBodyTypes()) {
+                bodyTypeRows += fleet.bodyTypePriceIndex().size(bodyType);
+            }
+        }
+        double engineTypeRows = live;
+        if (!query.getEngineTypes().isEmpty()) {
+            engineTypeRows = 0;
+            for (EngineType engineType : query.getEngineTypes()) {
+                engineTypeRows += fleet.engineTypeIndex().size(engineType);
+            }
+        }
+        return bodyTypeRows * engineTypeRows / live;
+    }
+
+    private static int route(int bodyTypeOrdinal, int engineTypeOrdinal) {
+        return bodyTypeOrdinal * CarColumns.ENGINE_TYPES.length + engineTypeOrdinal;
+    }
+}
@@ -0,0 +1,370 @@
+package com.carsTwo.query;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.enums.CarBodyColor;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.model.enums.TyreType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Conjunction of conditions on attributes of a car, its engine, body and wheel. Conditions which are not
+ * set match every car. Ranges include both bounds. Queries are immutable and equal when their conditions
+ * are equal, so they can be cached.
+ */
+public final class CarQuery {
+
+    private final String model;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final double minMileage;
+    private final double maxMileage;
+    private final Set<EngineType> engineTypes;
+    private final double minPower;
+    private final double maxPower;
+    private final Set<CarBodyType> bodyTypes;
+    private final Set<CarBodyColor> colors;
+    private final List<String> components;
+    private final String wheelModel;
+    private final int minWheelSize;
+    private final int maxWheelSize;
+    private final Set<TyreType> tyreTypes;
+
+    private CarQuery(Builder builder) {
+        this.model = builder.model;
+        this.minPrice = builder.minPrice;
+        this.maxPrice = builder.maxPrice;
+        this.minMileage = builder.minMileage;
+        this.maxMileage = builder.maxMileage;
+        this.engineTypes = Collections.unmodifiableSet(EnumSet.copyOf(builder.engineTypes));
+        this.minPower = builder.minPower;
+        this.maxPower = builder.maxPower;
+        this.bodyTypes = Collections.unmodifiableSet(EnumSet.copyOf(builder.bodyTypes));
+        this.colors = Collections.unmodifiableSet(EnumSet.copyOf(builder.colors));
+        this.components = List.copyOf(builder.components);
+        this.wheelModel = builder.wheelModel;
+        this.minWheelSize = builder.minWheelSize;
+        this.maxWheelSize = builder.maxWheelSize;
+        this.tyreTypes = Collections.unmodifiableSet(EnumSet.copyOf(builder.tyreTypes));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return required model or null when any model matches
+     */
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @return the lowest matching price or null when price isn't limited
+     */
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    /**
+     * @return the highest matching price or null when price isn't limited
+     */
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public boolean hasPriceRange() {
+        return minPrice != null;
+    }
+
+    public double getMinMileage() {
+        return minMileage;
+    }
+
+    public double getMaxMileage() {
+        return maxMileage;
+    }
+
+    public boolean hasMileageRange() {
+        return minMileage != Double.NEGATIVE_INFINITY || maxMileage != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return matching engine types, empty when any engine type matches
+     */
+    public Set<EngineType> getEngineTypes() {
+        return engineTypes;
+    }
+
+    public double getMinPower() {
+        return minPower;
+    }
+
+    public double getMaxPower() {
+        return maxPower;
+    }
+
+    public boolean hasPowerRange() {
+        return minPower != Double.NEGATIVE_INFINITY || maxPower != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return matching body types, empty when any body type matches
+     */
+    public Set<CarBodyType> getBodyTypes() {
+        return bodyTypes;
+    }
+
+    /**
+     * @return matching body colors, empty when any color matches
+     */
+    public Set<CarBodyColor> getColors() {
+        return colors;
+    }
+
+    /**
+     * @return components every matching car has to have
+     */
+    public List<String> getComponents() {
+        return components;
+    }
+
+    /**
+     * @return required wheel model or null when any wheel model matches
+     */
+    public String getWheelModel() {
+        return wheelModel;
+    }
+
+    public int getMinWheelSize() {
+        return minWheelSize;
+    }
+
+    public int getMaxWheelSize() {
+        return maxWheelSize;
+    }
+
+    public boolean hasWheelSizeRange() {
+        return minWheelSize != Integer.MIN_VALUE || maxWheelSize != Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return matching tyre types, empty when any tyre type matches
+     */
+    public Set<TyreType> getTyreTypes() {
+        return tyreTypes;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CarQuery)) {
+            return false;
+        }
+        var query = (CarQuery) other;
+        return Objects.equals(model, query.model)
+                && Objects.equals(minPrice, query.minPrice)
+                && Objects.equals(maxPrice, query.maxPrice)
+                && Double.compare(minMileage, query.minMileage) == 0
+                && Double.compare(maxMileage, query.maxMileage) == 0
+                && engineTypes.equals(query.engineTypes)
+                && Double.compare(minPower, query.minPower) == 0
+                && Double.compare(maxPower, query.maxPower) == 0
+                && bodyTypes.equals(query.bodyTypes)
+                && colors.equals(query.colors)
+                && components.equals(query.components)
+                && Objects.equals(wheelModel, query.wheelModel)
+                && minWheelSize == query.minWheelSize
+                && maxWheelSize == query.maxWheelSize
+                && tyreTypes.equals(query.tyreTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(model, minPrice, maxPrice, minMileage, maxMileage, engineTypes, minPower, maxPower,
+                bodyTypes, colors, components, wheelModel, minWheelSize, maxWheelSize, tyreTypes);
+    }
+
+    @Override
+    public String toString() {
+
+        var conditions = new ArrayList<String>();
+        if (model != null) {
+            conditions.add("model = " + model);
+        }
+        if (hasPriceRange()) {
+            conditions.add("price " + minPrice.toPlainString() + ".." + maxPrice.toPlainString());
+        }
+        if (hasMileageRange()) {
+            conditions.add("mileage " + minMileage + ".." + maxMileage);
+        }
+        if (!engineTypes.isEmpty()) {
+            conditions.add("engineType in " + engineTypes);
+        }
+        if (hasPowerRange()) {
+            conditions.add("power " + minPower + ".." + maxPower);
+        }
+        if (!bodyTypes.isEmpty()) {
+            conditions.add("bodyType in " + bodyTypes);
+        }
+        if (!colors.isEmpty()) {
+            conditions.add("color in " + colors);
+        }
+        if (!components.isEmpty()) {
+            conditions.add("components contain " + components);
+        }
+        if (wheelModel != null) {
+            conditions.add("wheelModel = " + wheelModel);
+        }
+        if (hasWheelSizeRange()) {
+            conditions.add("wheelSize " + minWheelSize + ".." + maxWheelSize);
+        }
+        if (!tyreTypes.isEmpty()) {
+            conditions.add("tyreType in " + tyreTypes);
+        }
+        return "CarQuery" + conditions;
+    }
+
+
+    public static final class Builder {
+
+        private String model;
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        private double minMileage = Double.NEGATIVE_INFINITY;
+        private double maxMileage = Double.POSITIVE_INFINITY;
+        private final EnumSet<EngineType> engineTypes = EnumSet.noneOf(EngineType.class);
+        private double minPower = Double.NEGATIVE_INFINITY;
+        private double maxPower = Double.POSITIVE_INFINITY;
+        private final EnumSet<CarBodyType> bodyTypes = EnumSet.noneOf(CarBodyType.class);
+        private final EnumSet<CarBodyColor> colors = EnumSet.noneOf(CarBodyColor.class);
+        private final List<String> components = new ArrayList<>();
+        private String wheelModel;
+        private int minWheelSize = Integer.MIN_VALUE;
+        private int maxWheelSize = Integer.MAX_VALUE;
+        private final EnumSet<TyreType> tyreTypes = EnumSet.noneOf(TyreType.class);
+
+        private Builder() {
+        }
+
+        public Builder model(String model) {
+            this.model = requireNonNull(model, "Model");
+            return this;
+        }
+
+        /**
+         * Both bounds are inclusive. {@code CarsService#groupBySpecifiedBodyTypeWithGivenPriceRange}
+         * excludes its minimal price instead, so the same bounds can select one car more here.
+         * @param minPrice the lowest matching price
+         * @param maxPrice the highest matching price
+         * @return this builder
+         */
+        public Builder priceBetween(BigDecimal minPrice, BigDecimal maxPrice) {
+
+            requireNonNull(minPrice, "Minimal price");
+            requireNonNull(maxPrice, "Maximal price");
+            if (minPrice.compareTo(maxPrice) > 0) {
+                throw new CarsServiceException("Minimal price can't be higher than maximal price");
+            }
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            return this;
+        }
+
+        public Builder mileageBetween(double minMileage, double maxMileage) {
+
+            requireRange(minMileage, maxMileage, "mileage");
+            this.minMileage = minMileage;
+            this.maxMileage = maxMileage;
+            return this;
+        }
+
+        public Builder engineTypes(EngineType... engineTypes) {
+            this.engineTypes.addAll(requireElements(engineTypes, "Engine type"));
+            return this;
+        }
+
+        public Builder powerBetween(double minPower, double maxPower) {
+
+            requireRange(minPower, maxPower, "power");
+            this.minPower = minPower;
+            this.maxPower = maxPower;
+            return this;
+        }
+
+        public Builder bodyTypes(CarBodyType... bodyTypes) {
+            this.bodyTypes.addAll(requireElements(bodyTypes, "Body type"));
+            return this;
+        }
+
+        public Builder colors(CarBodyColor... colors) {
+            this.colors.addAll(requireElements(colors, "Body color"));
+            return this;
+        }
+
+        public Builder components(String... components) {
+            this.components.addAll(requireElements(components, "Component"));
+            return this;
+        }
+
+        public Builder wheelModel(String wheelModel) {
+            this.wheelModel = requireNonNull(wheelModel, "Wheel model");
+            return this;
+        }
+
+        public Builder wheelSizeBetween(int minWheelSize, int maxWheelSize) {
+
+            requireRange(minWheelSize, maxWheelSize, "wheel size");
+            this.minWheelSize = minWheelSize;
+            this.maxWheelSize = maxWheelSize;
+            return this;
+        }
+
+        public Builder tyreTypes(TyreType... tyreTypes) {
+            this.tyreTypes.addAll(requireElements(tyreTypes, "Tyre type"));
+            return this;
+        }
+
+        public CarQuery build() {
+            return new CarQuery(this);
+        }
+
+        private static <T> T requireNonNull(T value, String name) {
+
+            if (Objects.isNull(value)) {
+                throw new CarsServiceException(name + " can't be null");
+            }
+            return value;
+        }
+
+        private static <T> List<T> requireElements(T[] values, String name) {
+
+            requireNonNull(values, name + " list");
+            for (T value : values) {
+                requireNonNull(value, name);
+            }
+            return Arrays.asList(values);
+        }
+
+        private static void requireRange(double min, double max, String name) {
+
+            if (Double.isNaN(min) || Double.isNaN(max)) {
+                throw new CarsServiceException("Bounds of " + name + " can't be NaN");
+            }
+            if (min > max) {
+                throw new CarsServiceException("Minimal " + name + " can't be higher than maximal " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.carsTwo.query;
+
+import com.carsTwo.store.ParallelExecution;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Way a {@link CarQuery} is run on one fleet, chosen by {@link QueryPlanner}. Candidate rows are read
+ * through a single access path, every condition the access path doesn't guarantee is checked as a
+ * residual filter. Filters run in the planned order and a row is dropped on the first failed filter.
+ */
+public final class QueryPlan {
+
+    /**
+     * Source of candidate rows.
+     */
+    public enum AccessPath {
+        /** Rows of selected body type partitions found by binary search in their price order. */
+        BODY_TYPE_PRICE_RANGE,
+        /** Rows of selected engine type partitions. */
+        ENGINE_TYPE_PARTITION,
+        /** Intersection of component postings. */
+        COMPONENT_BITMAP,
+        /** Every live row. */
+        FULL_SCAN
+    }
+
+    private final CarQuery query;
+    private final AccessPath accessPath;
+    private final String accessCondition;
+    private final int estimatedRows;
+    private final int liveRows;
+    private final Supplier<int[]> candidates;
+    private final List<Filter> filters;
+    private final IntPredicate residual;
+
+    QueryPlan(CarQuery query, AccessPath accessPath, String accessCondition, int estimatedRows, int liveRows,
+              Supplier<int[]> candidates, List<Filter> filters) {
+        this.query = query;
+        this.accessPath = accessPath;
+        this.accessCondition = accessCondition;
+        this.estimatedRows = estimatedRows;
+        this.liveRows = liveRows;
+        this.candidates = candidates;
+        this.filters = Collections.unmodifiableList(filters);
+        this.residual = chain(filters);
+    }
+
+    public AccessPath getAccessPath() {
+        return accessPath;
+    }
+
+    /**
+     * @return amount of candidate rows expected from the access path
+     */
+    public int getEstimatedRows() {
+        return estimatedRows;
+    }
+
+    /**
+     * @return residual filters in the order they are checked
+     */
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    /**
+     * @return candidate rows read through the access path in ascending row order
+     */
+    public int[] candidateRows() {
+        return candidates.get();
+    }
+
+    /**
+     * @param candidateRows rows returned by {@link #candidateRows()}
+     * @param execution decides whether candidates are filtered in parallel
+     * @return candidate rows passing every residual filter, in ascending row order
+     */
+    public int[] filter(int[] candidateRows, ParallelExecution execution) {
+
+        if (filters.isEmpty()) {
+            return candidateRows;
+        }
+        return execution.reduce(candidateRows,
+                IntArrayList::new,
+                (matching, row) -> {
+                    if (residual.test(row)) {
+                        matching.add(row);
+                    }
+                },
+                IntArrayList::addAll).toArray();
+    }
+
+    /**
+     * @param row candidate row
+     * @return true when the row passes every residual filter
+     */
+    public boolean matches(int row) {
+        return residual.test(row);
+    }
+
+    /**
+     * @return expected cost of checking the residual filters on one candidate row, a filter is checked
+     * only on rows which passed the filters before it
+     */
+    double filterCostPerRow() {
+
+        double cost = 0;
+        double passing = 1;
+        for (Filter filter : filters) {
+            cost += passing * filter.cost;
+            passing *= filter.selectivity;
+        }
+        return cost;
+    }
+
+    /**
+     * @return readable description of the access path and filters, one per line
+     */
+    public String explain() {
+
+        var explained = new StringBuilder(query.toString())
+                .append(System.lineSeparator())
+                .append("access ").append(accessPath);
+        if (!accessCondition.isEmpty()) {
+            explained.append(' ').append(accessCondition);
+        }
+        explained.append(", estimated ").append(estimatedRows).append(" of ").append(liveRows).append(" rows");
+        for (Filter filter : filters) {
+            explained.append(System.lineSeparator()).append("filter ").append(filter);
+        }
+        return explained.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    private static IntPredicate chain(List<Filter> filters) {
+
+        if (filters.isEmpty()) {
+            return row -> true;
+        }
+        var chained = filters.get(filters.size() - 1).predicate;
+        for (int i = filters.size() - 2; i >= 0; i--) {
+            var first = filters.get(i).predicate;
+            var rest = chained;
+            chained = row -> first.test(row) && rest.test(row);
+        }
+        return chained;
+    }
+
+
+    /**
+     * Condition checked on every candidate row.
+     */
+    public static final class Filter {
+
+        private final String condition;
+        private final double selectivity;
+        private final int cost;
+        private final IntPredicate predicate;
+
+        Filter(String condition, double selectivity, int cost, IntPredicate predicate) {
+            this.condition = condition;
+            this.selectivity = selectivity;
+            this.cost = cost;
+            this.predicate = predicate;
+        }
+
+        public String getCondition() {
+            return condition;
+        }
+
+        /**
+         * @return estimated fraction of rows passing the filter
+         */
+        public double getSelectivity() {
+            return selectivity;
+        }
+
+        /**
+         * @return relative cost of checking one row
+         */
+        public int getCost() {
+            return cost;
+        }
+
+        /**
+         * Rank of the filter, filters with lower rank go first. The expected cost of a chain is the
+         * lowest when filters are ordered by their cost divided by the fraction of rows they drop.
+         */
+        double rank() {
+            return selectivity >= 1 ? Double.POSITIVE_INFINITY : cost / (1 - selectivity);
+        }
+
+        @Override
+        public String toString() {
+            return condition + String.format(Locale.ROOT, ", selectivity %.3f", selectivity);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.carsTwo.query;
+
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.store.CarColumns;
+import com.carsTwo.store.Fleet;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Chooses how a {@link CarQuery} is run on a fleet. Every index which can answer one of the query
+ * conditions tells how many rows it would return: partitions know their sizes, the price ordered
+ * body type partitions count a price range with two binary searches in each requested body type and
+ * a component posting knows its cardinality. The access path returning the fewest rows wins, the
+ * full scan is the fallback.
+ * <p>
+ * Conditions not answered by the access path become residual filters. Selectivity of a condition
+ * backed by an index is taken from the index, the price range share is counted within the requested
+ * body types; other conditions are checked on a small sample of rows. Filters are ordered by cost
+ * per dropped row, so cheap and selective filters go first.
+ */
+public final class QueryPlanner {
+
+    private static final int SAMPLE_SIZE = 128;
+    private static final int ENUM_COST = 1;
+    private static final int NUMBER_COST = 1;
+    private static final int STRING_COST = 2;
+    private static final int COMPONENTS_COST = 4;
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * @param fleet fleet the query runs on, it must not change while the plan is used
+     * @param query query to plan
+     * @return plan of the query on given fleet
+     */
+    public static QueryPlan plan(Fleet fleet, CarQuery query) {
+        return plan(fleet, query, true);
+    }
+
+    /**
+     * @param fleet fleet the query runs on, it must not change while the plan is used
+     * @param query query to plan
+     * @return plan reading every live row, every condition apart from body and engine types is checked
+     * as a filter, rows of other body or engine types have to be dropped by the caller
+     */
+    static QueryPlan planScan(Fleet fleet, CarQuery query) {
+        return plan(fleet, query, false);
+    }
+
+    private static QueryPlan plan(Fleet fleet, CarQuery query, boolean useIndexes) {
+
+        var cars = fleet.columns();
+        int live = cars.liveCount();
+        var minPrice = query.getMinPrice();
+        var maxPrice = query.getMaxPrice();
+        long lowerPrice = query.hasPriceRange() ? cars.ceilPriceUnits(minPrice) : Long.MIN_VALUE;
+        long upperPrice = query.hasPriceRange() ? cars.floorPriceUnits(maxPrice) : Long.MAX_VALUE;
+
+        var bodyTypes = query.getBodyTypes().isEmpty() ? EnumSet.allOf(CarBodyType.class) : EnumSet.copyOf(query.getBodyTypes());
+        var priceRanges = new int[CarColumns.BODY_TYPES.length][];
+        int bodyTypeRows = 0;
+        int bodyTypePriceRows = 0;
+        for (CarBodyType bodyType : bodyTypes) {
+            int from = 0;
+            int to = fleet.bodyTypePriceIndex().size(bodyType);
+            bodyTypeRows += to;
+            if (query.hasPriceRange()) {
+                from = fleet.bodyTypePriceIndex().firstPositionNotMatching(bodyType, row -> !cars.isPriceAtLeast(row, minPrice, lowerPrice));
+                to = fleet.bodyTypePriceIndex().firstPositionNotMatching(bodyType, row -> cars.isPriceAtMost(row, maxPrice, upperPrice));
+            }
+            priceRanges[bodyType.ordinal()] = new int[]{from, to};
+            bodyTypePriceRows += to - from;
+        }
+
+        int engineTypeRows = 0;
+        for (EngineType engineType : query.getEngineTypes()) {
+            engineTypeRows += fleet.engineTypeIndex().size(engineType);
+        }
+        int componentRows = live;
+        for (String component : query.getComponents()) {
+            componentRows = Math.min(componentRows, fleet.componentIndex().count(component));
+        }
+
+        var accessPath = QueryPlan.AccessPath.FULL_SCAN;
+        int estimatedRows = live;
+        if (useIndexes && (query.hasPriceRange() || !query.getBodyTypes().isEmpty()) && bodyTypePriceRows < estimatedRows) {
+            accessPath = QueryPlan.AccessPath.BODY_TYPE_PRICE_RANGE;
+            estimatedRows = bodyTypePriceRows;
+        }
+        if (useIndexes && !query.getEngineTypes().isEmpty() && engineTypeRows < estimatedRows) {
+            accessPath = QueryPlan.AccessPath.ENGINE_TYPE_PARTITION;
+            estimatedRows = engineTypeRows;
+        }
+        if (useIndexes && !query.getComponents().isEmpty() && componentRows < estimatedRows) {
+            accessPath = QueryPlan.AccessPath.COMPONENT_BITMAP;
+            estimatedRows = componentRows;
+        }
+
+        var filters = new ArrayList<QueryPlan.Filter>();
+        Supplier<int[]> candidates;
+        String accessCondition;
+        switch (accessPath) {
+            case BODY_TYPE_PRICE_RANGE -> {
+                accessCondition = bodyTypePriceCondition(query);
+                candidates = () -> {
+                    var rows = new IntArrayList();
+                    for (CarBodyType bodyType : bodyTypes) {
+                        var range = priceRanges[bodyType.ordinal()];
+                        rows.addAll(fleet.bodyTypePriceIndex().rows(bodyType, range[0], range[1]));
+                    }
+                    return rows.toSortedArray();
+                };
+            }
+            case ENGINE_TYPE_PARTITION -> {
+                accessCondition = "engineType in " + query.getEngineTypes();
+                candidates = () -> {
+                    var rows = new IntArrayList();
+                    for (EngineType engineType : query.getEngineTypes()) {
+                        rows.addAll(fleet.engineTypeIndex().rows(engineType));
+                    }
+                    return rows.toSortedArray();
+                };
+            }
+            case COMPONENT_BITMAP -> {
+                accessCondition = "components contain " + query.getComponents();
+                candidates = () -> fleet.componentIndex().findAll(query.getComponents()).toArray();
+            }
+            default -> {
+                accessCondition = "";
+                candidates = cars::liveRows;
+            }
+        }
+
+        if (accessPath != QueryPlan.AccessPath.BODY_TYPE_PRICE_RANGE) {
+            if (useIndexes && !query.getBodyTypes().isEmpty()) {
+                var allowed = ordinals(query.getBodyTypes(), CarColumns.BODY_TYPES.length);
+                filters.add(new QueryPlan.Filter("bodyType in " + query.getBodyTypes(), fraction(bodyTypeRows, live),
+                        ENUM_COST, row -> allowed[cars.bodyTypeOrdinal(row)]));
+            }
+            if (query.hasPriceRange()) {
+                filters.add(new QueryPlan.Filter("price " + query.getMinPrice().toPlainString() + ".." + query.getMaxPrice().toPlainString(),
+                        fraction(bodyTypePriceRows, bodyTypeRows), NUMBER_COST,
+                        row -> cars.isPriceAtLeast(row, minPrice, lowerPrice) && cars.isPriceAtMost(row, maxPrice, upperPrice)));
+            }
+        }
+        if (useIndexes && accessPath != QueryPlan.AccessPath.ENGINE_TYPE_PARTITION && !query.getEngineTypes().isEmpty()) {
+            var allowed = ordinals(query.getEngineTypes(), CarColumns.ENGINE_TYPES.length);
+            filters.add(new QueryPlan.Filter("engineType in " + query.getEngineTypes(), fraction(engineTypeRows, live),
+                    ENUM_COST, row -> allowed[cars.engineTypeOrdinal(row)]));
+        }
+        if (accessPath != QueryPlan.AccessPath.COMPONENT_BITMAP && !query.getComponents().isEmpty()) {
+            var required = query.getComponents();
+            filters.add(new QueryPlan.Filter("components contain " + required, fraction(componentRows, live),
+                    COMPONENTS_COST, row -> cars.containsComponents(row, required)));
+        }
+
+        if (query.getModel() != null) {
+            var model = query.getModel();
+            addSampled(filters, cars, "model = " + model, STRING_COST, row -> model.equals(cars.model(row)));
+        }
+        if (query.hasMileageRange()) {
+            double min = query.getMinMileage();
+            double max = query.getMaxMileage();
+            addSampled(filters, cars, "mileage " + min + ".." + max, NUMBER_COST,
+                    row -> cars.mileage(row) >= min && cars.mileage(row) <= max);
+        }
+        if (query.hasPowerRange()) {
+            double min = query.getMinPower();
+            double max = query.getMaxPower();
+            addSampled(filters, cars, "power " + min + ".." + max, NUMBER_COST,
+                    row -> cars.power(row) >= min && cars.power(row) <= max);
+        }
+        if (!query.getColors().isEmpty()) {
+            var allowed = ordinals(query.getColors(), CarColumns.BODY_COLORS.length);
+            addSampled(filters, cars, "color in " + query.getColors(), ENUM_COST, row -> allowed[cars.bodyColorOrdinal(row)]);
+        }
+        if (query.getWheelModel() != null) {
+            var wheelModel = query.getWheelModel();
+            addSampled(filters, cars, "wheelModel = " + wheelModel, STRING_COST, row -> wheelModel.equals(cars.wheelModel(row)));
+        }
+        if (query.hasWheelSizeRange()) {
+            int min = query.getMinWheelSize();
+            int max = query.getMaxWheelSize();
+            addSampled(filters, cars, "wheelSize " + min + ".." + max, NUMBER_COST,
+                    row -> cars.wheelSize(row) >= min && cars.wheelSize(row) <= max);
+        }
+        if (!query.getTyreTypes().isEmpty()) {
+            var allowed = ordinals(query.getTyreTypes(), CarColumns.TYRE_TYPES.length);
+            addSampled(filters, cars, "tyreType in " + query.getTyreTypes(), ENUM_COST, row -> allowed[cars.tyreTypeOrdinal(row)]);
+        }
+
+        filters.sort(Comparator.comparingDouble(QueryPlan.Filter::rank));
+        return new QueryPlan(query, accessPath, accessCondition, estimatedRows, live, candidates, filters);
+    }
+
+    private static String bodyTypePriceCondition(CarQuery query) {
+
+        var condition = new ArrayList<String>();
+        if (!query.getBodyTypes().isEmpty()) {
+            condition.add("bodyType in " + query.getBodyTypes());
+        }
+        if (query.hasPriceRange()) {
+            condition.add("price " + query.getMinPrice().toPlainString() + ".." + query.getMaxPrice().toPlainString());
+        }
+        return String.join(" and ", condition);
+    }
+
+    /**
+     * Estimates selectivity of a condition without index by checking it on rows spread evenly over
+     * the columns. The estimate is smoothed, so a condition matching no sampled row is still ranked
+     * by its cost.
+     */
+    private static void addSampled(List<QueryPlan.Filter> filters, CarColumns cars, String condition, int cost, IntPredicate predicate) {
+
+        int size = cars.size();
+        int step = Math.max(1, size / SAMPLE_SIZE);
+        int sampled = 0;
+        int matched = 0;
+        for (int row = 0; row < size && sampled < SAMPLE_SIZE; row += step) {
+            if (cars.isLive(row)) {
+                sampled++;
+                if (predicate.test(row)) {
+                    matched++;
+                }
+            }
+        }
+        filters.add(new QueryPlan.Filter(condition, (matched + 1.0) / (sampled + 2.0), cost, predicate));
+    }
+
+    private static double fraction(int rows, int live) {
+        return live == 0 ? 0 : (double) rows / live;
+    }
+
+    private static <E extends Enum<E>> boolean[] ordinals(Set<E> values, int length) {
+
+        var allowed = new boolean[length];
+        values.forEach(value -> allowed[value.ordinal()] = true);
+        return allowed;
+    }
+}
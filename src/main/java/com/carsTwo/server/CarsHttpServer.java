@@ -0,0 +1,438 @@
+package com.carsTwo.server;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.loader.CarsJsonLoader;
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarBodyUtils;
+import com.carsTwo.model.CarUtils;
+import com.carsTwo.model.EngineUtils;
+import com.carsTwo.model.WheelUtils;
+import com.carsTwo.model.enums.*;
+import com.carsTwo.query.CarQuery;
+import com.carsTwo.service.CarCursor;
+import com.carsTwo.service.CarsService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * CarsService served as JSON over HTTP on the loopback interface, so processes of one host share a single
+ * warm fleet instead of each loading its own copy. Every request runs on its own virtual thread.
+ * <p>
+ * At most the given amount of requests is answered at once, a request arriving when every permit is taken
+ * is refused straight away with 429, so an overloaded server sheds load instead of queueing it. Responses
+ * are written with a streaming generator: lists of cars are read from cursors and sent while being read,
+ * a {@code size} parameter with an optional {@code token} returns one page with a continuation token instead.
+ * Invalid arguments are answered with 400 and the message of CarsServiceException.
+ * <p>
+ * On JDK 21 the built-in server reads and writes bodies inside synchronized streams, so a request waiting
+ * for a slow client pins the carrier thread of its virtual thread. Carriers are as many as processors unless
+ * {@code jdk.virtualThreadScheduler.parallelism} is raised, which hosts with few processors and slow
+ * clients should do.
+ * <p>
+ * The last chunk of a streamed response is a small write, with Nagle's algorithm on it waits for the delayed
+ * acknowledgement of the previous chunk. Processes serving the fleet should be started with
+ * {@code -Dsun.net.httpserver.nodelay=true}; the property is read once, by the first server of the process.
+ * <p>
+ * Queries are GET requests with arguments in the query string, repeated parameters give lists:
+ * <ul>
+ *     <li>{@code /cars/sorted?type=&descending=&offset=&limit=}, {@code /cars/top?type=&descending=&limit=}</li>
+ *     <li>{@code /cars/body-type?type=&minPrice=&maxPrice=&priceOrder=}, {@code /cars/engine-type?type=}</li>
+ *     <li>{@code /cars/components?component=}, {@code /cars/tyre-types}</li>
+ *     <li>{@code /cars/mileage}, {@code /cars/mileage-range?min=&max=}, {@code /cars/mileage-percentile?percentile=}</li>
+ *     <li>{@code /cars/query} and {@code /cars/explain} with the attributes of CarQuery, {@code /cars/batch}
+ *     with every query as an encoded {@code q} parameter, answered with an array of results</li>
+ *     <li>{@code /statistics?attribute=}, {@code /statistics/all?percentile=&parallel=},
+ *     {@code /statistics/approximate?percentile=}</li>
+ *     <li>{@code /groups/count?dimension=}, {@code /groups/aggregate?attribute=&dimension=}</li>
+ *     <li>{@code /cache}, {@code /interning}</li>
+ * </ul>
+ * Changes are POST requests with cars in the body in the format of CarsJsonLoader: {@code /cars} adds
+ * a car or an array of cars, {@code /cars/remove} removes a car, {@code /cars/update} takes an array of the
+ * car and its updated version. A car read from a body is a new instance, so the stored car with the same
+ * attributes and components is removed or replaced.
+ */
+public final class CarsHttpServer implements AutoCloseable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final int STOP_DELAY_SECONDS = 1;
+
+    private final CarsService carsService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore admission;
+    private final Map<String, Map<String, Route>> routes = new HashMap<>();
+
+    private CarsHttpServer(CarsService carsService, int port, int maxConcurrentRequests) throws IOException {
+
+        this.carsService = carsService;
+        this.admission = new Semaphore(maxConcurrentRequests);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        registerRoutes();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * @param carsService service answering the requests
+     * @param port port on the loopback interface, 0 picks a free one
+     * @param maxConcurrentRequests amount of requests answered at once, further ones are refused with 429
+     * @return started server
+     */
+    public static CarsHttpServer start(CarsService carsService, int port, int maxConcurrentRequests) {
+
+        if (Objects.isNull(carsService)) {
+            throw new CarsServiceException("Cars service is null");
+        }
+        if (port < 0 || port > 0xFFFF) {
+            throw new CarsServiceException("Port has to be between 0 and 65535");
+        }
+        if (maxConcurrentRequests <= 0) {
+            throw new CarsServiceException("Max concurrent requests has to be positive");
+        }
+
+        try {
+            var carsHttpServer = new CarsHttpServer(carsService, port, maxConcurrentRequests);
+            carsHttpServer.server.start();
+            return carsHttpServer;
+        } catch (IOException e) {
+            throw new CarsServiceException("Can't listen on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return port the server listens on
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, waits a moment for the running ones and stops their threads.
+     */
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdownNow();
+    }
+
+    private void registerRoutes() {
+
+        get("/cars/sorted", parameters -> {
+            var sortingType = parameters.constant("type", SortingType.class);
+            boolean descending = parameters.bool("descending", false);
+            if (parameters.has("offset") || parameters.has("limit")) {
+                var cars = carsService.sortingByGivenOrder(sortingType, descending,
+                        parameters.integer("offset", 0), parameters.integer("limit", Integer.MAX_VALUE));
+                return json -> JsonResponses.writeCars(json, cars);
+            }
+            return cars(carsService.cursorSortedByGivenOrder(sortingType, descending), parameters);
+        });
+        get("/cars/top", parameters -> {
+            var cars = carsService.getTopByGivenOrder(parameters.constant("type", SortingType.class),
+                    parameters.bool("descending", false), parameters.integer("limit"));
+            return json -> JsonResponses.writeCars(json, cars);
+        });
+        get("/cars/body-type", parameters -> cars(carsService.cursorBySpecifiedBodyTypeWithGivenPriceRange(
+                parameters.constant("type", CarBodyType.class), parameters.amount("minPrice"),
+                parameters.amount("maxPrice"), parameters.bool("priceOrder", false)), parameters));
+        get("/cars/engine-type", parameters -> cars(carsService.cursorByGivenEngineTypeWithAlphabeticalOrder(
+                parameters.constant("type", EngineType.class)), parameters));
+        get("/cars/components", parameters -> cars(carsService.cursorAllWithComponents(
+                parameters.strings("component")), parameters));
+        get("/cars/tyre-types", parameters -> {
+            var groups = carsService.getCarsWithThisSameWheelType();
+            return json -> JsonResponses.writeGroups(json, groups);
+        });
+        get("/cars/mileage", parameters -> {
+            var mileages = carsService.getMileageForEveryCar();
+            return json -> JsonResponses.writeMileages(json, mileages);
+        });
+        get("/cars/mileage-range", parameters -> cars(carsService.cursorWithMileageBetween(
+                parameters.decimal("min"), parameters.decimal("max")), parameters));
+        get("/cars/mileage-percentile", parameters -> {
+            var car = carsService.getCarAtMileagePercentile(parameters.decimal("percentile"));
+            return json -> JsonResponses.writeCars(json, car.map(List::of).orElse(List.of()));
+        });
+        get("/cars/query", parameters -> cars(carsService.cursor(query(parameters)), parameters));
+        get("/cars/batch", parameters -> {
+            var queries = new ArrayList<CarQuery>();
+            for (String query : parameters.strings("q")) {
+                queries.add(query(QueryParameters.parse(query)));
+            }
+            var found = carsService.findAll(queries);
+            return json -> {
+                json.writeStartArray();
+                for (var cars : found) {
+                    JsonResponses.writeCars(json, cars);
+                }
+                json.writeEndArray();
+            };
+        });
+        get("/cars/explain", parameters -> {
+            var plan = carsService.explain(query(parameters));
+            return json -> JsonResponses.writePlan(json, plan);
+        });
+
+        get("/statistics", parameters -> {
+            var statistic = carsService.getStatisticByGivenAttribute(parameters.constant("attribute", StatisticAttribute.class));
+            return json -> JsonResponses.writeCarStatistic(json, statistic);
+        });
+        get("/statistics/all", parameters -> {
+            var statistic = carsService.getStatistics(parameters.bool("parallel", false), parameters.decimals("percentile"));
+            return json -> JsonResponses.writeCarStatistic(json, statistic);
+        });
+        get("/statistics/approximate", parameters -> {
+            var statistic = carsService.getApproximateStatistics(parameters.decimals("percentile"));
+            return json -> JsonResponses.writeCarStatistic(json, statistic);
+        });
+        get("/groups/count", parameters -> {
+            var aggregates = carsService.countBy(dimensions(parameters));
+            return json -> JsonResponses.writeGroupAggregates(json, aggregates);
+        });
+        get("/groups/aggregate", parameters -> {
+            var aggregates = carsService.aggregateBy(parameters.constant("attribute", StatisticAttribute.class), dimensions(parameters));
+            return json -> JsonResponses.writeGroupAggregates(json, aggregates);
+        });
+        get("/cache", parameters -> {
+            var statistic = carsService.getQueryCacheStatistic();
+            return json -> JsonResponses.writeQueryCacheStatistic(json, statistic);
+        });
+        get("/interning", parameters -> {
+            var statistic = carsService.getInterningStatistic();
+            return json -> JsonResponses.writeInterningStatistic(json, statistic);
+        });
+
+        post("/cars", (parameters, exchange) -> {
+            int added = carsService.addCars(readCars(exchange));
+            return json -> writeCount(json, "added", added);
+        });
+        post("/cars/remove", (parameters, exchange) -> {
+            boolean removed = carsService.removeCar(stored(readCar(exchange)));
+            return json -> writeFlag(json, "removed", removed);
+        });
+        post("/cars/update", (parameters, exchange) -> {
+            var cars = readCars(exchange);
+            if (cars.size() != 2) {
+                throw new CarsServiceException("Update needs an array of the car and its updated version");
+            }
+            boolean updated = carsService.updateCar(stored(cars.get(0)), cars.get(1));
+            return json -> writeFlag(json, "updated", updated);
+        });
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try (exchange) {
+            var methods = routes.get(exchange.getRequestURI().getPath());
+            if (Objects.isNull(methods)) {
+                sendError(exchange, 404, "No such resource: " + exchange.getRequestURI().getPath());
+                return;
+            }
+            var route = methods.get(exchange.getRequestMethod());
+            if (Objects.isNull(route)) {
+                exchange.getResponseHeaders().set("Allow", String.join(", ", methods.keySet()));
+                sendError(exchange, 405, "Method " + exchange.getRequestMethod() + " isn't allowed");
+                return;
+            }
+            if (!admission.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+                sendError(exchange, 429, "Too many concurrent requests");
+                return;
+            }
+
+            try {
+                JsonBody body;
+                try {
+                    body = route.answer(QueryParameters.of(exchange.getRequestURI()), exchange);
+                } catch (CarsServiceException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                } catch (RuntimeException e) {
+                    sendError(exchange, 500, String.valueOf(e));
+                    return;
+                }
+                send(exchange, 200, body);
+            } finally {
+                admission.release();
+            }
+        }
+    }
+
+    private void get(String path, Query query) {
+        routes.computeIfAbsent(path, ignored -> new HashMap<>()).put("GET", (parameters, exchange) -> query.answer(parameters));
+    }
+
+    private void post(String path, Route route) {
+        routes.computeIfAbsent(path, ignored -> new HashMap<>()).put("POST", route);
+    }
+
+    private static JsonBody cars(CarCursor cursor, QueryParameters parameters) {
+
+        if (parameters.has("size")) {
+            var page = cursor.page(parameters.has("token") ? parameters.string("token") : null, parameters.integer("size"));
+            return json -> JsonResponses.writePage(json, page);
+        }
+        return json -> JsonResponses.writeCars(json, cursor);
+    }
+
+    private static CarQuery query(QueryParameters parameters) {
+
+        var query = CarQuery.builder();
+        if (parameters.has("model")) {
+            query.model(parameters.string("model"));
+        }
+        if (parameters.has("minPrice") || parameters.has("maxPrice")) {
+            query.priceBetween(parameters.amount("minPrice"), parameters.amount("maxPrice"));
+        }
+        if (parameters.has("minMileage") || parameters.has("maxMileage")) {
+            query.mileageBetween(parameters.decimal("minMileage"), parameters.decimal("maxMileage"));
+        }
+        if (parameters.has("minPower") || parameters.has("maxPower")) {
+            query.powerBetween(parameters.decimal("minPower"), parameters.decimal("maxPower"));
+        }
+        if (parameters.has("minWheelSize") || parameters.has("maxWheelSize")) {
+            query.wheelSizeBetween(parameters.integer("minWheelSize"), parameters.integer("maxWheelSize"));
+        }
+        if (parameters.has("wheelModel")) {
+            query.wheelModel(parameters.string("wheelModel"));
+        }
+        return query
+                .engineTypes(parameters.constants("engineType", EngineType.class).toArray(EngineType[]::new))
+                .bodyTypes(parameters.constants("bodyType", CarBodyType.class).toArray(CarBodyType[]::new))
+                .colors(parameters.constants("color", CarBodyColor.class).toArray(CarBodyColor[]::new))
+                .tyreTypes(parameters.constants("tyreType", TyreType.class).toArray(TyreType[]::new))
+                .components(parameters.strings("component").toArray(String[]::new))
+                .build();
+    }
+
+    private Car stored(Car car) {
+
+        var engine = CarUtils.toEngine.apply(car);
+        var carBody = CarUtils.toCarBody.apply(car);
+        var wheel = CarUtils.toWheel.apply(car);
+        if (Stream.of(CarUtils.toModel.apply(car), CarUtils.toPrice.apply(car), engine, carBody, wheel).anyMatch(Objects::isNull)) {
+            return car;
+        }
+
+        var engineType = EngineUtils.toEngineType.apply(engine);
+        var bodyType = CarBodyUtils.toBodyType.apply(carBody);
+        var color = CarBodyUtils.toBodyColor.apply(carBody);
+        var components = CarBodyUtils.toComponents.apply(carBody);
+        var tyreType = WheelUtils.toTyreType.apply(wheel);
+        if (Stream.of(engineType, bodyType, color, components, tyreType).anyMatch(Objects::isNull)) {
+            // every stored car has these values, so no stored car is equal
+            return car;
+        }
+
+        var price = CarUtils.toPrice.apply(car);
+        double mileage = CarUtils.toMileageValue.applyAsDouble(car);
+        double power = EngineUtils.toPowerValue.applyAsDouble(engine);
+        int wheelSize = WheelUtils.toSizeValue.applyAsInt(wheel);
+        var wheelModel = WheelUtils.toModel.apply(wheel);
+        var query = CarQuery.builder()
+                .model(CarUtils.toModel.apply(car))
+                .priceBetween(price, price)
+                .mileageBetween(mileage, mileage)
+                .engineTypes(engineType)
+                .powerBetween(power, power)
+                .bodyTypes(bodyType)
+                .colors(color)
+                .wheelSizeBetween(wheelSize, wheelSize)
+                .tyreTypes(tyreType);
+        if (components.stream().allMatch(Objects::nonNull)) {
+            query.components(components.toArray(String[]::new));
+        }
+
+        // the wheel model and components may be null, so they're compared on found cars only
+        return carsService.find(query.build()).stream()
+                .filter(candidate -> Objects.equals(WheelUtils.toModel.apply(CarUtils.toWheel.apply(candidate)), wheelModel))
+                .filter(candidate -> CarBodyUtils.toComponents.apply(CarUtils.toCarBody.apply(candidate)).equals(components))
+                .findFirst()
+                .orElse(car);
+    }
+
+    private static GroupingDimension[] dimensions(QueryParameters parameters) {
+        return parameters.constants("dimension", GroupingDimension.class).toArray(GroupingDimension[]::new);
+    }
+
+    private static List<Car> readCars(HttpExchange exchange) {
+
+        var cars = new ArrayList<Car>();
+        CarsJsonLoader.readCars(Channels.newChannel(exchange.getRequestBody()), cars::add);
+        return cars;
+    }
+
+    private static Car readCar(HttpExchange exchange) {
+
+        var cars = readCars(exchange);
+        if (cars.size() != 1) {
+            throw new CarsServiceException("Exactly one car is expected, got " + cars.size());
+        }
+        return cars.get(0);
+    }
+
+    private static void writeCount(JsonGenerator json, String name, int count) throws IOException {
+
+        json.writeStartObject();
+        json.writeNumberField(name, count);
+        json.writeEndObject();
+    }
+
+    private static void writeFlag(JsonGenerator json, String name, boolean flag) throws IOException {
+
+        json.writeStartObject();
+        json.writeBooleanField(name, flag);
+        json.writeEndObject();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, json -> JsonResponses.writeError(json, Objects.toString(message, "")));
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonBody body) throws IOException {
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, 0);
+        try (var json = JSON_FACTORY.createGenerator(exchange.getResponseBody(), JsonEncoding.UTF8)) {
+            body.write(json);
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface JsonBody {
+
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Query {
+
+        JsonBody answer(QueryParameters parameters);
+    }
+
+    @FunctionalInterface
+    private interface Route {
+
+        JsonBody answer(QueryParameters parameters, HttpExchange exchange);
+    }
+}
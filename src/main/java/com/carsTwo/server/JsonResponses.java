@@ -0,0 +1,256 @@
+package com.carsTwo.server;
+
+import com.carsTwo.model.*;
+import com.carsTwo.query.QueryPlan;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes results of CarsService queries with a streaming generator, in the format read by CarsJsonLoader
+ * for cars. Nothing is buffered apart from the generator's own output buffer, so a result read from a
+ * cursor is sent while the next cars are still being read.
+ */
+final class JsonResponses {
+
+    private JsonResponses() {
+    }
+
+    static void writeCars(JsonGenerator json, Iterable<Car> cars) throws IOException {
+
+        json.writeStartArray();
+        for (Car car : cars) {
+            writeCar(json, car);
+        }
+        json.writeEndArray();
+    }
+
+    static void writeCar(JsonGenerator json, Car car) throws IOException {
+
+        json.writeStartObject();
+        json.writeStringField("model", CarUtils.toModel.apply(car));
+        writeNumberField(json, "price", CarUtils.toPrice.apply(car));
+        json.writeNumberField("mileage", CarUtils.toMileageValue.applyAsDouble(car));
+
+        var engine = CarUtils.toEngine.apply(car);
+        if (Objects.nonNull(engine)) {
+            json.writeObjectFieldStart("engine");
+            writeEnumField(json, "type", EngineUtils.toEngineType.apply(engine));
+            json.writeNumberField("power", EngineUtils.toPowerValue.applyAsDouble(engine));
+            json.writeEndObject();
+        }
+
+        var carBody = CarUtils.toCarBody.apply(car);
+        if (Objects.nonNull(carBody)) {
+            json.writeObjectFieldStart("carBody");
+            writeEnumField(json, "color", CarBodyUtils.toBodyColor.apply(carBody));
+            writeEnumField(json, "bodyType", CarBodyUtils.toBodyType.apply(carBody));
+            var components = CarBodyUtils.toComponents.apply(carBody);
+            if (Objects.nonNull(components)) {
+                json.writeArrayFieldStart("components");
+                for (String component : components) {
+                    json.writeString(component);
+                }
+                json.writeEndArray();
+            }
+            json.writeEndObject();
+        }
+
+        var wheel = CarUtils.toWheel.apply(car);
+        if (Objects.nonNull(wheel)) {
+            json.writeObjectFieldStart("wheel");
+            json.writeStringField("model", WheelUtils.toModel.apply(wheel));
+            json.writeNumberField("size", WheelUtils.toSizeValue.applyAsInt(wheel));
+            writeEnumField(json, "tyreType", WheelUtils.toTyreType.apply(wheel));
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+    }
+
+    static void writePage(JsonGenerator json, CarPage page) throws IOException {
+
+        json.writeStartObject();
+        json.writeFieldName("cars");
+        writeCars(json, page.getCars());
+        json.writeStringField("continuationToken", page.getContinuationToken());
+        json.writeEndObject();
+    }
+
+    static void writeGroups(JsonGenerator json, Map<?, ? extends Collection<Car>> groups) throws IOException {
+
+        json.writeStartObject();
+        for (Map.Entry<?, ? extends Collection<Car>> group : groups.entrySet()) {
+            json.writeFieldName(String.valueOf(group.getKey()));
+            writeCars(json, group.getValue());
+        }
+        json.writeEndObject();
+    }
+
+    static void writeMileages(JsonGenerator json, Map<Car, Double> mileages) throws IOException {
+
+        json.writeStartArray();
+        for (Map.Entry<Car, Double> mileage : mileages.entrySet()) {
+            json.writeStartObject();
+            json.writeFieldName("car");
+            writeCar(json, mileage.getKey());
+            json.writeNumberField("mileage", mileage.getValue());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    static void writeCarStatistic(JsonGenerator json, CarStatistic statistic) throws IOException {
+
+        json.writeStartObject();
+        writeStatisticField(json, "price", statistic.getPrice());
+        writeStatisticField(json, "mileage", statistic.getMileage());
+        writeStatisticField(json, "power", statistic.getPower());
+        writeEstimateField(json, "distinctModels", statistic.getDistinctModels());
+        writeEstimateField(json, "distinctComponents", statistic.getDistinctComponents());
+        if (Objects.nonNull(statistic.getComponentFrequencies())) {
+            json.writeObjectFieldStart("componentFrequencies");
+            for (Map.Entry<String, Estimate> frequency : statistic.getComponentFrequencies().entrySet()) {
+                writeEstimateField(json, frequency.getKey(), frequency.getValue());
+            }
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+    }
+
+    static void writeGroupAggregates(JsonGenerator json, Collection<GroupAggregate> aggregates) throws IOException {
+
+        json.writeStartArray();
+        for (GroupAggregate aggregate : aggregates) {
+            json.writeStartObject();
+            writeEnumField(json, "tyreType", aggregate.getTyreType());
+            writeEnumField(json, "bodyColor", aggregate.getBodyColor());
+            writeEnumField(json, "bodyType", aggregate.getBodyType());
+            writeEnumField(json, "engineType", aggregate.getEngineType());
+            if (Objects.nonNull(aggregate.getWheelSize())) {
+                json.writeNumberField("wheelSize", aggregate.getWheelSize());
+            }
+            json.writeNumberField("count", aggregate.getCount());
+            if (Objects.nonNull(aggregate.getStatistic())) {
+                json.writeFieldName("statistic");
+                writeCarStatistic(json, aggregate.getStatistic());
+            }
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    static void writePlan(JsonGenerator json, QueryPlan plan) throws IOException {
+
+        json.writeStartObject();
+        json.writeStringField("accessPath", plan.getAccessPath().name());
+        json.writeNumberField("estimatedRows", plan.getEstimatedRows());
+        json.writeArrayFieldStart("filters");
+        for (QueryPlan.Filter filter : plan.getFilters()) {
+            json.writeStartObject();
+            json.writeStringField("condition", filter.getCondition());
+            json.writeNumberField("selectivity", filter.getSelectivity());
+            json.writeNumberField("cost", filter.getCost());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeStringField("explain", plan.explain());
+        json.writeEndObject();
+    }
+
+    static void writeQueryCacheStatistic(JsonGenerator json, QueryCacheStatistic statistic) throws IOException {
+
+        json.writeStartObject();
+        json.writeNumberField("hits", statistic.getHits());
+        json.writeNumberField("misses", statistic.getMisses());
+        json.writeNumberField("evictions", statistic.getEvictions());
+        json.writeNumberField("invalidations", statistic.getInvalidations());
+        json.writeNumberField("size", statistic.getSize());
+        json.writeNumberField("weight", statistic.getWeight());
+        json.writeNumberField("maxWeight", statistic.getMaxWeight());
+        json.writeEndObject();
+    }
+
+    static void writeInterningStatistic(JsonGenerator json, InterningStatistic statistic) throws IOException {
+
+        json.writeStartObject();
+        json.writeNumberField("canonicalInstances", statistic.getCanonicalInstances());
+        json.writeNumberField("deduplicatedComponentLists", statistic.getDeduplicatedComponentLists());
+        json.writeNumberField("deduplicatedStrings", statistic.getDeduplicatedStrings());
+        json.writeNumberField("savedBytes", statistic.getSavedBytes());
+        json.writeEndObject();
+    }
+
+    static void writeError(JsonGenerator json, String message) throws IOException {
+
+        json.writeStartObject();
+        json.writeStringField("error", message);
+        json.writeEndObject();
+    }
+
+    private static void writeStatisticField(JsonGenerator json, String name, Statistic<?> statistic) throws IOException {
+
+        if (Objects.isNull(statistic)) {
+            return;
+        }
+        json.writeObjectFieldStart(name);
+        writeNumberField(json, "min", statistic.getMin());
+        writeNumberField(json, "max", statistic.getMax());
+        writeNumberField(json, "average", statistic.getAverage());
+        writeNumberField(json, "count", statistic.getCount());
+        writeNumberField(json, "sum", statistic.getSum());
+        writeNumberField(json, "variance", statistic.getVariance());
+        writeNumberField(json, "standardDeviation", statistic.getStandardDeviation());
+        if (Objects.nonNull(statistic.getPercentiles())) {
+            json.writeObjectFieldStart("percentiles");
+            for (Map.Entry<Double, ?> percentile : statistic.getPercentiles().entrySet()) {
+                writeNumberField(json, String.valueOf(percentile.getKey()), percentile.getValue());
+            }
+            json.writeEndObject();
+        }
+        writeNumberField(json, "percentileRankError", statistic.getPercentileRankError());
+        json.writeEndObject();
+    }
+
+    private static void writeEstimateField(JsonGenerator json, String name, Estimate estimate) throws IOException {
+
+        if (Objects.isNull(estimate)) {
+            return;
+        }
+        json.writeObjectFieldStart(name);
+        json.writeNumberField("value", estimate.getValue());
+        json.writeNumberField("lowerBound", estimate.getLowerBound());
+        json.writeNumberField("upperBound", estimate.getUpperBound());
+        json.writeNumberField("confidence", estimate.getConfidence());
+        json.writeEndObject();
+    }
+
+    private static void writeNumberField(JsonGenerator json, String name, Object value) throws IOException {
+
+        if (value instanceof BigDecimal amount) {
+            json.writeNumberField(name, amount);
+        } else if (value instanceof Double number) {
+            if (number.isNaN() || number.isInfinite()) {
+                json.writeStringField(name, number.toString());
+            } else {
+                json.writeNumberField(name, number);
+            }
+        } else if (value instanceof Long number) {
+            json.writeNumberField(name, number);
+        } else if (value instanceof Integer number) {
+            json.writeNumberField(name, number);
+        } else if (Objects.nonNull(value)) {
+            json.writeStringField(name, value.toString());
+        }
+    }
+
+    private static void writeEnumField(JsonGenerator json, String name, Enum<?> value) throws IOException {
+
+        if (Objects.nonNull(value)) {
+            json.writeStringField(name, value.name());
+        }
+    }
+}
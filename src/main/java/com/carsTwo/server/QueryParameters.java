@@ -0,0 +1,145 @@
+package com.carsTwo.server;
+
+import com.carsTwo.exception.CarsServiceException;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Parameters of a request query string. A parameter may be repeated, typed getters reject values which
+ * can't be parsed with CarsServiceException, so they are answered with 400.
+ */
+final class QueryParameters {
+
+    private final Map<String, List<String>> values;
+
+    private QueryParameters(Map<String, List<String>> values) {
+        this.values = values;
+    }
+
+    static QueryParameters of(URI uri) {
+        return parse(uri.getRawQuery());
+    }
+
+    /**
+     * @param query encoded query string, may be null
+     * @return parameters of the query string
+     */
+    static QueryParameters parse(String query) {
+
+        var values = new HashMap<String, List<String>>();
+        if (Objects.nonNull(query) && !query.isEmpty()) {
+            for (String pair : query.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int separator = pair.indexOf('=');
+                var name = decode(separator < 0 ? pair : pair.substring(0, separator));
+                var value = separator < 0 ? "" : decode(pair.substring(separator + 1));
+                values.computeIfAbsent(name, ignored -> new ArrayList<>()).add(value);
+            }
+        }
+        return new QueryParameters(values);
+    }
+
+    boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    String string(String name) {
+
+        var all = values.get(name);
+        if (Objects.isNull(all)) {
+            throw new CarsServiceException("Parameter " + name + " is required");
+        }
+        if (all.size() > 1) {
+            throw new CarsServiceException("Parameter " + name + " is given more than once");
+        }
+        return all.get(0);
+    }
+
+    List<String> strings(String name) {
+        return values.getOrDefault(name, List.of());
+    }
+
+    boolean bool(String name, boolean defaultValue) {
+
+        if (!has(name)) {
+            return defaultValue;
+        }
+        var value = string(name);
+        if (value.isEmpty() || value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        throw new CarsServiceException("Parameter " + name + " isn't a boolean: " + value);
+    }
+
+    int integer(String name) {
+        return parse(name, string(name), Integer::parseInt);
+    }
+
+    int integer(String name, int defaultValue) {
+        return has(name) ? integer(name) : defaultValue;
+    }
+
+    double decimal(String name) {
+        return parse(name, string(name), Double::parseDouble);
+    }
+
+    BigDecimal amount(String name) {
+        return parse(name, string(name), BigDecimal::new);
+    }
+
+    double[] decimals(String name) {
+
+        var all = strings(name);
+        var parsed = new double[all.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            parsed[i] = parse(name, all.get(i), Double::parseDouble);
+        }
+        return parsed;
+    }
+
+    <E extends Enum<E>> E constant(String name, Class<E> type) {
+        return parse(name, string(name), value -> Enum.valueOf(type, value.toUpperCase(Locale.ROOT)));
+    }
+
+    <E extends Enum<E>> List<E> constants(String name, Class<E> type) {
+
+        var parsed = new ArrayList<E>();
+        for (String value : strings(name)) {
+            parsed.add(parse(name, value, constant -> Enum.valueOf(type, constant.toUpperCase(Locale.ROOT))));
+        }
+        return parsed;
+    }
+
+    private static <T> T parse(String name, String value, Function<String, T> parser) {
+
+        try {
+            return parser.apply(value);
+        } catch (IllegalArgumentException e) {
+            throw new CarsServiceException("Parameter " + name + " has invalid value: " + value);
+        }
+    }
+
+    private static String decode(String value) {
+
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CarsServiceException("Query string isn't properly encoded: " + value);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.carsTwo.service;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarPage;
+import com.carsTwo.store.CarColumns;
+import com.carsTwo.store.Fleet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy result of a query over the fleet version it was opened on. Nothing is copied upfront: cars are
+ * read in small windows of rows while the caller consumes them, so taking the first few cars of a broad
+ * query costs only those cars.
+ * <p>
+ * Pages carry a continuation token naming the last returned car. The next page starts right after that
+ * car, also when it's asked for on a cursor opened later on a changed fleet, as long as the fleet wasn't
+ * compacted in between, which renumbers the rows.
+ */
+public final class CarCursor implements Iterable<Car> {
+
+    private static final int WINDOW_SIZE = 256;
+    private static final String TOKEN_SEPARATOR = ".";
+
+    private final String query;
+    private final String generation;
+    private final CarColumns cars;
+    private final RowSource rows;
+
+    CarCursor(Object query, Fleet fleet, RowSource rows) {
+        this.query = Integer.toHexString(query.toString().hashCode());
+        this.generation = Long.toString(fleet.generation(), Character.MAX_RADIX);
+        this.cars = fleet.columns();
+        this.rows = rows;
+    }
+
+    /**
+     * @return iterator reading the next window of cars only when the previous one is consumed
+     */
+    @Override
+    public Iterator<Car> iterator() {
+
+        return new Iterator<>() {
+
+            private int[] window = rows.next(-1, WINDOW_SIZE);
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+
+                if (position == window.length && window.length == WINDOW_SIZE) {
+                    window = rows.next(window[window.length - 1], WINDOW_SIZE);
+                    position = 0;
+                }
+                return position < window.length;
+            }
+
+            @Override
+            public Car next() {
+
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cars.car(window[position++]);
+            }
+        };
+    }
+
+    /**
+     * @return sequential ordered stream of cars, evaluation stops once the stream is short-circuited
+     */
+    public Stream<Car> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @param continuationToken token of the previous page, null for the first page
+     * @param size maximal amount of cars on the page
+     * @return page of cars with a token of the next page, the token is null on the last page
+     */
+    public CarPage page(String continuationToken, int size) {
+
+        if (size <= 0) {
+            throw new CarsServiceException("Page size has to be positive");
+        }
+
+        int afterRow = Objects.isNull(continuationToken) ? -1 : rowOf(continuationToken);
+        var window = rows.next(afterRow, size == Integer.MAX_VALUE ? size : size + 1);
+        boolean hasNext = window.length > size;
+        if (hasNext) {
+            window = Arrays.copyOf(window, size);
+        }
+
+        var pageCars = new ArrayList<Car>(window.length);
+        for (int row : window) {
+            pageCars.add(cars.car(row));
+        }
+        return CarPage
+                .builder()
+                .cars(pageCars)
+                .continuationToken(hasNext ? query + TOKEN_SEPARATOR + generation + TOKEN_SEPARATOR
+                        + Integer.toString(window[size - 1], Character.MAX_RADIX) : null)
+                .build();
+    }
+
+    private int rowOf(String continuationToken) {
+
+        int separator = continuationToken.indexOf(TOKEN_SEPARATOR);
+        if (separator < 0 || !continuationToken.substring(0, separator).equals(query)) {
+            throw new CarsServiceException("Continuation token doesn't belong to this query");
+        }
+        int rowSeparator = continuationToken.indexOf(TOKEN_SEPARATOR, separator + 1);
+        if (rowSeparator < 0) {
+            throw new CarsServiceException("Continuation token is malformed");
+        }
+        if (!continuationToken.substring(separator + 1, rowSeparator).equals(generation)) {
+            throw new CarsServiceException("Continuation token was issued before the collection was compacted");
+        }
+        try {
+            int row = Integer.parseInt(continuationToken.substring(rowSeparator + 1), Character.MAX_RADIX);
+            if (row < 0 || row >= cars.size()) {
+                throw new CarsServiceException("Continuation token points outside the collection");
+            }
+            return row;
+        } catch (NumberFormatException e) {
+            throw new CarsServiceException("Continuation token is malformed");
+        }
+    }
+}
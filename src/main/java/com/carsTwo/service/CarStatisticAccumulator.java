@@ -0,0 +1,219 @@
+package com.carsTwo.service;
+
+import com.carsTwo.model.CarStatistic;
+import com.carsTwo.model.Money;
+import com.carsTwo.model.Statistic;
+import com.carsTwo.store.CarColumns;
+import com.carsTwo.store.RowSort;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Partial statistics of price, mileage and engine power collected in one pass over the columns.
+ * Accumulators of disjoint row ranges can be merged, so a pass may be split across threads.
+ * Variance is the population variance, kept with Welford's algorithm and merged with Chan's formula.
+ */
+final class CarStatisticAccumulator {
+
+    private final CarColumns cars;
+
+    private long count;
+
+    private int minPriceRow = -1;
+    private int maxPriceRow = -1;
+    private final Money.Sum priceUnitsSum = new Money.Sum();
+    private final Moments price = new Moments();
+
+    private final Moments mileage = new Moments();
+    private final Moments power = new Moments();
+
+    CarStatisticAccumulator(CarColumns cars) {
+        this.cars = cars;
+    }
+
+    void accept(int row) {
+
+        count++;
+
+        if (minPriceRow < 0 || cars.comparePrices(row, minPriceRow) < 0) {
+            minPriceRow = row;
+        }
+        if (maxPriceRow < 0 || cars.comparePrices(row, maxPriceRow) > 0) {
+            maxPriceRow = row;
+        }
+        cars.addPrice(priceUnitsSum, row);
+        price.accept(cars.priceUnitsValue(row));
+
+        mileage.accept(cars.mileage(row));
+        power.accept(cars.power(row));
+    }
+
+    void merge(CarStatisticAccumulator other) {
+
+        if (other.count == 0) {
+            return;
+        }
+
+        if (minPriceRow < 0 || cars.comparePrices(other.minPriceRow, minPriceRow) < 0) {
+            minPriceRow = other.minPriceRow;
+        }
+        if (maxPriceRow < 0 || cars.comparePrices(other.maxPriceRow, maxPriceRow) > 0) {
+            maxPriceRow = other.maxPriceRow;
+        }
+        priceUnitsSum.merge(other.priceUnitsSum);
+
+        price.merge(other.price);
+        mileage.merge(other.mileage);
+        power.merge(other.power);
+        count += other.count;
+    }
+
+    /**
+     * @param percentiles requested percentiles, from 0 to 100, computed with nearest rank method
+     * @param parallel decide if values for percentiles should be sorted in parallel
+     * @return statistics with every attribute filled
+     */
+    CarStatistic toCarStatistic(double[] percentiles, boolean parallel) {
+
+        return CarStatistic
+                .builder()
+                .price(priceStatistic(percentiles, parallel))
+                .mileage(doubleStatistic(mileage, percentiles, parallel, cars::mileage))
+                .power(doubleStatistic(power, percentiles, parallel, cars::power))
+                .build();
+    }
+
+    private Statistic<BigDecimal> priceStatistic(double[] percentiles, boolean parallel) {
+
+        int scale = cars.priceScale();
+        var sum = priceUnitsSum.toBigDecimal(scale);
+
+        Map<Double, BigDecimal> pricePercentiles = null;
+        if (percentiles.length > 0 && count > 0) {
+            var rows = cars.liveRows();
+            var units = new long[rows.length];
+            boolean exact = true;
+            for (int i = 0; i < rows.length; i++) {
+                units[i] = cars.priceUnits(rows[i]);
+                exact &= cars.isPriceExact(rows[i]);
+            }
+            pricePercentiles = new LinkedHashMap<>();
+            if (exact) {
+                sort(units, parallel);
+                for (double percentile : percentiles) {
+                    pricePercentiles.put(percentile, BigDecimal.valueOf(units[rankIndex(percentile, units.length)], scale));
+                }
+            } else {
+                RowSort.sort(rows, cars::comparePrices);
+                for (double percentile : percentiles) {
+                    pricePercentiles.put(percentile, cars.price(rows[rankIndex(percentile, rows.length)]));
+                }
+            }
+        }
+
+        double unit = Math.pow(10, -scale);
+        return Statistic
+                .<BigDecimal>builder()
+                .min(count == 0 ? null : cars.price(minPriceRow))
+                .max(count == 0 ? null : cars.price(maxPriceRow))
+                .average(priceUnitsSum.average(count, scale))
+                .count(count)
+                .sum(sum)
+                .variance(price.variance() * unit * unit)
+                .standardDeviation(Math.sqrt(price.variance()) * unit)
+                .percentiles(pricePercentiles)
+                .build();
+    }
+
+    private Statistic<Double> doubleStatistic(Moments moments, double[] percentiles, boolean parallel, IntToDoubleFunction column) {
+
+        Map<Double, Double> valuePercentiles = null;
+        if (percentiles.length > 0 && count > 0) {
+            var rows = cars.liveRows();
+            var values = new double[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                values[i] = column.applyAsDouble(rows[i]);
+            }
+            sort(values, parallel);
+            valuePercentiles = new LinkedHashMap<>();
+            for (double percentile : percentiles) {
+                valuePercentiles.put(percentile, values[rankIndex(percentile, values.length)]);
+            }
+        }
+
+        return Statistic
+                .<Double>builder()
+                .min(moments.summary.getMin())
+                .max(moments.summary.getMax())
+                .average(moments.summary.getAverage())
+                .count(count)
+                .sum(moments.summary.getSum())
+                .variance(moments.variance())
+                .standardDeviation(Math.sqrt(moments.variance()))
+                .percentiles(valuePercentiles)
+                .build();
+    }
+
+    private static int rankIndex(double percentile, int size) {
+
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return Math.min(Math.max(rank, 1), size) - 1;
+    }
+
+    private static void sort(long[] values, boolean parallel) {
+        if (parallel) {
+            Arrays.parallelSort(values);
+        } else {
+            Arrays.sort(values);
+        }
+    }
+
+    private static void sort(double[] values, boolean parallel) {
+        if (parallel) {
+            Arrays.parallelSort(values);
+        } else {
+            Arrays.sort(values);
+        }
+    }
+
+    /**
+     * Summary of one attribute with running mean and sum of squared differences from the mean.
+     */
+    private static final class Moments {
+
+        private final DoubleSummaryStatistics summary = new DoubleSummaryStatistics();
+        private double mean;
+        private double squaredDifferences;
+
+        void accept(double value) {
+
+            summary.accept(value);
+            double delta = value - mean;
+            mean += delta / summary.getCount();
+            squaredDifferences += delta * (value - mean);
+        }
+
+        void merge(Moments other) {
+
+            long count = summary.getCount();
+            long otherCount = other.summary.getCount();
+            if (otherCount == 0) {
+                return;
+            }
+            long total = count + otherCount;
+            double delta = other.mean - mean;
+            mean += delta * otherCount / total;
+            squaredDifferences += other.squaredDifferences + delta * delta * count * otherCount / total;
+            summary.combine(other.summary);
+        }
+
+        double variance() {
+            return summary.getCount() == 0 ? 0 : squaredDifferences / summary.getCount();
+        }
+    }
+}
@@ -1,24 +1,260 @@
 package com.carsTwo.service;
 
 import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.metrics.MetricsRegistry;
 import com.carsTwo.model.*;
 import com.carsTwo.model.enums.*;
-import org.eclipse.collections.impl.collector.BigDecimalSummaryStatistics;
-import org.eclipse.collections.impl.collector.Collectors2;
+import com.carsTwo.query.BatchScan;
+import com.carsTwo.query.CarQuery;
+import com.carsTwo.query.QueryPlan;
+import com.carsTwo.query.QueryPlanner;
+import com.carsTwo.sketch.FleetSketch;
+import com.carsTwo.store.CarColumns;
+import com.carsTwo.store.ConcurrentFleet;
+import com.carsTwo.store.Fleet;
+import com.carsTwo.store.FleetSnapshot;
+import com.carsTwo.store.OffHeapCarColumns;
+import com.carsTwo.store.ParallelExecution;
+import com.carsTwo.store.RowSort;
+import com.carsTwo.view.CarGroupView;
+import com.carsTwo.view.StatisticView;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 
 
-public class CarsService {
+public class CarsService implements AutoCloseable {
 
 
-    private Set<Car> cars;
+    private static final TyreType[] TYRE_TYPES = TyreType.values();
+    private static final long DEFAULT_QUERY_CACHE_WEIGHT = 1 << 20;
+    private static final int VIEW_BUFFER_CAPACITY = Flow.defaultBufferSize();
 
-    public CarsService(Set<Car> cars) {
-        this.cars = cars;
+    private final ConcurrentFleet concurrentFleet;
+    private volatile ParallelExecution execution = ParallelExecution.SEQUENTIAL;
+    private volatile QueryResultCache queryCache = new QueryResultCache(DEFAULT_QUERY_CACHE_WEIGHT);
+    private volatile MetricsRegistry metricsRegistry = MetricsRegistry.NOOP;
+
+    public CarsService(Collection<Car> cars) {
+        this(Fleet.of(cars));
+    }
+
+    public CarsService(Fleet fleet) {
+        this.concurrentFleet = new ConcurrentFleet(fleet);
+    }
+
+
+    /**
+     * Method allowed to open collection saved as a snapshot. The snapshot is memory-mapped and queried without
+     * creating cars upfront, the collection is read only.
+     * @param path snapshot file
+     * @return service over the snapshot
+     */
+    public static CarsService fromSnapshot(Path path) {
+        return new CarsService(FleetSnapshot.open(path));
+    }
+
+
+    /**
+     * Method allowed to keep the collection outside of the heap. Cars are stored as fixed-width records in direct
+     * memory and created only when a query returns them, so the heap doesn't grow with the collection. Cars are
+     * still identified by instance, a car returned by a query is the same instance until it's dropped. The service
+     * should be closed once it's not used anymore.
+     * @param cars cars to store
+     * @return service over cars stored off-heap
+     */
+    public static CarsService offHeap(Collection<Car> cars) {
+        return new CarsService(Fleet.of(OffHeapCarColumns.of(cars)));
+    }
+
+
+    /**
+     * Method allowed to drop memory of the collection kept outside of the heap, the service can't be used
+     * afterwards. The garbage collector frees the memory once no version of the collection refers to it anymore,
+     * indexes and statistics stay on the heap and are left to it as well. A collection kept on the heap or in a
+     * snapshot has nothing to release and stays usable.
+     * A pool dedicated to cars queries is shut down, queries run sequentially afterwards.
+     */
+    @Override
+    public void close() {
+        switchExecution(ParallelExecution.SEQUENTIAL);
+        concurrentFleet.close();
+    }
+
+
+    /**
+     * Method allowed to save the collection with its indexes as a binary snapshot.
+     * @param path snapshot file
+     */
+    public void writeSnapshot(Path path) {
+        FleetSnapshot.write(concurrentFleet.current(), path);
+    }
+
+
+    /**
+     * Method allowed to run queries over large collections in parallel on given pool. Every query keeps the
+     * order of returned cars it has in sequential mode.
+     * @param pool ForkJoinPool running parts of queries
+     * @param threshold int minimal amount of cars for which query is split, smaller queries stay sequential
+     */
+    public void enableParallelExecution(ForkJoinPool pool, int threshold) {
+        switchExecution(ParallelExecution.of(pool, threshold));
+    }
+
+
+    /**
+     * Method allowed to run queries over large collections in parallel on a pool dedicated to cars queries,
+     * with one thread for every available processor. The pool lives until parallel execution is switched
+     * again or the service is closed.
+     * @param threshold int minimal amount of cars for which query is split, smaller queries stay sequential
+     */
+    public void enableParallelExecution(int threshold) {
+        switchExecution(ParallelExecution.dedicated(threshold));
+    }
+
+
+    /**
+     * Method allowed to run all queries sequentially in calling thread again.
+     */
+    public void disableParallelExecution() {
+        switchExecution(ParallelExecution.SEQUENTIAL);
+    }
+
+    private synchronized void switchExecution(ParallelExecution next) {
+
+        var previous = execution;
+        execution = next;
+        previous.close();
+    }
+
+
+    /**
+     * Method allowed to cache results of queries until the collection changes. Repeated query with the same
+     * arguments returns a copy of the cached result, least recently used results are evicted first.
+     * Caching is enabled by default with weight of {@value #DEFAULT_QUERY_CACHE_WEIGHT}.
+     * @param maxWeight long maximal amount of cars and values held by all cached results
+     */
+    public void enableQueryCache(long maxWeight) {
+
+        if (maxWeight < 0) {
+            throw new CarsServiceException("Query cache weight can't be negative");
+        }
+        queryCache = new QueryResultCache(maxWeight);
+    }
+
+
+    /**
+     * Method allowed to count every query from the collection again.
+     */
+    public void disableQueryCache() {
+        queryCache = new QueryResultCache(0);
+    }
+
+
+    /**
+     * Method provide hits, misses and evictions of the query cache since it was enabled.
+     * @return statistic of the query cache
+     */
+    public QueryCacheStatistic getQueryCacheStatistic() {
+        return queryCache.statistic();
+    }
+
+
+    /**
+     * Method allowed to measure latency, scanned and returned cars of every query in given registry. Queries are
+     * recorded as flight recorder events too, whenever the com.carsTwo.Query event is enabled.
+     * @param registry MetricsRegistry receiving measurements
+     */
+    public void enableMetrics(MetricsRegistry registry) {
+
+        if (Objects.isNull(registry)) {
+            throw new CarsServiceException("Metrics registry is null");
+        }
+        metricsRegistry = registry;
+    }
+
+
+    /**
+     * Method allowed to stop measuring queries, measuring is disabled by default.
+     */
+    public void disableMetrics() {
+        metricsRegistry = MetricsRegistry.NOOP;
+    }
+
+
+    /**
+     * Method provide how many duplicate engines, wheels, car bodies, component lists and strings of the collection
+     * are shared instead of stored separately, and estimated amount of memory it saved.
+     * @return statistic of interning
+     */
+    public InterningStatistic getInterningStatistic() {
+        return concurrentFleet.current().columns().interningStatistic();
+    }
+
+
+    /**
+     * Method allowed to add a car to the collection. Queries running at the same time keep seeing the collection
+     * without the car.
+     * @param car car to add, all its parts have to be present
+     * @return true when car was added, false when it's already in the collection
+     */
+    public boolean addCar(Car car) {
+        return concurrentFleet.apply(fleet -> fleet.add(car));
+    }
+
+
+    /**
+     * Method allowed to remove a car from the collection.
+     * @param car car to remove
+     * @return true when car was removed, false when it wasn't in the collection
+     */
+    public boolean removeCar(Car car) {
+        return concurrentFleet.apply(fleet -> fleet.remove(car));
+    }
+
+
+    /**
+     * Method allowed to add many cars to the collection at once, queries see either none or all of them.
+     * @param addedCars cars to add, all their parts have to be present
+     * @return amount of added cars, cars already in the collection are skipped
+     */
+    public int addCars(Collection<Car> addedCars) {
+
+        if (Objects.isNull(addedCars)) {
+            throw new CarsServiceException("Cars collection is null");
+        }
+
+        return concurrentFleet.apply(fleet -> {
+            addedCars.forEach(fleet::requireStorable);
+            int added = 0;
+            for (Car car : addedCars) {
+                if (fleet.add(car)) {
+                    added++;
+                }
+            }
+            return added;
+        });
+    }
+
+
+    /**
+     * Method allowed to replace a car in the collection with its updated version. Queries see either the car
+     * or its updated version, never both or none of them.
+     * @param car car to replace
+     * @param updatedCar car which should take its place
+     * @return true when car was replaced, false when given car wasn't in the collection or its updated version
+     * already is another car of the collection, the car then stays in place
+     */
+    public boolean updateCar(Car car, Car updatedCar) {
+
+        if (Objects.isNull(updatedCar)) {
+            throw new CarsServiceException("Updated car is null");
+        }
+        return concurrentFleet.apply(fleet -> fleet.replace(car, updatedCar));
     }
 
 
@@ -31,27 +267,73 @@ public class CarsService {
      * @return Set sorted by given parameters
      */
     public List<Car> sortingByGivenOrder(SortingType sortingType, boolean descending) {
+        return sortingByGivenOrder(sortingType, descending, 0, Integer.MAX_VALUE);
+    }
+
+
+    /**
+     * Method allowed to get one page of collection sorted by given Sorting Type with required order descending
+     * or ascending. Only cars of the page are returned, small pages are selected without sorting whole collection.
+     * @param sortingType Enum decide according to what collection should be sorted.
+     * @param descending boolean decide about sorting order.
+     * @param offset int amount of leading sorted cars which should be skipped.
+     * @param limit int maximal amount of returned cars.
+     * @return List with requested page of sorted cars
+     */
+    public List<Car> sortingByGivenOrder(SortingType sortingType, boolean descending, int offset, int limit) {
 
         if (Objects.isNull(sortingType)) {
             throw new CarsServiceException("Sorting type is null");
         }
+        if (offset < 0) {
+            throw new CarsServiceException("Offset can't be negative");
+        }
+        if (limit < 0) {
+            throw new CarsServiceException("Limit can't be negative");
+        }
+
+        var fleet = concurrentFleet.current();
+        var key = Arrays.asList("sortingByGivenOrder", sortingType, descending, offset, limit);
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, ArrayList::new, List::size, () -> {
+            var execution = this.execution;
+            boolean sorted = fleet.sortOrderIndex().isSorted(sortingType);
+            var rows = fleet.sortOrderIndex().window(sortingType, descending, offset, limit, execution);
+            probe.scanned(sorted ? rows.length : fleet.columns().liveCount());
+            return carsOf(fleet.columns(), rows, execution);
+        }), List::size);
+    }
 
-        Stream<Car> sortedCars =
-                switch (sortingType) {
-                    case WHEEL_SIZE -> cars.stream().sorted(Comparator.comparing(CarUtils.toWheel.andThen(WheelUtils.toSize)));
-                    case ENGINE_POWER -> cars.stream().sorted(Comparator.comparing(CarUtils.toEngine.andThen(EngineUtils.toPower)));
-                    case COMPONENT -> cars.stream().sorted(Comparator.comparing(CarUtils.toCarBody.andThen(CarBodyUtils.toAmountOfComponents)));
-                };
 
-        var sortedCarList = sortedCars.collect(Collectors.toList());
+    /**
+     * Method allowed to read collection sorted by given Sorting Type lazily. Cars are sorted in windows while
+     * they are consumed, so reading only the beginning never sorts whole collection.
+     * @param sortingType Enum decide according to what collection should be sorted.
+     * @param descending boolean decide about sorting order.
+     * @return cursor over sorted cars
+     */
+    public CarCursor cursorSortedByGivenOrder(SortingType sortingType, boolean descending) {
 
-        if(descending){
-            Collections.reverse(sortedCarList);
+        if (Objects.isNull(sortingType)) {
+            throw new CarsServiceException("Sorting type is null");
         }
 
-        return sortedCarList;
+        var fleet = concurrentFleet.current();
+        var execution = this.execution;
+        return new CarCursor(Arrays.asList("sortingByGivenOrder", sortingType, descending), fleet,
+                (afterRow, limit) -> fleet.sortOrderIndex().windowAfter(sortingType, descending, afterRow, limit, execution));
+    }
 
 
+    /**
+     * Method allowed to get given amount of first cars of collection sorted by given Sorting Type.
+     * @param sortingType Enum decide according to what collection should be sorted.
+     * @param descending boolean decide about sorting order, descending gives cars with the highest values.
+     * @param limit int maximal amount of returned cars.
+     * @return List with at most limit first sorted cars
+     */
+    public List<Car> getTopByGivenOrder(SortingType sortingType, boolean descending, int limit) {
+        return sortingByGivenOrder(sortingType, descending, 0, limit);
     }
 
 
@@ -60,29 +342,82 @@ public class CarsService {
      * @param carBodyType Enum according to which cars are selected
      * @param minPrice BigDecimal the lowest price range
      * @param maxPrice BigDecimal the highest price range
-     * @return Set of cars with specified body typ and price higher than minimal price and lower than maximal price
+     * @return Set of cars with specified body typ and price higher than minimal price and not higher than maximal
+     * price; unlike {@link CarQuery.Builder#priceBetween(BigDecimal, BigDecimal)} the minimal price is excluded
      */
     public Set<Car> groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType carBodyType, BigDecimal minPrice, BigDecimal maxPrice) {
+        return groupBySpecifiedBodyTypeWithGivenPriceRange(carBodyType, minPrice, maxPrice, false);
+    }
 
-        if(Objects.isNull(carBodyType)){
-            throw new CarsServiceException("Body Type can't be null");
-        }
-        if(Objects.isNull(minPrice)){
-            throw new CarsServiceException("Minimal Price can't be null");
-        }
-        if(Objects.isNull(maxPrice)){
-            throw new CarsServiceException("Maximal Price can't be null");
-        }
 
-        if(minPrice.compareTo(maxPrice)> 0){
-            throw new CarsServiceException("Minimal price can't be higher than maximal price");
-        }
+    /**
+     * Method allowed to select from given collection cars with specified BodyTyp in given price range. Cars are
+     * found with binary search in price ordered index of the body type, so only matching cars are visited.
+     * @param carBodyType Enum according to which cars are selected
+     * @param minPrice BigDecimal the lowest price range
+     * @param maxPrice BigDecimal the highest price range
+     * @param priceOrder boolean decide if cars should be ordered by ascending price instead of collection order
+     * @return Set of cars with specified body typ and price higher than minimal price and not higher than maximal
+     * price; unlike {@link CarQuery.Builder#priceBetween(BigDecimal, BigDecimal)} the minimal price is excluded
+     */
+    public Set<Car> groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType carBodyType, BigDecimal minPrice, BigDecimal maxPrice, boolean priceOrder) {
+
+        requireBodyTypeAndPriceRange(carBodyType, minPrice, maxPrice);
+
+        var fleet = concurrentFleet.current();
+        var key = Arrays.asList("groupBySpecifiedBodyTypeWithGivenPriceRange", carBodyType, minPrice, maxPrice, priceOrder);
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, LinkedHashSet::new, Set::size, () -> {
+            var cars = fleet.columns();
+            long lowerExclusive = cars.floorPriceUnits(minPrice);
+            long upperInclusive = cars.floorPriceUnits(maxPrice);
+            int from = fleet.bodyTypePriceIndex().firstPositionNotMatching(carBodyType, row -> cars.isPriceAtMost(row, minPrice, lowerExclusive));
+            int to = fleet.bodyTypePriceIndex().firstPositionNotMatching(carBodyType, row -> cars.isPriceAtMost(row, maxPrice, upperInclusive));
 
-        return cars
-                .stream()
-                .filter(c -> c.findSameBodyType(carBodyType))
-                .filter(car -> car.hasPriceGreaterThan(minPrice)  && !car.hasPriceGreaterThan(maxPrice))
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+            var execution = this.execution;
+            var rows = fleet.bodyTypePriceIndex().rows(carBodyType, from, to);
+            probe.scanned(rows.length);
+            if (!priceOrder) {
+                execution.sort(rows, Integer::compare);
+            }
+            return new LinkedHashSet<>(carsOf(cars, rows, execution));
+        }), Set::size);
+    }
+
+
+    /**
+     * Method allowed to read cars with specified BodyTyp in given price range lazily. In price order cars are
+     * read straight from price ordered index of the body type; in collection order only row numbers of matching
+     * cars are sorted upfront.
+     * @param carBodyType Enum according to which cars are selected
+     * @param minPrice BigDecimal the lowest price range
+     * @param maxPrice BigDecimal the highest price range
+     * @param priceOrder boolean decide if cars should be ordered by ascending price instead of collection order
+     * @return cursor over cars with specified body typ and price higher than minimal price and not higher than
+     * maximal price, the minimal price is excluded as in {@link #groupBySpecifiedBodyTypeWithGivenPriceRange}
+     */
+    public CarCursor cursorBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType carBodyType, BigDecimal minPrice, BigDecimal maxPrice, boolean priceOrder) {
+
+        requireBodyTypeAndPriceRange(carBodyType, minPrice, maxPrice);
+
+        var fleet = concurrentFleet.current();
+        var cars = fleet.columns();
+        var index = fleet.bodyTypePriceIndex();
+        long lowerExclusive = cars.floorPriceUnits(minPrice);
+        long upperInclusive = cars.floorPriceUnits(maxPrice);
+        int from = index.firstPositionNotMatching(carBodyType, row -> cars.isPriceAtMost(row, minPrice, lowerExclusive));
+        int to = index.firstPositionNotMatching(carBodyType, row -> cars.isPriceAtMost(row, maxPrice, upperInclusive));
+        var key = Arrays.asList("groupBySpecifiedBodyTypeWithGivenPriceRange", carBodyType, minPrice, maxPrice, priceOrder);
+
+        if (!priceOrder) {
+            var rows = index.rows(carBodyType, from, to);
+            execution.sort(rows, Integer::compare);
+            return new CarCursor(key, fleet, RowSource.ascending(rows));
+        }
+        return new CarCursor(key, fleet, (afterRow, limit) -> {
+            int position = afterRow < 0 ? from : Math.max(from, Math.min(to, index.positionAfter(carBodyType, afterRow)));
+            return index.rows(carBodyType, position, (int) Math.min((long) position + limit, to));
+        });
     }
 
 
@@ -98,17 +433,43 @@ public class CarsService {
             throw new CarsServiceException("Engine type is null");
         }
 
-        return cars
-                .stream()
-                .filter(c -> c.findSameEngineType(engineType))
-                .sorted(CarUtils.compareByModel)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+        var fleet = concurrentFleet.current();
+        var key = Arrays.asList("groupByGivenEngineTypeWithAlphabeticalOrder", engineType);
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, LinkedHashSet::new, Set::size, () -> {
+            var rows = fleet.engineTypeIndex().rows(engineType, 0, fleet.engineTypeIndex().size(engineType));
+            probe.scanned(rows.length);
+            return new LinkedHashSet<>(carsOf(fleet.columns(), rows, execution));
+        }), Set::size);
+    }
+
+
+    /**
+     * Method allowed to read cars with specified Engine type in alphabetical order lazily, straight from the model
+     * ordered index of the engine type.
+     * @param engineType Enum according to which cars are selected
+     * @return cursor over cars with specified engine alphabetically sorted
+     */
+    public CarCursor cursorByGivenEngineTypeWithAlphabeticalOrder(EngineType engineType) {
+
+        if(Objects.isNull(engineType)){
+            throw new CarsServiceException("Engine type is null");
+        }
+
+        var fleet = concurrentFleet.current();
+        var index = fleet.engineTypeIndex();
+        int size = index.size(engineType);
+        return new CarCursor(Arrays.asList("groupByGivenEngineTypeWithAlphabeticalOrder", engineType), fleet, (afterRow, limit) -> {
+            int position = afterRow < 0 ? 0 : index.positionAfter(engineType, afterRow);
+            return index.rows(engineType, position, (int) Math.min((long) position + limit, size));
+        });
     }
 
 
     /**
      * Method provide base statistic like minimal, maximal or average value for whole collection taking as a argument
-     * parameter for which on statistic should be counted.
+     * parameter for which on statistic should be counted. Statistics are kept up to date on every change of the
+     * collection, so they are returned without visiting any car.
      *
      * @param statisticAttribute Enum decide which statistic should be counted.
      * @return cars statistics for given as parameter required attribute.
@@ -119,79 +480,213 @@ public class CarsService {
             throw new CarsServiceException("Statistic attribute is null");
         }
 
-        return switch (statisticAttribute) {
-            case PRICE -> getPriceStatistic();
-            case MILEAGE -> getMileageStatistic();
-            case ENGINE_POWER -> getEnginePowerStatistic();
-        };
+        var fleet = concurrentFleet.current();
+        var key = Arrays.asList("getStatisticByGivenAttribute", statisticAttribute);
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, CarsService::copyOf, statistic -> 1,
+                () -> fleet.statistics().statistic(statisticAttribute)), statistic -> 1);
     }
 
 
-    private CarStatistic getPriceStatistic() {
+    /**
+     * Method provide statistics of price, mileage and engine power at once, counted in a single pass over the
+     * collection. Beside minimal, maximal and average value every statistic has count, sum, variance and standard
+     * deviation of the whole collection.
+     *
+     * @param percentiles percentiles from 0 to 100 which should be counted exactly with nearest rank method.
+     * @return cars statistics with every attribute filled.
+     */
+    public CarStatistic getStatistics(double... percentiles) {
+        return getStatistics(false, percentiles);
+    }
 
-        BigDecimalSummaryStatistics priceStats = cars
-                .stream()
-                .collect(Collectors2
-                        .summarizingBigDecimal(CarUtils.toPrice::apply));
 
-        return CarStatistic
-                .builder()
-                .price(Statistic
-                        .<BigDecimal>builder()
-                        .min(priceStats.getMin())
-                        .max(priceStats.getMax())
-                        .average(priceStats.getAverage())
-                        .build())
-                .build();
+    /**
+     * Method provide statistics of price, mileage and engine power at once, counted in a single pass over the
+     * collection, optionally split into parts counted in parallel and merged. Without forcing it the pass is
+     * parallel only when parallel execution is enabled and the collection is large enough.
+     *
+     * @param parallel boolean decide if the pass has to be parallel, on the enabled pool or the common pool.
+     * @param percentiles percentiles from 0 to 100 which should be counted exactly with nearest rank method.
+     * @return cars statistics with every attribute filled.
+     */
+    public CarStatistic getStatistics(boolean parallel, double... percentiles) {
+
+        if (Objects.isNull(percentiles)) {
+            throw new CarsServiceException("Percentiles are null");
+        }
+        for (double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new CarsServiceException("Percentile has to be between 0 and 100");
+            }
+        }
+
+        var fleet = concurrentFleet.current();
+        var requestedPercentiles = percentiles.clone();
+        var key = Arrays.asList("getStatistics", Arrays.toString(requestedPercentiles));
+        var probe = QueryProbe.start(metricsRegistry, key);
+        int weight = 3 * (1 + requestedPercentiles.length);
+        return probe.finish(queryCache.get(fleet.version(), key, CarsService::copyOf, statistic -> weight, () -> {
+            var cars = fleet.columns();
+            var rows = cars.liveRows();
+            probe.scanned(rows.length);
+            var execution = this.execution;
+            if (parallel && !execution.isParallel(rows.length)) {
+                execution = ParallelExecution.of(ForkJoinPool.commonPool(), 0);
+            }
+            boolean parallelPass = execution.isParallel(rows.length);
+
+            var accumulator = execution.reduce(rows,
+                    () -> new CarStatisticAccumulator(cars), CarStatisticAccumulator::accept, CarStatisticAccumulator::merge);
+            return execution.invoke(() -> accumulator.toCarStatistic(requestedPercentiles, parallelPass), rows.length);
+        }), statistic -> weight);
     }
 
-    private CarStatistic getMileageStatistic() {
-        DoubleSummaryStatistics mileageStatistics = cars.stream()
-                .collect(Collectors.summarizingDouble(CarUtils.toMileage::apply));
 
-        return CarStatistic
-                .builder()
-                .mileage(Statistic
-                        .<Double>builder()
-                        .min(mileageStatistics.getMin())
-                        .max(mileageStatistics.getMax())
-                        .average(mileageStatistics.getAverage())
-                        .build())
-                .build();
+    /**
+     * Method provide approximate statistics counted in bounded memory with mergeable sketches: percentiles of price,
+     * mileage and engine power with their rank error, distinct amount of models and components, and frequencies of
+     * the most frequent components, all with their error bounds.
+     * @param percentiles percentiles from 0 to 100 which should be estimated.
+     * @return approximate cars statistics
+     */
+    public CarStatistic getApproximateStatistics(double... percentiles) {
+
+        if (Objects.isNull(percentiles)) {
+            throw new CarsServiceException("Percentiles are null");
+        }
 
+        var fleet = concurrentFleet.current();
+        var requestedPercentiles = percentiles.clone();
+        var key = Arrays.asList("getApproximateStatistics", Arrays.toString(requestedPercentiles));
+        var probe = QueryProbe.start(metricsRegistry, key);
+        int weight = 3 * (1 + requestedPercentiles.length);
+        return probe.finish(queryCache.get(fleet.version(), key, CarsService::copyOf, statistic -> weight, () -> {
+            probe.scanned(fleet.columns().liveCount());
+            return sketchOf(fleet.columns(), execution).toCarStatistic(requestedPercentiles);
+        }), statistic -> weight);
     }
 
-    private CarStatistic getEnginePowerStatistic() {
 
+    /**
+     * Method provide sketch of the whole collection, which can be merged with sketches of other collections to get
+     * approximate statistics of all of them together.
+     * @return new sketch counting every car of collection
+     */
+    public FleetSketch sketch() {
 
-        DoubleSummaryStatistics powerStatistics = cars.stream()
-                .collect(Collectors.summarizingDouble(CarUtils.toEngine.andThen(EngineUtils.toPower)::apply));
+        var fleet = concurrentFleet.current();
+        return sketchOf(fleet.columns(), execution);
+    }
 
-        return CarStatistic
-                .builder()
-                .power(Statistic
-                        .<Double>builder()
-                        .min(powerStatistics.getMin())
-                        .max(powerStatistics.getMax())
-                        .average(powerStatistics.getAverage())
-                        .build())
-                .build();
 
+    /**
+     * Method provided mileage for evey single car in collection. Cars are read from mileage ordered index,
+     * so no sorting is needed.
+     * @return Map with car as a key and value of mileage for every car, ordered by ascending mileage.
+     */
+    public Map<Car, Double> getMileageForEveryCar() {
+
+        var fleet = concurrentFleet.current();
+        var key = List.of("getMileageForEveryCar");
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, LinkedHashMap::new, Map::size, () -> {
+            var cars = fleet.columns();
+            var index = fleet.mileageIndex();
+            probe.scanned(index.size());
+
+            var mileages = new LinkedHashMap<Car, Double>(index.size() * 2);
+            for (int row : index.rows(0, index.size())) {
+                mileages.put(cars.car(row), cars.mileage(row));
+            }
+            return mileages;
+        }), Map::size);
     }
 
+
     /**
-     * Method provided mileage for evey single car in collection
-     * @return Map with car as a key and value of mileage for every car.
+     * Method allowed to select cars with mileage in given range, found with binary search in mileage ordered index.
+     * @param minMileage double the lowest mileage, inclusive
+     * @param maxMileage double the highest mileage, inclusive
+     * @return List of cars with mileage in given range ordered by ascending mileage
      */
+    public List<Car> getCarsWithMileageBetween(double minMileage, double maxMileage) {
 
-    public Map<Car, Double> getMileageForEveryCar() {
+        requireMileageRange(minMileage, maxMileage);
 
-        return cars
-                .stream()
-                .collect(Collectors.toMap(c -> c, CarUtils.toMileage))
-                .entrySet()
-                .stream()
-                .sorted(Map.Entry.comparingByValue()).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (v1, v2) -> v1));
+        var fleet = concurrentFleet.current();
+        var key = Arrays.asList("getCarsWithMileageBetween", minMileage, maxMileage);
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, ArrayList::new, List::size, () -> {
+            var index = fleet.mileageIndex();
+            int from = index.positionAbove(minMileage, false);
+            int to = index.positionAbove(maxMileage, true);
+            var rows = index.rows(from, Math.max(from, to));
+            probe.scanned(rows.length);
+            return carsOf(fleet.columns(), rows, execution);
+        }), List::size);
+    }
+
+
+    /**
+     * Method allowed to read cars with mileage in given range lazily, straight from mileage ordered index.
+     * @param minMileage double the lowest mileage, inclusive
+     * @param maxMileage double the highest mileage, inclusive
+     * @return cursor over cars with mileage in given range ordered by ascending mileage
+     */
+    public CarCursor cursorWithMileageBetween(double minMileage, double maxMileage) {
+
+        requireMileageRange(minMileage, maxMileage);
+
+        var fleet = concurrentFleet.current();
+        var index = fleet.mileageIndex();
+        int from = index.positionAbove(minMileage, false);
+        int to = index.positionAbove(maxMileage, true);
+        return new CarCursor(Arrays.asList("getCarsWithMileageBetween", minMileage, maxMileage), fleet, (afterRow, limit) -> {
+            int position = afterRow < 0 ? from : Math.max(from, Math.min(to, index.positionAfter(afterRow)));
+            return index.rows(position, (int) Math.min((long) position + limit, to));
+        });
+    }
+
+
+    /**
+     * Method provide position of given car in collection ordered by ascending mileage, cars with equal mileage
+     * keep collection order.
+     * @param car car from collection, compared by identity
+     * @return rank of the car, 1 for the car with the lowest mileage
+     */
+    public int getMileageRank(Car car) {
+
+        if (Objects.isNull(car)) {
+            throw new CarsServiceException("Car is null");
+        }
+
+        var fleet = concurrentFleet.current();
+        int row = fleet.columns().rowOf(car);
+        if (row < 0) {
+            throw new CarsServiceException("Car is not in the collection");
+        }
+        return fleet.mileageIndex().positionOf(row) + 1;
+    }
+
+
+    /**
+     * Method provide car holding given percentile of mileage, counted with nearest rank method.
+     * @param percentile double from 0 to 100
+     * @return car with mileage at given percentile, empty for empty collection
+     */
+    public Optional<Car> getCarAtMileagePercentile(double percentile) {
+
+        if (Double.isNaN(percentile) || percentile < 0 || percentile > 100) {
+            throw new CarsServiceException("Percentile has to be between 0 and 100");
+        }
+
+        var fleet = concurrentFleet.current();
+        var index = fleet.mileageIndex();
+        if (index.size() == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(fleet.columns().car(index.row(index.percentilePosition(percentile))));
     }
 
 
@@ -200,14 +695,92 @@ public class CarsService {
      * @return Map with type of tyre as a key and List of cars having this tyre as value.
      */
     public Map<TyreType, List<Car>> getCarsWithThisSameWheelType() {
-        return cars
-                .stream()
-                .collect(Collectors.groupingBy(CarUtils.toWheel.andThen(WheelUtils.toTyreType)))
-                .entrySet()
-                .stream()
-                .sorted((e1, e2) -> Integer.compare(e2.getValue().size(), e1.getValue().size()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (v1, v2) -> v1, LinkedHashMap::new));
 
+        var fleet = concurrentFleet.current();
+        var key = List.of("getCarsWithThisSameWheelType");
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, CarsService::copyOf, CarsService::groupedCount, () -> {
+            probe.scanned(fleet.columns().liveCount());
+            return groupByTyreType(fleet.columns());
+        }), CarsService::groupedCount);
+    }
+
+
+    /**
+     * Method allowed to count cars in every group of given dimensions. Counts are rolled up from a cube kept up to
+     * date on every change of the collection, so no car is visited and no list of cars is built.
+     * @param dimensions dimensions cars are grouped by, no dimension counts whole collection
+     * @return count of every non-empty group, ordered by descending count
+     */
+    public List<GroupAggregate> countBy(GroupingDimension... dimensions) {
+        return rollUp(null, dimensions);
+    }
+
+
+    /**
+     * Method provide count together with sum, average, minimal and maximal value of given attribute in every group
+     * of given dimensions, rolled up from a cube kept up to date on every change of the collection.
+     * @param statisticAttribute Enum decide which attribute should be aggregated.
+     * @param dimensions dimensions cars are grouped by, no dimension aggregates whole collection
+     * @return aggregate of every non-empty group, ordered by descending count
+     */
+    public List<GroupAggregate> aggregateBy(StatisticAttribute statisticAttribute, GroupingDimension... dimensions) {
+
+        if (Objects.isNull(statisticAttribute)) {
+            throw new CarsServiceException("Statistic attribute is null");
+        }
+        return rollUp(statisticAttribute, dimensions);
+    }
+
+
+    private List<GroupAggregate> rollUp(StatisticAttribute statisticAttribute, GroupingDimension... dimensions) {
+
+        if (Objects.isNull(dimensions)) {
+            throw new CarsServiceException("Grouping dimensions are null");
+        }
+        var grouping = Arrays.asList(dimensions.clone());
+        if (grouping.contains(null)) {
+            throw new CarsServiceException("Grouping dimension is null");
+        }
+        if (EnumSet.copyOf(grouping.isEmpty() ? EnumSet.noneOf(GroupingDimension.class) : grouping).size() != grouping.size()) {
+            throw new CarsServiceException("Grouping dimensions can't repeat");
+        }
+
+        var fleet = concurrentFleet.current();
+        var key = Arrays.asList(statisticAttribute == null ? "countBy" : "aggregateBy", statisticAttribute, grouping);
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, CarsService::copyOfAggregates, List::size,
+                () -> fleet.groupCube().rollUp(grouping, statisticAttribute)), List::size);
+    }
+
+
+    private Map<TyreType, List<Car>> groupByTyreType(CarColumns cars) {
+
+        var execution = this.execution;
+        var groupRows = execution.reduce(cars.liveRows(),
+                this::newTyreTypeGroups,
+                (groups, row) -> groups[cars.tyreTypeOrdinal(row)].add(row),
+                (groups, others) -> {
+                    for (int ordinal = 0; ordinal < groups.length; ordinal++) {
+                        groups[ordinal].addAll(others[ordinal]);
+                    }
+                });
+
+        var counts = new int[TYRE_TYPES.length];
+        for (int ordinal = 0; ordinal < counts.length; ordinal++) {
+            counts[ordinal] = groupRows[ordinal].size();
+        }
+
+        var ordinals = RowSort.identity(TYRE_TYPES.length);
+        RowSort.sort(ordinals, (first, second) -> Integer.compare(counts[second], counts[first]));
+
+        var grouped = new LinkedHashMap<TyreType, List<Car>>();
+        for (int ordinal : ordinals) {
+            if (counts[ordinal] > 0) {
+                grouped.put(TYRE_TYPES[ordinal], new ArrayList<>(carsOf(cars, groupRows[ordinal].toArray(), execution)));
+            }
+        }
+        return grouped;
     }
 
     /**
@@ -221,10 +794,303 @@ public class CarsService {
         if(components == null){
             throw new CarsServiceException("Components list is null");
         }
-        return cars
-                .stream()
-                .filter(car -> car.doseContainAllComponents(components))
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        var fleet = concurrentFleet.current();
+        var required = new ArrayList<>(components);
+        var key = Arrays.asList("findAllWithComponents", required);
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, LinkedHashSet::new, Set::size, () -> {
+            var cars = fleet.columns();
+            var rows = required.isEmpty() ? cars.liveRows() : fleet.componentIndex().findAll(required).toArray();
+            probe.scanned(rows.length);
+            return new LinkedHashSet<>(carsOf(cars, rows, execution));
+        }), Set::size);
+    }
+
+
+    /**
+     * Method allowed to read cars with specified components list lazily. Cars having the components are read
+     * from the component index in collection order.
+     * @param components List of components that car should have
+     * @return cursor over cars having all components given as parameter.
+     */
+    public CarCursor cursorAllWithComponents(List<String> components) {
+
+        if(components == null){
+            throw new CarsServiceException("Components list is null");
+        }
+
+        var fleet = concurrentFleet.current();
+        var required = new ArrayList<>(components);
+        var key = Arrays.asList("findAllWithComponents", required);
+        if (required.isEmpty()) {
+            return new CarCursor(key, fleet, RowSource.live(fleet.columns()));
+        }
+        return new CarCursor(key, fleet, RowSource.ascending(fleet.componentIndex().findAll(required)));
+    }
+
+
+    /**
+     * Method allowed to find cars matching every condition of given query. The cheapest index able to
+     * answer one of the conditions gives the candidate cars, remaining conditions are checked on the
+     * candidates starting from the most selective one.
+     * @param query conditions cars have to match
+     * @return Set of matching cars in collection order
+     */
+    public Set<Car> find(CarQuery query) {
+
+        if (Objects.isNull(query)) {
+            throw new CarsServiceException("Query is null");
+        }
+
+        var fleet = concurrentFleet.current();
+        var key = Arrays.asList("find", query);
+        var probe = QueryProbe.start(metricsRegistry, key);
+        return probe.finish(queryCache.get(fleet.version(), key, LinkedHashSet::new, Set::size, () -> {
+            var execution = this.execution;
+            var plan = QueryPlanner.plan(fleet, query);
+            var candidates = plan.candidateRows();
+            probe.scanned(candidates.length);
+            return new LinkedHashSet<>(carsOf(fleet.columns(), plan.filter(candidates, execution), execution));
+        }), Set::size);
+    }
+
+
+    /**
+     * Method allowed to read cars matching every condition of given query lazily. Candidate cars are checked
+     * against remaining conditions only while matching cars are consumed.
+     * @param query conditions cars have to match
+     * @return cursor over matching cars in collection order
+     */
+    public CarCursor cursor(CarQuery query) {
+
+        if (Objects.isNull(query)) {
+            throw new CarsServiceException("Query is null");
+        }
+
+        var fleet = concurrentFleet.current();
+        var plan = QueryPlanner.plan(fleet, query);
+        return new CarCursor(Arrays.asList("find", query), fleet, RowSource.filtered(plan.candidateRows(), plan::matches));
+    }
+
+
+    /**
+     * Method provide plan which would be used to find cars matching given query, without running it.
+     * @param query conditions cars have to match
+     * @return chosen access path and order of the remaining conditions, see {@link QueryPlan#explain()}
+     */
+    public QueryPlan explain(CarQuery query) {
+
+        if (Objects.isNull(query)) {
+            throw new CarsServiceException("Query is null");
+        }
+        return QueryPlanner.plan(concurrentFleet.current(), query);
+    }
+
+
+    /**
+     * Method allowed to find cars matching each of many queries with a single pass over the collection. Every
+     * car is read once and handed to each query it matches, queries answered by an index with fewer cars
+     * than their share of the pass read the index instead. Results are cached per query, as by
+     * {@link #find(CarQuery)}, only queries without a cached result take part in the pass.
+     * @param queries queries to answer, may repeat
+     * @return List of matching cars of every query in collection order, in order of the queries
+     */
+    public List<Set<Car>> findAll(List<CarQuery> queries) {
+
+        if (Objects.isNull(queries)) {
+            throw new CarsServiceException("Queries list is null");
+        }
+        if (queries.stream().anyMatch(Objects::isNull)) {
+            throw new CarsServiceException("Query is null");
+        }
+
+        var fleet = concurrentFleet.current();
+        var queryCache = this.queryCache;
+        var requested = new ArrayList<>(queries);
+        var probe = QueryProbe.start(metricsRegistry, Arrays.asList("findAll", requested));
+
+        var results = new ArrayList<Set<Car>>(requested.size());
+        var missing = new ArrayList<CarQuery>();
+        var missingPositions = new IntArrayList();
+        for (CarQuery query : requested) {
+            Set<Car> cached = queryCache.getIfPresent(fleet.version(), Arrays.asList("find", query), LinkedHashSet::new);
+            if (Objects.isNull(cached)) {
+                missing.add(query);
+                missingPositions.add(results.size());
+            }
+            results.add(cached);
+        }
+
+        if (!missing.isEmpty()) {
+            var execution = this.execution;
+            var batch = BatchScan.plan(fleet, missing);
+            probe.scanned(batch.getScannedRows());
+            var rows = batch.run(execution);
+            for (int i = 0; i < rows.length; i++) {
+                var found = new LinkedHashSet<>(carsOf(fleet.columns(), rows[i], execution));
+                queryCache.put(fleet.version(), Arrays.asList("find", missing.get(i)), found, Set::size);
+                results.set(missingPositions.get(i), new LinkedHashSet<>(found));
+            }
+        }
+        return probe.finish(results, found -> found.stream().mapToLong(Set::size).sum());
+    }
+
+
+    /**
+     * Method allowed to follow cars with specified Engine type in alphabetical order without polling. The view is
+     * kept up to date from the cars added, removed and updated by every change of the collection and publishes
+     * what changed, so subscribers don't read the whole group again.
+     * @param engineType Enum according to which cars are selected
+     * @return view of cars with specified engine, it has to be closed when no longer needed
+     */
+    public CarGroupView<EngineType> watchEngineType(EngineType engineType) {
+
+        if(Objects.isNull(engineType)){
+            throw new CarsServiceException("Engine type is null");
+        }
+        return concurrentFleet.register(fleet -> CarGroupView.byEngineType(fleet, engineType, VIEW_BUFFER_CAPACITY));
+    }
+
+
+    /**
+     * Method allowed to follow cars grouped by type of tyre without polling, see {@link #watchEngineType(EngineType)}.
+     * @return view of cars grouped by type of tyre, it has to be closed when no longer needed
+     */
+    public CarGroupView<TyreType> watchWheelTypes() {
+        return concurrentFleet.register(fleet -> CarGroupView.byTyreType(fleet, VIEW_BUFFER_CAPACITY));
+    }
+
+
+    /**
+     * Method allowed to follow statistic of given attribute without polling, a new statistic is published after every
+     * change of the collection which changed it.
+     * @param statisticAttribute Enum decide which statistic should be followed.
+     * @return view of the statistic, it has to be closed when no longer needed
+     */
+    public StatisticView watchStatistic(StatisticAttribute statisticAttribute) {
+
+        if(Objects.isNull(statisticAttribute)){
+            throw new CarsServiceException("Statistic attribute is null");
+        }
+        return concurrentFleet.register(fleet -> new StatisticView(fleet, statisticAttribute, VIEW_BUFFER_CAPACITY));
+    }
+
+
+    private static void requireBodyTypeAndPriceRange(CarBodyType carBodyType, BigDecimal minPrice, BigDecimal maxPrice) {
+
+        if(Objects.isNull(carBodyType)){
+            throw new CarsServiceException("Body Type can't be null");
+        }
+        if(Objects.isNull(minPrice)){
+            throw new CarsServiceException("Minimal Price can't be null");
+        }
+        if(Objects.isNull(maxPrice)){
+            throw new CarsServiceException("Maximal Price can't be null");
+        }
+
+        if(minPrice.compareTo(maxPrice)> 0){
+            throw new CarsServiceException("Minimal price can't be higher than maximal price");
+        }
+    }
+
+
+    private static void requireMileageRange(double minMileage, double maxMileage) {
+
+        if (Double.isNaN(minMileage) || Double.isNaN(maxMileage)) {
+            throw new CarsServiceException("Mileage can't be NaN");
+        }
+        if (minMileage > maxMileage) {
+            throw new CarsServiceException("Minimal mileage can't be higher than maximal mileage");
+        }
+    }
+
+
+    private static int groupedCount(Map<TyreType, List<Car>> grouped) {
+
+        int count = 0;
+        for (List<Car> groupedCars : grouped.values()) {
+            count += groupedCars.size();
+        }
+        return count;
+    }
+
+
+    private static Map<TyreType, List<Car>> copyOf(Map<TyreType, List<Car>> grouped) {
+
+        var copy = new LinkedHashMap<TyreType, List<Car>>();
+        grouped.forEach((tyreType, groupedCars) -> copy.put(tyreType, new ArrayList<>(groupedCars)));
+        return copy;
+    }
+
+
+    private static FleetSketch sketchOf(CarColumns cars, ParallelExecution execution) {
+        return execution.reduce(cars.liveRows(), FleetSketch::new, (sketch, row) -> sketch.accept(cars, row), FleetSketch::merge);
+    }
+
+
+    private static List<GroupAggregate> copyOfAggregates(List<GroupAggregate> aggregates) {
+
+        var copy = new ArrayList<GroupAggregate>(aggregates.size());
+        for (GroupAggregate aggregate : aggregates) {
+            var statistic = aggregate.getStatistic();
+            copy.add(aggregate.toBuilder().statistic(statistic == null ? null : copyOf(statistic)).build());
+        }
+        return copy;
+    }
+
+
+    private static CarStatistic copyOf(CarStatistic statistic) {
+
+        var copy = statistic
+                .toBuilder()
+                .price(copyOf(statistic.getPrice()))
+                .mileage(copyOf(statistic.getMileage()))
+                .power(copyOf(statistic.getPower()))
+                .distinctModels(copyOf(statistic.getDistinctModels()))
+                .distinctComponents(copyOf(statistic.getDistinctComponents()));
+        if (Objects.nonNull(statistic.getComponentFrequencies())) {
+            var frequencies = new LinkedHashMap<String, Estimate>();
+            statistic.getComponentFrequencies().forEach((component, estimate) -> frequencies.put(component, copyOf(estimate)));
+            copy.componentFrequencies(frequencies);
+        }
+        return copy.build();
+    }
+
+
+    private static Estimate copyOf(Estimate estimate) {
+        return Objects.isNull(estimate) ? null : estimate.toBuilder().build();
+    }
+
+
+    private static <T> Statistic<T> copyOf(Statistic<T> statistic) {
+
+        if (Objects.isNull(statistic)) {
+            return null;
+        }
+        var copy = statistic.toBuilder();
+        if (Objects.nonNull(statistic.getPercentiles())) {
+            copy.percentiles(new LinkedHashMap<>(statistic.getPercentiles()));
+        }
+        return copy.build();
+    }
+
+
+    private IntArrayList[] newTyreTypeGroups() {
+
+        var groups = new IntArrayList[TYRE_TYPES.length];
+        for (int ordinal = 0; ordinal < groups.length; ordinal++) {
+            groups[ordinal] = new IntArrayList();
+        }
+        return groups;
+    }
+
+
+    private static List<Car> carsOf(CarColumns cars, int[] rows, ParallelExecution execution) {
+
+        var found = new Car[rows.length];
+        execution.forEach(rows.length, position -> found[position] = cars.car(rows[position]));
+        return Arrays.asList(found);
     }
 
 
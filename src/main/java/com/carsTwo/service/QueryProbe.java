@@ -0,0 +1,91 @@
+package com.carsTwo.service;
+
+import com.carsTwo.metrics.MetricsRegistry;
+import com.carsTwo.metrics.QueryEvent;
+import jdk.jfr.EventType;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Measures one query for the metrics registry and the flight recorder. When neither of them is enabled
+ * the shared {@link #DISABLED} probe is used, which does nothing, so a query doesn't even read the clock.
+ */
+class QueryProbe {
+
+    static final QueryProbe DISABLED = new QueryProbe(MetricsRegistry.NOOP, null, null);
+
+    private static final EventType QUERY_EVENT_TYPE = EventType.getEventType(QueryEvent.class);
+
+    private final MetricsRegistry registry;
+    private final String query;
+    private final QueryEvent event;
+    private final long start;
+    private long scanned;
+
+    private QueryProbe(MetricsRegistry registry, String query, QueryEvent event) {
+        this.registry = registry;
+        this.query = query;
+        this.event = event;
+        this.start = query == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @param registry registry of the service
+     * @param key name of the query method followed by its arguments, arguments are formatted only for the flight recorder
+     * @return probe measuring the query from now
+     */
+    static QueryProbe start(MetricsRegistry registry, List<?> key) {
+
+        boolean recorded = QUERY_EVENT_TYPE.isEnabled();
+        if (!registry.isEnabled() && !recorded) {
+            return DISABLED;
+        }
+
+        var query = String.valueOf(key.get(0));
+        QueryEvent event = null;
+        if (recorded) {
+            event = new QueryEvent();
+            event.query = query;
+            event.arguments = key.subList(1, key.size()).toString();
+            event.begin();
+        }
+        return new QueryProbe(registry, query, event);
+    }
+
+    /**
+     * @param cars amount of cars the query visited
+     */
+    void scanned(long cars) {
+
+        if (this != DISABLED) {
+            scanned += cars;
+        }
+    }
+
+    /**
+     * @param result result of the query
+     * @param size amount of cars or values in the result
+     * @return given result
+     */
+    <T> T finish(T result, ToLongFunction<T> size) {
+
+        if (this == DISABLED) {
+            return result;
+        }
+
+        long returned = size.applyAsLong(result);
+        if (registry.isEnabled()) {
+            registry.record(query, System.nanoTime() - start, scanned, returned);
+        }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.scanned = scanned;
+                event.returned = returned;
+                event.commit();
+            }
+        }
+        return result;
+    }
+}
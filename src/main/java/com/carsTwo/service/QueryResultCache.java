@@ -0,0 +1,147 @@
+package com.carsTwo.service;
+
+import com.carsTwo.model.QueryCacheStatistic;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Results of queries kept for the fleet version they were counted for, least recently used results
+ * are evicted when the summed weight of results exceeds the bound. A weight of a result is the amount
+ * of cars or values it holds. Asking with a newer fleet version drops every result at once, results
+ * counted for an older version than the cached one are returned without being stored.
+ * <p>
+ * Callers get copies, so changing a returned collection never changes the cached result.
+ */
+class QueryResultCache {
+
+    private final long maxWeight;
+    private final LinkedHashMap<List<?>, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long version;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param maxWeight maximal summed weight of cached results, 0 disables caching
+     */
+    QueryResultCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @param fleetVersion version of the fleet the query runs on
+     * @param key name of the query and its arguments
+     * @param copy creates copy of a result handed to the caller
+     * @param weigher weight of a result
+     * @param query counts the result when it's not cached
+     * @return copy of the cached or counted result
+     */
+    <T> T get(long fleetVersion, List<?> key, UnaryOperator<T> copy, ToIntFunction<T> weigher, Supplier<T> query) {
+
+        var cached = lookup(fleetVersion, key);
+        if (cached != null) {
+            return copy.apply(cached.<T>value());
+        }
+
+        T result = query.get();
+        store(fleetVersion, key, result, 1L + weigher.applyAsInt(result));
+        return copy.apply(result);
+    }
+
+    /**
+     * @param fleetVersion version of the fleet the query runs on
+     * @param key name of the query and its arguments
+     * @param copy creates copy of a result handed to the caller
+     * @return copy of the cached result, null when it's not cached
+     */
+    <T> T getIfPresent(long fleetVersion, List<?> key, UnaryOperator<T> copy) {
+
+        var cached = lookup(fleetVersion, key);
+        return cached == null ? null : copy.apply(cached.<T>value());
+    }
+
+    /**
+     * @param fleetVersion version of the fleet the result was counted for
+     * @param key name of the query and its arguments
+     * @param result counted result, it must not be changed later
+     * @param weigher weight of a result
+     */
+    <T> void put(long fleetVersion, List<?> key, T result, ToIntFunction<T> weigher) {
+        store(fleetVersion, key, result, 1L + weigher.applyAsInt(result));
+    }
+
+    synchronized QueryCacheStatistic statistic() {
+
+        return QueryCacheStatistic
+                .builder()
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .invalidations(invalidations)
+                .size(results.size())
+                .weight(weight)
+                .maxWeight(maxWeight)
+                .build();
+    }
+
+    private synchronized CachedResult lookup(long fleetVersion, List<?> key) {
+
+        if (fleetVersion > version) {
+            invalidations += results.size();
+            results.clear();
+            weight = 0;
+            version = fleetVersion;
+        }
+
+        var cached = fleetVersion == version ? results.get(key) : null;
+        if (cached == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return cached;
+    }
+
+    private synchronized void store(long fleetVersion, List<?> key, Object result, long resultWeight) {
+
+        if (fleetVersion != version || resultWeight > maxWeight) {
+            return;
+        }
+
+        var replaced = results.put(key, new CachedResult(result, resultWeight));
+        weight += resultWeight - (replaced == null ? 0 : replaced.weight);
+
+        Iterator<Map.Entry<List<?>, CachedResult>> eldest = results.entrySet().iterator();
+        while (weight > maxWeight) {
+            weight -= eldest.next().getValue().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+
+    private static final class CachedResult {
+
+        private final Object value;
+        private final long weight;
+
+        CachedResult(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T value() {
+            return (T) value;
+        }
+    }
+}
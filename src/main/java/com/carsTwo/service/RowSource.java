@@ -0,0 +1,95 @@
+package com.carsTwo.service;
+
+import com.carsTwo.store.CarColumns;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Rows of a query result read in windows. A window starts right after a given row of the result order,
+ * so reading continues correctly even on a newer fleet version, where row numbers of remaining cars
+ * are the same.
+ */
+@FunctionalInterface
+interface RowSource {
+
+    /**
+     * @param afterRow row preceding the window in result order, -1 for the first window
+     * @param limit maximal amount of returned rows
+     * @return rows of the window in result order, fewer than limit only at the end of the result
+     */
+    int[] next(int afterRow, int limit);
+
+    /**
+     * @param rows matching rows in ascending order
+     * @return rows in fleet order
+     */
+    static RowSource ascending(int[] rows) {
+
+        return (afterRow, limit) -> {
+            int from = afterRow < 0 ? 0 : insertionPoint(rows, afterRow + 1);
+            return Arrays.copyOfRange(rows, from, (int) Math.min((long) from + limit, rows.length));
+        };
+    }
+
+    /**
+     * @param rows matching rows
+     * @return rows in fleet order
+     */
+    static RowSource ascending(ImmutableRoaringBitmap rows) {
+
+        return (afterRow, limit) -> {
+            var window = new IntArrayList(Math.min(limit, rows.getCardinality()));
+            var iterator = rows.getIntIterator();
+            iterator.advanceIfNeeded(afterRow + 1);
+            while (iterator.hasNext() && window.size() < limit) {
+                window.add(iterator.next());
+            }
+            return window.toArray();
+        };
+    }
+
+    /**
+     * Checks candidates only until the window is full.
+     * @param candidates candidate rows in ascending order
+     * @param matches decide which candidates belong to the result
+     * @return matching candidates in fleet order
+     */
+    static RowSource filtered(int[] candidates, IntPredicate matches) {
+
+        return (afterRow, limit) -> {
+            var window = new IntArrayList(Math.min(limit, 1024));
+            for (int i = afterRow < 0 ? 0 : insertionPoint(candidates, afterRow + 1); i < candidates.length && window.size() < limit; i++) {
+                if (matches.test(candidates[i])) {
+                    window.add(candidates[i]);
+                }
+            }
+            return window.toArray();
+        };
+    }
+
+    /**
+     * @param cars stored cars
+     * @return live rows in fleet order, read without copying the row list
+     */
+    static RowSource live(CarColumns cars) {
+
+        return (afterRow, limit) -> {
+            var window = new IntArrayList(Math.min(limit, 1024));
+            for (int row = afterRow + 1; row < cars.size() && window.size() < limit; row++) {
+                if (cars.isLive(row)) {
+                    window.add(row);
+                }
+            }
+            return window.toArray();
+        };
+    }
+
+    private static int insertionPoint(int[] rows, int row) {
+
+        int position = Arrays.binarySearch(rows, row);
+        return position < 0 ? -position - 1 : position;
+    }
+}
@@ -0,0 +1,91 @@
+package com.carsTwo.sketch;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.Estimate;
+
+/**
+ * Count-min sketch of string frequencies. Every string is counted in one cell of each row, chosen by
+ * a different hash; the smallest of its cells is the estimate. Collisions only add, so the estimate is
+ * never lower than the true frequency and exceeds it by at most epsilon times the total count with
+ * probability 1 - delta.
+ */
+public final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[] counts;
+    private long total;
+
+    /**
+     * @param epsilon overcount bound relative to the total count
+     * @param delta probability of exceeding the overcount bound
+     */
+    public CountMinSketch(double epsilon, double delta) {
+
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            throw new CarsServiceException("Error bounds of frequency sketch have to be between 0 and 1");
+        }
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.counts = new long[width * depth];
+    }
+
+    public void add(String value) {
+
+        long hash = Hashing.hash(value);
+        for (int row = 0; row < depth; row++) {
+            counts[cell(hash, row)]++;
+        }
+        total++;
+    }
+
+    /**
+     * @param other sketch with the same error bounds
+     * @return this sketch, counting strings of both sketches
+     */
+    public CountMinSketch merge(CountMinSketch other) {
+
+        if (other.width != width || other.depth != depth) {
+            throw new CarsServiceException("Only frequency sketches with the same error bounds can be merged");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        return this;
+    }
+
+    public long estimate(String value) {
+
+        long hash = Hashing.hash(value);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[cell(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * @param value counted string
+     * @return estimate bounded from above by itself and from below by the overcount bound
+     */
+    public Estimate toEstimate(String value) {
+
+        long estimate = estimate(value);
+        long overcount = (long) Math.ceil(Math.E / width * total);
+        return Estimate
+                .builder()
+                .value(estimate)
+                .lowerBound(Math.max(0, estimate - overcount))
+                .upperBound(estimate)
+                .confidence(1 - Math.exp(-depth))
+                .build();
+    }
+
+    private int cell(long hash, int row) {
+
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        return row * width + Math.floorMod(first + row * second, width);
+    }
+}
@@ -0,0 +1,247 @@
+package com.carsTwo.sketch;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarBodyUtils;
+import com.carsTwo.model.CarStatistic;
+import com.carsTwo.model.CarUtils;
+import com.carsTwo.model.EngineUtils;
+import com.carsTwo.model.Estimate;
+import com.carsTwo.model.Statistic;
+import com.carsTwo.store.CarColumns;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Approximate statistics of any amount of cars in a few dozen kilobytes: quantile sketches of price,
+ * mileage and engine power, distinct counts of models and components, and component frequencies.
+ * Sketches of separate parts of a fleet can be merged into the sketch of the whole fleet, so parts can
+ * be counted in parallel or on separate machines. Every returned value carries its error bound.
+ * <p>
+ * Frequencies are reported for the most frequent components, followed with a small set of candidates
+ * kept next to the count-min sketch.
+ */
+public final class FleetSketch {
+
+    public static final int DEFAULT_QUANTILE_ACCURACY = 200;
+    public static final int DEFAULT_DISTINCT_PRECISION = 12;
+    public static final double DEFAULT_FREQUENCY_EPSILON = 0.01;
+    public static final double DEFAULT_FREQUENCY_DELTA = 0.01;
+    private static final int FREQUENT_COMPONENTS = 16;
+
+    private final KllSketch price;
+    private final KllSketch mileage;
+    private final KllSketch power;
+    private double priceSum;
+    private double mileageSum;
+    private double powerSum;
+    private final HyperLogLog models;
+    private final HyperLogLog components;
+    private final CountMinSketch componentFrequencies;
+    private final Map<String, Long> frequentComponents = new HashMap<>();
+
+    public FleetSketch() {
+        this(DEFAULT_QUANTILE_ACCURACY, DEFAULT_DISTINCT_PRECISION, DEFAULT_FREQUENCY_EPSILON, DEFAULT_FREQUENCY_DELTA);
+    }
+
+    /**
+     * @param quantileAccuracy accuracy parameter of the quantile sketches
+     * @param distinctPrecision precision of the distinct count sketches
+     * @param frequencyEpsilon overcount bound of component frequencies relative to the amount of counted components
+     * @param frequencyDelta probability of exceeding the overcount bound
+     */
+    public FleetSketch(int quantileAccuracy, int distinctPrecision, double frequencyEpsilon, double frequencyDelta) {
+        this.price = new KllSketch(quantileAccuracy);
+        this.mileage = new KllSketch(quantileAccuracy);
+        this.power = new KllSketch(quantileAccuracy);
+        this.models = new HyperLogLog(distinctPrecision);
+        this.components = new HyperLogLog(distinctPrecision);
+        this.componentFrequencies = new CountMinSketch(frequencyEpsilon, frequencyDelta);
+    }
+
+    /**
+     * Counts a car, a missing model, body or component isn't counted as a distinct value.
+     * @param car car with price and engine
+     */
+    public void accept(Car car) {
+
+        if (Objects.isNull(car)) {
+            throw new CarsServiceException("Car is null");
+        }
+        var price = CarUtils.toPrice.apply(car);
+        var engine = CarUtils.toEngine.apply(car);
+        if (Objects.isNull(price) || Objects.isNull(engine)) {
+            throw new CarsServiceException("Car price and engine can't be null");
+        }
+        var carBody = CarUtils.toCarBody.apply(car);
+        var carComponents = Objects.isNull(carBody) ? null : CarBodyUtils.toComponents.apply(carBody);
+        add(CarUtils.toModel.apply(car),
+                price.doubleValue(),
+                CarUtils.toMileageValue.applyAsDouble(car),
+                EngineUtils.toPowerValue.applyAsDouble(engine),
+                Objects.isNull(carComponents) ? List.of() : carComponents);
+    }
+
+    /**
+     * @param cars stored cars
+     * @param row live row to count
+     */
+    public void accept(CarColumns cars, int row) {
+        add(cars.model(row), cars.price(row).doubleValue(), cars.mileage(row), cars.power(row), cars.components(row));
+    }
+
+    /**
+     * @param other sketch created with the same parameters
+     * @return this sketch, counting cars of both sketches
+     */
+    public FleetSketch merge(FleetSketch other) {
+
+        price.merge(other.price);
+        mileage.merge(other.mileage);
+        power.merge(other.power);
+        priceSum += other.priceSum;
+        mileageSum += other.mileageSum;
+        powerSum += other.powerSum;
+        models.merge(other.models);
+        components.merge(other.components);
+        componentFrequencies.merge(other.componentFrequencies);
+
+        var candidates = new ArrayList<>(frequentComponents.keySet());
+        candidates.addAll(other.frequentComponents.keySet());
+        frequentComponents.clear();
+        candidates.forEach(this::trackFrequent);
+        return this;
+    }
+
+    /**
+     * @param percentiles percentiles from 0 to 100
+     * @return approximate statistics, percentiles carry their rank error and counts their bounds
+     */
+    public CarStatistic toCarStatistic(double... percentiles) {
+
+        if (Objects.isNull(percentiles)) {
+            throw new CarsServiceException("Percentiles are null");
+        }
+        for (double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new CarsServiceException("Percentile has to be between 0 and 100");
+            }
+        }
+
+        var frequencies = new LinkedHashMap<String, Estimate>();
+        frequentComponents.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> frequencies.put(entry.getKey(), componentFrequencies.toEstimate(entry.getKey())));
+
+        return CarStatistic
+                .builder()
+                .price(priceStatistic(percentiles))
+                .mileage(doubleStatistic(mileage, mileageSum, percentiles))
+                .power(doubleStatistic(power, powerSum, percentiles))
+                .distinctModels(models.toEstimate())
+                .distinctComponents(components.toEstimate())
+                .componentFrequencies(frequencies)
+                .build();
+    }
+
+    /**
+     * @param component component name
+     * @return estimated amount of cars having the component
+     */
+    public Estimate componentFrequency(String component) {
+        return componentFrequencies.toEstimate(component);
+    }
+
+    private void add(String model, double priceValue, double mileageValue, double powerValue, List<String> carComponents) {
+
+        price.update(priceValue);
+        mileage.update(mileageValue);
+        power.update(powerValue);
+        priceSum += priceValue;
+        mileageSum += mileageValue;
+        powerSum += powerValue;
+        if (Objects.nonNull(model)) {
+            models.add(model);
+        }
+        for (String component : carComponents) {
+            if (Objects.isNull(component)) {
+                continue;
+            }
+            components.add(component);
+            componentFrequencies.add(component);
+            trackFrequent(component);
+        }
+    }
+
+    private void trackFrequent(String component) {
+
+        long estimate = componentFrequencies.estimate(component);
+        if (frequentComponents.containsKey(component) || frequentComponents.size() < FREQUENT_COMPONENTS) {
+            frequentComponents.put(component, estimate);
+            return;
+        }
+
+        Map.Entry<String, Long> least = null;
+        for (Map.Entry<String, Long> entry : frequentComponents.entrySet()) {
+            if (least == null || entry.getValue() < least.getValue()) {
+                least = entry;
+            }
+        }
+        if (estimate > least.getValue()) {
+            frequentComponents.remove(least.getKey());
+            frequentComponents.put(component, estimate);
+        }
+    }
+
+    private Statistic<BigDecimal> priceStatistic(double[] percentiles) {
+
+        if (price.count() == 0) {
+            return Statistic.<BigDecimal>builder().count(0L).build();
+        }
+        Map<Double, BigDecimal> pricePercentiles = null;
+        if (percentiles.length > 0) {
+            pricePercentiles = new LinkedHashMap<>();
+            for (double percentile : percentiles) {
+                pricePercentiles.put(percentile, BigDecimal.valueOf(price.percentile(percentile)));
+            }
+        }
+        return Statistic.<BigDecimal>builder()
+                .count(price.count())
+                .min(BigDecimal.valueOf(price.min()))
+                .max(BigDecimal.valueOf(price.max()))
+                .sum(BigDecimal.valueOf(priceSum))
+                .average(BigDecimal.valueOf(priceSum / price.count()))
+                .percentiles(pricePercentiles)
+                .percentileRankError(price.rankError())
+                .build();
+    }
+
+    private static Statistic<Double> doubleStatistic(KllSketch sketch, double sum, double[] percentiles) {
+
+        if (sketch.count() == 0) {
+            return Statistic.<Double>builder().count(0L).build();
+        }
+        Map<Double, Double> valuePercentiles = null;
+        if (percentiles.length > 0) {
+            valuePercentiles = new LinkedHashMap<>();
+            for (double percentile : percentiles) {
+                valuePercentiles.put(percentile, sketch.percentile(percentile));
+            }
+        }
+        return Statistic.<Double>builder()
+                .count(sketch.count())
+                .min(sketch.min())
+                .max(sketch.max())
+                .sum(sum)
+                .average(sum / sketch.count())
+                .percentiles(valuePercentiles)
+                .percentileRankError(sketch.rankError())
+                .build();
+    }
+}
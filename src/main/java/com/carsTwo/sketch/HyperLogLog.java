@@ -0,0 +1,93 @@
+package com.carsTwo.sketch;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.Estimate;
+
+/**
+ * HyperLogLog count of distinct strings in 2^precision one-byte registers. The first bits of a hash
+ * choose a register, which keeps the longest run of leading zeros seen in the rest of the hash. Small
+ * counts with empty registers left are estimated with linear counting.
+ */
+public final class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision amount of hash bits choosing a register, from 4 to 18
+     */
+    public HyperLogLog(int precision) {
+
+        if (precision < 4 || precision > 18) {
+            throw new CarsServiceException("Precision of distinct count sketch has to be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(String value) {
+
+        long hash = Hashing.hash(value);
+        int index = (int) (hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * @param other sketch with the same precision
+     * @return this sketch, counting strings of both sketches
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+
+        if (other.precision != precision) {
+            throw new CarsServiceException("Only distinct count sketches with the same precision can be merged");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+        return this;
+    }
+
+    public long estimate() {
+
+        int m = registers.length;
+        double sum = 0;
+        int empty = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                empty++;
+            }
+        }
+        double raw = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (raw <= 2.5 * m && empty > 0) {
+            return Math.round(m * Math.log((double) m / empty));
+        }
+        return Math.round(raw);
+    }
+
+    /**
+     * @return standard error of the estimate relative to the true count
+     */
+    public double relativeStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * @return estimate with bounds of two standard errors
+     */
+    public Estimate toEstimate() {
+
+        long estimate = estimate();
+        double error = 2 * relativeStandardError() * estimate;
+        return Estimate
+                .builder()
+                .value(estimate)
+                .lowerBound(Math.max(0, (long) Math.floor(estimate - error)))
+                .upperBound((long) Math.ceil(estimate + error))
+                .confidence(0.95)
+                .build();
+    }
+}
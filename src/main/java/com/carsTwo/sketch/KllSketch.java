@@ -0,0 +1,191 @@
+package com.carsTwo.sketch;
+
+import com.carsTwo.exception.CarsServiceException;
+import org.eclipse.collections.impl.list.mutable.primitive.DoubleArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * KLL quantile sketch of double values. Values are kept in levels, a value on level h stands for 2^h
+ * original values. A level over its capacity is sorted and every second value, starting from a random
+ * offset, moves one level up. Capacities shrink by 2/3 towards the lower levels, so the sketch of any
+ * amount of values holds about 3k of them.
+ * <p>
+ * Sketches with the same k can be merged; the merged sketch has the same error bound as a sketch which
+ * saw all the values.
+ */
+public final class KllSketch {
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MINIMAL_CAPACITY = 2;
+
+    private final int k;
+    private final List<DoubleArrayList> levels = new ArrayList<>();
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long random = 0x9e3779b97f4a7c15L;
+
+    /**
+     * @param k accuracy parameter, the rank error shrinks about linearly with it
+     */
+    public KllSketch(int k) {
+
+        if (k < 8 || k > 65535) {
+            throw new CarsServiceException("Accuracy parameter of quantile sketch has to be between 8 and 65535");
+        }
+        this.k = k;
+        levels.add(new DoubleArrayList());
+    }
+
+    public void update(double value) {
+
+        if (Double.isNaN(value)) {
+            return;
+        }
+        levels.get(0).add(value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        compress();
+    }
+
+    /**
+     * @param other sketch with the same accuracy parameter
+     * @return this sketch, counting values of both sketches
+     */
+    public KllSketch merge(KllSketch other) {
+
+        if (other.k != k) {
+            throw new CarsServiceException("Only quantile sketches with the same accuracy parameter can be merged");
+        }
+        while (levels.size() < other.levels.size()) {
+            levels.add(new DoubleArrayList());
+        }
+        for (int level = 0; level < other.levels.size(); level++) {
+            levels.get(level).addAll(other.levels.get(level));
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    /**
+     * @param percentile percentile from 0 to 100, nearest rank method
+     * @return value which rank differs from the requested one by at most {@link #rankError()}, NaN for an empty sketch
+     */
+    public double percentile(double percentile) {
+
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (percentile <= 0) {
+            return min;
+        }
+        if (percentile >= 100) {
+            return max;
+        }
+
+        int size = 0;
+        for (DoubleArrayList items : levels) {
+            size += items.size();
+        }
+        var values = new double[size];
+        var weights = new long[size];
+        var order = new Integer[size];
+        int position = 0;
+        for (int level = 0; level < levels.size(); level++) {
+            var items = levels.get(level);
+            for (int i = 0; i < items.size(); i++) {
+                values[position] = items.get(i);
+                weights[position] = 1L << level;
+                order[position] = position;
+                position++;
+            }
+        }
+        Arrays.sort(order, (first, second) -> Double.compare(values[first], values[second]));
+
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        long cumulative = 0;
+        for (Integer item : order) {
+            cumulative += weights[item];
+            if (cumulative >= rank) {
+                return values[item];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Empirical bound of the normalized rank error of KLL sketches, met with 99% confidence.
+     * @return maximal difference between the requested and the returned rank divided by the count
+     */
+    public double rankError() {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    private void compress() {
+
+        boolean compacted = true;
+        while (compacted) {
+            compacted = false;
+            for (int level = 0; level < levels.size(); level++) {
+                if (levels.get(level).size() >= capacity(level)) {
+                    compact(level);
+                    compacted = true;
+                }
+            }
+        }
+    }
+
+    private int capacity(int level) {
+
+        int depth = levels.size() - 1 - level;
+        return Math.max(MINIMAL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private void compact(int level) {
+
+        if (level + 1 == levels.size()) {
+            levels.add(new DoubleArrayList());
+        }
+        var items = levels.get(level);
+        var next = levels.get(level + 1);
+        items.sortThis();
+
+        int kept = items.size() % 2;
+        int offset = nextBit();
+        for (int i = kept + offset; i < items.size(); i += 2) {
+            next.add(items.get(i));
+        }
+        var remaining = kept == 1 ? items.get(0) : 0;
+        items.clear();
+        if (kept == 1) {
+            items.add(remaining);
+        }
+    }
+
+    private int nextBit() {
+
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random & 1);
+    }
+}
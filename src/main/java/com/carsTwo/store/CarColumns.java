@@ -0,0 +1,271 @@
+package com.carsTwo.store;
+
+import com.carsTwo.model.Car;
+import com.carsTwo.model.InterningStatistic;
+import com.carsTwo.model.Money;
+import com.carsTwo.model.enums.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Struct-of-arrays view of the fleet. Every car is a row and every attribute used by the queries
+ * lives in its own column, so a scan reads contiguous primitive values instead of chasing
+ * Car -> Engine / CarBody / Wheel references. Enums are kept as ordinals.
+ * <p>
+ * Next to the BigDecimal price every row keeps the price as fixed-point long of minor units at
+ * common {@link #priceScale()}, comparisons on it are exact. A price with more fraction digits than the
+ * scale or out of the long range keeps its units rounded down and clamped, see {@link #isPriceExact(int)};
+ * the price comparisons below fall back to its BigDecimal.
+ * <p>
+ * Removing a car only marks its row as removed, values of the row stay in place so indexes can
+ * still locate it, and row numbers of other cars never change. Scans have to skip removed rows.
+ */
+public interface CarColumns {
+
+    EngineType[] ENGINE_TYPES = EngineType.values();
+    CarBodyType[] BODY_TYPES = CarBodyType.values();
+    CarBodyColor[] BODY_COLORS = CarBodyColor.values();
+    TyreType[] TYRE_TYPES = TyreType.values();
+
+    /**
+     * Appends car as a new row.
+     * @param car car to store, all its parts have to be present
+     * @return row number of stored car or -1 when the car is already stored
+     */
+    int add(Car car);
+
+    /**
+     * Checks that the car can be added without changing anything, so a change can be refused before it
+     * touches the fleet.
+     * @param car car to check
+     * @throws com.carsTwo.exception.CarsServiceException when adding the car would fail
+     */
+    void requireStorable(Car car);
+
+    /**
+     * Marks row as removed, its values stay readable.
+     * @param row row to remove
+     */
+    void remove(int row);
+
+    /**
+     * @return true when columns can't be changed
+     */
+    boolean isReadOnly();
+
+    /**
+     * @return columns with the same rows which can be changed independently of these ones,
+     * read only columns may return themselves
+     */
+    CarColumns copy();
+
+    /**
+     * @return new columns holding only the live rows in their order, so the removed rows are given back,
+     * read only columns may return themselves
+     */
+    CarColumns compact();
+
+    /**
+     * @return how many duplicate parts of stored cars were replaced with shared instances
+     */
+    default InterningStatistic interningStatistic() {
+        return InterningStatistic.builder().build();
+    }
+
+    /**
+     * Drops references to memory kept outside of the heap, the columns can't be read afterwards. The
+     * memory is freed by the garbage collector once no version of the columns refers to it. Columns on
+     * the heap or in a mapped snapshot have nothing to release.
+     */
+    default void close() {
+    }
+
+    /**
+     * @param car stored car, compared by identity
+     * @return row of the car or -1 when it's not stored
+     */
+    int rowOf(Car car);
+
+    /**
+     * @return amount of rows, removed rows included
+     */
+    int size();
+
+    /**
+     * @return amount of rows which are not removed
+     */
+    int liveCount();
+
+    boolean isLive(int row);
+
+    /**
+     * @return rows which are not removed in ascending order
+     */
+    default int[] liveRows() {
+
+        var rows = new int[liveCount()];
+        int position = 0;
+        for (int row = 0; row < size() && position < rows.length; row++) {
+            if (isLive(row)) {
+                rows[position++] = row;
+            }
+        }
+        return rows;
+    }
+
+    Car car(int row);
+
+    String model(int row);
+
+    BigDecimal price(int row);
+
+    /**
+     * @param row row number
+     * @return price in minor units of {@link #priceScale()}, rounded down and clamped to the long range
+     * when the price isn't exact
+     */
+    long priceUnits(int row);
+
+    /**
+     * @param row row number
+     * @return true when {@link #priceUnits(int)} is the price itself and compares exactly to rounded bounds
+     */
+    boolean isPriceExact(int row);
+
+    /**
+     * @return amount of fraction digits of values in the fixed-point price column
+     */
+    int priceScale();
+
+    double mileage(int row);
+
+    double power(int row);
+
+    String wheelModel(int row);
+
+    int wheelSize(int row);
+
+    int componentCount(int row);
+
+    List<String> components(int row);
+
+    /**
+     * @param row row number
+     * @param required components to look for
+     * @return true when the row has every required component
+     */
+    default boolean containsComponents(int row, List<String> required) {
+        return components(row).containsAll(required);
+    }
+
+    int engineTypeOrdinal(int row);
+
+    int bodyTypeOrdinal(int row);
+
+    int bodyColorOrdinal(int row);
+
+    int tyreTypeOrdinal(int row);
+
+    default EngineType engineType(int row) {
+        return ENGINE_TYPES[engineTypeOrdinal(row)];
+    }
+
+    default CarBodyType bodyType(int row) {
+        return BODY_TYPES[bodyTypeOrdinal(row)];
+    }
+
+    default CarBodyColor bodyColor(int row) {
+        return BODY_COLORS[bodyColorOrdinal(row)];
+    }
+
+    default TyreType tyreType(int row) {
+        return TYRE_TYPES[tyreTypeOrdinal(row)];
+    }
+
+    /**
+     * Converts price bound to the fixed-point price column scale rounding down, so for every row
+     * {@code price > bound} is {@code priceUnits > floorPriceUnits(bound)} and
+     * {@code price <= bound} is {@code priceUnits <= floorPriceUnits(bound)}.
+     * @param bound price bound
+     * @return bound in minor units, clamped to the long range
+     */
+    default long floorPriceUnits(BigDecimal bound) {
+        return Money.floorUnits(bound, priceScale());
+    }
+
+    /**
+     * Converts price bound to the fixed-point price column scale rounding up, so for every row with an
+     * exact price {@code price >= bound} is {@code priceUnits >= ceilPriceUnits(bound)}.
+     * @param bound price bound
+     * @return bound in minor units, clamped to the long range
+     */
+    default long ceilPriceUnits(BigDecimal bound) {
+        return Money.ceilUnits(bound, priceScale());
+    }
+
+    /**
+     * @param row row number
+     * @param bound price bound
+     * @param floorBound {@link #floorPriceUnits(BigDecimal)} of the bound
+     * @return true when price of the row is at most the bound
+     */
+    default boolean isPriceAtMost(int row, BigDecimal bound, long floorBound) {
+        return isPriceExact(row) ? priceUnits(row) <= floorBound : price(row).compareTo(bound) <= 0;
+    }
+
+    /**
+     * @param row row number
+     * @param bound price bound
+     * @param ceilBound {@link #ceilPriceUnits(BigDecimal)} of the bound
+     * @return true when price of the row is at least the bound
+     */
+    default boolean isPriceAtLeast(int row, BigDecimal bound, long ceilBound) {
+        return isPriceExact(row) ? priceUnits(row) >= ceilBound : price(row).compareTo(bound) >= 0;
+    }
+
+    /**
+     * Compares units first, units are rounded down so they never contradict the prices, and falls back
+     * to the prices only when units are equal and one of them isn't exact.
+     * @return comparison of prices of given rows
+     */
+    default int comparePrices(int first, int second) {
+
+        int compared = Long.compare(priceUnits(first), priceUnits(second));
+        if (compared != 0 || (isPriceExact(first) && isPriceExact(second))) {
+            return compared;
+        }
+        return price(first).compareTo(price(second));
+    }
+
+    /**
+     * @return price of the row in minor units of {@link #priceScale()} as double, for the moments of prices
+     */
+    default double priceUnitsValue(int row) {
+        return isPriceExact(row) ? priceUnits(row) : price(row).movePointRight(priceScale()).doubleValue();
+    }
+
+    /**
+     * Adds price of the row to a sum of prices at {@link #priceScale()}, exactly also when the price isn't exact.
+     */
+    default void addPrice(Money.Sum sum, int row) {
+
+        if (isPriceExact(row)) {
+            sum.add(priceUnits(row));
+        } else {
+            sum.add(price(row));
+        }
+    }
+
+    /**
+     * Subtracts price of the row from a sum of prices at {@link #priceScale()}.
+     */
+    default void subtractPrice(Money.Sum sum, int row) {
+
+        if (isPriceExact(row)) {
+            sum.subtract(priceUnits(row));
+        } else {
+            sum.subtract(price(row));
+        }
+    }
+}
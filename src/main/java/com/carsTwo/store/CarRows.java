@@ -0,0 +1,105 @@
+package com.carsTwo.store;
+
+import com.carsTwo.model.Car;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Rows of stored cars split into hash segments of about {@value #SEGMENT_ROWS} cars. Copies share the
+ * segments, a segment is cloned by the first change of a version which doesn't own it yet. The amount
+ * of segments doubles as the cars are added, so a change never clones more than one small segment.
+ */
+final class CarRows {
+
+    static final int SEGMENT_ROWS = 1 << 12;
+
+    private ObjectIntHashMap<Car>[] segments;
+    private boolean[] owned;
+    private int size;
+
+    CarRows() {
+        this(segments(1), new boolean[]{true}, 0);
+    }
+
+    private CarRows(ObjectIntHashMap<Car>[] segments, boolean[] owned, int size) {
+        this.segments = segments;
+        this.owned = owned;
+        this.size = size;
+    }
+
+    /**
+     * @return row of the car or -1 when it's not stored
+     */
+    int get(Car car) {
+        return segments[segmentOf(car, segments.length)].getIfAbsent(car, -1);
+    }
+
+    boolean contains(Car car) {
+        return segments[segmentOf(car, segments.length)].containsKey(car);
+    }
+
+    void put(Car car, int row) {
+
+        if (size >= segments.length * SEGMENT_ROWS) {
+            split();
+        }
+        if (writableSegment(car).getIfAbsentPut(car, row) == row) {
+            size++;
+        }
+    }
+
+    void remove(Car car) {
+
+        if (contains(car)) {
+            writableSegment(car).remove(car);
+            size--;
+        }
+    }
+
+    /**
+     * @return rows sharing all segments with these ones until either side changes them
+     */
+    CarRows copy() {
+
+        Arrays.fill(owned, false);
+        return new CarRows(segments.clone(), new boolean[segments.length], size);
+    }
+
+    private ObjectIntHashMap<Car> writableSegment(Car car) {
+
+        int segment = segmentOf(car, segments.length);
+        if (!owned[segment]) {
+            segments[segment] = new ObjectIntHashMap<>(segments[segment]);
+            owned[segment] = true;
+        }
+        return segments[segment];
+    }
+
+    private void split() {
+
+        var split = segments(segments.length * 2);
+        for (var segment : segments) {
+            segment.forEachKeyValue((car, row) -> split[segmentOf(car, split.length)].put(car, row));
+        }
+        segments = split;
+        owned = new boolean[split.length];
+        Arrays.fill(owned, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectIntHashMap<Car>[] segments(int count) {
+
+        var segments = (ObjectIntHashMap<Car>[]) new ObjectIntHashMap<?>[count];
+        for (int segment = 0; segment < count; segment++) {
+            segments[segment] = new ObjectIntHashMap<Car>();
+        }
+        return segments;
+    }
+
+    private static int segmentOf(Car car, int segmentCount) {
+
+        int hash = car.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (segmentCount - 1);
+    }
+}
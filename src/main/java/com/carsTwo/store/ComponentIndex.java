@@ -0,0 +1,172 @@
+package com.carsTwo.store;
+
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Inverted index from car body components to rows. Every distinct component string gets an id in
+ * the dictionary and a compressed posting bitmap of the rows having it, so a query for several
+ * components is an intersection of bitmaps instead of a containsAll check on every car.
+ * <p>
+ * Postings loaded from a snapshot stay immutable views of the mapped file. Copies share the postings,
+ * a posting is cloned by the first change of a version which doesn't own it yet.
+ */
+public class ComponentIndex {
+
+    private static final int UNKNOWN = -1;
+
+    private final ObjectIntHashMap<String> ids = new ObjectIntHashMap<>();
+    private final List<String> components = new ArrayList<>();
+    private final List<ImmutableRoaringBitmap> postings = new ArrayList<>();
+    private final BitSet owned = new BitSet();
+
+    /**
+     * Builds index over all live rows of given columns.
+     * @param columns stored cars
+     * @return index with posting for every component present in the fleet
+     */
+    public static ComponentIndex of(CarColumns columns) {
+
+        var index = new ComponentIndex();
+        for (int row = 0; row < columns.size(); row++) {
+            if (columns.isLive(row)) {
+                index.add(row, columns.components(row));
+            }
+        }
+        index.postings.forEach(posting -> ((MutableRoaringBitmap) posting).runOptimize());
+        return index;
+    }
+
+    /**
+     * Creates index from already built postings.
+     * @param components distinct components, position in the list is the component id
+     * @param postings rows of every component
+     * @return index over given postings
+     */
+    public static ComponentIndex of(List<String> components, List<? extends ImmutableRoaringBitmap> postings) {
+
+        var index = new ComponentIndex();
+        for (int id = 0; id < components.size(); id++) {
+            index.ids.put(components.get(id), id);
+            index.components.add(components.get(id));
+            index.postings.add(postings.get(id));
+        }
+        return index;
+    }
+
+    /**
+     * @return index sharing the postings with this one, which can be changed independently of it
+     */
+    public ComponentIndex copy() {
+
+        owned.clear();
+        var copy = new ComponentIndex();
+        copy.ids.putAll(ids);
+        copy.components.addAll(components);
+        copy.postings.addAll(postings);
+        return copy;
+    }
+
+    public void add(int row, List<String> rowComponents) {
+
+        for (String component : rowComponents) {
+            writablePosting(idOf(component)).add(row);
+        }
+    }
+
+    public void remove(int row, List<String> rowComponents) {
+
+        for (String component : rowComponents) {
+            int id = ids.getIfAbsent(component, UNKNOWN);
+            if (id != UNKNOWN && postings.get(id).contains(row)) {
+                writablePosting(id).remove(row);
+            }
+        }
+    }
+
+    /**
+     * Intersects postings of all required components, starting from the least popular one so the
+     * intermediate result is never bigger than the final candidates of the rarest component.
+     * @param required components every found row has to have, must not be empty
+     * @return rows having all required components
+     */
+    public ImmutableRoaringBitmap findAll(List<String> required) {
+
+        var bitmaps = new ImmutableRoaringBitmap[required.size()];
+        for (int i = 0; i < bitmaps.length; i++) {
+            int id = ids.getIfAbsent(required.get(i), UNKNOWN);
+            if (id == UNKNOWN) {
+                return new MutableRoaringBitmap();
+            }
+            bitmaps[i] = postings.get(id);
+        }
+        Arrays.sort(bitmaps, Comparator.comparingLong(ImmutableRoaringBitmap::getLongCardinality));
+
+        if (bitmaps.length == 1) {
+            return bitmaps[0];
+        }
+        var found = ImmutableRoaringBitmap.and(bitmaps[0], bitmaps[1]);
+        for (int i = 2; i < bitmaps.length && !found.isEmpty(); i++) {
+            found.and(bitmaps[i]);
+        }
+        return found;
+    }
+
+    /**
+     * @param component component name
+     * @return amount of rows having given component
+     */
+    public int count(String component) {
+
+        int id = ids.getIfAbsent(component, UNKNOWN);
+        return id == UNKNOWN ? 0 : postings.get(id).getCardinality();
+    }
+
+    /**
+     * @return distinct components in order of their dictionary ids
+     */
+    public List<String> components() {
+        return new ArrayList<>(components);
+    }
+
+    /**
+     * @param id component id
+     * @return rows having component with given id
+     */
+    public ImmutableRoaringBitmap posting(int id) {
+        return postings.get(id);
+    }
+
+    private int idOf(String component) {
+
+        int id = ids.getIfAbsent(component, UNKNOWN);
+        if (id == UNKNOWN) {
+            id = components.size();
+            ids.put(component, id);
+            components.add(component);
+            postings.add(new MutableRoaringBitmap());
+            owned.set(id);
+        }
+        return id;
+    }
+
+    /**
+     * @return posting which can be changed, cloned first when it's shared with another version or mapped
+     */
+    private MutableRoaringBitmap writablePosting(int id) {
+
+        if (!owned.get(id)) {
+            var posting = postings.get(id);
+            postings.set(id, posting instanceof MutableRoaringBitmap ? ((MutableRoaringBitmap) posting).clone() : posting.toMutableRoaringBitmap());
+            owned.set(id);
+        }
+        return (MutableRoaringBitmap) postings.get(id);
+    }
+}
@@ -0,0 +1,210 @@
+package com.carsTwo.store;
+
+import com.carsTwo.exception.CarsServiceException;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Fleet shared by concurrent readers and writers. Readers take the currently published fleet with a
+ * single volatile read and query it without locks; a published fleet is never changed again, so every
+ * query sees one consistent version.
+ * <p>
+ * Writers never change the published fleet. Changes are queued and the writer holding the write lock
+ * applies every queued change to one copy of the fleet, then publishes it. While a copy is being
+ * prepared further changes pile up in the queue and are published together in the next copy. A copy
+ * shares unchanged segments of the columns and indexes with the published fleet, so it costs the
+ * segments the batch touches, not the size of the fleet.
+ * <p>
+ * Changes check their cars before they change the copy, so a failing change is simply left out. Only a
+ * change which fails after it already changed the copy makes the batch start again on a fresh copy. A
+ * batch which changed nothing, like adding a car which is already stored, publishes no version.
+ * <p>
+ * Listeners are told about every published version before the write lock is released, so they see
+ * versions one by one and in order.
+ */
+public class ConcurrentFleet {
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<PendingChange<?>> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final CopyOnWriteArrayList<FleetListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Fleet published;
+
+    public ConcurrentFleet(Fleet fleet) {
+
+        if (Objects.isNull(fleet)) {
+            throw new CarsServiceException("Fleet is null");
+        }
+        this.published = fleet;
+    }
+
+    /**
+     * @return currently published fleet, it's never changed
+     */
+    public Fleet current() {
+        return published;
+    }
+
+    /**
+     * Registers a listener created for the currently published fleet, no version can be published
+     * between creating the listener and registering it.
+     * @param listenerOf creates listener from the currently published fleet
+     * @return registered listener
+     */
+    public <L extends FleetListener> L register(Function<Fleet, L> listenerOf) {
+
+        writeLock.lock();
+        try {
+            var listener = listenerOf.apply(published);
+            listeners.add(listener);
+            return listener;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops memory of the published columns, see {@link CarColumns#close()}. No version is published
+     * meanwhile, changes applied afterwards fail.
+     */
+    public void close() {
+
+        writeLock.lock();
+        try {
+            published.columns().close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies change to a new version of the fleet and waits until the version is published. A change
+     * which throws is left out of the version, other changes of its batch are still published.
+     * @param change change of the fleet, may be run more than once on fresh copies, so it can't have other side effects
+     * @return result of the change
+     */
+    public <T> T apply(Function<Fleet, T> change) {
+
+        if (published.columns().isReadOnly()) {
+            throw new CarsServiceException("Fleet is read only");
+        }
+
+        var pending = new PendingChange<>(change);
+        pendingChanges.add(pending);
+
+        writeLock.lock();
+        try {
+            if (!pending.result.isDone()) {
+                publishPendingChanges();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void publishPendingChanges() {
+
+        var batch = new ArrayList<PendingChange<?>>();
+        for (PendingChange<?> pending = pendingChanges.poll(); pending != null; pending = pendingChanges.poll()) {
+            batch.add(pending);
+        }
+
+        Fleet next = null;
+        try {
+            while (next == null) {
+                next = published.copy();
+                for (PendingChange<?> pending : batch) {
+                    if (!pending.tryApply(next)) {
+                        next = null;
+                        break;
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+            throw e;
+        }
+
+        if (next.changeCount() == 0) {
+            batch.forEach(PendingChange::complete);
+            return;
+        }
+
+        published = next;
+        batch.forEach(PendingChange::complete);
+        notifyListeners(next);
+    }
+
+    /**
+     * A listener which throws is dropped, the published version stays.
+     */
+    private void notifyListeners(Fleet fleet) {
+
+        for (FleetListener listener : listeners) {
+            boolean following;
+            try {
+                following = listener.published(fleet);
+            } catch (RuntimeException e) {
+                following = false;
+            }
+            if (!following) {
+                listeners.remove(listener);
+            }
+        }
+    }
+
+
+    private static final class PendingChange<T> {
+
+        private final Function<Fleet, T> change;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private RuntimeException failure;
+
+        PendingChange(Function<Fleet, T> change) {
+            this.change = change;
+        }
+
+        /**
+         * @return false when the change failed for the first time after it changed the copy, which is then partly changed
+         */
+        boolean tryApply(Fleet fleet) {
+
+            if (Objects.nonNull(failure)) {
+                return true;
+            }
+            long changes = fleet.changeCount();
+            try {
+                value = change.apply(fleet);
+                return true;
+            } catch (RuntimeException e) {
+                failure = e;
+                return fleet.changeCount() == changes;
+            }
+        }
+
+        void complete() {
+
+            if (Objects.nonNull(failure)) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+}
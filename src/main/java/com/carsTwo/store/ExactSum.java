@@ -0,0 +1,93 @@
+package com.carsTwo.store;
+
+import com.carsTwo.model.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Exact sum of doubles, so removing a value restores the sum exactly whatever the order of changes was.
+ * Whole values, the usual mileage and engine power, are summed as long units; only values with a
+ * fraction are summed as BigDecimal. Infinities and NaN are counted apart.
+ */
+final class ExactSum {
+
+    private static final double WHOLE_LIMIT = 0x1p62;
+
+    private final Money.Sum whole = new Money.Sum();
+    private BigDecimal fraction = BigDecimal.ZERO;
+    private long positiveInfinities;
+    private long negativeInfinities;
+    private long nans;
+
+    void add(double value) {
+        change(value, 1);
+    }
+
+    void subtract(double value) {
+        change(value, -1);
+    }
+
+    void merge(ExactSum other) {
+
+        whole.merge(other.whole);
+        fraction = fraction.add(other.fraction);
+        positiveInfinities += other.positiveInfinities;
+        negativeInfinities += other.negativeInfinities;
+        nans += other.nans;
+    }
+
+    void copyFrom(ExactSum other) {
+
+        whole.copyFrom(other.whole);
+        fraction = other.fraction;
+        positiveInfinities = other.positiveInfinities;
+        negativeInfinities = other.negativeInfinities;
+        nans = other.nans;
+    }
+
+    void clear() {
+
+        whole.clear();
+        fraction = BigDecimal.ZERO;
+        positiveInfinities = 0;
+        negativeInfinities = 0;
+        nans = 0;
+    }
+
+    /**
+     * @return the sum rounded to the nearest double once
+     */
+    double doubleValue() {
+
+        if (nans > 0 || (positiveInfinities > 0 && negativeInfinities > 0)) {
+            return Double.NaN;
+        }
+        if (positiveInfinities > 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (negativeInfinities > 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return whole.toBigDecimal(0).add(fraction).doubleValue();
+    }
+
+    private void change(double value, int sign) {
+
+        if (Double.isNaN(value)) {
+            nans += sign;
+        } else if (value == Double.POSITIVE_INFINITY) {
+            positiveInfinities += sign;
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            negativeInfinities += sign;
+        } else if (value == Math.rint(value) && Math.abs(value) < WHOLE_LIMIT) {
+            if (sign > 0) {
+                whole.add((long) value);
+            } else {
+                whole.subtract((long) value);
+            }
+        } else {
+            var exact = new BigDecimal(value);
+            fraction = sign > 0 ? fraction.add(exact) : fraction.subtract(exact);
+        }
+    }
+}
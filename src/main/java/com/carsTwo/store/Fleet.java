@@ -0,0 +1,378 @@
+package com.carsTwo.store;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.Car;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Columns of the fleet together with every index built over them. Adding or removing a car goes
+ * through the fleet, which keeps the columns, indexes and running statistics consistent. Running
+ * statistics, the mileage index and the group cube are counted on first use, so opening a big fleet
+ * doesn't pay for them upfront.
+ * <p>
+ * A fleet is changed only before it's shared with readers. Copies made for the next change carry a
+ * higher version, see {@link ConcurrentFleet}. Rows added and removed since the fleet was copied are
+ * remembered, so listeners of published versions can follow the changes, see {@link #delta()}.
+ * <p>
+ * Removed rows stay in the columns as tombstones. Once they are more than half of the rows, the next
+ * copy is compacted instead: it holds only the live rows, in their order, under new row numbers, and
+ * its delta tells how the rows were renumbered. Every compaction raises the {@link #generation()}.
+ */
+public class Fleet {
+
+    static final int COMPACTION_MIN_REMOVED = 1 << 12;
+
+    private final CarColumns columns;
+    private final ComponentIndex componentIndex;
+    private final PartitionIndex<EngineType> engineTypeIndex;
+    private final PartitionIndex<CarBodyType> bodyTypePriceIndex;
+    private final SortOrderIndex sortOrderIndex;
+    private final long version;
+    private final long generation;
+    private int[] compactedRows;
+    private volatile RunningStatistics statistics;
+    private volatile MileageIndex mileageIndex;
+    private volatile GroupCube groupCube;
+    private final IntArrayList addedRows = new IntArrayList();
+    private final IntArrayList removedRows = new IntArrayList();
+    private final IntIntHashMap replacedRows = new IntIntHashMap();
+    private long changeCount;
+
+    Fleet(CarColumns columns, ComponentIndex componentIndex,
+          PartitionIndex<EngineType> engineTypeIndex, PartitionIndex<CarBodyType> bodyTypePriceIndex) {
+        this(columns, componentIndex, engineTypeIndex, bodyTypePriceIndex, 0, 0);
+    }
+
+    private Fleet(CarColumns columns, ComponentIndex componentIndex, PartitionIndex<EngineType> engineTypeIndex,
+                  PartitionIndex<CarBodyType> bodyTypePriceIndex, long version, long generation) {
+        this.version = version;
+        this.generation = generation;
+        this.columns = columns;
+        this.componentIndex = componentIndex;
+        this.engineTypeIndex = engineTypeIndex;
+        this.bodyTypePriceIndex = bodyTypePriceIndex;
+        this.sortOrderIndex = new SortOrderIndex(columns);
+    }
+
+    public static Fleet of(Collection<Car> cars) {
+        return of(HeapCarColumns.of(cars));
+    }
+
+    /**
+     * Builds every index over live rows of given columns.
+     * @param columns stored cars
+     * @return fleet over given columns
+     */
+    public static Fleet of(CarColumns columns) {
+
+        return new Fleet(columns, ComponentIndex.of(columns),
+                engineTypeIndex(columns).build(columns.size(), columns::isLive),
+                bodyTypePriceIndex(columns).build(columns.size(), columns::isLive));
+    }
+
+    static PartitionIndex<EngineType> engineTypeIndex(CarColumns columns) {
+        return new PartitionIndex<>(EngineType.class, columns::engineType,
+                (first, second) -> columns.model(first).compareTo(columns.model(second)));
+    }
+
+    static PartitionIndex<CarBodyType> bodyTypePriceIndex(CarColumns columns) {
+        return new PartitionIndex<>(CarBodyType.class, columns::bodyType, columns::comparePrices);
+    }
+
+    /**
+     * Copies columns and indexes, so the copy can be changed while this fleet is still read. The copy
+     * shares chunks of the columns and blocks of the indexes with this fleet until it changes them, so
+     * copying doesn't depend on the amount of cars. Running statistics, the mileage index and the group
+     * cube are copied only when they were already counted. A fleet mostly made of removed rows is
+     * compacted instead, see {@link #compact()}.
+     * @return copy with version higher by one
+     */
+    public Fleet copy() {
+
+        requireWritable();
+
+        int removed = columns.size() - columns.liveCount();
+        if (removed >= COMPACTION_MIN_REMOVED && removed > columns.liveCount()) {
+            return compact();
+        }
+
+        var copiedColumns = columns.copy();
+        var copy = new Fleet(copiedColumns, componentIndex.copy(), engineTypeIndex(copiedColumns).share(engineTypeIndex),
+                bodyTypePriceIndex(copiedColumns).share(bodyTypePriceIndex), version + 1, generation);
+        var counted = statistics;
+        if (Objects.nonNull(counted)) {
+            copy.statistics = counted.copy(copiedColumns);
+        }
+        var built = mileageIndex;
+        if (Objects.nonNull(built)) {
+            copy.mileageIndex = built.copy(copiedColumns);
+        }
+        var cube = groupCube;
+        if (Objects.nonNull(cube)) {
+            copy.groupCube = cube.copy(copiedColumns);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies only the live rows into new columns and builds the indexes over them again, so memory of the
+     * removed rows is given back. Live rows keep their order under new row numbers. Running statistics,
+     * the mileage index and the group cube are counted again on first use.
+     * @return compacted copy with version and generation higher by one
+     */
+    public Fleet compact() {
+
+        requireWritable();
+
+        var liveRows = columns.liveRows();
+        var compactedColumns = columns.compact();
+        var compacted = new Fleet(compactedColumns, ComponentIndex.of(compactedColumns),
+                engineTypeIndex(compactedColumns).build(compactedColumns.size(), compactedColumns::isLive),
+                bodyTypePriceIndex(compactedColumns).build(compactedColumns.size(), compactedColumns::isLive),
+                version + 1, generation + 1);
+        compacted.compactedRows = new int[columns.size()];
+        Arrays.fill(compacted.compactedRows, -1);
+        for (int row = 0; row < liveRows.length; row++) {
+            compacted.compactedRows[liveRows[row]] = row;
+        }
+        return compacted;
+    }
+
+    /**
+     * @return number of changes published before this fleet, 0 for a fleet which was never copied
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return number of compactions before this fleet, row numbers of fleets with different generations
+     * don't point to the same cars
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * @return amount of rows added and removed since the fleet was created or copied
+     */
+    long changeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Checks that the car can be added, without changing the fleet.
+     * @param car car to check
+     */
+    public void requireStorable(Car car) {
+
+        requireWritable();
+        columns.requireStorable(car);
+    }
+
+    /**
+     * @param car car to add
+     * @return false when the car is already in the fleet
+     */
+    public boolean add(Car car) {
+
+        requireWritable();
+
+        int row = columns.add(car);
+        if (row < 0) {
+            return false;
+        }
+
+        componentIndex.add(row, columns.components(row));
+        engineTypeIndex.add(row);
+        bodyTypePriceIndex.add(row);
+        if (Objects.nonNull(statistics)) {
+            statistics.add(row);
+        }
+        if (Objects.nonNull(mileageIndex)) {
+            mileageIndex.add(row);
+        }
+        if (Objects.nonNull(groupCube)) {
+            groupCube.add(row);
+        }
+        sortOrderIndex.invalidate();
+        addedRows.add(row);
+        changeCount++;
+        return true;
+    }
+
+    /**
+     * Removes a car and adds its updated version, the change is remembered as a replacement. An updated
+     * version which is already another car of the fleet is refused, the car then stays in place.
+     * @param car car to replace, compared by identity
+     * @param updatedCar car which takes its place
+     * @return false when the car is not in the fleet or its updated version already is
+     */
+    public boolean replace(Car car, Car updatedCar) {
+
+        if (Objects.isNull(car)) {
+            throw new CarsServiceException("Car is null");
+        }
+        if (Objects.isNull(updatedCar)) {
+            throw new CarsServiceException("Updated car is null");
+        }
+        requireStorable(updatedCar);
+        int row = columns.rowOf(car);
+        int updatedRow = columns.rowOf(updatedCar);
+        if (row < 0 || (updatedRow >= 0 && updatedRow != row)) {
+            return false;
+        }
+        remove(car);
+        add(updatedCar);
+        replacedRows.put(columns.rowOf(updatedCar), row);
+        return true;
+    }
+
+    /**
+     * @param car car to remove, compared by identity
+     * @return false when the car is not in the fleet
+     */
+    public boolean remove(Car car) {
+
+        if (Objects.isNull(car)) {
+            throw new CarsServiceException("Car is null");
+        }
+        requireWritable();
+
+        int row = columns.rowOf(car);
+        if (row < 0) {
+            return false;
+        }
+
+        componentIndex.remove(row, columns.components(row));
+        engineTypeIndex.remove(row);
+        bodyTypePriceIndex.remove(row);
+        if (Objects.nonNull(statistics)) {
+            statistics.remove(row);
+        }
+        if (Objects.nonNull(mileageIndex)) {
+            mileageIndex.remove(row);
+        }
+        if (Objects.nonNull(groupCube)) {
+            groupCube.remove(row);
+        }
+        columns.remove(row);
+        sortOrderIndex.invalidate();
+        removedRows.add(row);
+        changeCount++;
+        return true;
+    }
+
+    /**
+     * Rows added and removed since this fleet was copied from the previous version. A row added and
+     * removed again in between is left out, removed rows keep their values, so they can still be read.
+     * Rows of a compacted fleet are numbered after the compaction.
+     * @return changes since the previous version, empty for a fleet which was never copied
+     */
+    public FleetDelta delta() {
+
+        var addedSet = IntHashSet.newSet(addedRows);
+        var removedSet = IntHashSet.newSet(removedRows);
+        var added = addedRows.reject(removedSet::contains);
+        var removed = removedRows.reject(addedSet::contains);
+        var replaced = new IntIntHashMap();
+        replacedRows.forEachKeyValue((addedRow, removedRow) -> {
+            if (!removedSet.contains(addedRow) && !addedSet.contains(removedRow)) {
+                replaced.put(addedRow, removedRow);
+            }
+        });
+        return new FleetDelta(added.toArray(), removed.toArray(), replaced, compactedRows);
+    }
+
+    public CarColumns columns() {
+        return columns;
+    }
+
+    public ComponentIndex componentIndex() {
+        return componentIndex;
+    }
+
+    /**
+     * @return rows partitioned by engine type, every partition ordered by model
+     */
+    public PartitionIndex<EngineType> engineTypeIndex() {
+        return engineTypeIndex;
+    }
+
+    /**
+     * @return rows partitioned by body type, every partition ordered by fixed-point price
+     */
+    public PartitionIndex<CarBodyType> bodyTypePriceIndex() {
+        return bodyTypePriceIndex;
+    }
+
+    public RunningStatistics statistics() {
+
+        var counted = statistics;
+        if (Objects.isNull(counted)) {
+            synchronized (this) {
+                counted = statistics;
+                if (Objects.isNull(counted)) {
+                    counted = new RunningStatistics(columns).build();
+                    statistics = counted;
+                }
+            }
+        }
+        return counted;
+    }
+
+    /**
+     * @return live rows ordered by mileage
+     */
+    public MileageIndex mileageIndex() {
+
+        var built = mileageIndex;
+        if (Objects.isNull(built)) {
+            synchronized (this) {
+                built = mileageIndex;
+                if (Objects.isNull(built)) {
+                    built = new MileageIndex(columns).build();
+                    mileageIndex = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    /**
+     * @return count and aggregates of every combination of grouping dimensions
+     */
+    public GroupCube groupCube() {
+
+        var built = groupCube;
+        if (Objects.isNull(built)) {
+            synchronized (this) {
+                built = groupCube;
+                if (Objects.isNull(built)) {
+                    built = new GroupCube(columns).build();
+                    groupCube = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    public SortOrderIndex sortOrderIndex() {
+        return sortOrderIndex;
+    }
+
+    private void requireWritable() {
+
+        if (columns.isReadOnly()) {
+            throw new CarsServiceException("Fleet is read only");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.carsTwo.store;
+
+import org.eclipse.collections.api.map.primitive.IntIntMap;
+
+import java.util.Objects;
+
+/**
+ * Rows added and removed by one published version of the fleet. Removed rows keep their values in the
+ * columns of the new version, a row added as an updated version of a removed car knows the row it replaced.
+ * A compacted version renumbers the rows of the previous one first, added and removed rows are numbered
+ * after the compaction.
+ */
+public final class FleetDelta {
+
+    private final int[] addedRows;
+    private final int[] removedRows;
+    private final IntIntMap replacedRows;
+    private final int[] compactedRows;
+
+    FleetDelta(int[] addedRows, int[] removedRows, IntIntMap replacedRows, int[] compactedRows) {
+        this.addedRows = addedRows;
+        this.removedRows = removedRows;
+        this.replacedRows = replacedRows;
+        this.compactedRows = compactedRows;
+    }
+
+    /**
+     * @return rows added by the version in the order they were added
+     */
+    public int[] addedRows() {
+        return addedRows;
+    }
+
+    /**
+     * @return rows removed by the version in the order they were removed
+     */
+    public int[] removedRows() {
+        return removedRows;
+    }
+
+    /**
+     * @param addedRow row added by the version
+     * @return removed row of the car the added row is an updated version of, -1 when it's a new car
+     */
+    public int replacedRow(int addedRow) {
+        return replacedRows.getIfAbsent(addedRow, -1);
+    }
+
+    /**
+     * @return true when the version was compacted, so rows of the previous version have new numbers
+     */
+    public boolean isCompacted() {
+        return Objects.nonNull(compactedRows);
+    }
+
+    /**
+     * @param previousRow row of the previous version
+     * @return number of the row after compaction, -1 when the row was removed; the row itself when the version wasn't compacted
+     */
+    public int compactedRow(int previousRow) {
+
+        if (Objects.isNull(compactedRows)) {
+            return previousRow;
+        }
+        return previousRow < compactedRows.length ? compactedRows[previousRow] : -1;
+    }
+
+    public boolean isEmpty() {
+        return addedRows.length == 0 && removedRows.length == 0 && !isCompacted();
+    }
+}
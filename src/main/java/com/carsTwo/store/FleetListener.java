@@ -0,0 +1,17 @@
+package com.carsTwo.store;
+
+/**
+ * Follows versions published by {@link ConcurrentFleet}.
+ */
+@FunctionalInterface
+public interface FleetListener {
+
+    /**
+     * Called for every published version in order of versions, by the writer which published it. The
+     * next version isn't published before the call returns, so listeners should only do work
+     * proportional to the {@link Fleet#delta() changes} of the version.
+     * @param fleet published version
+     * @return false when the listener stops following the fleet
+     */
+    boolean published(Fleet fleet);
+}
@@ -0,0 +1,605 @@
+package com.carsTwo.store;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned binary snapshot of a fleet and its indexes.
+ * <p>
+ * The file starts with a header (magic, format version, row count, price scale, section count and
+ * checksum of the section table) followed by the section table, every entry holding id, CRC32C,
+ * offset and length of one section. Sections hold fixed-width little endian columns, dictionaries of
+ * model, wheel model and component strings, names of enum constants (so stored ordinals survive
+ * reordering of an enum), exact prices of the rows whose price units aren't exact, components of every row, serialized component postings and the engine type
+ * and body type partitions in index order. Only live rows are written, renumbered from 0.
+ * <p>
+ * Opening maps every section read only and queries read the mapped columns directly, without
+ * creating any Car. Component postings are used straight from the mapped file, partitions are copied
+ * from it in their stored order, nothing is sorted on startup.
+ */
+public final class FleetSnapshot {
+
+    static final int ENGINE_TYPE = 0;
+    static final int BODY_TYPE = 1;
+    static final int BODY_COLOR = 2;
+    static final int TYRE_TYPE = 3;
+    static final byte INEXACT_PRICE = Byte.MIN_VALUE;
+
+    private static final long MAGIC = 0x3154_4c46_5352_4143L;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int SECTION_ENTRY_SIZE = 24;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NO_DICTIONARY_ID = -1;
+
+    private static final List<Enum<?>[]> ENUMS = List.of(
+            CarColumns.ENGINE_TYPES, CarColumns.BODY_TYPES, CarColumns.BODY_COLORS, CarColumns.TYRE_TYPES);
+
+    private enum Section {
+        ENUM_NAMES, MODEL_DICTIONARY, MODEL_IDS, PRICE_UNITS, PRICE_SCALES, INEXACT_PRICES, MILEAGES, POWERS,
+        WHEEL_MODEL_DICTIONARY, WHEEL_MODEL_IDS, WHEEL_SIZES, ENGINE_TYPES, BODY_TYPES, BODY_COLORS, TYRE_TYPES,
+        COMPONENT_DICTIONARY, COMPONENT_OFFSETS, COMPONENT_IDS, COMPONENT_POSTINGS,
+        ENGINE_TYPE_PARTITIONS, BODY_TYPE_PRICE_PARTITIONS
+    }
+
+    private FleetSnapshot() {
+    }
+
+    /**
+     * Writes snapshot of live rows of the fleet. The file is written next to the target and moved
+     * in place when complete, so a reader never sees a partial snapshot.
+     * @param fleet fleet to write
+     * @param path target file
+     */
+    public static void write(Fleet fleet, Path path) {
+
+        if (Objects.isNull(fleet) || Objects.isNull(path)) {
+            throw new CarsServiceException("Fleet and snapshot path can't be null");
+        }
+
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            new Writer(fleet, channel).write();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new CarsServiceException("Can't write snapshot " + path + ": " + e.getMessage());
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CarsServiceException("Can't move snapshot to " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens snapshot verifying checksums of all sections.
+     * @param path snapshot file
+     * @return read only fleet backed by the mapped file
+     */
+    public static Fleet open(Path path) {
+        return open(path, true);
+    }
+
+    /**
+     * Opens snapshot.
+     * @param path snapshot file
+     * @param verifySections decide if checksums of sections should be verified, which reads the whole file.
+     *                       Header and section table are always verified.
+     * @return read only fleet backed by the mapped file
+     */
+    public static Fleet open(Path path, boolean verifySections) {
+
+        if (Objects.isNull(path)) {
+            throw new CarsServiceException("Snapshot path can't be null");
+        }
+
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Reader(channel, verifySections).read();
+        } catch (IOException e) {
+            throw new CarsServiceException("Can't open snapshot " + path + ": " + e.getMessage());
+        }
+    }
+
+
+    private static final class Writer {
+
+        private final Fleet fleet;
+        private final CarColumns columns;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private final long[][] entries = new long[Section.values().length][];
+        private final int[] rows;
+        private final int[] newRows;
+        private long position;
+
+        Writer(Fleet fleet, FileChannel channel) {
+            this.fleet = fleet;
+            this.columns = fleet.columns();
+            this.channel = channel;
+            this.rows = columns.liveRows();
+            this.newRows = new int[columns.size()];
+            for (int i = 0; i < rows.length; i++) {
+                newRows[rows[i]] = i;
+            }
+        }
+
+        void write() throws IOException {
+
+            position = HEADER_SIZE + (long) SECTION_ENTRY_SIZE * entries.length;
+
+            section(Section.ENUM_NAMES, () -> {
+                for (Enum<?>[] constants : ENUMS) {
+                    var names = new ArrayList<String>();
+                    for (Enum<?> constant : constants) {
+                        names.add(constant.name());
+                    }
+                    putStrings(names);
+                }
+            });
+
+            var models = new Dictionary();
+            var wheelModels = new Dictionary();
+            var components = new Dictionary();
+            var modelIds = new int[rows.length];
+            var wheelModelIds = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                modelIds[i] = models.idOf(columns.model(rows[i]));
+                var wheelModel = columns.wheelModel(rows[i]);
+                wheelModelIds[i] = wheelModel == null ? NO_DICTIONARY_ID : wheelModels.idOf(wheelModel);
+            }
+
+            section(Section.MODEL_DICTIONARY, () -> putStrings(models.values));
+            section(Section.MODEL_IDS, () -> putInts(modelIds));
+            section(Section.PRICE_UNITS, () -> {
+                for (int row : rows) {
+                    putLong(columns.priceUnits(row));
+                }
+            });
+            var inexactRows = new ArrayList<Integer>();
+            section(Section.PRICE_SCALES, () -> {
+                for (int i = 0; i < rows.length; i++) {
+                    int scale = columns.price(rows[i]).scale();
+                    if (columns.isPriceExact(rows[i]) && scale != INEXACT_PRICE && scale == (byte) scale) {
+                        putByte(scale);
+                    } else {
+                        putByte(INEXACT_PRICE);
+                        inexactRows.add(i);
+                    }
+                }
+            });
+            section(Section.INEXACT_PRICES, () -> {
+                putInt(inexactRows.size());
+                for (int row : inexactRows) {
+                    var price = columns.price(rows[row]);
+                    var unscaled = price.unscaledValue().toByteArray();
+                    putInt(row);
+                    putInt(price.scale());
+                    putInt(unscaled.length);
+                    putBytes(unscaled);
+                }
+            });
+            section(Section.MILEAGES, () -> {
+                for (int row : rows) {
+                    putDouble(columns.mileage(row));
+                }
+            });
+            section(Section.POWERS, () -> {
+                for (int row : rows) {
+                    putDouble(columns.power(row));
+                }
+            });
+            section(Section.WHEEL_MODEL_DICTIONARY, () -> putStrings(wheelModels.values));
+            section(Section.WHEEL_MODEL_IDS, () -> putInts(wheelModelIds));
+            section(Section.WHEEL_SIZES, () -> {
+                for (int row : rows) {
+                    putInt(columns.wheelSize(row));
+                }
+            });
+            section(Section.ENGINE_TYPES, () -> {
+                for (int row : rows) {
+                    putByte(columns.engineTypeOrdinal(row));
+                }
+            });
+            section(Section.BODY_TYPES, () -> {
+                for (int row : rows) {
+                    putByte(columns.bodyTypeOrdinal(row));
+                }
+            });
+            section(Section.BODY_COLORS, () -> {
+                for (int row : rows) {
+                    putByte(columns.bodyColorOrdinal(row));
+                }
+            });
+            section(Section.TYRE_TYPES, () -> {
+                for (int row : rows) {
+                    putByte(columns.tyreTypeOrdinal(row));
+                }
+            });
+
+            var postings = new ArrayList<MutableRoaringBitmap>();
+            section(Section.COMPONENT_OFFSETS, () -> {
+                int offset = 0;
+                putInt(offset);
+                for (int row : rows) {
+                    offset += columns.componentCount(row);
+                    putInt(offset);
+                }
+            });
+            section(Section.COMPONENT_IDS, () -> {
+                for (int i = 0; i < rows.length; i++) {
+                    for (String component : columns.components(rows[i])) {
+                        int id = components.idOf(component);
+                        if (id == postings.size()) {
+                            postings.add(new MutableRoaringBitmap());
+                        }
+                        postings.get(id).add(i);
+                        putInt(id);
+                    }
+                }
+            });
+            section(Section.COMPONENT_DICTIONARY, () -> putStrings(components.values));
+            section(Section.COMPONENT_POSTINGS, () -> {
+                putInt(postings.size());
+                for (MutableRoaringBitmap posting : postings) {
+                    posting.runOptimize();
+                    var serialized = ByteBuffer.allocate(posting.serializedSizeInBytes());
+                    posting.serialize(serialized);
+                    putInt(serialized.capacity());
+                    putBytes(serialized.array());
+                }
+            });
+
+            section(Section.ENGINE_TYPE_PARTITIONS, () -> {
+                for (EngineType engineType : CarColumns.ENGINE_TYPES) {
+                    putPartition(fleet.engineTypeIndex().rows(engineType, 0, fleet.engineTypeIndex().size(engineType)));
+                }
+            });
+            section(Section.BODY_TYPE_PRICE_PARTITIONS, () -> {
+                for (CarBodyType bodyType : CarColumns.BODY_TYPES) {
+                    putPartition(fleet.bodyTypePriceIndex().rows(bodyType, 0, fleet.bodyTypePriceIndex().size(bodyType)));
+                }
+            });
+
+            writeHeader();
+        }
+
+        private void writeHeader() throws IOException {
+
+            var table = ByteBuffer.allocate(SECTION_ENTRY_SIZE * entries.length).order(ByteOrder.LITTLE_ENDIAN);
+            for (int id = 0; id < entries.length; id++) {
+                table.putInt(id).putInt((int) entries[id][2]).putLong(entries[id][0]).putLong(entries[id][1]);
+            }
+            table.flip();
+            var tableCrc = new CRC32C();
+            tableCrc.update(table.duplicate());
+
+            var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .putLong(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(rows.length)
+                    .putInt(columns.priceScale())
+                    .putInt(entries.length)
+                    .putInt((int) tableCrc.getValue())
+                    .putInt(0)
+                    .flip();
+
+            long at = 0;
+            while (header.hasRemaining()) {
+                at += channel.write(header, at);
+            }
+            while (table.hasRemaining()) {
+                at += channel.write(table, at);
+            }
+        }
+
+        private void section(Section section, SectionContent content) throws IOException {
+
+            while (position % Long.BYTES != 0) {
+                channel.write(ByteBuffer.allocate(1), position++);
+            }
+            long offset = position;
+            crc.reset();
+            content.write();
+            flush();
+            entries[section.ordinal()] = new long[]{offset, position - offset, crc.getValue()};
+        }
+
+        private void putPartition(int[] partition) throws IOException {
+
+            putInt(partition.length);
+            for (int row : partition) {
+                putInt(newRows[row]);
+            }
+        }
+
+        private void putStrings(List<String> strings) throws IOException {
+
+            putInt(strings.size());
+            for (String string : strings) {
+                var bytes = string.getBytes(StandardCharsets.UTF_8);
+                putInt(bytes.length);
+                putBytes(bytes);
+            }
+        }
+
+        private void putInts(int[] values) throws IOException {
+            for (int value : values) {
+                putInt(value);
+            }
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+
+            int written = 0;
+            while (written < bytes.length) {
+                ensureRemaining(1);
+                int length = Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, length);
+                written += length;
+            }
+        }
+
+        private void putByte(int value) throws IOException {
+            ensureRemaining(Byte.BYTES);
+            buffer.put((byte) value);
+        }
+
+        private void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        private void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        private void putDouble(double value) throws IOException {
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        private void ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+
+
+    private static final class Reader {
+
+        private final FileChannel channel;
+        private final boolean verifySections;
+        private final ByteBuffer[] sections = new ByteBuffer[Section.values().length];
+
+        Reader(FileChannel channel, boolean verifySections) {
+            this.channel = channel;
+            this.verifySections = verifySections;
+        }
+
+        Fleet read() throws IOException {
+
+            var header = readFully(0, HEADER_SIZE);
+            if (header.getLong() != MAGIC) {
+                throw new CarsServiceException("File is not a fleet snapshot");
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new CarsServiceException("Unsupported snapshot version " + version);
+            }
+            int rowCount = header.getInt();
+            int priceScale = header.getInt();
+            int sectionCount = header.getInt();
+            int tableCrc = header.getInt();
+            if (sectionCount != sections.length) {
+                throw new CarsServiceException("Snapshot has " + sectionCount + " sections, expected " + sections.length);
+            }
+
+            var table = readFully(HEADER_SIZE, SECTION_ENTRY_SIZE * sectionCount);
+            var crc = new CRC32C();
+            crc.update(table.duplicate());
+            if ((int) crc.getValue() != tableCrc) {
+                throw new CarsServiceException("Snapshot section table is corrupted");
+            }
+            for (int i = 0; i < sectionCount; i++) {
+                int id = table.getInt();
+                int sectionCrc = table.getInt();
+                long offset = table.getLong();
+                long length = table.getLong();
+                if (id != i || length > Integer.MAX_VALUE || offset + length > channel.size()) {
+                    throw new CarsServiceException("Snapshot section " + i + " is invalid");
+                }
+                var section = channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+                if (verifySections) {
+                    crc.reset();
+                    crc.update(section.duplicate());
+                    if ((int) crc.getValue() != sectionCrc) {
+                        throw new CarsServiceException("Snapshot section " + Section.values()[i] + " is corrupted");
+                    }
+                }
+                sections[i] = section;
+            }
+
+            var enumNames = section(Section.ENUM_NAMES);
+            var remaps = new byte[ENUMS.size()][];
+            for (int i = 0; i < remaps.length; i++) {
+                remaps[i] = ordinalRemap(getStrings(enumNames), ENUMS.get(i));
+            }
+
+            var componentDictionary = getStrings(section(Section.COMPONENT_DICTIONARY));
+            var columns = new MappedCarColumns(
+                    rowCount,
+                    priceScale,
+                    getStrings(section(Section.MODEL_DICTIONARY)).toArray(String[]::new),
+                    section(Section.MODEL_IDS).asIntBuffer(),
+                    section(Section.PRICE_UNITS).asLongBuffer(),
+                    section(Section.PRICE_SCALES),
+                    getPrices(section(Section.INEXACT_PRICES)),
+                    section(Section.MILEAGES).asDoubleBuffer(),
+                    section(Section.POWERS).asDoubleBuffer(),
+                    getStrings(section(Section.WHEEL_MODEL_DICTIONARY)).toArray(String[]::new),
+                    section(Section.WHEEL_MODEL_IDS).asIntBuffer(),
+                    section(Section.WHEEL_SIZES).asIntBuffer(),
+                    section(Section.ENGINE_TYPES),
+                    section(Section.BODY_TYPES),
+                    section(Section.BODY_COLORS),
+                    section(Section.TYRE_TYPES),
+                    remaps,
+                    componentDictionary.toArray(String[]::new),
+                    section(Section.COMPONENT_OFFSETS).asIntBuffer(),
+                    section(Section.COMPONENT_IDS).asIntBuffer());
+
+            var postingsSection = section(Section.COMPONENT_POSTINGS);
+            int postingCount = postingsSection.getInt();
+            var postings = new ArrayList<ImmutableRoaringBitmap>(postingCount);
+            for (int i = 0; i < postingCount; i++) {
+                int length = postingsSection.getInt();
+                var serialized = postingsSection.slice().limit(length);
+                postings.add(new ImmutableRoaringBitmap(serialized));
+                postingsSection.position(postingsSection.position() + length);
+            }
+
+            var engineTypeIndex = Fleet.engineTypeIndex(columns);
+            var enginePartitions = section(Section.ENGINE_TYPE_PARTITIONS);
+            for (byte ordinal : remaps[ENGINE_TYPE]) {
+                engineTypeIndex.load(CarColumns.ENGINE_TYPES[ordinal], getInts(enginePartitions));
+            }
+            var bodyTypePriceIndex = Fleet.bodyTypePriceIndex(columns);
+            var bodyPartitions = section(Section.BODY_TYPE_PRICE_PARTITIONS);
+            for (byte ordinal : remaps[BODY_TYPE]) {
+                bodyTypePriceIndex.load(CarColumns.BODY_TYPES[ordinal], getInts(bodyPartitions));
+            }
+
+            return new Fleet(columns, ComponentIndex.of(componentDictionary, postings), engineTypeIndex, bodyTypePriceIndex);
+        }
+
+        private ByteBuffer section(Section section) {
+            return sections[section.ordinal()].duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private ByteBuffer readFully(long offset, int length) throws IOException {
+
+            var buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new CarsServiceException("Snapshot is truncated");
+                }
+            }
+            return buffer.flip();
+        }
+
+        private static byte[] ordinalRemap(List<String> storedNames, Enum<?>[] constants) {
+
+            var ordinals = new ObjectIntHashMap<String>();
+            for (Enum<?> constant : constants) {
+                ordinals.put(constant.name(), constant.ordinal());
+            }
+
+            var remap = new byte[storedNames.size()];
+            for (int stored = 0; stored < remap.length; stored++) {
+                int ordinal = ordinals.getIfAbsent(storedNames.get(stored), -1);
+                if (ordinal < 0) {
+                    throw new CarsServiceException("Snapshot has unknown " + constants.getClass().getComponentType().getSimpleName()
+                            + " " + storedNames.get(stored));
+                }
+                remap[stored] = (byte) ordinal;
+            }
+            return remap;
+        }
+
+        private static List<String> getStrings(ByteBuffer section) {
+
+            int count = section.getInt();
+            var strings = new ArrayList<String>(count);
+            for (int i = 0; i < count; i++) {
+                var bytes = new byte[section.getInt()];
+                section.get(bytes);
+                strings.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return strings;
+        }
+
+        private static IntObjectHashMap<BigDecimal> getPrices(ByteBuffer section) {
+
+            int count = section.getInt();
+            var prices = new IntObjectHashMap<BigDecimal>(count);
+            for (int i = 0; i < count; i++) {
+                int row = section.getInt();
+                int scale = section.getInt();
+                var unscaled = new byte[section.getInt()];
+                section.get(unscaled);
+                prices.put(row, new BigDecimal(new BigInteger(unscaled), scale));
+            }
+            return prices;
+        }
+
+        private static int[] getInts(ByteBuffer section) {
+
+            var values = new int[section.getInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = section.getInt();
+            }
+            return values;
+        }
+    }
+
+
+    private static final class Dictionary {
+
+        private final ObjectIntHashMap<String> ids = new ObjectIntHashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int idOf(String value) {
+
+            int id = ids.getIfAbsent(value, NO_DICTIONARY_ID);
+            if (id == NO_DICTIONARY_ID) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface SectionContent {
+        void write() throws IOException;
+    }
+}
@@ -0,0 +1,439 @@
+package com.carsTwo.store;
+
+import com.carsTwo.model.CarStatistic;
+import com.carsTwo.model.GroupAggregate;
+import com.carsTwo.model.Money;
+import com.carsTwo.model.Statistic;
+import com.carsTwo.model.enums.GroupingDimension;
+import com.carsTwo.model.enums.StatisticAttribute;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Count and aggregates of price, mileage and engine power for every combination of tyre type, body
+ * color, body type, engine type and wheel size. Cells live in dense arrays indexed by the ordinals of
+ * the enum dimensions; every distinct wheel size appends one block of cells. Grouping by any subset of
+ * the dimensions rolls the cells up, so it never visits a car and never builds a list of cars.
+ * <p>
+ * Counts and sums are changed on every added or removed row, mileage and engine power are summed
+ * exactly, so they don't drift however many rows come and go. Rows are also kept ordered by their
+ * cell, so the rows of one cell lie next to each other. A removed row holding the minimum or maximum of
+ * its cell only marks the cell, its extremes are counted again from its own rows on the next
+ * aggregating roll-up.
+ */
+public class GroupCube {
+
+    private static final int TYRE_TYPES = CarColumns.TYRE_TYPES.length;
+    private static final int BODY_COLORS = CarColumns.BODY_COLORS.length;
+    private static final int BODY_TYPES = CarColumns.BODY_TYPES.length;
+    private static final int ENGINE_TYPES = CarColumns.ENGINE_TYPES.length;
+    private static final int ENUM_CELLS = TYRE_TYPES * BODY_COLORS * BODY_TYPES * ENGINE_TYPES;
+
+    private final CarColumns cars;
+    private final IntIntHashMap wheelSlots = new IntIntHashMap();
+    private final IntArrayList wheelSizes = new IntArrayList();
+
+    private long[] counts = new long[0];
+    private Money.Sum[] priceSums = new Money.Sum[0];
+    private int[] priceMinRows = new int[0];
+    private int[] priceMaxRows = new int[0];
+    private ExactSum[] mileageSums = new ExactSum[0];
+    private double[] mileageMins = new double[0];
+    private double[] mileageMaxs = new double[0];
+    private ExactSum[] powerSums = new ExactSum[0];
+    private double[] powerMins = new double[0];
+    private double[] powerMaxs = new double[0];
+    private boolean[] staleExtremes = new boolean[0];
+    private SortedRows rowsByCell = new SortedRows(this::compareCells);
+
+    public GroupCube(CarColumns cars) {
+        this.cars = cars;
+    }
+
+    /**
+     * Counts all live rows of the columns.
+     * @return this cube
+     */
+    public GroupCube build() {
+
+        var live = new IntArrayList();
+        for (int row = 0; row < cars.size(); row++) {
+            if (cars.isLive(row)) {
+                count(row);
+                live.add(row);
+            }
+        }
+        var sorted = live.toArray();
+        RowSort.sort(sorted, this::compareCells);
+        rowsByCell.load(sorted);
+        return this;
+    }
+
+    /**
+     * @param columns copy of the counted columns with the same rows
+     * @return cube over given columns, changed independently of this one
+     */
+    public synchronized GroupCube copy(CarColumns columns) {
+
+        var copy = new GroupCube(columns);
+        copy.wheelSlots.putAll(wheelSlots);
+        copy.wheelSizes.addAll(wheelSizes);
+        copy.counts = counts.clone();
+        copy.priceSums = new Money.Sum[priceSums.length];
+        for (int cell = 0; cell < priceSums.length; cell++) {
+            copy.priceSums[cell] = new Money.Sum();
+            copy.priceSums[cell].copyFrom(priceSums[cell]);
+        }
+        copy.priceMinRows = priceMinRows.clone();
+        copy.priceMaxRows = priceMaxRows.clone();
+        copy.mileageSums = copySums(mileageSums);
+        copy.mileageMins = mileageMins.clone();
+        copy.mileageMaxs = mileageMaxs.clone();
+        copy.powerSums = copySums(powerSums);
+        copy.powerMins = powerMins.clone();
+        copy.powerMaxs = powerMaxs.clone();
+        copy.staleExtremes = staleExtremes.clone();
+        copy.rowsByCell = rowsByCell.copy(copy::compareCells);
+        return copy;
+    }
+
+    public void add(int row) {
+
+        count(row);
+        rowsByCell.add(row);
+    }
+
+    private void count(int row) {
+
+        int cell = cellOf(row);
+        double mileage = cars.mileage(row);
+        double power = cars.power(row);
+        if (counts[cell]++ == 0) {
+            resetExtremes(cell);
+        }
+        mileageSums[cell].add(mileage);
+        powerSums[cell].add(power);
+        mileageMins[cell] = Math.min(mileageMins[cell], mileage);
+        mileageMaxs[cell] = Math.max(mileageMaxs[cell], mileage);
+        powerMins[cell] = Math.min(powerMins[cell], power);
+        powerMaxs[cell] = Math.max(powerMaxs[cell], power);
+        cars.addPrice(priceSums[cell], row);
+        priceMinRows[cell] = cheaper(priceMinRows[cell], row);
+        priceMaxRows[cell] = dearer(priceMaxRows[cell], row);
+    }
+
+    public void remove(int row) {
+
+        int cell = cellOf(row);
+        double mileage = cars.mileage(row);
+        double power = cars.power(row);
+        rowsByCell.remove(row);
+        if (--counts[cell] == 0) {
+            priceSums[cell].clear();
+            mileageSums[cell].clear();
+            powerSums[cell].clear();
+            staleExtremes[cell] = false;
+            return;
+        }
+        cars.subtractPrice(priceSums[cell], row);
+        mileageSums[cell].subtract(mileage);
+        powerSums[cell].subtract(power);
+        staleExtremes[cell] |= row == priceMinRows[cell] || row == priceMaxRows[cell]
+                || mileage == mileageMins[cell] || mileage == mileageMaxs[cell]
+                || power == powerMins[cell] || power == powerMaxs[cell];
+    }
+
+    /**
+     * @param dimensions dimensions to group by, in order of their significance in the result order
+     * @param attribute attribute to aggregate, null counts cars only
+     * @return one aggregate per non-empty group, ordered by descending count and then by the dimension values
+     */
+    public synchronized List<GroupAggregate> rollUp(List<GroupingDimension> dimensions, StatisticAttribute attribute) {
+
+        if (Objects.nonNull(attribute)) {
+            recountStaleExtremes();
+        }
+
+        int[] wheelRanks = wheelRanks();
+        int[] radices = new int[dimensions.size()];
+        int groupCount = 1;
+        for (int i = 0; i < radices.length; i++) {
+            radices[i] = radix(dimensions.get(i));
+            groupCount *= radices[i];
+        }
+
+        var groups = new GroupCube(cars);
+        groups.grow(groupCount);
+        var representatives = new int[groupCount];
+        for (int cell = 0; cell < counts.length; cell++) {
+            if (counts[cell] == 0) {
+                continue;
+            }
+            int group = 0;
+            for (int i = 0; i < radices.length; i++) {
+                group = group * radices[i] + digit(cell, dimensions.get(i), wheelRanks);
+            }
+            if (groups.counts[group] == 0) {
+                groups.resetExtremes(group);
+            }
+            representatives[group] = cell;
+            groups.merge(group, this, cell);
+        }
+
+        var aggregates = new ArrayList<GroupAggregate>();
+        var order = new IntArrayList();
+        for (int group = 0; group < groupCount; group++) {
+            if (groups.counts[group] > 0) {
+                aggregates.add(aggregate(groups, group, representatives[group], dimensions, attribute));
+                order.add(group);
+            }
+        }
+        var positions = new Integer[aggregates.size()];
+        Arrays.setAll(positions, position -> position);
+        Arrays.sort(positions, Comparator
+                .comparingLong((Integer position) -> -aggregates.get(position).getCount())
+                .thenComparingInt(order::get));
+        var sorted = new ArrayList<GroupAggregate>(positions.length);
+        for (Integer position : positions) {
+            sorted.add(aggregates.get(position));
+        }
+        return sorted;
+    }
+
+    /**
+     * @param groups rolled up cells
+     * @param group rolled up cell to describe
+     * @param cell any cell of this cube counted into the group, gives the values of the grouped dimensions
+     */
+    private GroupAggregate aggregate(GroupCube groups, int group, int cell, List<GroupingDimension> dimensions, StatisticAttribute attribute) {
+
+        var aggregate = GroupAggregate.builder().count(groups.counts[group]);
+        for (GroupingDimension dimension : dimensions) {
+            switch (dimension) {
+                case TYRE_TYPE -> aggregate.tyreType(CarColumns.TYRE_TYPES[tyreTypeOf(cell)]);
+                case BODY_COLOR -> aggregate.bodyColor(CarColumns.BODY_COLORS[bodyColorOf(cell)]);
+                case BODY_TYPE -> aggregate.bodyType(CarColumns.BODY_TYPES[bodyTypeOf(cell)]);
+                case ENGINE_TYPE -> aggregate.engineType(CarColumns.ENGINE_TYPES[engineTypeOf(cell)]);
+                case WHEEL_SIZE -> aggregate.wheelSize(wheelSizes.get(cell / ENUM_CELLS));
+            }
+        }
+        if (Objects.isNull(attribute)) {
+            return aggregate.build();
+        }
+
+        long count = groups.counts[group];
+        int priceScale = cars.priceScale();
+        var statistic = switch (attribute) {
+            case PRICE -> CarStatistic.builder().price(Statistic.<BigDecimal>builder()
+                    .count(count)
+                    .sum(groups.priceSums[group].toBigDecimal(priceScale))
+                    .average(groups.priceSums[group].average(count, priceScale))
+                    .min(cars.price(groups.priceMinRows[group]))
+                    .max(cars.price(groups.priceMaxRows[group]))
+                    .build()).build();
+            case MILEAGE -> CarStatistic.builder()
+                    .mileage(doubleStatistic(count, groups.mileageSums[group].doubleValue(), groups.mileageMins[group], groups.mileageMaxs[group])).build();
+            case ENGINE_POWER -> CarStatistic.builder()
+                    .power(doubleStatistic(count, groups.powerSums[group].doubleValue(), groups.powerMins[group], groups.powerMaxs[group])).build();
+        };
+        return aggregate.statistic(statistic).build();
+    }
+
+    private static Statistic<Double> doubleStatistic(long count, double sum, double min, double max) {
+
+        return Statistic.<Double>builder()
+                .count(count)
+                .sum(sum)
+                .average(sum / count)
+                .min(min)
+                .max(max)
+                .build();
+    }
+
+    private void merge(int group, GroupCube cube, int cell) {
+
+        counts[group] += cube.counts[cell];
+        priceSums[group].merge(cube.priceSums[cell]);
+        priceMinRows[group] = cheaper(priceMinRows[group], cube.priceMinRows[cell]);
+        priceMaxRows[group] = dearer(priceMaxRows[group], cube.priceMaxRows[cell]);
+        mileageSums[group].merge(cube.mileageSums[cell]);
+        mileageMins[group] = Math.min(mileageMins[group], cube.mileageMins[cell]);
+        mileageMaxs[group] = Math.max(mileageMaxs[group], cube.mileageMaxs[cell]);
+        powerSums[group].merge(cube.powerSums[cell]);
+        powerMins[group] = Math.min(powerMins[group], cube.powerMins[cell]);
+        powerMaxs[group] = Math.max(powerMaxs[group], cube.powerMaxs[cell]);
+    }
+
+    /**
+     * Counts extremes of every marked cell again from the rows of that cell only.
+     */
+    private void recountStaleExtremes() {
+
+        for (int cell = 0; cell < staleExtremes.length; cell++) {
+            if (!staleExtremes[cell]) {
+                continue;
+            }
+            int stale = cell;
+            resetExtremes(cell);
+            int from = rowsByCell.firstPositionNotMatching(row -> cellIndex(row) < stale);
+            int to = rowsByCell.firstPositionNotMatching(row -> cellIndex(row) <= stale);
+            for (int row : rowsByCell.rows(from, to)) {
+                priceMinRows[cell] = cheaper(priceMinRows[cell], row);
+                priceMaxRows[cell] = dearer(priceMaxRows[cell], row);
+                mileageMins[cell] = Math.min(mileageMins[cell], cars.mileage(row));
+                mileageMaxs[cell] = Math.max(mileageMaxs[cell], cars.mileage(row));
+                powerMins[cell] = Math.min(powerMins[cell], cars.power(row));
+                powerMaxs[cell] = Math.max(powerMaxs[cell], cars.power(row));
+            }
+            staleExtremes[cell] = false;
+        }
+    }
+
+    /**
+     * @return row with the lower price, the other one when a row is -1
+     */
+    private int cheaper(int first, int second) {
+        return first < 0 || (second >= 0 && cars.comparePrices(second, first) < 0) ? second : first;
+    }
+
+    /**
+     * @return row with the higher price, the other one when a row is -1
+     */
+    private int dearer(int first, int second) {
+        return first < 0 || (second >= 0 && cars.comparePrices(second, first) > 0) ? second : first;
+    }
+
+    private void resetExtremes(int cell) {
+
+        priceMinRows[cell] = -1;
+        priceMaxRows[cell] = -1;
+        mileageMins[cell] = Double.POSITIVE_INFINITY;
+        mileageMaxs[cell] = Double.NEGATIVE_INFINITY;
+        powerMins[cell] = Double.POSITIVE_INFINITY;
+        powerMaxs[cell] = Double.NEGATIVE_INFINITY;
+    }
+
+    private int cellOf(int row) {
+
+        int wheelSize = cars.wheelSize(row);
+        int slot = wheelSlots.getIfAbsent(wheelSize, -1);
+        if (slot < 0) {
+            slot = wheelSizes.size();
+            wheelSlots.put(wheelSize, slot);
+            wheelSizes.add(wheelSize);
+            grow((slot + 1) * ENUM_CELLS);
+        }
+        return slot * ENUM_CELLS + enumCellOf(row);
+    }
+
+    /**
+     * @param row row already counted into the cube
+     * @return cell of the row, without assigning a slot to its wheel size
+     */
+    private int cellIndex(int row) {
+        return wheelSlots.get(cars.wheelSize(row)) * ENUM_CELLS + enumCellOf(row);
+    }
+
+    private int enumCellOf(int row) {
+
+        return ((cars.tyreTypeOrdinal(row) * BODY_COLORS + cars.bodyColorOrdinal(row)) * BODY_TYPES
+                + cars.bodyTypeOrdinal(row)) * ENGINE_TYPES + cars.engineTypeOrdinal(row);
+    }
+
+    private int compareCells(int first, int second) {
+
+        int compared = Integer.compare(cellIndex(first), cellIndex(second));
+        return compared != 0 ? compared : Integer.compare(first, second);
+    }
+
+    private static ExactSum[] copySums(ExactSum[] sums) {
+
+        var copies = new ExactSum[sums.length];
+        for (int cell = 0; cell < sums.length; cell++) {
+            copies[cell] = new ExactSum();
+            copies[cell].copyFrom(sums[cell]);
+        }
+        return copies;
+    }
+
+    private void grow(int cells) {
+
+        int previous = counts.length;
+        counts = Arrays.copyOf(counts, cells);
+        priceSums = Arrays.copyOf(priceSums, cells);
+        for (int cell = previous; cell < cells; cell++) {
+            priceSums[cell] = new Money.Sum();
+        }
+        priceMinRows = Arrays.copyOf(priceMinRows, cells);
+        priceMaxRows = Arrays.copyOf(priceMaxRows, cells);
+        mileageSums = Arrays.copyOf(mileageSums, cells);
+        powerSums = Arrays.copyOf(powerSums, cells);
+        for (int cell = previous; cell < cells; cell++) {
+            mileageSums[cell] = new ExactSum();
+            powerSums[cell] = new ExactSum();
+        }
+        mileageMins = Arrays.copyOf(mileageMins, cells);
+        mileageMaxs = Arrays.copyOf(mileageMaxs, cells);
+        powerMins = Arrays.copyOf(powerMins, cells);
+        powerMaxs = Arrays.copyOf(powerMaxs, cells);
+        staleExtremes = Arrays.copyOf(staleExtremes, cells);
+    }
+
+    private int radix(GroupingDimension dimension) {
+
+        return switch (dimension) {
+            case TYRE_TYPE -> TYRE_TYPES;
+            case BODY_COLOR -> BODY_COLORS;
+            case BODY_TYPE -> BODY_TYPES;
+            case ENGINE_TYPE -> ENGINE_TYPES;
+            case WHEEL_SIZE -> Math.max(1, wheelSizes.size());
+        };
+    }
+
+    private static int digit(int cell, GroupingDimension dimension, int[] wheelRanks) {
+
+        return switch (dimension) {
+            case TYRE_TYPE -> tyreTypeOf(cell);
+            case BODY_COLOR -> bodyColorOf(cell);
+            case BODY_TYPE -> bodyTypeOf(cell);
+            case ENGINE_TYPE -> engineTypeOf(cell);
+            case WHEEL_SIZE -> wheelRanks[cell / ENUM_CELLS];
+        };
+    }
+
+    /**
+     * @return rank of every wheel size slot in ascending order of the sizes
+     */
+    private int[] wheelRanks() {
+
+        var sorted = wheelSizes.toSortedArray();
+        var ranks = new int[wheelSizes.size()];
+        for (int slot = 0; slot < ranks.length; slot++) {
+            ranks[slot] = Arrays.binarySearch(sorted, wheelSizes.get(slot));
+        }
+        return ranks;
+    }
+
+    private static int engineTypeOf(int cell) {
+        return cell % ENUM_CELLS % ENGINE_TYPES;
+    }
+
+    private static int bodyTypeOf(int cell) {
+        return cell % ENUM_CELLS / ENGINE_TYPES % BODY_TYPES;
+    }
+
+    private static int bodyColorOf(int cell) {
+        return cell % ENUM_CELLS / ENGINE_TYPES / BODY_TYPES % BODY_COLORS;
+    }
+
+    private static int tyreTypeOf(int cell) {
+        return cell % ENUM_CELLS / ENGINE_TYPES / BODY_TYPES / BODY_COLORS;
+    }
+}
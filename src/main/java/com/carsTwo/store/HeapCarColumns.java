@@ -0,0 +1,369 @@
+package com.carsTwo.store;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.*;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Columns kept in heap arrays next to the stored cars. The fixed-point price scale is
+ * {@value #DEFAULT_PRICE_SCALE} digits, a more precise or a huge price is stored anyway and marked as not
+ * exact, comparisons of such prices use the BigDecimal kept next to the units.
+ * <p>
+ * Model names, wheel models and component lists are interned as they are stored, so equal values are kept
+ * once; added cars keep their own parts. Only a car known to fit into the columns is interned, so a refused
+ * car leaves nothing in the interner. Compaction interns the live rows into a new interner, so values of
+ * removed cars are dropped from the pool.
+ * <p>
+ * Rows live in chunks of {@value #CHUNK_ROWS} rows. Copies share the chunks, the removed flags and the
+ * rows of cars; a chunk is cloned by the first change of a version which doesn't own it yet, so a copy
+ * changed by a few cars costs the chunks they touch, not the whole fleet.
+ */
+public class HeapCarColumns implements CarColumns {
+
+    static final int CHUNK_ROWS = 1 << 10;
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final int DEFAULT_PRICE_SCALE = 2;
+
+    private int size;
+    private final RowFlags removed;
+    private final CarRows rowsOfCars;
+    private final CarInterner interner;
+    private final int priceScale = DEFAULT_PRICE_SCALE;
+
+    private Chunk[] chunks;
+    private boolean[] ownedChunks;
+
+    public HeapCarColumns() {
+        this(new CarInterner(), new Chunk[0], new boolean[0], new RowFlags(), new CarRows());
+    }
+
+    private HeapCarColumns(CarInterner interner, Chunk[] chunks, boolean[] ownedChunks, RowFlags removed, CarRows rowsOfCars) {
+        this.interner = interner;
+        this.chunks = chunks;
+        this.ownedChunks = ownedChunks;
+        this.removed = removed;
+        this.rowsOfCars = rowsOfCars;
+    }
+
+    /**
+     * Creates columns holding given cars, rows follow iteration order of the collection.
+     * @param cars cars to store
+     * @return columns with one row per car
+     */
+    public static HeapCarColumns of(Collection<Car> cars) {
+
+        if (Objects.isNull(cars)) {
+            throw new CarsServiceException("Cars collection is null");
+        }
+
+        var columns = new HeapCarColumns();
+        cars.forEach(columns::add);
+        return columns;
+    }
+
+    @Override
+    public void requireStorable(Car car) {
+        requireComplete(car);
+    }
+
+    @Override
+    public int add(Car car) {
+
+        requireComplete(car);
+        if (rowsOfCars.contains(car)) {
+            return -1;
+        }
+
+        var price = CarUtils.toPrice.apply(car);
+
+        var engine = CarUtils.toEngine.apply(car);
+        var carBody = CarUtils.toCarBody.apply(car);
+        var wheel = CarUtils.toWheel.apply(car);
+        var carComponents = CarBodyUtils.toComponents.apply(carBody);
+
+        int row = size;
+        var chunk = writableChunk(row >>> CHUNK_SHIFT);
+        int at = row & CHUNK_MASK;
+        chunk.cars[at] = car;
+        chunk.models[at] = interner.intern(CarUtils.toModel.apply(car));
+        chunk.prices[at] = price;
+        chunk.priceUnits[at] = Money.floorUnits(price, priceScale);
+        chunk.inexactPrices[at] = !Money.hasExactUnits(price, priceScale);
+        chunk.mileages[at] = CarUtils.toMileageValue.applyAsDouble(car);
+        chunk.powers[at] = EngineUtils.toPowerValue.applyAsDouble(engine);
+        chunk.wheelModels[at] = interner.intern(WheelUtils.toModel.apply(wheel));
+        chunk.wheelSizes[at] = WheelUtils.toSizeValue.applyAsInt(wheel);
+        chunk.componentCounts[at] = carComponents.size();
+        chunk.engineTypes[at] = (byte) EngineUtils.toEngineType.apply(engine).ordinal();
+        chunk.bodyTypes[at] = (byte) CarBodyUtils.toBodyType.apply(carBody).ordinal();
+        chunk.bodyColors[at] = (byte) CarBodyUtils.toBodyColor.apply(carBody).ordinal();
+        chunk.tyreTypes[at] = (byte) WheelUtils.toTyreType.apply(wheel).ordinal();
+        chunk.components[at] = interner.intern(carComponents);
+        rowsOfCars.put(car, row);
+
+        size++;
+        return row;
+    }
+
+    @Override
+    public void remove(int row) {
+
+        if (removed.set(row)) {
+            rowsOfCars.remove(car(row));
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    /**
+     * @return columns sharing every chunk with these ones, the cost doesn't depend on the amount of rows
+     */
+    @Override
+    public HeapCarColumns copy() {
+
+        Arrays.fill(ownedChunks, false);
+        var copy = new HeapCarColumns(interner, chunks.clone(), new boolean[chunks.length], removed.copy(), rowsOfCars.copy());
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * @return columns with the live cars added again, their values interned into a new interner
+     */
+    @Override
+    public HeapCarColumns compact() {
+
+        var compacted = new HeapCarColumns(new CarInterner(), new Chunk[0], new boolean[0], new RowFlags(), new CarRows());
+        for (int row : liveRows()) {
+            compacted.add(car(row));
+        }
+        return compacted;
+    }
+
+    @Override
+    public InterningStatistic interningStatistic() {
+        return interner.statistic();
+    }
+
+    @Override
+    public int rowOf(Car car) {
+        return rowsOfCars.get(car);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int liveCount() {
+        return size - removed.count();
+    }
+
+    @Override
+    public boolean isLive(int row) {
+        return !removed.get(row);
+    }
+
+    @Override
+    public Car car(int row) {
+        return chunk(row).cars[row & CHUNK_MASK];
+    }
+
+    @Override
+    public String model(int row) {
+        return chunk(row).models[row & CHUNK_MASK];
+    }
+
+    @Override
+    public BigDecimal price(int row) {
+        return chunk(row).prices[row & CHUNK_MASK];
+    }
+
+    @Override
+    public long priceUnits(int row) {
+        return chunk(row).priceUnits[row & CHUNK_MASK];
+    }
+
+    @Override
+    public boolean isPriceExact(int row) {
+        return !chunk(row).inexactPrices[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int priceScale() {
+        return priceScale;
+    }
+
+    @Override
+    public double mileage(int row) {
+        return chunk(row).mileages[row & CHUNK_MASK];
+    }
+
+    @Override
+    public double power(int row) {
+        return chunk(row).powers[row & CHUNK_MASK];
+    }
+
+    @Override
+    public String wheelModel(int row) {
+        return chunk(row).wheelModels[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int wheelSize(int row) {
+        return chunk(row).wheelSizes[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int componentCount(int row) {
+        return chunk(row).componentCounts[row & CHUNK_MASK];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> components(int row) {
+        return (List<String>) chunk(row).components[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int engineTypeOrdinal(int row) {
+        return chunk(row).engineTypes[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int bodyTypeOrdinal(int row) {
+        return chunk(row).bodyTypes[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int bodyColorOrdinal(int row) {
+        return chunk(row).bodyColors[row & CHUNK_MASK];
+    }
+
+    @Override
+    public int tyreTypeOrdinal(int row) {
+        return chunk(row).tyreTypes[row & CHUNK_MASK];
+    }
+
+    /**
+     * @return chunk holding given row, shared with the copies which didn't change it
+     */
+    Object chunkOf(int row) {
+        return chunk(row);
+    }
+
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_SHIFT];
+    }
+
+    private Chunk writableChunk(int index) {
+
+        if (index == chunks.length) {
+            chunks = Arrays.copyOf(chunks, index + 1);
+            ownedChunks = Arrays.copyOf(ownedChunks, index + 1);
+            chunks[index] = new Chunk();
+            ownedChunks[index] = true;
+        } else if (!ownedChunks[index]) {
+            chunks[index] = chunks[index].copy();
+            ownedChunks[index] = true;
+        }
+        return chunks[index];
+    }
+
+    static void requireComplete(Car car) {
+
+        if (Objects.isNull(car)) {
+            throw new CarsServiceException("Car is null");
+        }
+        if (Objects.isNull(CarUtils.toModel.apply(car)) || Objects.isNull(CarUtils.toPrice.apply(car))) {
+            throw new CarsServiceException("Car model and price can't be null");
+        }
+
+        var engine = CarUtils.toEngine.apply(car);
+        if (Objects.isNull(engine) || Objects.isNull(EngineUtils.toEngineType.apply(engine))) {
+            throw new CarsServiceException("Car engine and its type can't be null");
+        }
+
+        var carBody = CarUtils.toCarBody.apply(car);
+        if (Objects.isNull(carBody)
+                || Objects.isNull(CarBodyUtils.toBodyType.apply(carBody))
+                || Objects.isNull(CarBodyUtils.toBodyColor.apply(carBody))
+                || Objects.isNull(CarBodyUtils.toComponents.apply(carBody))) {
+            throw new CarsServiceException("Car body, its type, color and components can't be null");
+        }
+
+        var wheel = CarUtils.toWheel.apply(car);
+        if (Objects.isNull(wheel) || Objects.isNull(WheelUtils.toTyreType.apply(wheel))) {
+            throw new CarsServiceException("Car wheel and its tyre type can't be null");
+        }
+    }
+
+
+    /**
+     * Values of {@value #CHUNK_ROWS} neighbouring rows, one array per column.
+     */
+    private static final class Chunk {
+
+        private final Car[] cars;
+        private final String[] models;
+        private final BigDecimal[] prices;
+        private final long[] priceUnits;
+        private final boolean[] inexactPrices;
+        private final double[] mileages;
+        private final double[] powers;
+        private final String[] wheelModels;
+        private final int[] wheelSizes;
+        private final int[] componentCounts;
+        private final byte[] engineTypes;
+        private final byte[] bodyTypes;
+        private final byte[] bodyColors;
+        private final byte[] tyreTypes;
+        private final Object[] components;
+
+        Chunk() {
+            this(new Car[CHUNK_ROWS], new String[CHUNK_ROWS], new BigDecimal[CHUNK_ROWS], new long[CHUNK_ROWS],
+                    new boolean[CHUNK_ROWS], new double[CHUNK_ROWS], new double[CHUNK_ROWS], new String[CHUNK_ROWS], new int[CHUNK_ROWS],
+                    new int[CHUNK_ROWS], new byte[CHUNK_ROWS], new byte[CHUNK_ROWS], new byte[CHUNK_ROWS],
+                    new byte[CHUNK_ROWS], new Object[CHUNK_ROWS]);
+        }
+
+        private Chunk(Car[] cars, String[] models, BigDecimal[] prices, long[] priceUnits, boolean[] inexactPrices, double[] mileages,
+                      double[] powers, String[] wheelModels, int[] wheelSizes, int[] componentCounts, byte[] engineTypes,
+                      byte[] bodyTypes, byte[] bodyColors, byte[] tyreTypes, Object[] components) {
+            this.cars = cars;
+            this.models = models;
+            this.prices = prices;
+            this.priceUnits = priceUnits;
+            this.inexactPrices = inexactPrices;
+            this.mileages = mileages;
+            this.powers = powers;
+            this.wheelModels = wheelModels;
+            this.wheelSizes = wheelSizes;
+            this.componentCounts = componentCounts;
+            this.engineTypes = engineTypes;
+            this.bodyTypes = bodyTypes;
+            this.bodyColors = bodyColors;
+            this.tyreTypes = tyreTypes;
+            this.components = components;
+        }
+
+        Chunk copy() {
+            return new Chunk(cars.clone(), models.clone(), prices.clone(), priceUnits.clone(), inexactPrices.clone(), mileages.clone(),
+                    powers.clone(), wheelModels.clone(), wheelSizes.clone(), componentCounts.clone(), engineTypes.clone(),
+                    bodyTypes.clone(), bodyColors.clone(), tyreTypes.clone(), components.clone());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.carsTwo.store;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarBody;
+import com.carsTwo.model.Engine;
+import com.carsTwo.model.Wheel;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read only columns backed by memory-mapped sections of a fleet snapshot. Values are read straight
+ * from the mapped file, a Car object is created only when a query returns it. Strings are dictionary
+ * encoded, only the dictionaries are decoded when the snapshot is opened.
+ */
+class MappedCarColumns implements CarColumns {
+
+    private final int size;
+    private final int priceScale;
+
+    private final String[] modelDictionary;
+    private final IntBuffer modelIds;
+    private final LongBuffer priceUnits;
+    private final ByteBuffer priceScales;
+    private final IntObjectHashMap<BigDecimal> inexactPrices;
+    private final DoubleBuffer mileages;
+    private final DoubleBuffer powers;
+    private final String[] wheelModelDictionary;
+    private final IntBuffer wheelModelIds;
+    private final IntBuffer wheelSizes;
+    private final ByteBuffer engineTypes;
+    private final ByteBuffer bodyTypes;
+    private final ByteBuffer bodyColors;
+    private final ByteBuffer tyreTypes;
+    private final byte[][] ordinalRemaps;
+    private final String[] componentDictionary;
+    private final IntBuffer componentOffsets;
+    private final IntBuffer componentIds;
+
+    MappedCarColumns(int size, int priceScale, String[] modelDictionary, IntBuffer modelIds, LongBuffer priceUnits,
+                     ByteBuffer priceScales, IntObjectHashMap<BigDecimal> inexactPrices, DoubleBuffer mileages, DoubleBuffer powers, String[] wheelModelDictionary,
+                     IntBuffer wheelModelIds, IntBuffer wheelSizes, ByteBuffer engineTypes, ByteBuffer bodyTypes,
+                     ByteBuffer bodyColors, ByteBuffer tyreTypes, byte[][] ordinalRemaps, String[] componentDictionary,
+                     IntBuffer componentOffsets, IntBuffer componentIds) {
+        this.size = size;
+        this.priceScale = priceScale;
+        this.modelDictionary = modelDictionary;
+        this.modelIds = modelIds;
+        this.priceUnits = priceUnits;
+        this.priceScales = priceScales;
+        this.inexactPrices = inexactPrices;
+        this.mileages = mileages;
+        this.powers = powers;
+        this.wheelModelDictionary = wheelModelDictionary;
+        this.wheelModelIds = wheelModelIds;
+        this.wheelSizes = wheelSizes;
+        this.engineTypes = engineTypes;
+        this.bodyTypes = bodyTypes;
+        this.bodyColors = bodyColors;
+        this.tyreTypes = tyreTypes;
+        this.ordinalRemaps = ordinalRemaps;
+        this.componentDictionary = componentDictionary;
+        this.componentOffsets = componentOffsets;
+        this.componentIds = componentIds;
+    }
+
+    @Override
+    public int add(Car car) {
+        throw new CarsServiceException("Fleet opened from snapshot is read only");
+    }
+
+    @Override
+    public void requireStorable(Car car) {
+        throw new CarsServiceException("Fleet opened from snapshot is read only");
+    }
+
+    @Override
+    public void remove(int row) {
+        throw new CarsServiceException("Fleet opened from snapshot is read only");
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public CarColumns copy() {
+        return this;
+    }
+
+    @Override
+    public CarColumns compact() {
+        return this;
+    }
+
+    @Override
+    public int rowOf(Car car) {
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int liveCount() {
+        return size;
+    }
+
+    @Override
+    public boolean isLive(int row) {
+        return true;
+    }
+
+    @Override
+    public Car car(int row) {
+
+        return Car
+                .builder()
+                .model(model(row))
+                .price(price(row))
+                .mileage(mileage(row))
+                .engine(Engine
+                        .builder()
+                        .type(engineType(row))
+                        .power(power(row))
+                        .build())
+                .carBody(CarBody
+                        .builder()
+                        .color(bodyColor(row))
+                        .bodyType(bodyType(row))
+                        .components(components(row))
+                        .build())
+                .wheel(Wheel
+                        .builder()
+                        .model(wheelModel(row))
+                        .size(wheelSize(row))
+                        .tyreType(tyreType(row))
+                        .build())
+                .build();
+    }
+
+    @Override
+    public String model(int row) {
+        return modelDictionary[modelIds.get(row)];
+    }
+
+    @Override
+    public BigDecimal price(int row) {
+
+        byte scale = priceScales.get(row);
+        if (scale == FleetSnapshot.INEXACT_PRICE) {
+            return inexactPrices.get(row);
+        }
+        return BigDecimal.valueOf(priceUnits.get(row), priceScale).setScale(scale, RoundingMode.UNNECESSARY);
+    }
+
+    @Override
+    public boolean isPriceExact(int row) {
+        return priceScales.get(row) != FleetSnapshot.INEXACT_PRICE;
+    }
+
+    @Override
+    public long priceUnits(int row) {
+        return priceUnits.get(row);
+    }
+
+    @Override
+    public int priceScale() {
+        return priceScale;
+    }
+
+    @Override
+    public double mileage(int row) {
+        return mileages.get(row);
+    }
+
+    @Override
+    public double power(int row) {
+        return powers.get(row);
+    }
+
+    @Override
+    public String wheelModel(int row) {
+
+        int id = wheelModelIds.get(row);
+        return id < 0 ? null : wheelModelDictionary[id];
+    }
+
+    @Override
+    public int wheelSize(int row) {
+        return wheelSizes.get(row);
+    }
+
+    @Override
+    public int componentCount(int row) {
+        return componentOffsets.get(row + 1) - componentOffsets.get(row);
+    }
+
+    @Override
+    public List<String> components(int row) {
+
+        int from = componentOffsets.get(row);
+        int to = componentOffsets.get(row + 1);
+        var components = new ArrayList<String>(to - from);
+        for (int i = from; i < to; i++) {
+            components.add(componentDictionary[componentIds.get(i)]);
+        }
+        return components;
+    }
+
+    @Override
+    public int engineTypeOrdinal(int row) {
+        return ordinalRemaps[FleetSnapshot.ENGINE_TYPE][engineTypes.get(row)];
+    }
+
+    @Override
+    public int bodyTypeOrdinal(int row) {
+        return ordinalRemaps[FleetSnapshot.BODY_TYPE][bodyTypes.get(row)];
+    }
+
+    @Override
+    public int bodyColorOrdinal(int row) {
+        return ordinalRemaps[FleetSnapshot.BODY_COLOR][bodyColors.get(row)];
+    }
+
+    @Override
+    public int tyreTypeOrdinal(int row) {
+        return ordinalRemaps[FleetSnapshot.TYRE_TYPE][tyreTypes.get(row)];
+    }
+}
@@ -0,0 +1,132 @@
+package com.carsTwo.store;
+
+import org.eclipse.collections.api.block.function.primitive.IntIntToIntFunction;
+
+/**
+ * Live rows ordered by mileage, ties broken by row number. The rows are kept in blocks, so adding or
+ * removing a row shifts only its own block. A position in the order is the rank of its row: rank of a
+ * row, range of mileages and value at a percentile are all found with a binary search or a single read.
+ */
+public class MileageIndex {
+
+    private final CarColumns cars;
+    private final SortedRows rows;
+
+    public MileageIndex(CarColumns cars) {
+        this.cars = cars;
+        this.rows = new SortedRows(order(cars));
+    }
+
+    private MileageIndex(CarColumns cars, SortedRows rows) {
+        this.cars = cars;
+        this.rows = rows;
+    }
+
+    /**
+     * Fills the index with all live rows of the columns, sorting them once.
+     * @return this index
+     */
+    public MileageIndex build() {
+
+        var sorted = cars.liveRows();
+        RowSort.sort(sorted, order(cars));
+        rows.load(sorted);
+        return this;
+    }
+
+    /**
+     * @param columns copy of the indexed columns with the same rows
+     * @return index over given columns, changed independently of this one
+     */
+    public MileageIndex copy(CarColumns columns) {
+        return new MileageIndex(columns, rows.copy(order(columns)));
+    }
+
+    public void add(int row) {
+        rows.add(row);
+    }
+
+    public void remove(int row) {
+        rows.remove(row);
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @param position position in mileage order
+     * @return row at given position
+     */
+    public int row(int position) {
+        return rows.get(position);
+    }
+
+    /**
+     * @param from first position, inclusive
+     * @param to last position, exclusive
+     * @return copy of rows between given positions in mileage order
+     */
+    public int[] rows(int from, int to) {
+        return rows.rows(from, to);
+    }
+
+    /**
+     * @param position position in mileage order
+     * @return mileage at given position
+     */
+    public double mileage(int position) {
+        return cars.mileage(rows.get(position));
+    }
+
+    /**
+     * @param row any row
+     * @return position of the row in mileage order or -1 when the row is not live
+     */
+    public int positionOf(int row) {
+
+        int position = rows.positionOf(row);
+        return position < 0 ? -1 : position;
+    }
+
+    /**
+     * @param row any row, also a removed one
+     * @return position of the first row following given row in mileage order
+     */
+    public int positionAfter(int row) {
+
+        int position = rows.positionOf(row);
+        return position < 0 ? -position - 1 : position + 1;
+    }
+
+    /**
+     * @param mileage searched mileage
+     * @param inclusive decide if rows with exactly given mileage are counted as lower
+     * @return position of the first row with mileage higher than given one, or not lower when not inclusive
+     */
+    public int positionAbove(double mileage, boolean inclusive) {
+
+        return rows.firstPositionNotMatching(row -> {
+            int compared = Double.compare(cars.mileage(row), mileage);
+            return compared < 0 || (compared == 0 && inclusive);
+        });
+    }
+
+    /**
+     * @param percentile percentile from 0 to 100, nearest rank method
+     * @return position holding given percentile, the index must not be empty
+     */
+    public int percentilePosition(double percentile) {
+
+        int rank = (int) Math.ceil(percentile / 100 * rows.size());
+        return Math.min(Math.max(rank, 1), rows.size()) - 1;
+    }
+
+    private static IntIntToIntFunction order(CarColumns cars) {
+
+        return (first, second) -> {
+            int compared = Double.compare(cars.mileage(first), cars.mileage(second));
+            return compared != 0 ? compared : Integer.compare(first, second);
+        };
+    }
+}
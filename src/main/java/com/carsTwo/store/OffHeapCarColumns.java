@@ -0,0 +1,675 @@
+package com.carsTwo.store;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.*;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Columns kept outside of the heap in direct buffers, so the garbage collector sees a few large
+ * buffers instead of a graph of objects per car. Every car is a fixed-width record of
+ * {@value #RECORD_BYTES} bytes in chunks of {@value #CHUNK_ROWS} rows, components of a car are a run of
+ * ids in an arena of int chunks. Models, wheel models and components are dictionary encoded, only
+ * their distinct values live on the heap.
+ * <p>
+ * Accessors read straight from the records and a Car is created only when a query returns it, so
+ * scans allocate nothing per car. Cars are identified by instance as on the heap: cars added to the
+ * columns and cars created for a row are held weakly, so a row gives the same car again while anything
+ * else refers to it and {@link #rowOf(Car)} finds a row by identity. Cars with equal values are
+ * separate rows.
+ * <p>
+ * Copies share the records, the arena and the held cars. A copy appends only behind the rows of the
+ * version it was copied from, which never change. Removed flags are shared in chunks until a version
+ * changes them, so copying costs a reference per chunk, not the rows.
+ * Prices are kept as fixed-point units at the scale given upfront; a price with more fraction digits
+ * or out of the long range is marked as not exact and its BigDecimal is kept on the heap, shared by the copies.
+ * <p>
+ * Only the columns live off the heap: indexes, running statistics and the group cube built over them,
+ * as well as the dictionaries, stay on the heap. {@link #close()} drops the references of one version
+ * to the buffers, the garbage collector frees them once no version refers to them.
+ */
+public final class OffHeapCarColumns implements CarColumns {
+
+    static final int RECORD_BYTES = 64;
+    static final int CHUNK_ROWS = 1 << 16;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int ARENA_CHUNK_SHIFT = 18;
+    private static final int ARENA_CHUNK_INTS = 1 << ARENA_CHUNK_SHIFT;
+    private static final int DEFAULT_PRICE_SCALE = 2;
+    private static final ByteBuffer[] RELEASED_RECORDS = new ByteBuffer[0];
+    private static final IntBuffer[] RELEASED_ARENA = new IntBuffer[0];
+
+    private static final int PRICE_UNITS = 0;
+    private static final int MILEAGE = 8;
+    private static final int POWER = 16;
+    private static final int COMPONENT_OFFSET = 24;
+    private static final int MODEL = 32;
+    private static final int WHEEL_MODEL = 36;
+    private static final int WHEEL_SIZE = 40;
+    private static final int COMPONENT_COUNT = 44;
+    private static final int ENGINE_TYPE = 52;
+    private static final int BODY_TYPE = 53;
+    private static final int BODY_COLOR = 54;
+    private static final int TYRE_TYPE = 55;
+    private static final int PRICE_SCALE = 56;
+    private static final byte INEXACT_PRICE = Byte.MIN_VALUE;
+
+    private final int priceScale;
+    private final Dictionary models;
+    private final Dictionary wheelModels;
+    private final Dictionary components;
+    private final Map<Integer, BigDecimal> inexactPrices;
+    private final Identities identities;
+
+    private ByteBuffer[] records;
+    private IntBuffer[] arena;
+    private long arenaTop;
+    private int size;
+    private final RowFlags removed;
+
+    public OffHeapCarColumns() {
+        this(DEFAULT_PRICE_SCALE);
+    }
+
+    /**
+     * @param priceScale amount of fraction digits every price is stored with
+     */
+    public OffHeapCarColumns(int priceScale) {
+
+        if (priceScale < 0 || priceScale > 18) {
+            throw new CarsServiceException("Price scale has to be between 0 and 18");
+        }
+        this.priceScale = priceScale;
+        this.models = new Dictionary();
+        this.wheelModels = new Dictionary();
+        this.components = new Dictionary();
+        this.inexactPrices = new ConcurrentHashMap<>();
+        this.identities = new Identities();
+        this.records = new ByteBuffer[0];
+        this.arena = new IntBuffer[0];
+        this.removed = new RowFlags();
+    }
+
+    private OffHeapCarColumns(OffHeapCarColumns copied) {
+        this.priceScale = copied.priceScale;
+        this.models = copied.models;
+        this.wheelModels = copied.wheelModels;
+        this.components = copied.components;
+        this.inexactPrices = copied.inexactPrices;
+        this.identities = copied.identities;
+        this.records = Arrays.copyOf(copied.records, copied.records.length);
+        this.arena = Arrays.copyOf(copied.arena, copied.arena.length);
+        this.arenaTop = copied.arenaTop;
+        this.size = copied.size;
+        this.removed = copied.removed.copy();
+    }
+
+    /**
+     * Creates columns holding given cars, rows follow iteration order of the collection.
+     * @param cars cars to store
+     * @return columns with one row per car
+     */
+    public static OffHeapCarColumns of(Collection<Car> cars) {
+
+        if (Objects.isNull(cars)) {
+            throw new CarsServiceException("Cars collection is null");
+        }
+
+        var columns = new OffHeapCarColumns();
+        try {
+            cars.forEach(columns::add);
+        } catch (RuntimeException e) {
+            columns.close();
+            throw e;
+        }
+        return columns;
+    }
+
+    @Override
+    public void requireStorable(Car car) {
+        checkStorable(car);
+    }
+
+    @Override
+    public int add(Car car) {
+
+        checkStorable(car);
+        var price = CarUtils.toPrice.apply(car);
+        if (rowOf(car) >= 0) {
+            return -1;
+        }
+        long units = Money.floorUnits(price, priceScale);
+        var carComponents = CarBodyUtils.toComponents.apply(CarUtils.toCarBody.apply(car));
+
+        var engine = CarUtils.toEngine.apply(car);
+        var carBody = CarUtils.toCarBody.apply(car);
+        var wheel = CarUtils.toWheel.apply(car);
+
+        int row = size;
+        var record = chunkForAppend(row);
+        int at = offset(row);
+        record.putLong(at + PRICE_UNITS, units);
+        record.putDouble(at + MILEAGE, CarUtils.toMileageValue.applyAsDouble(car));
+        record.putDouble(at + POWER, EngineUtils.toPowerValue.applyAsDouble(engine));
+        record.putLong(at + COMPONENT_OFFSET, appendComponents(carComponents));
+        record.putInt(at + MODEL, models.idOf(CarUtils.toModel.apply(car)));
+        record.putInt(at + WHEEL_MODEL, wheelModels.idOf(WheelUtils.toModel.apply(wheel)));
+        record.putInt(at + WHEEL_SIZE, WheelUtils.toSizeValue.applyAsInt(wheel));
+        record.putInt(at + COMPONENT_COUNT, carComponents.size());
+        record.put(at + ENGINE_TYPE, (byte) EngineUtils.toEngineType.apply(engine).ordinal());
+        record.put(at + BODY_TYPE, (byte) CarBodyUtils.toBodyType.apply(carBody).ordinal());
+        record.put(at + BODY_COLOR, (byte) CarBodyUtils.toBodyColor.apply(carBody).ordinal());
+        record.put(at + TYRE_TYPE, (byte) WheelUtils.toTyreType.apply(wheel).ordinal());
+        if (Money.hasExactUnits(price, priceScale) && price.scale() != INEXACT_PRICE && price.scale() == (byte) price.scale()) {
+            record.put(at + PRICE_SCALE, (byte) price.scale());
+        } else {
+            record.put(at + PRICE_SCALE, INEXACT_PRICE);
+            inexactPrices.put(row, price);
+        }
+
+        identities.register(car, row);
+        size++;
+        return row;
+    }
+
+    @Override
+    public void remove(int row) {
+
+        removed.set(row);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public OffHeapCarColumns copy() {
+
+        requireOpen();
+        return new OffHeapCarColumns(this);
+    }
+
+    /**
+     * @return new columns at the same price scale with the live cars added again, these columns are left open
+     */
+    @Override
+    public OffHeapCarColumns compact() {
+
+        requireOpen();
+        var compacted = new OffHeapCarColumns(priceScale);
+        try {
+            for (int row : liveRows()) {
+                compacted.add(car(row));
+            }
+        } catch (RuntimeException e) {
+            compacted.close();
+            throw e;
+        }
+        return compacted;
+    }
+
+    /**
+     * Drops the references of these columns to the buffers, reading them afterwards fails. The garbage
+     * collector frees the buffers once every version copied from or to these columns is dropped too.
+     */
+    @Override
+    public void close() {
+
+        records = RELEASED_RECORDS;
+        arena = RELEASED_ARENA;
+    }
+
+    /**
+     * @param car stored car, compared by identity
+     * @return live row holding the car or -1 when there is none
+     */
+    @Override
+    public int rowOf(Car car) {
+
+        requireOpen();
+        if (Objects.isNull(car)) {
+            return -1;
+        }
+        var rows = identities.rows(car);
+        for (int i = rows.length - 1; i >= 0; i--) {
+            int row = rows[i];
+            if (row < size && !removed.get(row) && identities.car(row) == car) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int liveCount() {
+        return size - removed.count();
+    }
+
+    @Override
+    public boolean isLive(int row) {
+        return !removed.get(row);
+    }
+
+    /**
+     * @return car held for the row, a new car made of the row values when none is held anymore
+     */
+    @Override
+    public Car car(int row) {
+
+        requireOpen();
+        var held = identities.car(row);
+        if (Objects.nonNull(held)) {
+            return held;
+        }
+        return identities.holdIfAbsent(row, Car
+                .builder()
+                .model(model(row))
+                .price(price(row))
+                .mileage(mileage(row))
+                .engine(Engine
+                        .builder()
+                        .type(engineType(row))
+                        .power(power(row))
+                        .build())
+                .carBody(CarBody
+                        .builder()
+                        .color(bodyColor(row))
+                        .bodyType(bodyType(row))
+                        .components(components(row))
+                        .build())
+                .wheel(Wheel
+                        .builder()
+                        .model(wheelModel(row))
+                        .size(wheelSize(row))
+                        .tyreType(tyreType(row))
+                        .build())
+                .build());
+    }
+
+    @Override
+    public String model(int row) {
+        return models.value(chunk(row).getInt(offset(row) + MODEL));
+    }
+
+    @Override
+    public BigDecimal price(int row) {
+
+        var record = chunk(row);
+        int at = offset(row);
+        byte scale = record.get(at + PRICE_SCALE);
+        if (scale == INEXACT_PRICE) {
+            return inexactPrices.get(row);
+        }
+        return BigDecimal.valueOf(record.getLong(at + PRICE_UNITS), priceScale).setScale(scale, RoundingMode.UNNECESSARY);
+    }
+
+    @Override
+    public boolean isPriceExact(int row) {
+        return chunk(row).get(offset(row) + PRICE_SCALE) != INEXACT_PRICE;
+    }
+
+    @Override
+    public long priceUnits(int row) {
+        return chunk(row).getLong(offset(row) + PRICE_UNITS);
+    }
+
+    @Override
+    public int priceScale() {
+        return priceScale;
+    }
+
+    @Override
+    public double mileage(int row) {
+        return chunk(row).getDouble(offset(row) + MILEAGE);
+    }
+
+    @Override
+    public double power(int row) {
+        return chunk(row).getDouble(offset(row) + POWER);
+    }
+
+    @Override
+    public String wheelModel(int row) {
+        return wheelModels.value(chunk(row).getInt(offset(row) + WHEEL_MODEL));
+    }
+
+    @Override
+    public int wheelSize(int row) {
+        return chunk(row).getInt(offset(row) + WHEEL_SIZE);
+    }
+
+    @Override
+    public int componentCount(int row) {
+        return chunk(row).getInt(offset(row) + COMPONENT_COUNT);
+    }
+
+    @Override
+    public List<String> components(int row) {
+
+        var record = chunk(row);
+        int at = offset(row);
+        int count = record.getInt(at + COMPONENT_COUNT);
+        var carComponents = new ArrayList<String>(count);
+        if (count > 0) {
+            long componentOffset = record.getLong(at + COMPONENT_OFFSET);
+            var ids = arenaChunk(componentOffset);
+            int from = (int) (componentOffset & (ARENA_CHUNK_INTS - 1));
+            for (int i = from; i < from + count; i++) {
+                carComponents.add(components.value(ids.get(i)));
+            }
+        }
+        return carComponents;
+    }
+
+    @Override
+    public boolean containsComponents(int row, List<String> required) {
+
+        var record = chunk(row);
+        int at = offset(row);
+        int count = record.getInt(at + COMPONENT_COUNT);
+        if (count == 0) {
+            return required.isEmpty();
+        }
+        long componentOffset = record.getLong(at + COMPONENT_OFFSET);
+        var ids = arenaChunk(componentOffset);
+        int from = (int) (componentOffset & (ARENA_CHUNK_INTS - 1));
+        for (int i = 0; i < required.size(); i++) {
+            if (!contains(ids, from, count, required.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int engineTypeOrdinal(int row) {
+        return chunk(row).get(offset(row) + ENGINE_TYPE);
+    }
+
+    @Override
+    public int bodyTypeOrdinal(int row) {
+        return chunk(row).get(offset(row) + BODY_TYPE);
+    }
+
+    @Override
+    public int bodyColorOrdinal(int row) {
+        return chunk(row).get(offset(row) + BODY_COLOR);
+    }
+
+    @Override
+    public int tyreTypeOrdinal(int row) {
+        return chunk(row).get(offset(row) + TYRE_TYPE);
+    }
+
+    /**
+     * @return bytes of direct memory held by the records and the component arena
+     */
+    public long offHeapBytes() {
+        return (long) records.length * CHUNK_ROWS * RECORD_BYTES + (long) arena.length * ARENA_CHUNK_INTS * Integer.BYTES;
+    }
+
+
+    private ByteBuffer chunk(int row) {
+
+        var chunks = records;
+        int chunk = row >>> CHUNK_SHIFT;
+        if (chunk >= chunks.length) {
+            throw new CarsServiceException("Cars stored off-heap are already released");
+        }
+        return chunks[chunk];
+    }
+
+    private static int offset(int row) {
+        return (row & (CHUNK_ROWS - 1)) * RECORD_BYTES;
+    }
+
+    private ByteBuffer chunkForAppend(int row) {
+
+        int chunk = row >>> CHUNK_SHIFT;
+        if (chunk == records.length) {
+            records = Arrays.copyOf(records, chunk + 1);
+            records[chunk] = allocate(CHUNK_ROWS * RECORD_BYTES);
+        }
+        return records[chunk];
+    }
+
+    private IntBuffer arenaChunk(long componentOffset) {
+
+        var chunks = arena;
+        long chunk = componentOffset >>> ARENA_CHUNK_SHIFT;
+        if (chunk >= chunks.length) {
+            throw new CarsServiceException("Cars stored off-heap are already released");
+        }
+        return chunks[(int) chunk];
+    }
+
+    /**
+     * Components of a car never cross a chunk of the arena, a run which doesn't fit starts the next chunk.
+     * @return arena offset of the first component
+     */
+    private long appendComponents(List<String> carComponents) {
+
+        int count = carComponents.size();
+        long componentOffset = arenaTop;
+        if (count == 0) {
+            return componentOffset;
+        }
+        if ((componentOffset & (ARENA_CHUNK_INTS - 1)) + count > ARENA_CHUNK_INTS) {
+            componentOffset = ((componentOffset >>> ARENA_CHUNK_SHIFT) + 1) << ARENA_CHUNK_SHIFT;
+        }
+        int chunk = (int) (componentOffset >>> ARENA_CHUNK_SHIFT);
+        if (chunk == arena.length) {
+            arena = Arrays.copyOf(arena, chunk + 1);
+            arena[chunk] = allocate(ARENA_CHUNK_INTS * Integer.BYTES).asIntBuffer();
+        }
+        var ids = arena[chunk];
+        int from = (int) (componentOffset & (ARENA_CHUNK_INTS - 1));
+        for (int i = 0; i < count; i++) {
+            ids.put(from + i, components.idOf(carComponents.get(i)));
+        }
+        arenaTop = componentOffset + count;
+        return componentOffset;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private boolean contains(IntBuffer ids, int from, int count, String component) {
+
+        for (int i = from; i < from + count; i++) {
+            if (Objects.equals(components.value(ids.get(i)), component)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void requireOpen() {
+
+        if (records == RELEASED_RECORDS) {
+            throw new CarsServiceException("Cars stored off-heap are already released");
+        }
+    }
+
+    /**
+     * Checks the car before anything is changed.
+     */
+    private void checkStorable(Car car) {
+
+        HeapCarColumns.requireComplete(car);
+        requireOpen();
+
+        if (CarBodyUtils.toComponents.apply(CarUtils.toCarBody.apply(car)).size() > ARENA_CHUNK_INTS) {
+            throw new CarsServiceException("Car can't have more than " + ARENA_CHUNK_INTS + " components");
+        }
+        if (size == Integer.MAX_VALUE) {
+            throw new CarsServiceException("Off-heap columns are full");
+        }
+    }
+
+    /**
+     * Cars added to or created for rows of the columns and every copy of them, held weakly. A car is
+     * registered at each row it was added at, rows of a car only grow, so a version finds the car at the
+     * last of them it holds. A row registered by a dropped copy is taken over by the next car appended
+     * there, the columns check that the row still holds the car.
+     */
+    private static final class Identities {
+
+        private static final int[] NO_ROWS = new int[0];
+
+        private final ConcurrentHashMap<Held, int[]> rows = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Held> cars = new ConcurrentHashMap<>();
+        private final ReferenceQueue<Car> collected = new ReferenceQueue<>();
+
+        int[] rows(Car car) {
+            return rows.getOrDefault(new Held(car, -1, null), NO_ROWS);
+        }
+
+        Car car(int row) {
+
+            var held = cars.get(row);
+            return Objects.isNull(held) ? null : held.get();
+        }
+
+        void register(Car car, int row) {
+
+            expunge();
+            var held = new Held(car, row, collected);
+            rows.merge(held, new int[]{row}, Identities::append);
+            cars.put(row, held);
+        }
+
+        /**
+         * @return car already held for the row by another reader or given car, held from now on
+         */
+        Car holdIfAbsent(int row, Car car) {
+
+            expunge();
+            var held = new Held(car, row, collected);
+            while (true) {
+                var current = cars.putIfAbsent(row, held);
+                if (Objects.isNull(current) || (Objects.isNull(current.get()) && cars.replace(row, current, held))) {
+                    rows.merge(held, new int[]{row}, Identities::append);
+                    return car;
+                }
+                var other = current.get();
+                if (Objects.nonNull(other)) {
+                    return other;
+                }
+            }
+        }
+
+        private void expunge() {
+
+            for (Reference<? extends Car> reference; (reference = collected.poll()) != null; ) {
+                var held = (Held) reference;
+                rows.remove(held);
+                cars.remove(held.row, held);
+            }
+        }
+
+        private static int[] append(int[] rows, int[] added) {
+
+            var appended = Arrays.copyOf(rows, rows.length + 1);
+            appended[rows.length] = added[0];
+            return appended;
+        }
+    }
+
+
+    /**
+     * Weak reference to a car equal to another one holding the same instance, a collected car is equal
+     * only to its own reference.
+     */
+    private static final class Held extends WeakReference<Car> {
+
+        private final int row;
+        private final int hash;
+
+        Held(Car car, int row, ReferenceQueue<Car> queue) {
+
+            super(car, queue);
+            this.row = row;
+            this.hash = System.identityHashCode(car);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Held)) {
+                return false;
+            }
+            var car = get();
+            return Objects.nonNull(car) && car == ((Held) other).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    /**
+     * Distinct strings shared by every copy. Ids are only appended, a reader resolves ids of its
+     * version while the writer appends new ones.
+     */
+    private static final class Dictionary {
+
+        private final ObjectIntHashMap<String> ids = new ObjectIntHashMap<>();
+        private volatile String[] values = new String[16];
+        private int size;
+
+        /**
+         * @return id of the value, -1 for null
+         */
+        int idOf(String value) {
+
+            if (Objects.isNull(value)) {
+                return -1;
+            }
+            int id = ids.getIfAbsent(value, -1);
+            if (id >= 0) {
+                return id;
+            }
+            var current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = value;
+            values = current;
+            ids.put(value, size);
+            return size++;
+        }
+
+        String value(int id) {
+            return id < 0 ? null : values[id];
+        }
+    }
+}
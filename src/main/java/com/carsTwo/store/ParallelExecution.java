@@ -0,0 +1,316 @@
+package com.carsTwo.store;
+
+import com.carsTwo.exception.CarsServiceException;
+import org.eclipse.collections.api.block.function.primitive.IntIntToIntFunction;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether work over rows runs in the calling thread or is split over a fork-join pool.
+ * Work over fewer rows than the threshold always stays sequential. Parallel work keeps the order of
+ * the rows: partial results are always merged left to right and sorting stays stable.
+ * <p>
+ * A dedicated execution owns its pool and shuts it down on {@link #close()}, a pool given from
+ * outside stays in the hands of its owner.
+ */
+public final class ParallelExecution implements AutoCloseable {
+
+    public static final ParallelExecution SEQUENTIAL = new ParallelExecution(null, Integer.MAX_VALUE, false);
+
+    private static final int TASKS_PER_THREAD = 4;
+    private static final int MIN_TASK_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final boolean ownsPool;
+
+    private ParallelExecution(ForkJoinPool pool, int threshold, boolean ownsPool) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.ownsPool = ownsPool;
+    }
+
+    /**
+     * @param pool pool running parallel work
+     * @param threshold minimal amount of rows worth splitting
+     * @return execution using given pool
+     */
+    public static ParallelExecution of(ForkJoinPool pool, int threshold) {
+
+        if (Objects.isNull(pool)) {
+            throw new CarsServiceException("Fork join pool is null");
+        }
+        if (threshold < 0) {
+            throw new CarsServiceException("Parallel threshold can't be negative");
+        }
+        return new ParallelExecution(pool, threshold, false);
+    }
+
+    /**
+     * @param threshold minimal amount of rows worth splitting
+     * @return execution owning a new pool with a thread per available processor, the pool ends on close
+     */
+    public static ParallelExecution dedicated(int threshold) {
+
+        if (threshold < 0) {
+            throw new CarsServiceException("Parallel threshold can't be negative");
+        }
+        return new ParallelExecution(new ForkJoinPool(Runtime.getRuntime().availableProcessors()), threshold, true);
+    }
+
+    /**
+     * Shuts down the pool when the execution owns it, work already started is finished first.
+     */
+    @Override
+    public void close() {
+
+        if (ownsPool) {
+            pool.shutdown();
+        }
+    }
+
+    public boolean isParallel(int rowCount) {
+        return Objects.nonNull(pool) && rowCount >= threshold && !pool.isShutdown();
+    }
+
+    /**
+     * Runs work inside the pool, so parallel operations it starts (like Arrays.parallelSort) use the pool too.
+     * @param work work to run
+     * @param rowCount amount of rows the work touches
+     * @return result of the work
+     */
+    public <T> T invoke(Supplier<T> work, int rowCount) {
+
+        if (!isParallel(rowCount) || ForkJoinTask.getPool() == pool) {
+            return work.get();
+        }
+        return pool.submit(work::get).join();
+    }
+
+    /**
+     * Runs action for every position, positions of one task form a continuous range.
+     * @param count amount of positions, positions are numbered from 0
+     * @param action action run for a position, has to be safe to run for different positions at once
+     */
+    public void forEach(int count, IntConsumer action) {
+
+        if (!isParallel(count)) {
+            for (int position = 0; position < count; position++) {
+                action.accept(position);
+            }
+            return;
+        }
+        pool.invoke(new ForEachTask(0, count, taskSize(count), action));
+    }
+
+    /**
+     * Accumulates rows into partial results, every partial result covers a continuous range of rows.
+     * @param rows rows to accumulate
+     * @param supplier creates an empty partial result
+     * @param accumulator adds row to a partial result
+     * @param combiner merges right partial result into the left one
+     * @return result covering all rows
+     */
+    public <A> A reduce(int[] rows, Supplier<A> supplier, ObjIntConsumer<A> accumulator, BiConsumer<A, A> combiner) {
+
+        if (!isParallel(rows.length)) {
+            var result = supplier.get();
+            for (int row : rows) {
+                accumulator.accept(result, row);
+            }
+            return result;
+        }
+        return pool.invoke(new ReduceTask<>(rows, 0, rows.length, taskSize(rows.length), supplier, accumulator, combiner));
+    }
+
+    /**
+     * Stable sort of rows.
+     * @param rows rows to sort in place
+     * @param comparator compares two rows
+     */
+    public void sort(int[] rows, IntIntToIntFunction comparator) {
+
+        if (!isParallel(rows.length)) {
+            RowSort.sort(rows, comparator);
+            return;
+        }
+        pool.invoke(new SortTask(rows, new int[rows.length], 0, rows.length, taskSize(rows.length), comparator));
+    }
+
+    /**
+     * Selects the smallest rows, in parallel every task keeps its own bounded heap and the winners are selected again.
+     * @param rows candidate rows
+     * @param limit maximal amount of selected rows
+     * @param comparator total order of rows
+     * @return at most limit smallest rows in ascending order
+     */
+    public int[] selectSmallest(int[] rows, int limit, IntIntToIntFunction comparator) {
+
+        if (!isParallel(rows.length)) {
+            return RowSort.selectSmallest(rows, limit, comparator);
+        }
+        return pool.invoke(new SelectTask(rows, 0, rows.length, taskSize(rows.length), limit, comparator));
+    }
+
+    private int taskSize(int rowCount) {
+        return Math.max(MIN_TASK_SIZE, rowCount / (pool.getParallelism() * TASKS_PER_THREAD));
+    }
+
+
+    @SuppressWarnings("serial")
+    private static final class ForEachTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final int taskSize;
+        private final IntConsumer action;
+
+        ForEachTask(int from, int to, int taskSize, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.taskSize = taskSize;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= taskSize) {
+                for (int position = from; position < to; position++) {
+                    action.accept(position);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachTask(from, middle, taskSize, action), new ForEachTask(middle, to, taskSize, action));
+        }
+    }
+
+
+    @SuppressWarnings("serial")
+    private static final class ReduceTask<A> extends RecursiveTask<A> {
+
+        private final int[] rows;
+        private final int from;
+        private final int to;
+        private final int taskSize;
+        private final Supplier<A> supplier;
+        private final ObjIntConsumer<A> accumulator;
+        private final BiConsumer<A, A> combiner;
+
+        ReduceTask(int[] rows, int from, int to, int taskSize, Supplier<A> supplier, ObjIntConsumer<A> accumulator, BiConsumer<A, A> combiner) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.taskSize = taskSize;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+
+            if (to - from <= taskSize) {
+                var result = supplier.get();
+                for (int i = from; i < to; i++) {
+                    accumulator.accept(result, rows[i]);
+                }
+                return result;
+            }
+
+            int middle = (from + to) >>> 1;
+            var right = new ReduceTask<>(rows, middle, to, taskSize, supplier, accumulator, combiner);
+            right.fork();
+            var left = new ReduceTask<>(rows, from, middle, taskSize, supplier, accumulator, combiner).compute();
+            combiner.accept(left, right.join());
+            return left;
+        }
+    }
+
+
+    @SuppressWarnings("serial")
+    private static final class SortTask extends RecursiveAction {
+
+        private final int[] rows;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+        private final int taskSize;
+        private final IntIntToIntFunction comparator;
+
+        SortTask(int[] rows, int[] buffer, int from, int to, int taskSize, IntIntToIntFunction comparator) {
+            this.rows = rows;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.taskSize = taskSize;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= taskSize) {
+                RowSort.mergeSort(rows, buffer, 0, from, to, comparator);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortTask(rows, buffer, from, middle, taskSize, comparator),
+                    new SortTask(rows, buffer, middle, to, taskSize, comparator));
+            RowSort.merge(rows, buffer, 0, from, middle, to, comparator);
+        }
+    }
+
+
+    @SuppressWarnings("serial")
+    private static final class SelectTask extends RecursiveTask<int[]> {
+
+        private final int[] rows;
+        private final int from;
+        private final int to;
+        private final int taskSize;
+        private final int limit;
+        private final IntIntToIntFunction comparator;
+
+        SelectTask(int[] rows, int from, int to, int taskSize, int limit, IntIntToIntFunction comparator) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.taskSize = taskSize;
+            this.limit = limit;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected int[] compute() {
+
+            if (to - from <= taskSize) {
+                var range = new int[to - from];
+                System.arraycopy(rows, from, range, 0, range.length);
+                return RowSort.selectSmallest(range, limit, comparator);
+            }
+
+            int middle = (from + to) >>> 1;
+            var right = new SelectTask(rows, middle, to, taskSize, limit, comparator);
+            right.fork();
+            var left = new SelectTask(rows, from, middle, taskSize, limit, comparator).compute();
+            var rightSelected = right.join();
+
+            var candidates = new int[left.length + rightSelected.length];
+            System.arraycopy(left, 0, candidates, 0, left.length);
+            System.arraycopy(rightSelected, 0, candidates, left.length, rightSelected.length);
+            return RowSort.selectSmallest(candidates, limit, comparator);
+        }
+    }
+}
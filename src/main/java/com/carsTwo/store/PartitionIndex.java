@@ -0,0 +1,144 @@
+package com.carsTwo.store;
+
+import org.eclipse.collections.api.block.function.primitive.IntIntToIntFunction;
+import org.eclipse.collections.api.block.function.primitive.IntToObjectFunction;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.EnumMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Secondary index splitting rows into one partition per enum constant. Rows inside a partition are
+ * kept ordered by given comparator (ties broken by row number), so a query for one constant touches
+ * only its own partition and gets it already in the required order. Every partition is split into
+ * blocks, so adding or removing a row shifts only its own block, and copies share the blocks they
+ * didn't change.
+ * @param <E> enum the rows are partitioned by
+ */
+public class PartitionIndex<E extends Enum<E>> {
+
+    private final Class<E> keyType;
+    private final EnumMap<E, SortedRows> partitions;
+    private final IntToObjectFunction<E> keyOfRow;
+    private final IntIntToIntFunction order;
+
+    /**
+     * @param keyType enum class the rows are partitioned by
+     * @param keyOfRow returns partition key of a row
+     * @param order order of rows inside partition, rows equal in this order are kept by row number
+     */
+    public PartitionIndex(Class<E> keyType, IntToObjectFunction<E> keyOfRow, IntIntToIntFunction order) {
+        this.keyType = keyType;
+        this.partitions = new EnumMap<>(keyType);
+        this.keyOfRow = keyOfRow;
+        this.order = (first, second) -> {
+            int compared = order.valueOf(first, second);
+            return compared != 0 ? compared : Integer.compare(first, second);
+        };
+        for (E key : keyType.getEnumConstants()) {
+            partitions.put(key, new SortedRows(this.order));
+        }
+    }
+
+    /**
+     * Fills the index with live rows, sorting every partition once instead of inserting rows one by one.
+     * @param rowCount amount of rows to index
+     * @param isLive decide which rows should be indexed
+     * @return this index
+     */
+    public PartitionIndex<E> build(int rowCount, IntPredicate isLive) {
+
+        var collected = new EnumMap<E, IntArrayList>(keyType);
+        for (E key : keyType.getEnumConstants()) {
+            collected.put(key, new IntArrayList());
+        }
+        for (int row = 0; row < rowCount; row++) {
+            if (isLive.test(row)) {
+                collected.get(keyOfRow.valueOf(row)).add(row);
+            }
+        }
+        collected.forEach((key, rows) -> {
+            var sorted = rows.toArray();
+            RowSort.sort(sorted, order);
+            partitions.get(key).load(sorted);
+        });
+        return this;
+    }
+
+    /**
+     * Fills one partition with rows which are already in partition order.
+     * @param key partition key
+     * @param rows ordered rows of the partition
+     * @return this index
+     */
+    public PartitionIndex<E> load(E key, int[] rows) {
+
+        partitions.get(key).load(rows);
+        return this;
+    }
+
+    /**
+     * Takes over all partitions of an index over a copy of the same columns, their blocks are shared until
+     * either index changes them.
+     * @param source index the partitions are taken from
+     * @return this index
+     */
+    PartitionIndex<E> share(PartitionIndex<E> source) {
+
+        source.partitions.forEach((key, rows) -> partitions.put(key, rows.copy(order)));
+        return this;
+    }
+
+    public void add(int row) {
+        partitions.get(keyOfRow.valueOf(row)).add(row);
+    }
+
+    public void remove(int row) {
+        partitions.get(keyOfRow.valueOf(row)).remove(row);
+    }
+
+    /**
+     * @param key partition key
+     * @return copy of all partition rows in partition order
+     */
+    public int[] rows(E key) {
+
+        var rows = partitions.get(key);
+        return rows.rows(0, rows.size());
+    }
+
+    /**
+     * @param key partition key
+     * @param from first position, inclusive
+     * @param to last position, exclusive
+     * @return copy of partition rows between given positions
+     */
+    public int[] rows(E key, int from, int to) {
+        return partitions.get(key).rows(from, to);
+    }
+
+    /**
+     * Binary search over partition order.
+     * @param key partition key
+     * @param isBefore predicate true for a leading part of the partition and false for the rest
+     * @return position of the first row for which predicate is false
+     */
+    public int firstPositionNotMatching(E key, IntPredicate isBefore) {
+        return partitions.get(key).firstPositionNotMatching(isBefore);
+    }
+
+    /**
+     * @param key partition key
+     * @param row any row of the partition, also a removed one
+     * @return position of the first row following given row in partition order
+     */
+    public int positionAfter(E key, int row) {
+
+        int position = partitions.get(key).positionOf(row);
+        return position < 0 ? -position - 1 : position + 1;
+    }
+
+    public int size(E key) {
+        return partitions.get(key).size();
+    }
+}
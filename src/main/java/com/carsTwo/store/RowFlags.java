@@ -0,0 +1,83 @@
+package com.carsTwo.store;
+
+import java.util.Arrays;
+
+/**
+ * One bit per row in chunks of {@value #CHUNK_ROWS} rows. Copies share the chunks, a chunk is cloned
+ * by the first change of a version which doesn't own it yet, so copying costs one reference per chunk.
+ */
+final class RowFlags {
+
+    static final int CHUNK_ROWS = 1 << 16;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_WORDS = CHUNK_ROWS >>> 6;
+
+    private long[][] chunks;
+    private boolean[] owned;
+    private int count;
+
+    RowFlags() {
+        this(new long[0][], new boolean[0], 0);
+    }
+
+    private RowFlags(long[][] chunks, boolean[] owned, int count) {
+        this.chunks = chunks;
+        this.owned = owned;
+        this.count = count;
+    }
+
+    boolean get(int row) {
+
+        int chunk = row >>> CHUNK_SHIFT;
+        return chunk < chunks.length && (chunks[chunk][(row & (CHUNK_ROWS - 1)) >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return false when the flag was already set
+     */
+    boolean set(int row) {
+
+        if (get(row)) {
+            return false;
+        }
+        var words = writableChunk(row >>> CHUNK_SHIFT);
+        words[(row & (CHUNK_ROWS - 1)) >>> 6] |= 1L << row;
+        count++;
+        return true;
+    }
+
+    /**
+     * @return amount of set flags
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return flags sharing all chunks with these ones until either side changes them
+     */
+    RowFlags copy() {
+
+        Arrays.fill(owned, false);
+        return new RowFlags(chunks.clone(), new boolean[owned.length], count);
+    }
+
+    private long[] writableChunk(int chunk) {
+
+        if (chunk >= chunks.length) {
+            int previous = chunks.length;
+            chunks = Arrays.copyOf(chunks, chunk + 1);
+            owned = Arrays.copyOf(owned, chunk + 1);
+            for (int added = previous; added <= chunk; added++) {
+                chunks[added] = new long[CHUNK_WORDS];
+                owned[added] = true;
+            }
+        }
+        if (!owned[chunk]) {
+            chunks[chunk] = chunks[chunk].clone();
+            owned[chunk] = true;
+        }
+        return chunks[chunk];
+    }
+}
@@ -0,0 +1,175 @@
+package com.carsTwo.store;
+
+import org.eclipse.collections.api.block.function.primitive.IntIntToIntFunction;
+
+/**
+ * Stable sorting of row numbers with a primitive comparator, so ordering rows never boxes the
+ * compared values. Stability keeps rows with equal keys in storage order, the same guarantee
+ * Stream.sorted gives.
+ */
+public final class RowSort {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private RowSort() {
+    }
+
+    /**
+     * @param rowCount amount of rows, rows are numbered from 0
+     * @return rows 0..rowCount-1 in ascending order
+     */
+    public static int[] identity(int rowCount) {
+
+        var rows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            rows[row] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Sorts given rows in place.
+     * @param rows rows to sort
+     * @param comparator compares two rows, negative when first one should be placed earlier
+     */
+    public static void sort(int[] rows, IntIntToIntFunction comparator) {
+        sort(rows, 0, rows.length, comparator);
+    }
+
+    public static void sort(int[] rows, int from, int to, IntIntToIntFunction comparator) {
+
+        if (to - from < 2) {
+            return;
+        }
+        var buffer = new int[to - from];
+        mergeSort(rows, buffer, from, from, to, comparator);
+    }
+
+    /**
+     * Selects the smallest rows with a bounded heap, without sorting all of them.
+     * @param rows candidate rows
+     * @param limit maximal amount of selected rows
+     * @param comparator compares two rows, has to be a total order for the result to be deterministic
+     * @return at most limit smallest rows in ascending order
+     */
+    public static int[] selectSmallest(int[] rows, int limit, IntIntToIntFunction comparator) {
+
+        int heapSize = Math.min(limit, rows.length);
+        if (heapSize == 0) {
+            return new int[0];
+        }
+
+        var heap = new int[heapSize];
+        int filled = 0;
+        for (int row : rows) {
+            if (filled < heapSize) {
+                heap[filled] = row;
+                siftUp(heap, filled++, comparator);
+            } else if (comparator.valueOf(row, heap[0]) < 0) {
+                heap[0] = row;
+                siftDown(heap, heapSize, comparator);
+            }
+        }
+
+        for (int last = heapSize - 1; last > 0; last--) {
+            int largest = heap[0];
+            heap[0] = heap[last];
+            heap[last] = largest;
+            siftDown(heap, last, comparator);
+        }
+        return heap;
+    }
+
+    private static void siftUp(int[] heap, int position, IntIntToIntFunction comparator) {
+
+        int row = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (comparator.valueOf(heap[parent], row) >= 0) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = row;
+    }
+
+    private static void siftDown(int[] heap, int size, IntIntToIntFunction comparator) {
+
+        int row = heap[0];
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && comparator.valueOf(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (comparator.valueOf(heap[child], row) <= 0) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = row;
+    }
+
+    /**
+     * @param buffer scratch space, position p of rows uses position p - offset of the buffer
+     * @param offset first position of rows the buffer covers
+     */
+    static void mergeSort(int[] rows, int[] buffer, int offset, int from, int to, IntIntToIntFunction comparator) {
+
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(rows, from, to, comparator);
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(rows, buffer, offset, from, middle, comparator);
+        mergeSort(rows, buffer, offset, middle, to, comparator);
+
+        merge(rows, buffer, offset, from, middle, to, comparator);
+    }
+
+    /**
+     * Merges two sorted neighbouring ranges, on equal rows the one from the left range goes first.
+     * @param buffer scratch space, positions from - offset..middle - offset are used
+     * @param offset first position of rows the buffer covers
+     */
+    static void merge(int[] rows, int[] buffer, int offset, int from, int middle, int to, IntIntToIntFunction comparator) {
+
+        if (comparator.valueOf(rows[middle - 1], rows[middle]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(rows, from, buffer, from - offset, middle - from);
+        int left = from - offset;
+        int leftEnd = middle - offset;
+        int right = middle;
+        int target = from;
+
+        while (left < leftEnd && right < to) {
+            if (comparator.valueOf(rows[right], buffer[left]) < 0) {
+                rows[target++] = rows[right++];
+            } else {
+                rows[target++] = buffer[left++];
+            }
+        }
+        System.arraycopy(buffer, left, rows, target, leftEnd - left);
+    }
+
+    private static void insertionSort(int[] rows, int from, int to, IntIntToIntFunction comparator) {
+
+        for (int i = from + 1; i < to; i++) {
+            int row = rows[i];
+            int j = i - 1;
+            while (j >= from && comparator.valueOf(rows[j], row) > 0) {
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            rows[j + 1] = row;
+        }
+    }
+}
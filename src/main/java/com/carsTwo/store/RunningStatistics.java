@@ -0,0 +1,281 @@
+package com.carsTwo.store;
+
+import com.carsTwo.model.CarStatistic;
+import com.carsTwo.model.Money;
+import com.carsTwo.model.Statistic;
+import com.carsTwo.model.enums.StatisticAttribute;
+import org.eclipse.collections.api.block.function.primitive.IntIntToIntFunction;
+
+import java.math.BigDecimal;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Statistics of price, mileage and engine power kept up to date on every added or removed row,
+ * so reading them doesn't depend on the fleet size. Every change costs O(log n): rows are also kept
+ * ordered by every attribute, which keeps minimum and maximum correct when the current extreme is
+ * removed. Sums are compensated and variance uses Welford's algorithm, both reversible on removal.
+ * <p>
+ * Copies share the blocks of the ordered rows until they change them, see {@link SortedRows}.
+ */
+public class RunningStatistics {
+
+    private final CarColumns cars;
+
+    private final PriceStatistic price;
+    private final DoubleStatistic mileage;
+    private final DoubleStatistic power;
+
+    public RunningStatistics(CarColumns cars) {
+        this.cars = cars;
+        this.price = new PriceStatistic(new SortedRows(priceOrder(cars)));
+        this.mileage = new DoubleStatistic(cars::mileage, new SortedRows(valueOrder(cars::mileage)));
+        this.power = new DoubleStatistic(cars::power, new SortedRows(valueOrder(cars::power)));
+    }
+
+    private RunningStatistics(CarColumns cars, RunningStatistics source) {
+        this.cars = cars;
+        this.price = new PriceStatistic(source.price.rows.copy(priceOrder(cars)));
+        this.mileage = new DoubleStatistic(cars::mileage, source.mileage.rows.copy(valueOrder(cars::mileage)));
+        this.power = new DoubleStatistic(cars::power, source.power.rows.copy(valueOrder(cars::power)));
+        price.copyFrom(source.price);
+        mileage.copyFrom(source.mileage);
+        power.copyFrom(source.power);
+    }
+
+    /**
+     * Counts all live rows of the columns.
+     * @return this statistics
+     */
+    public RunningStatistics build() {
+
+        for (int row = 0; row < cars.size(); row++) {
+            if (cars.isLive(row)) {
+                add(row);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param columns copy of the counted columns with the same rows
+     * @return statistics over given columns, changed independently of these ones
+     */
+    public RunningStatistics copy(CarColumns columns) {
+        return new RunningStatistics(columns, this);
+    }
+
+    public void add(int row) {
+        price.add(row);
+        mileage.add(row);
+        power.add(row);
+    }
+
+    public void remove(int row) {
+        price.remove(row);
+        mileage.remove(row);
+        power.remove(row);
+    }
+
+    public CarStatistic statistic(StatisticAttribute statisticAttribute) {
+
+        return switch (statisticAttribute) {
+            case PRICE -> CarStatistic.builder().price(price.statistic()).build();
+            case MILEAGE -> CarStatistic.builder().mileage(mileage.statistic()).build();
+            case ENGINE_POWER -> CarStatistic.builder().power(power.statistic()).build();
+        };
+    }
+
+
+    private static IntIntToIntFunction priceOrder(CarColumns cars) {
+
+        return (first, second) -> {
+            int compared = cars.comparePrices(first, second);
+            return compared != 0 ? compared : Integer.compare(first, second);
+        };
+    }
+
+    private static IntIntToIntFunction valueOrder(IntToDoubleFunction column) {
+
+        return (first, second) -> {
+            int compared = Double.compare(column.applyAsDouble(first), column.applyAsDouble(second));
+            return compared != 0 ? compared : Integer.compare(first, second);
+        };
+    }
+
+
+    private final class PriceStatistic {
+
+        private final SortedRows rows;
+        private long count;
+        private final Money.Sum unitsSum = new Money.Sum();
+        private final Welford moments = new Welford();
+
+        PriceStatistic(SortedRows rows) {
+            this.rows = rows;
+        }
+
+        void add(int row) {
+
+            rows.add(row);
+            count++;
+            cars.addPrice(unitsSum, row);
+            moments.add(cars.priceUnitsValue(row));
+        }
+
+        void remove(int row) {
+
+            rows.remove(row);
+            count--;
+            cars.subtractPrice(unitsSum, row);
+            moments.remove(cars.priceUnitsValue(row));
+        }
+
+        void copyFrom(PriceStatistic source) {
+
+            count = source.count;
+            unitsSum.copyFrom(source.unitsSum);
+            moments.copyFrom(source.moments);
+        }
+
+        Statistic<BigDecimal> statistic() {
+
+            int scale = cars.priceScale();
+            double unit = Math.pow(10, -scale);
+            var sum = unitsSum.toBigDecimal(scale);
+
+            return Statistic
+                    .<BigDecimal>builder()
+                    .min(count == 0 ? null : cars.price(rows.get(0)))
+                    .max(count == 0 ? null : cars.price(rows.get(rows.size() - 1)))
+                    .average(unitsSum.average(count, scale))
+                    .count(count)
+                    .sum(sum)
+                    .variance(moments.variance() * unit * unit)
+                    .standardDeviation(Math.sqrt(moments.variance()) * unit)
+                    .build();
+        }
+    }
+
+
+    private static final class DoubleStatistic {
+
+        private final IntToDoubleFunction column;
+        private final SortedRows rows;
+        private final Welford moments = new Welford();
+        private double sum;
+        private double sumCompensation;
+        private double simpleSum;
+
+        DoubleStatistic(IntToDoubleFunction column, SortedRows rows) {
+            this.column = column;
+            this.rows = rows;
+        }
+
+        void add(int row) {
+
+            double value = column.applyAsDouble(row);
+            rows.add(row);
+            moments.add(value);
+            addToSum(value);
+        }
+
+        void copyFrom(DoubleStatistic source) {
+
+            moments.copyFrom(source.moments);
+            sum = source.sum;
+            sumCompensation = source.sumCompensation;
+            simpleSum = source.simpleSum;
+        }
+
+        void remove(int row) {
+
+            double value = column.applyAsDouble(row);
+            rows.remove(row);
+            moments.remove(value);
+            addToSum(-value);
+            if (moments.count == 0) {
+                sum = 0;
+                sumCompensation = 0;
+                simpleSum = 0;
+            }
+        }
+
+        Statistic<Double> statistic() {
+
+            double total = sum();
+            boolean empty = rows.size() == 0;
+            return Statistic
+                    .<Double>builder()
+                    .min(empty ? Double.POSITIVE_INFINITY : column.applyAsDouble(rows.get(0)))
+                    .max(empty ? Double.NEGATIVE_INFINITY : column.applyAsDouble(rows.get(rows.size() - 1)))
+                    .average(moments.count == 0 ? 0.0 : total / moments.count)
+                    .count(moments.count)
+                    .sum(total)
+                    .variance(moments.variance())
+                    .standardDeviation(Math.sqrt(moments.variance()))
+                    .build();
+        }
+
+        private void addToSum(double value) {
+
+            simpleSum += value;
+            double compensated = value - sumCompensation;
+            double next = sum + compensated;
+            sumCompensation = (next - sum) - compensated;
+            sum = next;
+        }
+
+        private double sum() {
+
+            double total = sum - sumCompensation;
+            if (Double.isNaN(total) && Double.isInfinite(simpleSum)) {
+                return simpleSum;
+            }
+            return total;
+        }
+    }
+
+
+    private static final class Welford {
+
+        private long count;
+        private double mean;
+        private double squaredDifferences;
+
+        void add(double value) {
+
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            squaredDifferences += delta * (value - mean);
+        }
+
+        void remove(double value) {
+
+            if (count <= 1) {
+                clear();
+                return;
+            }
+            double previousMean = (count * mean - value) / (count - 1);
+            squaredDifferences = Math.max(0, squaredDifferences - (value - mean) * (value - previousMean));
+            mean = previousMean;
+            count--;
+        }
+
+        void copyFrom(Welford source) {
+            count = source.count;
+            mean = source.mean;
+            squaredDifferences = source.squaredDifferences;
+        }
+
+        void clear() {
+            count = 0;
+            mean = 0;
+            squaredDifferences = 0;
+        }
+
+        double variance() {
+            return count == 0 ? 0 : squaredDifferences / count;
+        }
+    }
+}
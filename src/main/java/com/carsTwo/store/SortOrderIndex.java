@@ -0,0 +1,163 @@
+package com.carsTwo.store;
+
+import com.carsTwo.model.enums.SortingType;
+import org.eclipse.collections.api.block.function.primitive.IntIntToIntFunction;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rows ordered by every {@link SortingType}. A permutation of live rows is sorted once and cached
+ * until the fleet changes; descending order is the same permutation walked backwards. Until a sorting
+ * type is asked for the second time after a change, a small window is selected with a bounded heap
+ * instead of sorting the whole fleet.
+ * <p>
+ * Windows can be read by many threads at once, two threads asking for the same missing permutation may
+ * both sort it.
+ */
+public class SortOrderIndex {
+
+    private static final int SELECTION_LIMIT_DIVISOR = 8;
+
+    private final CarColumns cars;
+    private final Map<SortingType, int[]> permutations = new ConcurrentHashMap<>();
+    private final Set<SortingType> selected = ConcurrentHashMap.newKeySet();
+
+    public SortOrderIndex(CarColumns cars) {
+        this.cars = cars;
+    }
+
+    /**
+     * Forgets sorted permutations, has to be called on every change of the fleet.
+     */
+    public void invalidate() {
+        permutations.clear();
+        selected.clear();
+    }
+
+    /**
+     * @param sortingType attribute rows are sorted by
+     * @return true when windows of the sorting type are read from an already sorted permutation
+     */
+    public boolean isSorted(SortingType sortingType) {
+        return permutations.containsKey(sortingType);
+    }
+
+    /**
+     * @param sortingType attribute rows are sorted by, rows with equal attribute keep the fleet order
+     * @param descending decide if the order should be reversed
+     * @param offset amount of leading rows to skip
+     * @param limit maximal amount of returned rows
+     * @return rows of the window in requested order
+     */
+    public int[] window(SortingType sortingType, boolean descending, int offset, int limit) {
+        return window(sortingType, descending, offset, limit, ParallelExecution.SEQUENTIAL);
+    }
+
+    /**
+     * @param sortingType attribute rows are sorted by, rows with equal attribute keep the fleet order
+     * @param descending decide if the order should be reversed
+     * @param offset amount of leading rows to skip
+     * @param limit maximal amount of returned rows
+     * @param execution decide if selecting and sorting is split over a fork-join pool
+     * @return rows of the window in requested order
+     */
+    public int[] window(SortingType sortingType, boolean descending, int offset, int limit, ParallelExecution execution) {
+
+        int size = cars.liveCount();
+        int from = Math.min(offset, size);
+        int to = (int) Math.min((long) offset + limit, size);
+
+        var permutation = permutations.get(sortingType);
+        if (permutation == null && to <= size / SELECTION_LIMIT_DIVISOR && selected.add(sortingType)) {
+            var ascending = comparator(sortingType);
+            IntIntToIntFunction order = descending ? (first, second) -> ascending.valueOf(second, first) : ascending;
+            var smallest = execution.selectSmallest(cars.liveRows(), to, order);
+            var window = new int[to - from];
+            System.arraycopy(smallest, from, window, 0, window.length);
+            return window;
+        }
+        if (permutation == null) {
+            permutation = cars.liveRows();
+            execution.sort(permutation, comparator(sortingType));
+            permutations.put(sortingType, permutation);
+        }
+
+        var window = new int[to - from];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = descending ? permutation[size - 1 - from - i] : permutation[from + i];
+        }
+        return window;
+    }
+
+    /**
+     * Window following given row, so the next window can be read without counting an offset even after
+     * the fleet changed. The first window of a sorting type which isn't sorted yet is selected with a
+     * bounded heap, the following ones are read from the sorted permutation.
+     * @param sortingType attribute rows are sorted by
+     * @param descending decide if the order should be reversed
+     * @param afterRow row preceding the window, also a removed one, -1 for the first window
+     * @param limit maximal amount of returned rows
+     * @param execution decide if selecting and sorting is split over a fork-join pool
+     * @return rows of the window in requested order
+     */
+    public int[] windowAfter(SortingType sortingType, boolean descending, int afterRow, int limit, ParallelExecution execution) {
+
+        if (afterRow < 0) {
+            return window(sortingType, descending, 0, limit, execution);
+        }
+
+        var ascending = comparator(sortingType);
+        int size = cars.liveCount();
+        var permutation = permutations.get(sortingType);
+        if (permutation == null && limit <= size / SELECTION_LIMIT_DIVISOR && selected.add(sortingType)) {
+            IntIntToIntFunction order = descending ? (first, second) -> ascending.valueOf(second, first) : ascending;
+            var following = new IntArrayList();
+            for (int row : cars.liveRows()) {
+                if (order.valueOf(row, afterRow) > 0) {
+                    following.add(row);
+                }
+            }
+            return execution.selectSmallest(following.toArray(), limit, order);
+        }
+        if (permutation == null) {
+            permutation = cars.liveRows();
+            execution.sort(permutation, ascending);
+            permutations.put(sortingType, permutation);
+        }
+
+        int low = 0;
+        int high = permutation.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int compared = ascending.valueOf(permutation[middle], afterRow);
+            if (compared < 0 || (compared == 0 && !descending)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        var window = new int[descending ? Math.min(limit, low) : Math.min(limit, permutation.length - low)];
+        for (int i = 0; i < window.length; i++) {
+            window[i] = descending ? permutation[low - 1 - i] : permutation[low + i];
+        }
+        return window;
+    }
+
+    private IntIntToIntFunction comparator(SortingType sortingType) {
+
+        IntIntToIntFunction byAttribute =
+                switch (sortingType) {
+                    case WHEEL_SIZE -> (first, second) -> Integer.compare(cars.wheelSize(first), cars.wheelSize(second));
+                    case ENGINE_POWER -> (first, second) -> Double.compare(cars.power(first), cars.power(second));
+                    case COMPONENT -> (first, second) -> Integer.compare(cars.componentCount(first), cars.componentCount(second));
+                };
+        return (first, second) -> {
+            int compared = byAttribute.valueOf(first, second);
+            return compared != 0 ? compared : Integer.compare(first, second);
+        };
+    }
+}
@@ -0,0 +1,338 @@
+package com.carsTwo.store;
+
+import org.eclipse.collections.api.block.function.primitive.IntIntToIntFunction;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Rows kept in a total order, split into blocks of at most {@value #BLOCK_SIZE} rows. Adding or
+ * removing a row shifts only its own block and the first positions of the blocks after it, instead of
+ * every row behind it, and a full block is split in halves. Positions are found with a binary search
+ * over the first positions of the blocks followed by a binary search inside one block.
+ * <p>
+ * Copies share the blocks, a block is cloned by the first change of a version which doesn't own it
+ * yet, so copying costs the block positions, not the rows.
+ */
+final class SortedRows {
+
+    static final int BLOCK_SIZE = 512;
+
+    private final IntIntToIntFunction order;
+    private int[][] blocks;
+    private boolean[] owned;
+    private int[] sizes;
+    private int[] starts;
+    private int blockCount;
+    private int size;
+
+    /**
+     * @param order total order of rows, two different rows are never equal in it
+     */
+    SortedRows(IntIntToIntFunction order) {
+        this(order, new int[1][], new boolean[1], new int[1], new int[1], 0, 0);
+    }
+
+    private SortedRows(IntIntToIntFunction order, int[][] blocks, boolean[] owned, int[] sizes, int[] starts, int blockCount, int size) {
+        this.order = order;
+        this.blocks = blocks;
+        this.owned = owned;
+        this.sizes = sizes;
+        this.starts = starts;
+        this.blockCount = blockCount;
+        this.size = size;
+    }
+
+    /**
+     * Replaces all rows with given ones.
+     * @param rows rows which are already in order
+     */
+    void load(int[] rows) {
+
+        blockCount = (rows.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        blocks = new int[Math.max(1, blockCount)][];
+        owned = new boolean[blocks.length];
+        sizes = new int[blocks.length];
+        starts = new int[blocks.length];
+        for (int block = 0; block < blockCount; block++) {
+            int from = block * BLOCK_SIZE;
+            int to = Math.min(rows.length, from + BLOCK_SIZE);
+            blocks[block] = new int[BLOCK_SIZE];
+            System.arraycopy(rows, from, blocks[block], 0, to - from);
+            owned[block] = true;
+            sizes[block] = to - from;
+            starts[block] = from;
+        }
+        size = rows.length;
+    }
+
+    /**
+     * @param order order of the rows read from the copied columns
+     * @return copy sharing all blocks with these rows until either side changes them
+     */
+    SortedRows copy(IntIntToIntFunction order) {
+
+        Arrays.fill(owned, false);
+        return new SortedRows(order, blocks.clone(), new boolean[owned.length], sizes.clone(), starts.clone(), blockCount, size);
+    }
+
+    /**
+     * @return false when the row is already kept
+     */
+    boolean add(int row) {
+
+        if (blockCount == 0) {
+            blocks[0] = new int[BLOCK_SIZE];
+            owned[0] = true;
+            blockCount = 1;
+        }
+        int block = blockOf(row);
+        int position = search(block, row);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+
+        if (sizes[block] == BLOCK_SIZE) {
+            split(block);
+            if (position > sizes[block]) {
+                position -= sizes[block];
+                block++;
+            }
+        }
+        var rows = writableBlock(block);
+        System.arraycopy(rows, position, rows, position + 1, sizes[block] - position);
+        rows[position] = row;
+        sizes[block]++;
+        size++;
+        shiftStarts(block + 1, 1);
+        return true;
+    }
+
+    /**
+     * @return false when the row is not kept
+     */
+    boolean remove(int row) {
+
+        if (blockCount == 0) {
+            return false;
+        }
+        int block = blockOf(row);
+        int position = search(block, row);
+        if (position < 0) {
+            return false;
+        }
+
+        var rows = writableBlock(block);
+        System.arraycopy(rows, position + 1, rows, position, sizes[block] - position - 1);
+        sizes[block]--;
+        size--;
+        if (sizes[block] == 0 && blockCount > 1) {
+            removeBlock(block);
+        } else {
+            shiftStarts(block + 1, -1);
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param position position in the order
+     * @return row at given position
+     */
+    int get(int position) {
+
+        int block = blockAt(position);
+        return blocks[block][position - starts[block]];
+    }
+
+    /**
+     * @param from first position, inclusive
+     * @param to last position, exclusive
+     * @return copy of rows between given positions
+     */
+    int[] rows(int from, int to) {
+
+        var copy = new int[to - from];
+        int copied = 0;
+        int block = from < to ? blockAt(from) : blockCount;
+        int offset = from < to ? from - starts[block] : 0;
+        while (copied < copy.length) {
+            int length = Math.min(sizes[block] - offset, copy.length - copied);
+            System.arraycopy(blocks[block], offset, copy, copied, length);
+            copied += length;
+            block++;
+            offset = 0;
+        }
+        return copy;
+    }
+
+    /**
+     * @param row any row, also one which is not kept
+     * @return position of the row or -(insertion position + 1) when it is not kept
+     */
+    int positionOf(int row) {
+
+        if (blockCount == 0) {
+            return -1;
+        }
+        int block = blockOf(row);
+        int position = search(block, row);
+        return position >= 0 ? starts[block] + position : position - starts[block];
+    }
+
+    /**
+     * @param position position in the order
+     * @return block holding given position, shared with the copies which didn't change it
+     */
+    int[] blockHolding(int position) {
+        return blocks[blockAt(position)];
+    }
+
+    /**
+     * @param isBefore predicate true for a leading part of the rows and false for the rest
+     * @return position of the first row for which predicate is false
+     */
+    int firstPositionNotMatching(IntPredicate isBefore) {
+
+        if (size == 0) {
+            return 0;
+        }
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (isBefore.test(blocks[middle][sizes[middle] - 1])) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == blockCount) {
+            return size;
+        }
+
+        var rows = blocks[low];
+        int first = 0;
+        int last = sizes[low];
+        while (first < last) {
+            int middle = (first + last) >>> 1;
+            if (isBefore.test(rows[middle])) {
+                first = middle + 1;
+            } else {
+                last = middle;
+            }
+        }
+        return starts[low] + first;
+    }
+
+    /**
+     * @return last block whose first row is not after given row, the first block when there is none
+     */
+    private int blockOf(int row) {
+
+        int low = 1;
+        int high = blockCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.valueOf(blocks[middle][0], row) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    private int blockAt(int position) {
+
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private int search(int block, int row) {
+
+        var rows = blocks[block];
+        int low = 0;
+        int high = sizes[block] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int compared = order.valueOf(rows[middle], row);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return block which can be changed, cloned first when it's shared with another version
+     */
+    private int[] writableBlock(int block) {
+
+        if (!owned[block]) {
+            blocks[block] = blocks[block].clone();
+            owned[block] = true;
+        }
+        return blocks[block];
+    }
+
+    private void split(int block) {
+
+        if (blockCount == blocks.length) {
+            int capacity = blocks.length * 2;
+            blocks = Arrays.copyOf(blocks, capacity);
+            owned = Arrays.copyOf(owned, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+        }
+        System.arraycopy(blocks, block + 1, blocks, block + 2, blockCount - block - 1);
+        System.arraycopy(owned, block + 1, owned, block + 2, blockCount - block - 1);
+        System.arraycopy(sizes, block + 1, sizes, block + 2, blockCount - block - 1);
+        System.arraycopy(starts, block + 1, starts, block + 2, blockCount - block - 1);
+        blockCount++;
+
+        int kept = sizes[block] / 2;
+        var moved = new int[BLOCK_SIZE];
+        System.arraycopy(blocks[block], kept, moved, 0, sizes[block] - kept);
+        blocks[block + 1] = moved;
+        owned[block + 1] = true;
+        sizes[block + 1] = sizes[block] - kept;
+        starts[block + 1] = starts[block] + kept;
+        sizes[block] = kept;
+    }
+
+    private void removeBlock(int block) {
+
+        System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+        System.arraycopy(owned, block + 1, owned, block, blockCount - block - 1);
+        System.arraycopy(sizes, block + 1, sizes, block, blockCount - block - 1);
+        System.arraycopy(starts, block + 1, starts, block, blockCount - block - 1);
+        blockCount--;
+        blocks[blockCount] = null;
+        shiftStarts(block, -1);
+    }
+
+    private void shiftStarts(int fromBlock, int shift) {
+
+        for (int block = fromBlock; block < blockCount; block++) {
+            starts[block] += shift;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.carsTwo.view;
+
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarChange;
+import com.carsTwo.model.enums.ChangeType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.model.enums.TyreType;
+import com.carsTwo.store.CarColumns;
+import com.carsTwo.store.Fleet;
+import com.carsTwo.store.FleetDelta;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Cars of the fleet split into groups, kept up to date from the rows every version adds and removes.
+ * Only the groups a changed row leaves or joins are touched, so the cost of a version is proportional
+ * to its changes, not to the size of the fleet.
+ * <p>
+ * An updated car which stays in its group is published as {@link ChangeType#CHANGED} together with
+ * its previous version, an update which moves it to another group or out of the view is published as
+ * removal and addition.
+ * @param <K> type of the group key
+ */
+public final class CarGroupView<K extends Enum<K>> extends ContinuousQuery<Map<K, List<Car>>, CarChange<K>> {
+
+    private final RowClassifier<K> classifier;
+    private final Comparator<Member<K>> memberOrder;
+    private final EnumMap<K, TreeSet<Member<K>>> groups;
+    private final IntObjectHashMap<Member<K>> memberOfRow = new IntObjectHashMap<>();
+
+    private CarGroupView(Fleet fleet, int bufferCapacity, Class<K> keyType, RowClassifier<K> classifier, boolean alphabetical) {
+
+        super(fleet, bufferCapacity);
+        Comparator<Member<K>> byRow = Comparator.comparingInt(member -> member.row);
+        this.classifier = classifier;
+        this.memberOrder = alphabetical ? Comparator.<Member<K>, String>comparing(member -> member.model).thenComparing(byRow) : byRow;
+        this.groups = new EnumMap<>(keyType);
+
+        var cars = fleet.columns();
+        for (int row : cars.liveRows()) {
+            var group = classifier.groupOf(cars, row);
+            if (Objects.nonNull(group)) {
+                join(group, new Member<>(row, cars.model(row), cars.car(row)));
+            }
+        }
+    }
+
+    /**
+     * Cars with given engine type in alphabetical order of models, as returned by
+     * {@code CarsService.groupByGivenEngineTypeWithAlphabeticalOrder}.
+     * @param fleet published fleet the view starts from
+     * @param engineType engine type of cars in the view
+     * @param bufferCapacity maximal amount of events buffered for one subscriber
+     * @return view with one group
+     */
+    public static CarGroupView<EngineType> byEngineType(Fleet fleet, EngineType engineType, int bufferCapacity) {
+        return new CarGroupView<>(fleet, bufferCapacity, EngineType.class,
+                (cars, row) -> cars.engineTypeOrdinal(row) == engineType.ordinal() ? engineType : null, true);
+    }
+
+    /**
+     * Cars grouped by type of their tyres in order they were added, groups ordered by descending size,
+     * as returned by {@code CarsService.getCarsWithThisSameWheelType}.
+     * @param fleet published fleet the view starts from
+     * @param bufferCapacity maximal amount of events buffered for one subscriber
+     * @return view with a group for every tyre type with cars
+     */
+    public static CarGroupView<TyreType> byTyreType(Fleet fleet, int bufferCapacity) {
+        return new CarGroupView<>(fleet, bufferCapacity, TyreType.class, CarColumns::tyreType, false);
+    }
+
+    @Override
+    protected List<CarChange<K>> update(Fleet fleet, FleetDelta delta) {
+
+        if (delta.isCompacted()) {
+            renumber(delta);
+        }
+        var left = new IntObjectHashMap<Member<K>>();
+        for (int row : delta.removedRows()) {
+            var member = memberOfRow.remove(row);
+            if (Objects.nonNull(member)) {
+                leave(member);
+                left.put(row, member);
+            }
+        }
+
+        var cars = fleet.columns();
+        var joined = new ArrayList<CarChange<K>>();
+        for (int row : delta.addedRows()) {
+            var group = classifier.groupOf(cars, row);
+            var previous = left.get(delta.replacedRow(row));
+            if (Objects.nonNull(previous) && previous.group == group) {
+                left.remove(previous.row);
+            } else {
+                previous = null;
+            }
+            if (Objects.isNull(group)) {
+                continue;
+            }
+            var member = new Member<K>(row, cars.model(row), cars.car(row));
+            join(group, member);
+            joined.add(Objects.isNull(previous)
+                    ? new CarChange<>(ChangeType.ADDED, group, member.car, null)
+                    : new CarChange<>(ChangeType.CHANGED, group, member.car, previous.car));
+        }
+
+        var changes = new ArrayList<CarChange<K>>(left.size() + joined.size());
+        for (int row : delta.removedRows()) {
+            var member = left.get(row);
+            if (Objects.nonNull(member)) {
+                changes.add(new CarChange<>(ChangeType.REMOVED, member.group, member.car, null));
+            }
+        }
+        changes.addAll(joined);
+        return changes;
+    }
+
+    /**
+     * @return groups with cars ordered by descending size, groups of equal size in order of keys
+     */
+    @Override
+    protected Map<K, List<Car>> copyOfResult() {
+
+        var ordered = new ArrayList<>(groups.entrySet());
+        ordered.removeIf(entry -> entry.getValue().isEmpty());
+        ordered.sort((first, second) -> Integer.compare(second.getValue().size(), first.getValue().size()));
+
+        var copy = new LinkedHashMap<K, List<Car>>();
+        for (var entry : ordered) {
+            var cars = new ArrayList<Car>(entry.getValue().size());
+            entry.getValue().forEach(member -> cars.add(member.car));
+            copy.put(entry.getKey(), cars);
+        }
+        return copy;
+    }
+
+    private void join(K group, Member<K> member) {
+
+        member.group = group;
+        groups.computeIfAbsent(group, ignored -> new TreeSet<>(memberOrder)).add(member);
+        memberOfRow.put(member.row, member);
+    }
+
+    private void leave(Member<K> member) {
+        groups.get(member.group).remove(member);
+    }
+
+    /**
+     * Moves members to their rows after compaction. Compaction keeps the order of live rows, so members
+     * keep their places in the groups.
+     */
+    private void renumber(FleetDelta delta) {
+
+        var members = memberOfRow.toList();
+        memberOfRow.clear();
+        for (var member : members) {
+            member.row = delta.compactedRow(member.row);
+            memberOfRow.put(member.row, member);
+        }
+    }
+
+
+    /**
+     * Decides the group of a row.
+     */
+    @FunctionalInterface
+    private interface RowClassifier<K> {
+
+        /**
+         * @return group of the row or null when the row isn't in the view
+         */
+        K groupOf(CarColumns cars, int row);
+    }
+
+
+    private static final class Member<K> {
+
+        private int row;
+        private final String model;
+        private final Car car;
+        private K group;
+
+        Member(int row, String model, Car car) {
+            this.row = row;
+            this.model = model;
+            this.car = car;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.carsTwo.view;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.ViewEvent;
+import com.carsTwo.store.Fleet;
+import com.carsTwo.store.FleetDelta;
+import com.carsTwo.store.FleetListener;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Result of a query kept up to date as the fleet changes. Every published version of the fleet updates
+ * the result from the rows the version added and removed, without running the query again, and the
+ * changes of the result are published as one {@link ViewEvent} per version which changed it.
+ * <p>
+ * Events are delivered to every subscriber on its own virtual thread, as fast as it requests them. A
+ * subscriber buffers at most the given amount of events; when it falls further behind, the writers are
+ * not held up: the subscriber misses the next event and is completed with an error as soon as it asks
+ * for events after the gap, then it can subscribe again and start from a new snapshot. Events carry the
+ * version of the fleet they describe, a subscriber which takes a snapshot after subscribing skips events
+ * with versions not higher than the version of the snapshot.
+ * <p>
+ * Events and snapshots are shared by every subscriber, they must not be changed.
+ * @param <S> type of the snapshot of the result
+ * @param <T> type of one change of the result
+ */
+public abstract class ContinuousQuery<S, T> implements Flow.Publisher<ViewEvent<T>>, FleetListener, AutoCloseable {
+
+    private static final ExecutorService DELIVERY = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final SubmissionPublisher<ViewEvent<T>> publisher;
+    private final int bufferCapacity;
+    private long version;
+    private long sequence;
+    private boolean closed;
+
+    /**
+     * @param fleet published fleet the result is counted for first
+     * @param bufferCapacity maximal amount of events buffered for one subscriber
+     */
+    protected ContinuousQuery(Fleet fleet, int bufferCapacity) {
+
+        if (bufferCapacity <= 0) {
+            throw new CarsServiceException("Buffer capacity has to be positive");
+        }
+        this.publisher = new SubmissionPublisher<>(DELIVERY, bufferCapacity);
+        this.bufferCapacity = publisher.getMaxBufferCapacity();
+        this.version = fleet.version();
+    }
+
+    /**
+     * Updates the result with changes of a published version.
+     * @param fleet published version
+     * @param delta rows added and removed by the version
+     * @return changes of the result, empty when the version didn't change it
+     */
+    protected abstract List<T> update(Fleet fleet, FleetDelta delta);
+
+    /**
+     * @return copy of the current result
+     */
+    protected abstract S copyOfResult();
+
+    @Override
+    public final synchronized boolean published(Fleet fleet) {
+
+        if (closed) {
+            return false;
+        }
+
+        var delta = fleet.delta();
+        var changes = delta.isEmpty() ? List.<T>of() : update(fleet, delta);
+        version = fleet.version();
+        if (!changes.isEmpty()) {
+            sequence++;
+            publisher.offer(new ViewEvent<>(sequence, version, List.copyOf(changes)), (subscriber, dropped) -> false);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void subscribe(Flow.Subscriber<? super ViewEvent<T>> subscriber) {
+
+        if (subscriber == null) {
+            throw new CarsServiceException("Subscriber is null");
+        }
+        publisher.subscribe(new GapDetectingSubscriber<>(subscriber, sequence + 1, bufferCapacity));
+    }
+
+    /**
+     * @return current result together with the version of the fleet it was counted for
+     */
+    public synchronized Snapshot<S> snapshot() {
+        return new Snapshot<>(version, copyOfResult());
+    }
+
+    /**
+     * @return amount of subscribers still receiving events
+     */
+    public int getNumberOfSubscribers() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    /**
+     * Stops following the fleet and completes every subscriber.
+     */
+    @Override
+    public synchronized void close() {
+
+        closed = true;
+        publisher.close();
+    }
+
+
+    /**
+     * Result of the query at one version of the fleet.
+     */
+    public static final class Snapshot<S> {
+
+        private final long version;
+        private final S result;
+
+        Snapshot(long version, S result) {
+            this.version = version;
+            this.result = result;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public S getResult() {
+            return result;
+        }
+    }
+
+
+    /**
+     * Passes events on while their sequence numbers have no gaps, an event dropped for the subscriber
+     * being too slow completes it with an error instead.
+     */
+    private static final class GapDetectingSubscriber<T> implements Flow.Subscriber<ViewEvent<T>> {
+
+        private final Flow.Subscriber<? super ViewEvent<T>> subscriber;
+        private final int bufferCapacity;
+        private long expectedSequence;
+        private Flow.Subscription subscription;
+
+        GapDetectingSubscriber(Flow.Subscriber<? super ViewEvent<T>> subscriber, long expectedSequence, int bufferCapacity) {
+            this.subscriber = subscriber;
+            this.expectedSequence = expectedSequence;
+            this.bufferCapacity = bufferCapacity;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscriber.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(ViewEvent<T> event) {
+
+            if (event.getSequence() != expectedSequence) {
+                subscription.cancel();
+                subscriber.onError(new CarsServiceException("Subscriber fell behind by more than " + bufferCapacity
+                        + " events, events " + expectedSequence + " to " + (event.getSequence() - 1) + " were dropped"));
+                return;
+            }
+            expectedSequence++;
+            subscriber.onNext(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+}
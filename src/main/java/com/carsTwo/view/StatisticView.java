@@ -0,0 +1,51 @@
+package com.carsTwo.view;
+
+import com.carsTwo.model.CarStatistic;
+import com.carsTwo.model.enums.StatisticAttribute;
+import com.carsTwo.store.Fleet;
+import com.carsTwo.store.FleetDelta;
+
+import java.util.List;
+
+/**
+ * Statistic of one attribute, as returned by {@code CarsService.getStatisticByGivenAttribute}. The
+ * fleet keeps its statistics up to date on every change, so a version only reads them again and the
+ * statistic is published when it differs from the previous one. Published statistics are never
+ * changed, so a snapshot counts the statistic of its version anew.
+ */
+public final class StatisticView extends ContinuousQuery<CarStatistic, CarStatistic> {
+
+    private final StatisticAttribute statisticAttribute;
+    private Fleet fleet;
+    private CarStatistic statistic;
+
+    /**
+     * @param fleet published fleet the view starts from
+     * @param statisticAttribute attribute the statistic is counted for
+     * @param bufferCapacity maximal amount of events buffered for one subscriber
+     */
+    public StatisticView(Fleet fleet, StatisticAttribute statisticAttribute, int bufferCapacity) {
+
+        super(fleet, bufferCapacity);
+        this.statisticAttribute = statisticAttribute;
+        this.fleet = fleet;
+        this.statistic = fleet.statistics().statistic(statisticAttribute);
+    }
+
+    @Override
+    protected List<CarStatistic> update(Fleet fleet, FleetDelta delta) {
+
+        this.fleet = fleet;
+        var counted = fleet.statistics().statistic(statisticAttribute);
+        if (counted.equals(statistic)) {
+            return List.of();
+        }
+        statistic = counted;
+        return List.of(counted);
+    }
+
+    @Override
+    protected CarStatistic copyOfResult() {
+        return fleet.statistics().statistic(statisticAttribute);
+    }
+}
@@ -0,0 +1,110 @@
+package com.carsTwo.loader;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.CarUtils;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.model.enums.StatisticAttribute;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CarsJsonLoaderTest {
+
+    private static final String CAR = "{\"model\": \"Car%d\", \"price\": \"%d.50\", \"mileage\": %d, \"color\": \"unknown field\","
+            + " \"engine\": {\"type\": \"LPG\", \"power\": 90},"
+            + " \"carBody\": {\"color\": \"RED\", \"bodyType\": \"SEDAN\", \"components\": [\"ABS\"]},"
+            + " \"wheel\": {\"model\": \"Debica\", \"size\": 15, \"tyreType\": \"WINTER\"}}";
+
+    @TempDir
+    Path directory;
+
+
+    @Test
+    @DisplayName("when cars are loaded from NDJSON file")
+    void testOne() throws IOException {
+
+        var file = directory.resolve("cars.ndjson");
+        Files.writeString(file, IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> String.format(CAR, i, i * 1000, i * 10))
+                .collect(Collectors.joining("\n", "", "\n")));
+
+        var carsService = CarsJsonLoader.load(file);
+
+        assertThat(carsService.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.LPG)).hasSize(3);
+        assertThat(carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getMax())
+                .isEqualByComparingTo(new BigDecimal("3000.50"));
+    }
+
+    @Test
+    @DisplayName("when big NDJSON file is split into chunks parsed in parallel")
+    void testTwo() throws IOException {
+
+        var file = directory.resolve("big.ndjson");
+        try (var writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < 150_000; i++) {
+                writer.write(String.format(CAR, i, i, i));
+                writer.newLine();
+            }
+        }
+
+        var cars = CarsJsonLoader.readCars(file);
+
+        assertThat(Files.size(file)).isGreaterThan(32L * 1024 * 1024);
+        assertThat(cars).hasSize(150_000);
+        assertThat(CarUtils.toModel.apply(cars.get(149_999))).isEqualTo("Car149999");
+    }
+
+    @Test
+    @DisplayName("when file has invalid content")
+    void testThree() throws IOException {
+
+        var file = directory.resolve("invalid.json");
+        Files.writeString(file, "[{\"model\": \"Audi\", \"engine\": {\"type\": \"STEAM\"}}]");
+
+        assertThrows(CarsServiceException.class, () -> CarsJsonLoader.readCars(file));
+    }
+
+    @Test
+    @DisplayName("when cars are streamed into off-heap columns")
+    void testFour() throws IOException {
+
+        var file = directory.resolve("cars.json");
+        Files.writeString(file, IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> String.format(CAR, i, i * 1000, i * 10))
+                .collect(Collectors.joining(",", "[", "]")));
+
+        try (var carsService = CarsJsonLoader.loadOffHeap(file)) {
+            assertThat(carsService.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.LPG))
+                    .extracting(CarUtils.toModel).containsExactly("Car1", "Car2", "Car3");
+            assertThat(carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getMax())
+                    .isEqualTo(new BigDecimal("3000.50"));
+        }
+
+        Files.writeString(file, "[{\"model\": \"Audi\", \"price\": 1.005}]");
+        assertThrows(CarsServiceException.class, () -> CarsJsonLoader.loadOffHeap(file));
+    }
+
+    @Test
+    @DisplayName("when bundled JSON file is loaded")
+    void testFive() throws URISyntaxException {
+
+        var resource = CarsJsonLoaderTest.class.getResource("/cars.json");
+        assertThat(resource).as("test resource /cars.json").isNotNull();
+
+        var cars = CarsJsonLoader.readCars(Path.of(resource.toURI()));
+
+        assertThat(cars).extracting(CarUtils.toModel).containsExactly("Audi", "BMW", "MERCEDES");
+        assertThat(cars).extracting(CarUtils.toPrice).containsExactly(new BigDecimal("100000"), new BigDecimal("200000"), new BigDecimal("500000"));
+    }
+}
@@ -2,19 +2,47 @@ package com.carsTwo.model;
 
 
 import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.metrics.HistogramMetricsRegistry;
 
 import com.carsTwo.model.enums.*;
 import com.carsTwo.model.extensions.CarsJsonFileExtension;
+import com.carsTwo.query.BatchScan;
+import com.carsTwo.query.CarQuery;
+import com.carsTwo.query.QueryPlan;
 import com.carsTwo.service.CarsService;
+import com.carsTwo.sketch.FleetSketch;
+import com.carsTwo.store.Fleet;
+import com.carsTwo.store.HeapCarColumns;
+import com.carsTwo.store.ParallelExecution;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-
-
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+
+import static org.assertj.core.api.Assertions.within;
 import static org.assertj.core.api.Assertions.withinPercentage;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -229,16 +257,1128 @@ class CarsServiceTest {
     }
 
 
+    @Test
+    @DisplayName("when car without engine is given")
+    void testSeventeen(){
+
+        var car = Car
+                .builder()
+                .model("Fiat")
+                .price(BigDecimal.valueOf(10000))
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).build())
+                .wheel(Wheel.builder().size(15).tyreType(TyreType.SUMMER).build())
+                .build();
+
+        assertThrows(CarsServiceException.class, () -> new CarsService(Set.of(car)));
+    }
+
+
+    @Test
+    @DisplayName("when components are shared by several cars or unknown")
+    void testEighteen(){
+
+        assertThat(carsService.findAllWithComponents(List.of("AirCondition", "TV"))).hasSize(2);
+        assertThat(carsService.findAllWithComponents(List.of("ABS", "Radio"))).isEmpty();
+        assertThat(carsService.findAllWithComponents(List.of())).hasSize(3);
+    }
+
+
+    @Test
+    @DisplayName("when cars in price range are requested in price order")
+    void testNineteen(){
+
+        var bodyType = CarBodyType.COMBI;
+        var grouped = carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(bodyType, BigDecimal.ZERO, BigDecimal.valueOf(500000), true);
+
+        assertThat(grouped)
+                .extracting(car -> car.model)
+                .containsExactly("Audi", "MERCEDES");
+    }
+
+    @Test
+    @DisplayName("when price range bounds have more fraction digits than prices")
+    void testTwenty(){
+
+        var bodyType = CarBodyType.COMBI;
+        var justBelow = carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(bodyType, new BigDecimal("99999.999"), new BigDecimal("100000.001"));
+        var justAbove = carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(bodyType, new BigDecimal("100000.001"), new BigDecimal("499999.999"));
+
+        assertThat(justBelow).extracting(car -> car.model).containsExactly("Audi");
+        assertThat(justAbove).isEmpty();
+    }
+
+
+    @Test
+    @DisplayName("when all statistics are counted at once")
+    void testTwentyOne(){
+
+        var statistic = carsService.getStatistics(50, 100);
+
+        assertThat(statistic.getPrice().getMin()).isEqualTo(BigDecimal.valueOf(100000));
+        assertThat(statistic.getPrice().getSum()).isEqualByComparingTo(BigDecimal.valueOf(800000));
+        assertThat(statistic.getPrice().getPercentiles().get(50D)).isEqualByComparingTo(BigDecimal.valueOf(200000));
+        assertThat(statistic.getMileage().getCount()).isEqualTo(3);
+        assertThat(statistic.getMileage().getAverage()).isCloseTo(26666.6, withinPercentage(1));
+        assertThat(statistic.getMileage().getPercentiles().get(100D)).isEqualTo(50000D);
+        assertThat(statistic.getPower().getMax()).isEqualTo(300D);
+        assertThat(statistic.getPower().getVariance()).isCloseTo(2222.2, withinPercentage(1));
+        assertThat(carsService.getStatistics(true).getPrice().getSum()).isEqualByComparingTo(statistic.getPrice().getSum());
+    }
+
+
+    @Test
+    @DisplayName("when statistics follow added and removed cars")
+    void testTwentyTwo(){
+
+        var mostExpensive = carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(300000), BigDecimal.valueOf(500000))
+                .stream().findFirst().orElseThrow();
+        var car = Car
+                .builder()
+                .model("Fiat")
+                .price(new BigDecimal("10000.50"))
+                .mileage(100000)
+                .engine(Engine.builder().type(EngineType.LPG).power(75).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(List.of("ABS")).build())
+                .wheel(Wheel.builder().size(14).tyreType(TyreType.WINTER).build())
+                .build();
+
+        assertThat(carsService.addCar(car)).isTrue();
+        assertThat(carsService.addCar(car)).isFalse();
+        assertThat(carsService.removeCar(mostExpensive)).isTrue();
+        assertThat(carsService.removeCar(mostExpensive)).isFalse();
+
+        var price = carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice();
+        var mileage = carsService.getStatisticByGivenAttribute(StatisticAttribute.MILEAGE).getMileage();
+
+        assertThat(price.getMin()).isEqualTo(new BigDecimal("10000.50"));
+        assertThat(price.getMax()).isEqualTo(new BigDecimal("200000"));
+        assertThat(price.getCount()).isEqualTo(3);
+        assertThat(price.getSum()).isEqualByComparingTo(new BigDecimal("310000.50"));
+        assertThat(mileage.getMax()).isEqualTo(100000D);
+        assertThat(mileage.getAverage()).isCloseTo(43333.3, withinPercentage(1));
+        assertThat(carsService.findAllWithComponents(List.of("ABS"))).containsExactlyInAnyOrder(car, carsService.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.GASOLINE).iterator().next());
+        assertThat(carsService.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL)).hasSize(1);
+    }
+
+
+    @Test
+    @DisplayName("when sorted cars are requested page by page")
+    void testTwentyThree(){
+
+        var all = carsService.sortingByGivenOrder(SortingType.ENGINE_POWER, true);
+        var top = carsService.getTopByGivenOrder(SortingType.ENGINE_POWER, true, 2);
+        var secondPage = carsService.sortingByGivenOrder(SortingType.ENGINE_POWER, true, 2, 2);
+
+        assertThat(top).containsExactlyElementsOf(all.subList(0, 2));
+        assertThat(secondPage).containsExactlyElementsOf(all.subList(2, 3));
+        assertThat(carsService.sortingByGivenOrder(SortingType.WHEEL_SIZE, false, 5, 10)).isEmpty();
+        assertThrows(CarsServiceException.class, () -> carsService.sortingByGivenOrder(SortingType.WHEEL_SIZE, false, -1, 10));
+    }
+
+
+    @Test
+    @DisplayName("when collection is queried from its snapshot")
+    void testTwentyFour(@TempDir Path directory){
+
+        var snapshot = directory.resolve("fleet.snapshot");
+        carsService.addCar(Car
+                .builder()
+                .model("Fiat")
+                .price(new BigDecimal("10000.50"))
+                .engine(Engine.builder().type(EngineType.LPG).power(75).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(List.of("ABS", "Radio")).build())
+                .wheel(Wheel.builder().size(14).tyreType(TyreType.WINTER).build())
+                .build());
+        carsService.writeSnapshot(snapshot);
+
+        var restored = CarsService.fromSnapshot(snapshot);
+
+        assertThat(restored.findAllWithComponents(List.of("ABS")))
+                .extracting(car -> car.model)
+                .containsExactlyElementsOf(carsService.findAllWithComponents(List.of("ABS")).stream().map(car -> car.model).collect(Collectors.toList()));
+        assertThat(restored.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL))
+                .extracting(car -> car.model)
+                .containsExactly("BMW", "MERCEDES");
+        assertThat(restored.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.ZERO, BigDecimal.valueOf(500000), true))
+                .extracting(car -> car.price)
+                .containsExactly(BigDecimal.valueOf(100000), BigDecimal.valueOf(500000));
+        assertThat(restored.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getMin()).isEqualTo(new BigDecimal("10000.50"));
+        assertThat(restored.sortingByGivenOrder(SortingType.WHEEL_SIZE, false).get(0).wheel.size).isEqualTo(14);
+        assertThrows(CarsServiceException.class, () -> restored.removeCar(restored.sortingByGivenOrder(SortingType.WHEEL_SIZE, false).get(0)));
+    }
+
+    @Test
+    @DisplayName("when snapshot is corrupted")
+    void testTwentyFive(@TempDir Path directory) throws IOException {
+
+        var snapshot = directory.resolve("fleet.snapshot");
+        carsService.writeSnapshot(snapshot);
+        var bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 5] ^= 0x7F;
+        Files.write(snapshot, bytes);
+
+        assertThrows(CarsServiceException.class, () -> CarsService.fromSnapshot(snapshot));
+    }
+
+
+    @Test
+    @DisplayName("when queries run in parallel on a large collection")
+    void testTwentySix(){
+
+        var generated = new ArrayList<Car>();
+        for (int i = 0; i < 5000; i++) {
+            generated.add(Car
+                    .builder()
+                    .model("Model " + (i % 97))
+                    .price(BigDecimal.valueOf(1000 + (i * 7919L) % 50000))
+                    .mileage((i * 31) % 1000)
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(i % 3 == 0 ? List.of("ABS", "Radio") : List.of("Radio")).build())
+                    .wheel(Wheel.builder().size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+        var sequential = new CarsService(generated);
+        var parallel = new CarsService(generated);
+        var pool = new ForkJoinPool(4);
+        parallel.enableParallelExecution(pool, 0);
+
+        try {
+            assertThat(parallel.sortingByGivenOrder(SortingType.ENGINE_POWER, true)).containsExactlyElementsOf(sequential.sortingByGivenOrder(SortingType.ENGINE_POWER, true));
+            assertThat(parallel.getTopByGivenOrder(SortingType.WHEEL_SIZE, false, 10)).containsExactlyElementsOf(sequential.getTopByGivenOrder(SortingType.WHEEL_SIZE, false, 10));
+            assertThat(parallel.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL)).containsExactlyElementsOf(sequential.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL));
+            assertThat(parallel.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(5000), BigDecimal.valueOf(30000)))
+                    .containsExactlyElementsOf(sequential.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(5000), BigDecimal.valueOf(30000)));
+            assertThat(parallel.getCarsWithThisSameWheelType()).containsExactlyEntriesOf(sequential.getCarsWithThisSameWheelType());
+            assertThat(parallel.findAllWithComponents(List.of("ABS"))).containsExactlyElementsOf(sequential.findAllWithComponents(List.of("ABS")));
+            assertThat(parallel.getStatistics(50).getPrice().getSum()).isEqualTo(sequential.getStatistics(50).getPrice().getSum());
+            assertThat(parallel.getStatistics(50).getMileage().getPercentiles()).isEqualTo(sequential.getStatistics(50).getMileage().getPercentiles());
+        } finally {
+            pool.shutdown();
+        }
+        assertThrows(CarsServiceException.class, () -> parallel.enableParallelExecution(null, 0));
+
+        var dedicated = ParallelExecution.dedicated(0);
+        assertThat(dedicated.isParallel(1)).isTrue();
+        dedicated.close();
+        assertThat(dedicated.isParallel(1)).isFalse();
+        parallel.enableParallelExecution(0);
+        assertThat(parallel.sortingByGivenOrder(SortingType.COMPONENT, false)).containsExactlyElementsOf(sequential.sortingByGivenOrder(SortingType.COMPONENT, false));
+        parallel.close();
+        assertThat(parallel.sortingByGivenOrder(SortingType.COMPONENT, false)).containsExactlyElementsOf(sequential.sortingByGivenOrder(SortingType.COMPONENT, false));
+    }
+
+
+    @Test
+    @DisplayName("when prices are updated while collection is queried")
+    void testTwentySeven() throws Exception {
+
+        var executor = Executors.newFixedThreadPool(4);
+        var updating = new AtomicBoolean(true);
+        try {
+            var readers = new ArrayList<Future<?>>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    while (updating.get()) {
+                        assertThat(carsService.sortingByGivenOrder(SortingType.ENGINE_POWER, false)).hasSize(3);
+                        assertThat(carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getCount()).isEqualTo(3);
+                        assertThat(carsService.getCarsWithThisSameWheelType().values().stream().mapToInt(List::size).sum()).isEqualTo(3);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < 500; i++) {
+                var car = carsService.sortingByGivenOrder(SortingType.ENGINE_POWER, false).get(0);
+                var updatedCar = Car
+                        .builder()
+                        .model(car.model)
+                        .price(BigDecimal.valueOf(1000 + i))
+                        .mileage(car.mileage)
+                        .engine(car.engine)
+                        .carBody(car.carBody)
+                        .wheel(car.wheel)
+                        .build();
+                assertTrue(carsService.updateCar(car, updatedCar));
+            }
+            updating.set(false);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            updating.set(false);
+            executor.shutdown();
+        }
+
+        assertThrows(CarsServiceException.class, () -> carsService.addCars(List.of(
+                Car.builder().model("Fiat").price(BigDecimal.ONE).engine(Engine.builder().type(EngineType.LPG).build())
+                        .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(List.of()).build())
+                        .wheel(Wheel.builder().tyreType(TyreType.WINTER).build()).build(),
+                Car.builder().model("Opel").build())));
+        assertThat(carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getCount()).isEqualTo(3);
+        assertThat(carsService.sortingByGivenOrder(SortingType.ENGINE_POWER, false).get(0).price).isEqualTo(BigDecimal.valueOf(1499));
+
+        var combi = carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.ZERO, BigDecimal.valueOf(1000000));
+        var hits = carsService.getQueryCacheStatistic().getHits();
+        assertFalse(carsService.addCar(combi.iterator().next()));
+        assertThat(carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.ZERO, BigDecimal.valueOf(1000000))).isEqualTo(combi);
+        assertThat(carsService.getQueryCacheStatistic().getHits()).isEqualTo(hits + 1);
+    }
+
+
+    @Test
+    @DisplayName("when repeated queries are served from the cache")
+    void testTwentyEight(){
+
+        var first = carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(50000), BigDecimal.valueOf(300000));
+        first.clear();
+        var second = carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(50000), BigDecimal.valueOf(300000));
+
+        assertThat(second).isNotEmpty();
+        assertThat(carsService.getQueryCacheStatistic().getHits()).isEqualTo(1);
+        assertThat(carsService.getQueryCacheStatistic().getMisses()).isEqualTo(1);
+
+        carsService.removeCar(second.iterator().next());
+        assertThat(carsService.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(50000), BigDecimal.valueOf(300000)))
+                .hasSize(second.size() - 1);
+        assertThat(carsService.getQueryCacheStatistic().getInvalidations()).isEqualTo(1);
+
+        carsService.enableQueryCache(4);
+        carsService.getCarsWithThisSameWheelType();
+        carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE);
+        assertThat(carsService.getQueryCacheStatistic().getEvictions()).isEqualTo(1);
+        assertThat(carsService.getQueryCacheStatistic().getWeight()).isLessThanOrEqualTo(4);
+        assertThrows(CarsServiceException.class, () -> carsService.enableQueryCache(-1));
+    }
+
+
+    @Test
+    @DisplayName("when equal parts of cars are shared")
+    void testTwentyNine(){
+
+        var first = Car
+                .builder()
+                .model("Fiat")
+                .price(BigDecimal.valueOf(10000))
+                .engine(Engine.builder().type(EngineType.LPG).power(75).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(new ArrayList<>(List.of("ABS", "Radio"))).build())
+                .wheel(Wheel.builder().model(new String("Debica")).size(14).tyreType(TyreType.WINTER).build())
+                .build();
+        var second = Car
+                .builder()
+                .model(new String("Fiat"))
+                .price(BigDecimal.valueOf(12000))
+                .engine(Engine.builder().type(EngineType.LPG).power(75).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(new ArrayList<>(List.of("ABS", "Radio"))).build())
+                .wheel(Wheel.builder().model(new String("Debica")).size(14).tyreType(TyreType.WINTER).build())
+                .build();
+
+        var firstComponents = first.carBody.components;
+        var firstEngine = first.engine;
+        var service = new CarsService(List.of(first, second));
+
+        assertSame(firstEngine, first.engine);
+        assertSame(firstComponents, first.carBody.components);
+        assertNotSame(first.engine, second.engine);
+        assertNotSame(first.model, second.model);
+        first.carBody.components.add("Alarm");
+        first.carBody.components.remove("Alarm");
+        assertThat(service.findAllWithComponents(List.of("ABS"))).containsExactly(first, second);
+        assertThat(service.getInterningStatistic().getDeduplicatedComponentLists()).isEqualTo(1);
+        assertThat(service.getInterningStatistic().getDeduplicatedStrings()).isEqualTo(2);
+        assertThat(service.getInterningStatistic().getSavedBytes()).isPositive();
+
+        var canonicalInstances = service.getInterningStatistic().getCanonicalInstances();
+        assertThrows(CarsServiceException.class, () -> service.addCar(Car
+                .builder()
+                .model("Unaffordable")
+                .price(new BigDecimal("1000000"))
+                .engine(Engine.builder().type(EngineType.DIESEL).power(900).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.BLACK).components(List.of("Minibar")).build())
+                .wheel(Wheel.builder().model("Pirelli").size(22).build())
+                .build()));
+        assertThat(service.getInterningStatistic().getCanonicalInstances()).isEqualTo(canonicalInstances);
+
+        var columns = HeapCarColumns.of(List.of(first, second, Car
+                .builder()
+                .model("Polonez")
+                .price(BigDecimal.valueOf(5000))
+                .engine(Engine.builder().type(EngineType.GASOLINE).power(60).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.BLACK).components(List.of("Hook")).build())
+                .wheel(Wheel.builder().model("Stomil").size(13).tyreType(TyreType.SUMMER).build())
+                .build()));
+        var interned = columns.interningStatistic().getCanonicalInstances();
+        columns.remove(2);
+        var compacted = columns.compact();
+        assertThat(compacted.interningStatistic().getCanonicalInstances()).isEqualTo(interned - 4);
+        assertThat(compacted.interningStatistic().getSavedBytes()).isEqualTo(columns.interningStatistic().getSavedBytes());
+    }
+
+
+    @Test
+    @DisplayName("when sum of fixed-point prices overflows long")
+    void testThirty(){
+
+        var expensive = new ArrayList<Car>();
+        for (int i = 0; i < 2; i++) {
+            expensive.add(Car
+                    .builder()
+                    .model("Yacht")
+                    .price(new BigDecimal("50000000000000000.25"))
+                    .engine(Engine.builder().type(EngineType.DIESEL).power(900).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.WHITE).components(List.of()).build())
+                    .wheel(Wheel.builder().size(22).tyreType(TyreType.SUMMER).build())
+                    .build());
+        }
+        var service = new CarsService(expensive);
+
+        assertThat(service.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getSum()).isEqualByComparingTo("100000000000000000.50");
+        assertThat(service.getStatistics().getPrice().getSum()).isEqualByComparingTo("100000000000000000.50");
+        assertThat(service.getStatistics().getPrice().getAverage()).isEqualByComparingTo("50000000000000000.25");
+        service.removeCar(expensive.get(0));
+        assertThat(service.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getSum()).isEqualByComparingTo("50000000000000000.25");
+
+        assertThat(Money.exactUnits(new BigDecimal("1.5"), 2)).isEqualTo(150);
+        assertThat(Money.floorUnits(new BigDecimal("-0.005"), 2)).isEqualTo(-1);
+        assertThat(Money.ceilUnits(new BigDecimal("1E+40"), 2)).isEqualTo(Long.MAX_VALUE);
+        assertThrows(CarsServiceException.class, () -> Money.exactUnits(new BigDecimal("1.005"), 2));
+    }
+
+
+    @Test
+    @DisplayName("when queries are measured")
+    void testThirtyOne(@TempDir Path directory) throws IOException {
+
+        var registry = new HistogramMetricsRegistry();
+        carsService.enableMetrics(registry);
+
+        try (var recording = new Recording()) {
+            recording.enable("com.carsTwo.Query");
+            recording.start();
+            carsService.findAllWithComponents(List.of("ABS"));
+            carsService.findAllWithComponents(List.of("ABS"));
+            carsService.getCarsWithThisSameWheelType();
+            recording.stop();
+
+            var dump = directory.resolve("queries.jfr");
+            recording.dump(dump);
+            assertThat(RecordingFile.readAllEvents(dump))
+                    .extracting(event -> event.getString("arguments"))
+                    .contains("[[ABS]]");
+        }
+
+        var metrics = registry.metrics();
+        assertThat(metrics.get("findAllWithComponents").getCalls()).isEqualTo(2);
+        assertThat(metrics.get("findAllWithComponents").getScannedCars()).isEqualTo(carsService.findAllWithComponents(List.of("ABS")).size());
+        assertThat(metrics.get("findAllWithComponents").getP99()).isPositive();
+        assertThat(metrics.get("getCarsWithThisSameWheelType").getReturnedCars()).isEqualTo(3);
+        assertThrows(CarsServiceException.class, () -> carsService.enableMetrics(null));
+    }
 
 
+    @Test
+    @DisplayName("when cars are found with a composite query")
+    void testThirtyTwo(){
+
+        var generated = new ArrayList<Car>();
+        for (int i = 0; i < 5000; i++) {
+            generated.add(Car
+                    .builder()
+                    .model("Model " + (i % 97))
+                    .price(BigDecimal.valueOf(1000 + (i * 7919L) % 50000))
+                    .mileage((i * 31) % 1000)
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(i % 50 == 0 ? List.of("ABS", "Radio") : List.of("Radio")).build())
+                    .wheel(Wheel.builder().model("Wheel " + i % 4).size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+        var service = new CarsService(generated);
+
+        var byPrice = CarQuery.builder().bodyTypes(CarBodyType.COMBI).priceBetween(BigDecimal.valueOf(5000), BigDecimal.valueOf(6000)).tyreTypes(TyreType.WINTER).build();
+        var byComponent = CarQuery.builder().components("ABS").engineTypes(EngineType.DIESEL, EngineType.GASOLINE).mileageBetween(0, 500).build();
+        var byScan = CarQuery.builder().colors(CarBodyColor.RED).wheelModel("Wheel 1").wheelSizeBetween(15, 16).powerBetween(55, 60).build();
+
+        assertThat(service.explain(byPrice).getAccessPath()).isEqualTo(QueryPlan.AccessPath.BODY_TYPE_PRICE_RANGE);
+        assertThat(service.explain(byComponent).getAccessPath()).isEqualTo(QueryPlan.AccessPath.COMPONENT_BITMAP);
+        assertThat(service.explain(byComponent).getFilters()).extracting(QueryPlan.Filter::getCondition).hasSize(2);
+        assertThat(service.explain(byScan).getAccessPath()).isEqualTo(QueryPlan.AccessPath.FULL_SCAN);
+        assertThat(service.explain(byScan).explain()).contains("wheelModel = Wheel 1");
+
+        assertThat(service.find(byPrice)).isNotEmpty().containsExactlyElementsOf(generated.stream()
+                .filter(car -> car.carBody.bodyType == CarBodyType.COMBI && car.price.intValue() >= 5000 && car.price.intValue() <= 6000 && car.wheel.tyreType == TyreType.WINTER)
+                .collect(Collectors.toList()));
+        assertThat(service.find(byComponent)).isNotEmpty().containsExactlyElementsOf(generated.stream()
+                .filter(car -> car.carBody.components.contains("ABS") && car.engine.type != EngineType.LPG && car.mileage <= 500)
+                .collect(Collectors.toList()));
+        assertThat(service.find(byScan)).isNotEmpty().containsExactlyElementsOf(generated.stream()
+                .filter(car -> car.carBody.color == CarBodyColor.RED && car.wheel.model.equals("Wheel 1") && car.wheel.size >= 15 && car.wheel.size <= 16 && car.engine.power >= 55 && car.engine.power <= 60)
+                .collect(Collectors.toList()));
+        assertThat(carsService.find(CarQuery.builder().build())).hasSize(3);
+        assertThrows(CarsServiceException.class, () -> CarQuery.builder().priceBetween(BigDecimal.TEN, BigDecimal.ONE));
+        assertThrows(CarsServiceException.class, () -> carsService.find(null));
+    }
 
 
+    @Test
+    @DisplayName("when results are read lazily with cursors and pages")
+    void testThirtyThree(){
+
+        var generated = new ArrayList<Car>();
+        for (int i = 0; i < 5000; i++) {
+            generated.add(Car
+                    .builder()
+                    .model("Model " + (i % 97))
+                    .price(BigDecimal.valueOf(1000 + (i * 7919L) % 50000))
+                    .mileage((i * 31) % 1000)
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(i % 3 == 0 ? List.of("ABS", "Radio") : List.of("Radio")).build())
+                    .wheel(Wheel.builder().size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+        var service = new CarsService(generated);
+        service.disableQueryCache();
+
+        assertThat(service.cursorSortedByGivenOrder(SortingType.ENGINE_POWER, true).stream().limit(3).collect(Collectors.toList()))
+                .containsExactlyElementsOf(service.getTopByGivenOrder(SortingType.ENGINE_POWER, true, 3));
+        assertThat(service.cursorSortedByGivenOrder(SortingType.ENGINE_POWER, true).stream().collect(Collectors.toList()))
+                .containsExactlyElementsOf(service.sortingByGivenOrder(SortingType.ENGINE_POWER, true));
+        assertThat(service.cursorSortedByGivenOrder(SortingType.WHEEL_SIZE, false))
+                .containsExactlyElementsOf(service.sortingByGivenOrder(SortingType.WHEEL_SIZE, false));
+        assertThat(service.cursorByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL))
+                .containsExactlyElementsOf(service.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL));
+        assertThat(service.cursorAllWithComponents(List.of("ABS")).stream().collect(Collectors.toList()))
+                .containsExactlyElementsOf(service.findAllWithComponents(List.of("ABS")));
+        assertThat(service.cursorBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(5000), BigDecimal.valueOf(30000), false))
+                .containsExactlyElementsOf(service.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(5000), BigDecimal.valueOf(30000)));
+        var query = CarQuery.builder().engineTypes(EngineType.LPG).tyreTypes(TyreType.SUMMER).build();
+        assertThat(service.cursor(query)).containsExactlyElementsOf(service.find(query));
+
+        var expected = new ArrayList<>(service.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(5000), BigDecimal.valueOf(30000), true));
+        var firstPage = service.cursorBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(5000), BigDecimal.valueOf(30000), true).page(null, 100);
+        assertThat(firstPage.getCars()).containsExactlyElementsOf(expected.subList(0, 100));
+        assertThat(firstPage.hasNext()).isTrue();
+
+        var removed = expected.remove(150);
+        service.removeCar(removed);
+        var read = new ArrayList<>(firstPage.getCars());
+        var token = firstPage.getContinuationToken();
+        while (token != null) {
+            var page = service.cursorBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.COMBI, BigDecimal.valueOf(5000), BigDecimal.valueOf(30000), true).page(token, 100);
+            read.addAll(page.getCars());
+            token = page.getContinuationToken();
+        }
+        assertThat(read).containsExactlyElementsOf(expected);
+
+        var foreignToken = firstPage.getContinuationToken();
+        assertThrows(CarsServiceException.class, () -> service.cursorByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL).page(foreignToken, 10));
+        assertThrows(CarsServiceException.class, () -> service.cursorAllWithComponents(List.of()).page("broken", 10));
+        assertThrows(CarsServiceException.class, () -> service.cursorAllWithComponents(List.of()).page(null, 0));
+    }
 
 
+    @Test
+    @DisplayName("when cars are looked up by mileage order")
+    void testThirtyFour(){
+
+        assertThat(carsService.getMileageForEveryCar().values()).containsExactly(5000D, 25000D, 50000D);
+        assertThat(carsService.getCarsWithMileageBetween(5000, 25000)).extracting(car -> car.mileage).containsExactly(5000D, 25000D);
+        assertThat(carsService.getCarsWithMileageBetween(5001, 24999)).isEmpty();
+        assertThat(carsService.cursorWithMileageBetween(0, 100000).page(null, 2).getCars()).extracting(car -> car.mileage).containsExactly(5000D, 25000D);
+        assertThat(carsService.getCarAtMileagePercentile(50).orElseThrow().mileage).isEqualTo(25000D);
+        assertThat(carsService.getCarAtMileagePercentile(100).orElseThrow().mileage).isEqualTo(50000D);
+
+        var highest = carsService.getCarAtMileagePercentile(100).orElseThrow();
+        assertThat(carsService.getMileageRank(highest)).isEqualTo(3);
+
+        var lower = Car
+                .builder()
+                .model(highest.model)
+                .price(highest.price)
+                .mileage(1000)
+                .engine(highest.engine)
+                .carBody(highest.carBody)
+                .wheel(highest.wheel)
+                .build();
+        carsService.updateCar(highest, lower);
+        assertThat(carsService.getMileageRank(lower)).isEqualTo(1);
+        assertThat(carsService.getMileageForEveryCar().values()).containsExactly(1000D, 5000D, 25000D);
+        assertThrows(CarsServiceException.class, () -> carsService.getMileageRank(highest));
+        assertThrows(CarsServiceException.class, () -> carsService.getCarsWithMileageBetween(2, 1));
+        assertThrows(CarsServiceException.class, () -> carsService.getCarAtMileagePercentile(101));
+    }
 
 
+    @Test
+    @DisplayName("when cars are counted and aggregated in groups")
+    void testThirtyFive(){
+
+        var generated = new ArrayList<Car>();
+        for (int i = 0; i < 5000; i++) {
+            generated.add(Car
+                    .builder()
+                    .model("Model " + (i % 97))
+                    .price(BigDecimal.valueOf(1000 + (i * 7919L) % 50000))
+                    .mileage((i * 31) % 1000)
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(List.of("Radio")).build())
+                    .wheel(Wheel.builder().size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+        var service = new CarsService(generated);
+
+        var byTyreType = service.countBy(GroupingDimension.TYRE_TYPE);
+        var grouped = service.getCarsWithThisSameWheelType();
+        assertThat(byTyreType).hasSize(grouped.size());
+        byTyreType.forEach(group -> assertThat(group.getCount()).isEqualTo(grouped.get(group.getTyreType()).size()));
+        assertThat(service.countBy()).singleElement().extracting(GroupAggregate::getCount).isEqualTo(5000L);
+
+        var bySizeAndEngine = service.aggregateBy(StatisticAttribute.PRICE, GroupingDimension.WHEEL_SIZE, GroupingDimension.ENGINE_TYPE);
+        assertThat(bySizeAndEngine).hasSize(15);
+        var removed = new ArrayList<Car>();
+        for (GroupAggregate group : bySizeAndEngine) {
+            var members = generated.stream()
+                    .filter(car -> car.wheel.size == group.getWheelSize() && car.engine.type == group.getEngineType())
+                    .collect(Collectors.toList());
+            var price = group.getStatistic().getPrice();
+            assertThat(group.getCount()).isEqualTo(members.size());
+            assertThat(price.getSum()).isEqualByComparingTo(members.stream().map(car -> car.price).reduce(BigDecimal.ZERO, BigDecimal::add));
+            assertThat(price.getMax()).isEqualByComparingTo(members.stream().map(car -> car.price).max(BigDecimal::compareTo).orElseThrow());
+            removed.add(members.stream().max((first, second) -> first.price.compareTo(second.price)).orElseThrow());
+        }
+
+        removed.forEach(service::removeCar);
+        var afterRemoval = service.aggregateBy(StatisticAttribute.PRICE, GroupingDimension.WHEEL_SIZE, GroupingDimension.ENGINE_TYPE);
+        for (GroupAggregate group : afterRemoval) {
+            var members = generated.stream()
+                    .filter(car -> !removed.contains(car) && car.wheel.size == group.getWheelSize() && car.engine.type == group.getEngineType())
+                    .collect(Collectors.toList());
+            assertThat(group.getCount()).isEqualTo(members.size());
+            assertThat(group.getStatistic().getPrice().getMax()).isEqualByComparingTo(members.stream().map(car -> car.price).max(BigDecimal::compareTo).orElseThrow());
+        }
+        assertThat(service.aggregateBy(StatisticAttribute.MILEAGE, GroupingDimension.BODY_COLOR).get(0).getStatistic().getMileage().getCount()).isPositive();
+
+        var fractional = new ArrayList<Car>();
+        for (int i = 0; i < 201; i++) {
+            fractional.add(Car
+                    .builder()
+                    .model("Model " + (i % 7))
+                    .price(BigDecimal.valueOf(1000 + (i * 7919L) % 50000))
+                    .mileage(i == 200 ? 1e17 : 0.1 * (i % 10))
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(List.of("Radio")).build())
+                    .wheel(Wheel.builder().size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+        var outlier = fractional.remove(200);
+        var fractionalService = new CarsService(fractional);
+        var before = fractionalService.aggregateBy(StatisticAttribute.MILEAGE).get(0).getStatistic().getMileage();
+        fractionalService.addCar(outlier);
+        assertThat(fractionalService.aggregateBy(StatisticAttribute.MILEAGE).get(0).getStatistic().getMileage().getMax()).isEqualTo(1e17);
+        fractionalService.removeCar(outlier);
+        var after = fractionalService.aggregateBy(StatisticAttribute.MILEAGE).get(0).getStatistic().getMileage();
+        assertThat(after.getSum()).isEqualTo(before.getSum());
+        assertThat(after.getMax()).isEqualTo(before.getMax());
+        assertThrows(CarsServiceException.class, () -> service.countBy(GroupingDimension.TYRE_TYPE, GroupingDimension.TYRE_TYPE));
+        assertThrows(CarsServiceException.class, () -> service.aggregateBy(null, GroupingDimension.TYRE_TYPE));
+    }
 
 
+    @Test
+    @DisplayName("when statistics are approximated with sketches")
+    void testThirtySix(){
+
+        var generated = new ArrayList<Car>();
+        for (int i = 0; i < 20000; i++) {
+            generated.add(Car
+                    .builder()
+                    .model("Model " + (i % 97))
+                    .price(BigDecimal.valueOf(1000 + (i * 7919L) % 50000))
+                    .mileage((i * 31) % 1000)
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(i % 3 == 0 ? List.of("ABS", "Radio") : List.of("Radio", "Component " + i % 500)).build())
+                    .wheel(Wheel.builder().size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+        var service = new CarsService(generated);
+        var exact = service.getStatistics(10, 50, 90);
+        var approximate = service.getApproximateStatistics(10, 50, 90);
+
+        var mileage = approximate.getMileage();
+        assertThat(mileage.getCount()).isEqualTo(20000);
+        assertThat(mileage.getMin()).isEqualTo(exact.getMileage().getMin());
+        assertThat(mileage.getMax()).isEqualTo(exact.getMileage().getMax());
+        assertThat(mileage.getPercentileRankError()).isBetween(0.001, 0.05);
+        for (double percentile : List.of(10D, 50D, 90D)) {
+            assertThat(mileage.getPercentiles().get(percentile))
+                    .isCloseTo(exact.getMileage().getPercentiles().get(percentile), within(2 * mileage.getPercentileRankError() * 1000));
+        }
+        assertThat(approximate.getPrice().getPercentiles().get(50D).doubleValue())
+                .isCloseTo(exact.getPrice().getPercentiles().get(50D).doubleValue(), withinPercentage(10));
+
+        var models = approximate.getDistinctModels();
+        assertThat(models.getLowerBound()).isLessThanOrEqualTo(97);
+        assertThat(models.getUpperBound()).isGreaterThanOrEqualTo(97);
+        assertThat(approximate.getDistinctComponents().getValue()).isCloseTo(502, withinPercentage(10));
+
+        var abs = approximate.getComponentFrequencies().get("ABS");
+        assertThat(approximate.getComponentFrequencies().keySet()).startsWith("Radio", "ABS");
+        assertThat(abs.getUpperBound()).isGreaterThanOrEqualTo(6667);
+        assertThat(abs.getLowerBound()).isLessThanOrEqualTo(6667);
+
+        var merged = service.sketch().merge(new CarsService(generated.subList(0, 1000)).sketch()).toCarStatistic(50);
+        assertThat(merged.getPower().getCount()).isEqualTo(21000);
+        assertThat(merged.getDistinctModels().getValue()).isCloseTo(97, withinPercentage(10));
+        assertThrows(CarsServiceException.class, () -> service.getApproximateStatistics(101));
+
+        var incomplete = new FleetSketch();
+        incomplete.accept(Car
+                .builder()
+                .price(BigDecimal.TEN)
+                .engine(Engine.builder().type(EngineType.LPG).power(75).build())
+                .carBody(CarBody.builder().components(Arrays.asList("ABS", null)).build())
+                .build());
+        var counted = incomplete.toCarStatistic();
+        assertThat(counted.getPrice().getCount()).isEqualTo(1);
+        assertThat(counted.getDistinctModels().getValue()).isZero();
+        assertThat(counted.getComponentFrequencies()).containsOnlyKeys("ABS");
+        assertThrows(CarsServiceException.class, () -> incomplete.accept(Car.builder().model("Fiat").build()));
+    }
+
+
+    @Test
+    @DisplayName("when many queries are answered with one pass over collection")
+    void testThirtySeven(){
+
+        var generated = new ArrayList<Car>();
+        for (int i = 0; i < 3000; i++) {
+            generated.add(Car
+                    .builder()
+                    .model("Model " + (i % 37))
+                    .price(BigDecimal.valueOf(1000 + (i * 7919L) % 50000))
+                    .mileage((i * 31) % 1000)
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(i % 3 == 0 ? List.of("ABS", "Radio") : List.of("Radio", "Component " + i % 500)).build())
+                    .wheel(Wheel.builder().size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+
+        var queries = new ArrayList<CarQuery>();
+        for (CarBodyType bodyType : CarBodyType.values()) {
+            queries.add(CarQuery.builder().bodyTypes(bodyType).priceBetween(BigDecimal.valueOf(10000), BigDecimal.valueOf(40000)).build());
+        }
+        queries.add(CarQuery.builder().components("ABS").build());
+        queries.add(CarQuery.builder().components("Radio").engineTypes(EngineType.LPG).colors(CarBodyColor.RED).build());
+        queries.add(CarQuery.builder().components("Component 7").build());
+        queries.add(CarQuery.builder().mileageBetween(100, 200).build());
+        queries.add(queries.get(0));
+
+        var service = new CarsService(generated);
+        var reference = new CarsService(generated);
+        reference.disableQueryCache();
+        var batch = BatchScan.plan(Fleet.of(generated), queries);
+        assertThat(batch.getScanningQueries() + batch.getIndexedQueries()).isEqualTo(queries.size() - 1);
+        assertThat(batch.getScanningQueries()).isEqualTo(1);
+        assertThat(batch.getScannedRows()).isBetween(3000L + 4, 3 * 3000L);
+
+        var found = service.findAll(queries);
+
+        assertThat(found).hasSize(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            assertThat(found.get(i)).containsExactlyElementsOf(reference.find(queries.get(i)));
+        }
+        assertThat(found.get(0)).isNotEmpty().isEqualTo(found.get(queries.size() - 1)).isNotSameAs(found.get(queries.size() - 1));
+
+        long hits = service.getQueryCacheStatistic().getHits();
+        service.find(queries.get(2));
+        assertThat(service.getQueryCacheStatistic().getHits()).isEqualTo(hits + 1);
+
+        var pool = new ForkJoinPool(4);
+        var parallel = new CarsService(generated);
+        parallel.enableParallelExecution(pool, 0);
+        try {
+            assertThat(parallel.findAll(queries)).isEqualTo(found);
+        } finally {
+            pool.shutdown();
+        }
+        assertThat(service.findAll(List.of())).isEmpty();
+        assertThrows(CarsServiceException.class, () -> service.findAll(Arrays.asList(queries.get(0), null)));
+    }
 
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("when views follow cars added, updated and removed")
+    void testThirtyEight() throws InterruptedException {
+
+        var dieselCars = carsService.watchEngineType(EngineType.DIESEL);
+        var wheelTypes = carsService.watchWheelTypes();
+        var prices = carsService.watchStatistic(StatisticAttribute.PRICE);
+        var dieselEvents = new LinkedBlockingQueue<Object>();
+        var wheelTypeEvents = new LinkedBlockingQueue<Object>();
+        var priceEvents = new LinkedBlockingQueue<Object>();
+        var dieselCollector = collector(dieselEvents, Long.MAX_VALUE);
+        dieselCars.subscribe(dieselCollector);
+        wheelTypes.subscribe(collector(wheelTypeEvents, Long.MAX_VALUE));
+        prices.subscribe(collector(priceEvents, Long.MAX_VALUE));
+
+        assertThat(dieselCars.snapshot().getResult().get(EngineType.DIESEL))
+                .containsExactlyElementsOf(carsService.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL));
+        assertThat(wheelTypes.snapshot().getResult()).isEqualTo(carsService.getCarsWithThisSameWheelType());
+        assertThat(prices.snapshot().getResult()).isEqualTo(carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE));
+
+        var diesel = carsService.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL).iterator().next();
+        var added = Car
+                .builder()
+                .model("AAA")
+                .price(BigDecimal.valueOf(1))
+                .mileage(1)
+                .engine(diesel.engine)
+                .carBody(diesel.carBody)
+                .wheel(Wheel.builder().model("Debica").size(15).tyreType(TyreType.WINTER).build())
+                .build();
+        carsService.addCar(added);
+        var updated = Car
+                .builder()
+                .model("AAA")
+                .price(BigDecimal.valueOf(2))
+                .mileage(1)
+                .engine(diesel.engine)
+                .carBody(diesel.carBody)
+                .wheel(added.wheel)
+                .build();
+        carsService.updateCar(added, updated);
+        var gasoline = Car
+                .builder()
+                .model("AAA")
+                .price(BigDecimal.valueOf(2))
+                .mileage(1)
+                .engine(Engine.builder().type(EngineType.GASOLINE).power(100).build())
+                .carBody(diesel.carBody)
+                .wheel(added.wheel)
+                .build();
+        carsService.updateCar(updated, gasoline);
+        carsService.removeCar(gasoline);
+
+        assertThat(dieselEvents.poll(5, TimeUnit.SECONDS)).isEqualTo(new ViewEvent<>(1, 1, List.of(new CarChange<>(ChangeType.ADDED, EngineType.DIESEL, added, null))));
+        assertThat(dieselEvents.poll(5, TimeUnit.SECONDS)).isEqualTo(new ViewEvent<>(2, 2, List.of(new CarChange<>(ChangeType.CHANGED, EngineType.DIESEL, updated, added))));
+        assertThat(dieselEvents.poll(5, TimeUnit.SECONDS)).isEqualTo(new ViewEvent<>(3, 3, List.of(new CarChange<>(ChangeType.REMOVED, EngineType.DIESEL, updated, null))));
+        assertThat(wheelTypeEvents.poll(5, TimeUnit.SECONDS)).isEqualTo(new ViewEvent<>(1, 1, List.of(new CarChange<>(ChangeType.ADDED, TyreType.WINTER, added, null))));
+        assertThat(wheelTypeEvents.poll(5, TimeUnit.SECONDS)).isEqualTo(new ViewEvent<>(2, 2, List.of(new CarChange<>(ChangeType.CHANGED, TyreType.WINTER, updated, added))));
+        assertThat(wheelTypeEvents.poll(5, TimeUnit.SECONDS)).isEqualTo(new ViewEvent<>(3, 3, List.of(new CarChange<>(ChangeType.CHANGED, TyreType.WINTER, gasoline, updated))));
+        assertThat(wheelTypeEvents.poll(5, TimeUnit.SECONDS)).isEqualTo(new ViewEvent<>(4, 4, List.of(new CarChange<>(ChangeType.REMOVED, TyreType.WINTER, gasoline, null))));
+        assertThat(((ViewEvent<?>) priceEvents.poll(5, TimeUnit.SECONDS)).getVersion()).isEqualTo(1);
+        assertThat(((ViewEvent<?>) priceEvents.poll(5, TimeUnit.SECONDS)).getVersion()).isEqualTo(2);
+        assertThat(((ViewEvent<?>) priceEvents.poll(5, TimeUnit.SECONDS)).getVersion()).isEqualTo(4);
+        assertThat(priceEvents.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        dieselCollector.subscription.cancel();
+
+        var slowEvents = new LinkedBlockingQueue<Object>();
+        var slow = collector(slowEvents, 0);
+        dieselCars.subscribe(slow);
+        var addedCars = new ArrayList<Car>();
+        for (int i = 0; i < Flow.defaultBufferSize() + 10; i++) {
+            var car = Car
+                    .builder()
+                    .model("Model " + i)
+                    .price(BigDecimal.valueOf(i))
+                    .mileage(i)
+                    .engine(diesel.engine)
+                    .carBody(diesel.carBody)
+                    .wheel(added.wheel)
+                    .build();
+            addedCars.add(car);
+            carsService.addCar(car);
+        }
+        assertThat(dieselCars.snapshot().getResult().get(EngineType.DIESEL))
+                .containsExactlyElementsOf(carsService.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL));
+        assertThat(wheelTypes.snapshot().getResult()).isEqualTo(carsService.getCarsWithThisSameWheelType());
+        assertThat(prices.snapshot().getResult()).isEqualTo(carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE));
+        assertThat(dieselCars.snapshot().getVersion()).isEqualTo(4 + addedCars.size());
+
+        slow.subscription.request(Long.MAX_VALUE);
+        for (int i = 0; i < Flow.defaultBufferSize(); i++) {
+            assertThat(slowEvents.poll(5, TimeUnit.SECONDS)).isInstanceOf(ViewEvent.class);
+        }
+        carsService.removeCar(addedCars.get(0));
+        assertThat(slowEvents.poll(5, TimeUnit.SECONDS)).isInstanceOf(CarsServiceException.class);
+
+        dieselCars.close();
+        carsService.removeCar(addedCars.get(1));
+        assertThat(dieselEvents.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(dieselCars.getNumberOfSubscribers()).isZero();
+        wheelTypes.close();
+        prices.close();
+        assertThrows(CarsServiceException.class, () -> carsService.watchStatistic(null));
+    }
+
+
+    @Test
+    @DisplayName("when cars are stored off-heap")
+    void testThirtyNine(){
+
+        var generated = new ArrayList<Car>();
+        for (int i = 0; i < 3000; i++) {
+            generated.add(Car
+                    .builder()
+                    .model("Model " + (i % 37))
+                    .price(BigDecimal.valueOf(100000 + (i * 7919L) % 5000000, 2))
+                    .mileage((i * 31) % 1000 + i / 1000.0)
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(i % 3 == 0 ? List.of("ABS", "Radio") : i % 3 == 1 ? List.of() : List.of("Radio", "Component " + i % 500)).build())
+                    .wheel(Wheel.builder().model(i % 2 == 0 ? null : "Debica").size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+
+        var onHeap = new CarsService(generated);
+        var offHeap = CarsService.offHeap(generated);
+        var query = CarQuery.builder().components("Radio").engineTypes(EngineType.LPG).mileageBetween(100, 700).build();
+
+        assertThat(describe(offHeap.sortingByGivenOrder(SortingType.ENGINE_POWER, true))).containsExactlyElementsOf(describe(onHeap.sortingByGivenOrder(SortingType.ENGINE_POWER, true)));
+        assertThat(describe(offHeap.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.SEDAN, BigDecimal.valueOf(2000), BigDecimal.valueOf(30000), true)))
+                .containsExactlyElementsOf(describe(onHeap.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.SEDAN, BigDecimal.valueOf(2000), BigDecimal.valueOf(30000), true)));
+        assertThat(describe(offHeap.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL))).containsExactlyElementsOf(describe(onHeap.groupByGivenEngineTypeWithAlphabeticalOrder(EngineType.DIESEL)));
+        assertThat(describe(offHeap.findAllWithComponents(List.of("ABS", "Radio")))).containsExactlyElementsOf(describe(onHeap.findAllWithComponents(List.of("ABS", "Radio"))));
+        assertThat(describe(offHeap.find(query))).isNotEmpty().containsExactlyElementsOf(describe(onHeap.find(query)));
+        assertThat(describe(offHeap.getCarsWithMileageBetween(200, 300))).containsExactlyElementsOf(describe(onHeap.getCarsWithMileageBetween(200, 300)));
+        assertThat(offHeap.getCarsWithThisSameWheelType().keySet()).containsExactlyElementsOf(onHeap.getCarsWithThisSameWheelType().keySet());
+        assertThat(offHeap.getStatistics(50, 90)).isEqualTo(onHeap.getStatistics(50, 90));
+        assertThat(offHeap.countBy(GroupingDimension.ENGINE_TYPE, GroupingDimension.TYRE_TYPE)).isEqualTo(onHeap.countBy(GroupingDimension.ENGINE_TYPE, GroupingDimension.TYRE_TYPE));
+
+        var stored = offHeap.getCarAtMileagePercentile(100).orElseThrow();
+        var equal = offHeap.getCarAtMileagePercentile(100).orElseThrow();
+        assertSame(stored, equal);
+        var updated = Car
+                .builder()
+                .model(stored.model)
+                .price(stored.price)
+                .mileage(-1)
+                .engine(stored.engine)
+                .carBody(stored.carBody)
+                .wheel(stored.wheel)
+                .build();
+        assertFalse(offHeap.addCar(equal));
+        assertTrue(offHeap.updateCar(equal, updated));
+        assertFalse(offHeap.removeCar(stored));
+        assertThat(offHeap.getMileageRank(updated)).isEqualTo(1);
+        assertTrue(offHeap.removeCar(offHeap.getCarAtMileagePercentile(0).orElseThrow()));
+        assertThat(offHeap.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getCount()).isEqualTo(generated.size() - 1);
+
+        offHeap.close();
+        assertThrows(CarsServiceException.class, () -> offHeap.find(CarQuery.builder().colors(CarBodyColor.RED).build()));
+        assertThrows(CarsServiceException.class, () -> offHeap.addCar(updated));
+    }
+
+    @Test
+    @DisplayName("when query builder is reused after building a query")
+    void testForty(){
+
+        var builder = CarQuery.builder().engineTypes(EngineType.DIESEL);
+        var diesel = builder.build();
+        var found = carsService.find(diesel);
+        var withAbs = builder.engineTypes(EngineType.LPG).components("ABS").build();
+
+        assertThat(diesel.getEngineTypes()).containsExactly(EngineType.DIESEL);
+        assertThat(diesel.getComponents()).isEmpty();
+        assertThat(diesel).isNotEqualTo(withAbs);
+        assertThat(carsService.find(diesel)).isEqualTo(found).hasSize(2);
+        assertThat(carsService.find(withAbs)).allMatch(car -> car.carBody.components.contains("ABS"));
+        assertThat(carsService.getQueryCacheStatistic().getHits()).isEqualTo(1);
+    }
+
+
+    @Test
+    @DisplayName("when car is updated to another car of the collection")
+    void testFortyOne(){
+
+        var cars = carsService.sortingByGivenOrder(SortingType.ENGINE_POWER, false);
+        var car = cars.get(0);
+        var other = cars.get(1);
+
+        assertFalse(carsService.updateCar(car, other));
+        assertThat(carsService.sortingByGivenOrder(SortingType.ENGINE_POWER, false)).containsExactlyElementsOf(cars);
+        assertThat(carsService.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getCount()).isEqualTo(cars.size());
+        assertTrue(carsService.removeCar(car));
+    }
+
+
+    @Test
+    @DisplayName("when removed cars are compacted away")
+    void testFortyTwo(){
+
+        var generated = new ArrayList<Car>();
+        for (int i = 0; i < 10000; i++) {
+            generated.add(Car
+                    .builder()
+                    .model("Model " + (i % 97))
+                    .price(BigDecimal.valueOf(1000 + (i * 7919L) % 50000))
+                    .mileage((i * 31) % 1000)
+                    .engine(Engine.builder().type(EngineType.values()[i % EngineType.values().length]).power(50 + i % 13).build())
+                    .carBody(CarBody.builder().bodyType(CarBodyType.values()[i % CarBodyType.values().length]).color(CarBodyColor.values()[i % CarBodyColor.values().length]).components(List.of("Radio")).build())
+                    .wheel(Wheel.builder().size(14 + i % 5).tyreType(TyreType.values()[(i * i) % TyreType.values().length]).build())
+                    .build());
+        }
+        var service = new CarsService(generated);
+        var wheelTypes = service.watchWheelTypes();
+        var firstPage = service.cursorAllWithComponents(List.of()).page(null, 100);
+
+        var kept = new ArrayList<Car>();
+        for (int i = 0; i < generated.size(); i++) {
+            if (i % 5 < 3) {
+                assertTrue(service.removeCar(generated.get(i)));
+            } else {
+                kept.add(generated.get(i));
+            }
+        }
+
+        assertThat(service.cursorAllWithComponents(List.of()).stream()).containsExactlyElementsOf(kept);
+        assertThat(wheelTypes.snapshot().getResult()).isEqualTo(service.getCarsWithThisSameWheelType());
+        assertThat(service.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice().getCount()).isEqualTo(kept.size());
+        assertThrows(CarsServiceException.class, () -> service.cursorAllWithComponents(List.of()).page(firstPage.getContinuationToken(), 100));
+        var page = service.cursorAllWithComponents(List.of()).page(null, 100);
+        assertThat(service.cursorAllWithComponents(List.of()).page(page.getContinuationToken(), 100).getCars())
+                .containsExactlyElementsOf(kept.subList(100, 200));
+
+        assertTrue(service.removeCar(kept.get(0)));
+        assertTrue(service.addCar(generated.get(0)));
+        assertThat(wheelTypes.snapshot().getResult()).isEqualTo(service.getCarsWithThisSameWheelType());
+        wheelTypes.close();
+    }
+
+    @Test
+    @DisplayName("when prices don't fit the fixed-point price column")
+    void testFortyThree(@TempDir Path directory){
+
+        var huge = Car
+                .builder()
+                .model("Yacht")
+                .price(new BigDecimal("1E+30"))
+                .engine(Engine.builder().type(EngineType.DIESEL).power(900).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.WHITE).components(List.of()).build())
+                .wheel(Wheel.builder().size(22).tyreType(TyreType.SUMMER).build())
+                .build();
+        var billion = Car
+                .builder()
+                .model("Jet")
+                .price(new BigDecimal("1000000000"))
+                .engine(Engine.builder().type(EngineType.GASOLINE).power(500).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.BLACK).components(List.of()).build())
+                .wheel(Wheel.builder().size(20).tyreType(TyreType.WINTER).build())
+                .build();
+        var tiny = Car
+                .builder()
+                .model("Toy")
+                .price(new BigDecimal("0.0000000001"))
+                .engine(Engine.builder().type(EngineType.LPG).power(1).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(List.of()).build())
+                .wheel(Wheel.builder().size(8).tyreType(TyreType.SUMMER).build())
+                .build();
+
+        var service = new CarsService(List.of(huge));
+        assertThat(service.getStatistics().getPrice().getSum()).isEqualByComparingTo("1E+30");
+
+        service = new CarsService(List.of(billion));
+        assertTrue(service.addCar(tiny));
+        assertTrue(service.addCar(huge));
+        var price = service.getStatisticByGivenAttribute(StatisticAttribute.PRICE).getPrice();
+        assertThat(price.getSum()).isEqualByComparingTo("1000000000000000000001000000000.0000000001");
+        assertThat(price.getMin()).isEqualByComparingTo("0.0000000001");
+        assertThat(price.getMax()).isEqualByComparingTo("1E+30");
+        assertThat(service.getStatistics(50).getPrice().getPercentiles()).containsEntry(50.0, new BigDecimal("1000000000"));
+        assertThat(service.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.SEDAN, BigDecimal.ZERO, new BigDecimal("0.0000000001"), true))
+                .containsExactly(tiny);
+        assertThat(service.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.SEDAN, new BigDecimal("0.0000000001"), new BigDecimal("1E+30"), true))
+                .containsExactly(billion, huge);
+        assertThat(service.find(CarQuery.builder().priceBetween(new BigDecimal("0.00000000005"), new BigDecimal("999999999.99999")).build()))
+                .containsExactly(tiny);
+        assertThat(service.aggregateBy(StatisticAttribute.PRICE, GroupingDimension.BODY_TYPE).get(0).getStatistic().getPrice().getMin())
+                .isEqualByComparingTo("0.0000000001");
+
+        var offHeap = CarsService.offHeap(List.of(billion, tiny, huge));
+        assertThat(offHeap.getStatistics(50)).isEqualTo(service.getStatistics(50));
+        assertThat(describe(offHeap.groupBySpecifiedBodyTypeWithGivenPriceRange(CarBodyType.SEDAN, BigDecimal.ZERO, new BigDecimal("1E+30"), true)))
+                .containsExactlyElementsOf(describe(List.of(tiny, billion, huge)));
+        offHeap.close();
+
+        var snapshot = directory.resolve("fleet.snapshot");
+        service.writeSnapshot(snapshot);
+        var restored = CarsService.fromSnapshot(snapshot);
+        assertThat(restored.getStatistics(50)).isEqualTo(service.getStatistics(50));
+        assertThat(describe(restored.sortingByGivenOrder(SortingType.ENGINE_POWER, false))).containsExactlyElementsOf(describe(List.of(tiny, billion, huge)));
+    }
+
+
+    @Test
+    @DisplayName("when cars with equal values are stored on and off the heap")
+    void testFortyFour(){
+
+        var first = Car
+                .builder()
+                .model("Fiat")
+                .price(BigDecimal.valueOf(10000))
+                .engine(Engine.builder().type(EngineType.LPG).power(75).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(List.of("ABS")).build())
+                .wheel(Wheel.builder().model("Debica").size(14).tyreType(TyreType.WINTER).build())
+                .build();
+        var second = Car
+                .builder()
+                .model("Fiat")
+                .price(BigDecimal.valueOf(10000))
+                .engine(Engine.builder().type(EngineType.LPG).power(75).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(List.of("ABS")).build())
+                .wheel(Wheel.builder().model("Debica").size(14).tyreType(TyreType.WINTER).build())
+                .build();
+
+        var onHeap = new CarsService(List.of(first, second));
+        try (var offHeap = CarsService.offHeap(List.of(first, second))) {
+            assertThat(onHeap.findAllWithComponents(List.of("ABS"))).containsExactly(first, second);
+            assertThat(offHeap.findAllWithComponents(List.of("ABS"))).containsExactly(first, second);
+            assertTrue(offHeap.removeCar(second));
+            assertThat(offHeap.findAllWithComponents(List.of("ABS"))).containsExactly(first);
+        }
+    }
+
+    private static List<String> describe(Collection<Car> cars) {
+        return cars.stream()
+                .map(car -> String.join(";", car.model, car.price.toPlainString(), String.valueOf(car.mileage),
+                        String.valueOf(car.engine.type), String.valueOf(car.engine.power), String.valueOf(car.carBody.bodyType),
+                        String.valueOf(car.carBody.color), String.valueOf(car.carBody.components), String.valueOf(car.wheel.model),
+                        String.valueOf(car.wheel.size), String.valueOf(car.wheel.tyreType)))
+                .collect(Collectors.toList());
+    }
+
+    private static Collector collector(BlockingQueue<Object> events, long requested) {
+        return new Collector(events, requested);
+    }
+
+
+    private static final class Collector implements Flow.Subscriber<ViewEvent<?>> {
+
+        private final BlockingQueue<Object> events;
+        private final long requested;
+        private Flow.Subscription subscription;
+
+        Collector(BlockingQueue<Object> events, long requested) {
+            this.events = events;
+            this.requested = requested;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (requested > 0) {
+                subscription.request(requested);
+            }
+        }
+
+        @Override
+        public void onNext(ViewEvent<?> event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            events.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
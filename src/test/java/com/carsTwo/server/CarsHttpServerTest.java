@@ -0,0 +1,143 @@
+package com.carsTwo.server;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.loader.CarsJsonLoader;
+import com.carsTwo.model.CarUtils;
+import com.carsTwo.model.enums.TyreType;
+import com.carsTwo.service.CarsService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CarsHttpServerTest {
+
+    private static final String CAR = "{\"model\": \"Car%d\", \"price\": %d, \"mileage\": %d,"
+            + " \"engine\": {\"type\": \"%s\", \"power\": 90},"
+            + " \"carBody\": {\"color\": \"RED\", \"bodyType\": \"SEDAN\", \"components\": [\"ABS\"]},"
+            + " \"wheel\": {\"model\": \"Debica\", \"size\": 15, \"tyreType\": \"WINTER\"}}";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+
+    @Test
+    @DisplayName("when cars are added, queried page by page and removed over HTTP")
+    void testOne() throws IOException, InterruptedException {
+
+        try (var server = CarsHttpServer.start(new CarsService(List.of()), 0, 16)) {
+            var added = post(server, "/cars", IntStream.rangeClosed(1, 5)
+                    .mapToObj(i -> car(i, i % 2 == 0 ? "LPG" : "DIESEL"))
+                    .collect(Collectors.joining(",", "[", "]")));
+
+            assertThat(added.statusCode()).isEqualTo(200);
+            assertThat(added.body()).isEqualTo("{\"added\":5}");
+
+            var sorted = get(server, "/cars/mileage-range?min=20&max=50");
+            assertThat(sorted.statusCode()).isEqualTo(200);
+            assertThat(sorted.headers().firstValue("Content-Type")).hasValue("application/json");
+            assertThat(models(sorted.body())).containsExactly("Car2", "Car3", "Car4", "Car5");
+
+            var firstPage = get(server, "/cars/query?engineType=LPG&engineType=DIESEL&minPrice=2000&maxPrice=5000&size=2");
+            assertThat(firstPage.body()).contains("\"model\":\"Car2\"", "\"model\":\"Car3\"").doesNotContain("Car4");
+            var token = firstPage.body().replaceAll(".*\"continuationToken\":\"([^\"]+)\".*", "$1");
+            var lastPage = get(server, "/cars/query?engineType=LPG&engineType=DIESEL&minPrice=2000&maxPrice=5000&size=2&token=" + token);
+            assertThat(lastPage.body()).contains("Car4", "Car5", "\"continuationToken\":null");
+
+            assertThat(get(server, "/groups/count?dimension=engine_type").body())
+                    .isEqualTo("[{\"engineType\":\"DIESEL\",\"count\":3},{\"engineType\":\"LPG\",\"count\":2}]");
+            var batch = get(server, "/cars/batch?q=engineType%3DLPG&q=engineType%3DDIESEL%26minPrice%3D2000%26maxPrice%3D3000").body();
+            assertThat(batch).startsWith("[[{\"model\":\"Car2\"").contains("}],[{\"model\":\"Car3\"").endsWith("}]]");
+            assertThat(post(server, "/cars/remove", car(3, "DIESEL")).body()).isEqualTo("{\"removed\":true}");
+            assertThat(post(server, "/cars/remove", car(5, "DIESEL").replace("\"model\": \"Debica\", ", "")).body())
+                    .isEqualTo("{\"removed\":false}");
+            assertThat(post(server, "/cars/remove", car(5, "DIESEL").replace("\"tyreType\": \"WINTER\"", "\"tyreType\": null")).body())
+                    .isEqualTo("{\"removed\":false}");
+            assertThat(models(get(server, "/cars/engine-type?type=DIESEL").body())).containsExactly("Car1", "Car5");
+        }
+    }
+
+    @Test
+    @DisplayName("when request is invalid or every permit is taken")
+    void testTwo() throws IOException, InterruptedException {
+
+        var carsService = new CarsService(List.of());
+        try (var server = CarsHttpServer.start(carsService, 0, 1)) {
+            assertThat(get(server, "/cars/top?type=WEIGHT&limit=1").statusCode()).isEqualTo(400);
+            assertThat(get(server, "/cars/mileage-range?min=5&max=1").body()).contains("\"error\"");
+            assertThat(get(server, "/trucks").statusCode()).isEqualTo(404);
+            assertThat(post(server, "/cars/top", "[]").statusCode()).isEqualTo(405);
+
+            var body = "[" + car(1, "LPG") + "]";
+            int added = 0;
+            HttpResponse<String> refused = null;
+            for (int attempt = 0; attempt < 100 && (refused == null || refused.statusCode() != 429); attempt++) {
+                try (var slowRequest = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+                    var output = slowRequest.getOutputStream();
+                    output.write(("POST /cars HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\nContent-Length: " + body.length() + "\r\n\r\n[")
+                            .getBytes(StandardCharsets.US_ASCII));
+                    output.flush();
+                    Thread.sleep(10);
+
+                    refused = get(server, "/cache");
+                    output.write(body.substring(1).getBytes(StandardCharsets.US_ASCII));
+                    output.flush();
+                    // the slow request is refused itself when the probe took the permit first, the next attempt retries
+                    var response = new String(slowRequest.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+                    assertThat(response).matches("(?s)HTTP/1\\.1 (200|429) .*");
+                    if (response.startsWith("HTTP/1.1 200")) {
+                        added++;
+                    }
+                }
+            }
+            assertThat(refused.statusCode()).isEqualTo(429);
+            assertThat(refused.headers().firstValue("Retry-After")).hasValue("1");
+            assertThat(carsService.getCarsWithThisSameWheelType().getOrDefault(TyreType.WINTER, List.of()))
+                    .hasSize(added)
+                    .extracting(CarUtils.toModel)
+                    .containsOnly("Car1");
+        }
+
+        assertThrows(CarsServiceException.class, () -> CarsHttpServer.start(new CarsService(List.of()), 0, 0));
+    }
+
+    private HttpResponse<String> get(CarsHttpServer server, String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(server, path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(CarsHttpServer server, String path, String body) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(server, path)).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static URI uri(CarsHttpServer server, String path) {
+        return URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.port() + path);
+    }
+
+    private static String car(int i, String engineType) {
+        return String.format(CAR, i, i * 1000, i * 10, engineType);
+    }
+
+    private static List<String> models(String body) {
+
+        var models = new ArrayList<String>();
+        CarsJsonLoader.readCars(Channels.newChannel(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))),
+                car -> models.add(CarUtils.toModel.apply(car)));
+        return models;
+    }
+}
@@ -0,0 +1,111 @@
+package com.carsTwo.store;
+
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarBody;
+import com.carsTwo.model.Engine;
+import com.carsTwo.model.Wheel;
+import com.carsTwo.model.enums.CarBodyColor;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.model.enums.StatisticAttribute;
+import com.carsTwo.model.enums.TyreType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FleetTest {
+
+
+    @Test
+    @DisplayName("when next version shares the chunks it didn't change")
+    void testOne() {
+
+        var cars = new ArrayList<Car>();
+        for (int i = 0; i < 3 * HeapCarColumns.CHUNK_ROWS; i++) {
+            cars.add(car("Model " + i % 13, 1000 + i, i % 500));
+        }
+        var fleet = Fleet.of(cars);
+        fleet.statistics();
+        fleet.mileageIndex();
+
+        var next = fleet.copy();
+        var added = car("Added", 500, 10_000);
+        assertThat(next.add(added)).isTrue();
+        assertThat(next.remove(cars.get(5))).isTrue();
+
+        var columns = (HeapCarColumns) fleet.columns();
+        var nextColumns = (HeapCarColumns) next.columns();
+        int addedRow = nextColumns.rowOf(added);
+        assertThat(nextColumns.chunkOf(HeapCarColumns.CHUNK_ROWS)).isSameAs(columns.chunkOf(HeapCarColumns.CHUNK_ROWS));
+        assertThat(nextColumns.chunkOf(0)).isSameAs(columns.chunkOf(0));
+        assertThat(nextColumns.chunkOf(addedRow)).isNotSameAs(columns.chunkOf(addedRow - 1));
+
+        assertThat(fleet.columns().isLive(5)).isTrue();
+        assertThat(fleet.columns().rowOf(added)).isEqualTo(-1);
+        assertThat(next.columns().isLive(5)).isFalse();
+        assertThat(fleet.mileageIndex().size()).isEqualTo(cars.size());
+        assertThat(next.mileageIndex().size()).isEqualTo(cars.size());
+        assertThat(next.mileageIndex().row(next.mileageIndex().size() - 1)).isEqualTo(addedRow);
+        assertThat(fleet.statistics().statistic(StatisticAttribute.PRICE).getPrice().getMin())
+                .isEqualByComparingTo("1000");
+        assertThat(next.statistics().statistic(StatisticAttribute.PRICE).getPrice().getMin())
+                .isEqualByComparingTo("500");
+    }
+
+    @Test
+    @DisplayName("when removed rows outnumber the live ones and the next version is compacted")
+    void testTwo() {
+
+        var cars = new ArrayList<Car>();
+        for (int i = 0; i < 3 * Fleet.COMPACTION_MIN_REMOVED; i++) {
+            cars.add(car("Model " + i % 13, 1000 + i, i % 500));
+        }
+        var fleet = Fleet.of(cars);
+        fleet.groupCube();
+        assertThat(fleet.copy().generation()).isZero();
+
+        var next = fleet.copy();
+        for (int i = 0; i < cars.size(); i++) {
+            if (i % 3 != 0) {
+                next.remove(cars.get(i));
+            }
+        }
+        var compacted = next.copy();
+        var added = car("Added", 500, 10_000);
+        assertThat(compacted.add(added)).isTrue();
+
+        assertThat(compacted.version()).isEqualTo(2);
+        assertThat(compacted.generation()).isEqualTo(1);
+        assertThat(compacted.columns().size()).isEqualTo(cars.size() / 3 + 1);
+        assertThat(compacted.columns().rowOf(cars.get(3))).isEqualTo(1);
+        assertThat(compacted.engineTypeIndex().size(EngineType.DIESEL)).isEqualTo(cars.size() / 3 + 1);
+        assertThat(compacted.groupCube().rollUp(List.of(), null).get(0).getCount()).isEqualTo(cars.size() / 3 + 1);
+
+        var delta = compacted.delta();
+        assertThat(delta.isCompacted()).isTrue();
+        assertThat(delta.compactedRow(3)).isEqualTo(1);
+        assertThat(delta.compactedRow(4)).isEqualTo(-1);
+        assertThat(delta.addedRows()).containsExactly(cars.size() / 3);
+        assertThat(next.columns().size()).isEqualTo(cars.size());
+        assertThat(next.columns().rowOf(cars.get(3))).isEqualTo(3);
+        assertThat(compacted.copy().delta().isCompacted()).isFalse();
+    }
+
+    private static Car car(String model, long price, double mileage) {
+
+        return Car
+                .builder()
+                .model(model)
+                .price(BigDecimal.valueOf(price))
+                .mileage(mileage)
+                .engine(Engine.builder().type(EngineType.DIESEL).power(100).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(List.of("ABS")).build())
+                .wheel(Wheel.builder().model("Debica").size(16).tyreType(TyreType.SUMMER).build())
+                .build();
+    }
+}
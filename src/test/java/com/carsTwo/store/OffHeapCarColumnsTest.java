@@ -0,0 +1,82 @@
+package com.carsTwo.store;
+
+import com.carsTwo.exception.CarsServiceException;
+import com.carsTwo.model.Car;
+import com.carsTwo.model.CarBody;
+import com.carsTwo.model.Engine;
+import com.carsTwo.model.Wheel;
+import com.carsTwo.model.enums.CarBodyColor;
+import com.carsTwo.model.enums.CarBodyType;
+import com.carsTwo.model.enums.EngineType;
+import com.carsTwo.model.enums.TyreType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffHeapCarColumnsTest {
+
+
+    @Test
+    @DisplayName("when a closed version can't be read and its copy still can")
+    void testOne() {
+
+        var columns = OffHeapCarColumns.of(List.of(car("First", 1000), car("Second", 2000)));
+        var copy = columns.copy();
+        assertThat(copy.add(car("Third", 3000))).isEqualTo(2);
+
+        columns.close();
+        assertThrows(CarsServiceException.class, () -> columns.car(0));
+        assertThat(columns.offHeapBytes()).isZero();
+        assertThat(copy.model(0)).isEqualTo("First");
+        assertThat(copy.price(2)).isEqualByComparingTo("3000");
+
+        copy.close();
+        assertThrows(CarsServiceException.class, () -> copy.car(0));
+        copy.close();
+    }
+
+    @Test
+    @DisplayName("when cars with equal values are stored as separate rows")
+    void testTwo() {
+
+        var first = car("First", 1000);
+        var second = car("First", 1000);
+        var columns = OffHeapCarColumns.of(List.of(first, second));
+
+        assertThat(columns.size()).isEqualTo(2);
+        assertSame(first, columns.car(0));
+        assertSame(second, columns.car(1));
+        assertThat(columns.rowOf(second)).isEqualTo(1);
+        assertThat(columns.rowOf(car("First", 1000))).isEqualTo(-1);
+        assertThat(columns.add(first)).isEqualTo(-1);
+
+        var copy = columns.copy();
+        copy.remove(0);
+        assertThat(copy.rowOf(first)).isEqualTo(-1);
+        assertThat(columns.rowOf(first)).isZero();
+        assertThat(copy.add(first)).isEqualTo(2);
+        assertThat(copy.rowOf(first)).isEqualTo(2);
+        assertThat(columns.rowOf(first)).isZero();
+        copy.close();
+        columns.close();
+    }
+
+    private static Car car(String model, long price) {
+
+        return Car
+                .builder()
+                .model(model)
+                .price(BigDecimal.valueOf(price))
+                .mileage(100)
+                .engine(Engine.builder().type(EngineType.DIESEL).power(100).build())
+                .carBody(CarBody.builder().bodyType(CarBodyType.SEDAN).color(CarBodyColor.RED).components(List.of("ABS")).build())
+                .wheel(Wheel.builder().model("Debica").size(16).tyreType(TyreType.SUMMER).build())
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.carsTwo.store;
+
+import com.carsTwo.model.enums.EngineType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionIndexTest {
+
+    private final EngineType[] engineTypes = {EngineType.DIESEL, EngineType.LPG, EngineType.DIESEL, EngineType.GASOLINE, EngineType.DIESEL};
+    private final int[] powers = {120, 90, 75, 110, 75};
+
+
+    @Test
+    @DisplayName("when row is added to its partition")
+    void testOne() {
+
+        var index = index(4);
+        index.add(4);
+
+        assertThat(index.rows(EngineType.DIESEL)).containsExactly(2, 4, 0);
+        assertThat(index.rows(EngineType.LPG)).containsExactly(1);
+        assertThat(index.size(EngineType.DIESEL)).isEqualTo(3);
+        assertMatchesRebuilt(index, 5);
+    }
+
+    @Test
+    @DisplayName("when row is removed from its partition")
+    void testTwo() {
+
+        var index = index(5);
+        index.remove(2);
+
+        assertThat(index.rows(EngineType.DIESEL)).containsExactly(4, 0);
+        assertThat(index.size(EngineType.DIESEL)).isEqualTo(2);
+        assertThat(index.size(EngineType.GASOLINE)).isEqualTo(1);
+
+        index.remove(2);
+        assertThat(index.size(EngineType.DIESEL)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("when updated row moves to other partition")
+    void testThree() {
+
+        var index = index(5);
+        index.remove(0);
+        engineTypes[0] = EngineType.LPG;
+        powers[0] = 80;
+        index.add(0);
+
+        assertThat(index.rows(EngineType.DIESEL)).containsExactly(2, 4);
+        assertThat(index.rows(EngineType.LPG)).containsExactly(0, 1);
+        assertMatchesRebuilt(index, 5);
+    }
+
+    private PartitionIndex<EngineType> index(int rowCount) {
+        return new PartitionIndex<>(EngineType.class, row -> engineTypes[row], (first, second) -> Integer.compare(powers[first], powers[second]))
+                .build(rowCount, row -> true);
+    }
+
+    private void assertMatchesRebuilt(PartitionIndex<EngineType> index, int rowCount) {
+
+        var rebuilt = index(rowCount);
+        for (EngineType engineType : EngineType.values()) {
+            assertThat(index.rows(engineType)).containsExactly(rebuilt.rows(engineType));
+        }
+    }
+}
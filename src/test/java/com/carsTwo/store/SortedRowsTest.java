@@ -0,0 +1,98 @@
+package com.carsTwo.store;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedRowsTest {
+
+    private static final int ROWS = 20_000;
+
+    private final int[] keys = new Random(7).ints(ROWS, 0, 1000).toArray();
+    private final Comparator<Integer> byKey = Comparator.<Integer>comparingInt(row -> keys[row]).thenComparingInt(row -> row);
+
+
+    @Test
+    @DisplayName("when rows are added and removed across many blocks")
+    void testOne() {
+
+        var random = new Random(11);
+        var rows = new SortedRows((first, second) -> byKey.compare(first, second));
+        var expected = new TreeSet<>(byKey);
+        for (int i = 0; i < 60_000; i++) {
+            int row = random.nextInt(ROWS);
+            if (random.nextInt(3) == 0) {
+                assertThat(rows.remove(row)).isEqualTo(expected.remove(row));
+            } else {
+                assertThat(rows.add(row)).isEqualTo(expected.add(row));
+            }
+        }
+
+        var ordered = new ArrayList<>(expected);
+        assertThat(rows.size()).isEqualTo(ordered.size());
+        assertThat(rows.rows(0, rows.size())).containsExactly(ordered.stream().mapToInt(Integer::intValue).toArray());
+        assertThat(rows.rows(700, 1300)).containsExactly(ordered.subList(700, 1300).stream().mapToInt(Integer::intValue).toArray());
+        for (int position = 0; position < ordered.size(); position += 97) {
+            int row = ordered.get(position);
+            assertThat(rows.get(position)).isEqualTo(row);
+            assertThat(rows.positionOf(row)).isEqualTo(position);
+        }
+        int missing = ordered.get(500);
+        rows.remove(missing);
+        assertThat(rows.positionOf(missing)).isEqualTo(-501);
+        assertThat(rows.firstPositionNotMatching(row -> keys[row] < 500))
+                .isEqualTo((int) ordered.stream().filter(row -> row != missing && keys[row] < 500).count());
+    }
+
+    @Test
+    @DisplayName("when loaded rows are emptied and filled again")
+    void testTwo() {
+
+        var rows = new SortedRows(Integer::compare);
+        rows.load(new int[0]);
+        assertThat(rows.firstPositionNotMatching(row -> true)).isZero();
+        assertThat(rows.remove(3)).isFalse();
+
+        var loaded = new int[SortedRows.BLOCK_SIZE * 2 + 1];
+        for (int i = 0; i < loaded.length; i++) {
+            loaded[i] = i * 2;
+        }
+        rows.load(loaded);
+        for (int row : loaded) {
+            assertThat(rows.remove(row)).isTrue();
+        }
+        assertThat(rows.size()).isZero();
+        assertThat(rows.add(5)).isTrue();
+        assertThat(rows.add(1)).isTrue();
+        assertThat(rows.rows(0, 2)).containsExactly(1, 5);
+    }
+
+    @Test
+    @DisplayName("when a copy shares the blocks it didn't change")
+    void testThree() {
+
+        var rows = new SortedRows(Integer::compare);
+        var loaded = new int[SortedRows.BLOCK_SIZE * 3];
+        for (int i = 0; i < loaded.length; i++) {
+            loaded[i] = i * 2;
+        }
+        rows.load(loaded);
+
+        var copy = rows.copy(Integer::compare);
+        assertThat(copy.add(1)).isTrue();
+        assertThat(copy.remove(loaded[loaded.length - 1])).isTrue();
+
+        assertThat(copy.blockHolding(SortedRows.BLOCK_SIZE + 1)).isSameAs(rows.blockHolding(SortedRows.BLOCK_SIZE));
+        assertThat(copy.blockHolding(0)).isNotSameAs(rows.blockHolding(0));
+        assertThat(copy.blockHolding(copy.size() - 1)).isNotSameAs(rows.blockHolding(rows.size() - 1));
+        assertThat(rows.rows(0, rows.size())).containsExactly(loaded);
+        assertThat(copy.rows(0, 3)).containsExactly(0, 1, 2);
+        assertThat(copy.size()).isEqualTo(loaded.length);
+    }
+}